@@ -0,0 +1,129 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import top.dcenter.ums.security.jwt.resolver.UmsBearerTokenResolver;
+
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.REQUEST_POOL_SIZE;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.SEED;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.URI_PATTERN_COUNT;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.requestUriOf;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.uriPatterns;
+
+/**
+ * {@link UmsBearerTokenResolver#resolve(javax.servlet.http.HttpServletRequest)} 基准测试:
+ * 20 个忽略的 url(登录, 刷新 jwt, 静态资源等), 约 90% 的请求携带 RS256 长度(约 700 字符)的 Bearer token,
+ * 约 10% 的请求为忽略的 url.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 22:20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BearerTokenResolverBenchmark {
+
+    private static final String JWT_BY_REFRESH_TOKEN_URI = "/jwt/refreshToken";
+
+    private static final String[] IGNORE_URLS = {
+            "/login", "/logout", "/authentication/form", "/authentication/mobile", "/authentication/require",
+            "/code/image", "/code/sms", "/code/slider", "/code/slider/check", "/code/track",
+            "/auth2/authorization/*", "/auth2/login/*", "/signUp", "/swagger-ui/**", "/v3/api-docs/**",
+            "/static/**", "/**/*.css", "/**/*.js", "/**/*.png", "/favicon.ico"
+    };
+
+    private UmsBearerTokenResolver bearerTokenResolver;
+    private MockHttpServletRequest[] requests;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.bearerTokenResolver = new UmsBearerTokenResolver("access_token", JWT_BY_REFRESH_TOKEN_URI);
+        Set<String> ignoreUrls = new HashSet<>(IGNORE_URLS.length * 2);
+        for (String ignoreUrl : IGNORE_URLS) {
+            ignoreUrls.add(ignoreUrl);
+        }
+        this.bearerTokenResolver.addIgnoreUrls(ignoreUrls);
+
+        List<String> patterns = uriPatterns(URI_PATTERN_COUNT);
+        Random random = new Random(SEED);
+        this.requests = new MockHttpServletRequest[REQUEST_POOL_SIZE];
+        for (int i = 0; i < REQUEST_POOL_SIZE; i++) {
+            MockHttpServletRequest request;
+            if (random.nextInt(10) == 0) {
+                request = new MockHttpServletRequest("GET", "/static/js/app." + i + ".js");
+            }
+            else {
+                request = new MockHttpServletRequest("GET", requestUriOf(patterns.get(random.nextInt(URI_PATTERN_COUNT)),
+                                                                         random.nextInt(10000)));
+                request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + randomToken(random));
+            }
+            this.requests[i] = request;
+        }
+    }
+
+    @Benchmark
+    public String resolve() {
+        return this.bearerTokenResolver.resolve(this.requests[this.cursor++ & (REQUEST_POOL_SIZE - 1)]);
+    }
+
+    /**
+     * 生成与 RS256 jwt 长度相近的 header.payload.signature 格式的 token
+     * @param random    {@link Random}
+     * @return  token
+     */
+    private static String randomToken(Random random) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(randomBytes(random, 36)) + "."
+                + encoder.encodeToString(randomBytes(random, 250)) + "."
+                + encoder.encodeToString(randomBytes(random, 256));
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
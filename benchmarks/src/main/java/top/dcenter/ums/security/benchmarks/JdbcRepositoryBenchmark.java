@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.security.crypto.encrypt.Encryptors;
+import org.springframework.test.util.ReflectionTestUtils;
+import top.dcenter.ums.security.core.api.oauth.entity.AuthTokenPo;
+import top.dcenter.ums.security.core.api.oauth.entity.ConnectionData;
+import top.dcenter.ums.security.core.oauth.properties.RepositoryProperties;
+import top.dcenter.ums.security.core.oauth.repository.jdbc.Auth2JdbcUsersConnectionRepository;
+import top.dcenter.ums.security.core.oauth.repository.jdbc.Auth2JdbcUsersConnectionTokenRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.userId;
+
+/**
+ * OAuth 登录路径上 JDBC 查询的基准测试(H2 内存数据库, MySQL 模式), 对比两种实现:
+ * <pre>
+ * precompiled:     当前实现, sql 在创建 repository 时渲染一次, 通过预先创建的 PreparedStatementCreatorFactory 执行.
+ * formatPerCall:   之前的实现, 每次调用通过 RepositoryProperties 的 getter(String.format)/字符串拼接生成 sql.
+ * </pre>
+ * 两种实现使用同一个 {@link JdbcTemplate}(单连接), 同一个 RowMapper, 执行相同的 sql, 结果只包含 sql 生成与参数绑定的差异.
+ * 内存分配对比需加上 GC profiler: {@code java -jar benchmarks/target/benchmarks.jar JdbcRepositoryBenchmark -prof gc},
+ * 查看 {@code gc.alloc.rate.norm}(B/op).
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.22 16:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcRepositoryBenchmark {
+
+    /**
+     * auth_token 与 user_connection 的记录数
+     */
+    private static final int ROW_COUNT = 1000;
+
+    @Param({"precompiled", "formatPerCall"})
+    public String implementation;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private RepositoryProperties repositoryProperties;
+    private Auth2JdbcUsersConnectionRepository connectionRepository;
+    private Auth2JdbcUsersConnectionTokenRepository tokenRepository;
+    private RowMapper<ConnectionData> connectionDataMapper;
+    private RowMapper<AuthTokenPo> authTokenPoMapper;
+    private boolean precompiled;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.precompiled = "precompiled".equals(this.implementation);
+        this.dataSource = new SingleConnectionDataSource("jdbc:h2:mem:ums_benchmarks;MODE=MySQL;" +
+                                                                 "DATABASE_TO_LOWER=TRUE;" +
+                                                                 "CASE_INSENSITIVE_IDENTIFIERS=TRUE",
+                                                         true);
+        this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+        this.repositoryProperties = new RepositoryProperties();
+        this.connectionRepository = new Auth2JdbcUsersConnectionRepository(this.jdbcTemplate, Encryptors.noOpText(),
+                                                                            this.repositoryProperties);
+        this.tokenRepository = new Auth2JdbcUsersConnectionTokenRepository(this.jdbcTemplate, Encryptors.noOpText(),
+                                                                           this.repositoryProperties.getAuthTokenTableName());
+        this.connectionDataMapper = getField(this.connectionRepository, "connectionDataMapper");
+        this.authTokenPoMapper = getField(this.tokenRepository, "authTokenPoMapper");
+
+        this.jdbcTemplate.execute(this.repositoryProperties.getCreateAuthTokenTableSql());
+        this.jdbcTemplate.execute(this.repositoryProperties.getCreatUserConnectionTableSql());
+        for (long id = 1; id <= ROW_COUNT; id++) {
+            this.jdbcTemplate.update("INSERT INTO `auth_token`(`id`, `providerId`, `accessToken`, `refreshToken`, " +
+                                             "`expireIn`, `expireTime`) VALUES(?, ?, ?, ?, ?, ?)",
+                                     id, "gitee", "at" + id, "rt" + id, 86400L, 1624348800000L + id);
+            this.jdbcTemplate.update(this.repositoryProperties.getAddConnectionSql(),
+                                     userId(id), "gitee", providerUserId(id), 1, "name" + id,
+                                     "https://gitee.com/u" + id, "https://gitee.com/u" + id + ".png",
+                                     "at" + id, id, "rt" + id, 1624348800000L + id);
+        }
+        if (findConnectionByProviderIdAndProviderUserId().size() != 1 || findAuthTokenById() == null) {
+            throw new IllegalStateException("初始化数据失败");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.dataSource.destroy();
+    }
+
+    /**
+     * 第三方登录时根据 providerId 与 providerUserId 查询 {@link ConnectionData}
+     */
+    @Benchmark
+    public List<ConnectionData> findConnectionByProviderIdAndProviderUserId() {
+        final String providerUserId = providerUserId(nextId());
+        if (this.precompiled) {
+            return this.connectionRepository.findConnectionByProviderIdAndProviderUserId("gitee", providerUserId);
+        }
+        return this.jdbcTemplate.query(String.format("%s WHERE %s = ? AND %s = ? ORDER BY %s",
+                                                     this.repositoryProperties.getSelectFromUserConnectionSql(),
+                                                     this.repositoryProperties.getProviderIdColumnName(),
+                                                     this.repositoryProperties.getProviderUserIdColumnName(),
+                                                     this.repositoryProperties.getRankColumnName()),
+                                       this.connectionDataMapper, "gitee", providerUserId);
+    }
+
+    /**
+     * 刷新 accessToken 及查询 {@link ConnectionData} 关联的 token 时根据 id 查询 {@link AuthTokenPo}
+     */
+    @Benchmark
+    public AuthTokenPo findAuthTokenById() {
+        final String tokenId = Long.toString(nextId());
+        if (this.precompiled) {
+            return this.tokenRepository.findAuthTokenById(tokenId);
+        }
+        return this.jdbcTemplate.queryForObject("SELECT `id`, `enableRefresh`, `providerId`, `accessToken`, `expireIn`, " +
+                                                        "`refreshTokenExpireIn`, " +
+                                                        "`refreshToken`, `uid`, `openId`, `accessCode`, `unionId`, `scope`, " +
+                                                        "`tokenType`, `idToken`, `macAlgorithm`, `macKey`, `code`, " +
+                                                        "`oauthToken`, `oauthTokenSecret`, `userId`, `screenName`, " +
+                                                        "`oauthCallbackConfirmed`, `expireTime` " +
+                                                        "FROM `" + this.repositoryProperties.getAuthTokenTableName() + "` " +
+                                                        "WHERE id = ?;",
+                                                this.authTokenPoMapper, tokenId);
+    }
+
+    private long nextId() {
+        this.index = this.index % ROW_COUNT + 1;
+        return this.index;
+    }
+
+    private static String providerUserId(long id) {
+        return "56753" + id;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T getField(Object target, String name) {
+        return (T) ReflectionTestUtils.getField(target, name);
+    }
+}
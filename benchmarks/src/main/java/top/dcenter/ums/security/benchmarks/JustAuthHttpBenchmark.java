@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.benchmarks;
+
+import com.xkcoding.http.config.HttpConfig;
+import com.xkcoding.http.exception.SimpleHttpException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import top.dcenter.ums.security.benchmarks.support.StubOAuth2Server;
+import top.dcenter.ums.security.core.oauth.justauth.http.PooledHttpImpl;
+import top.dcenter.ums.security.core.oauth.properties.HttpPoolProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 第三方授权登录回调的 http 请求基准测试: 1000 个线程同时执行回调, 每次回调与本地模拟的第三方服务器
+ * ({@link StubOAuth2Server}, 每次请求 2ms 处理耗时)进行两次请求(POST 获取 access token, GET 获取用户信息). <br>
+ * pooled: {@link PooledHttpImpl}, keep-alive 复用连接;<br>
+ * unpooled: 每次请求新建连接并在请求后关闭, 与未开启 ums.oauth.http-pool.enable 时每次请求新建连接的情况相同.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.18 17:45
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(1000)
+@Fork(value = 1, jvmArgsAppend = {"-Xss256k", "-Dhttp.maxConnections=256"})
+public class JustAuthHttpBenchmark {
+
+    private static final int TIMEOUT = 10000;
+
+    @Param({"pooled", "unpooled"})
+    private String transport;
+
+    private StubOAuth2Server server;
+    private PooledHttpImpl pooledHttp;
+    private String accessTokenUrl;
+    private String userInfoUrl;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.server = new StubOAuth2Server(256, 2L);
+        this.accessTokenUrl = this.server.baseUrl() + "/oauth2/access_token?grant_type=authorization_code&code=code"
+                + "&client_id=clientId&client_secret=clientSecret&redirect_uri=http%3A%2F%2F127.0.0.1%2Foauth%2Flogin%2Fweibo";
+        this.userInfoUrl = this.server.baseUrl() + "/users/show.json?access_token=token&uid=1234567890";
+
+        HttpPoolProperties poolProperties = new HttpPoolProperties();
+        poolProperties.setMaxConnections(1000);
+        poolProperties.setMaxConnectionsPerProvider(256);
+        poolProperties.setAcquireTimeout(Duration.ofSeconds(30));
+        this.pooledHttp = new PooledHttpImpl(HttpConfig.builder().timeout(TIMEOUT).build(), poolProperties);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.server.stop();
+    }
+
+    @Benchmark
+    public String callback() throws IOException {
+        if ("pooled".equals(this.transport)) {
+            this.pooledHttp.post(this.accessTokenUrl);
+            return this.pooledHttp.get(this.userInfoUrl);
+        }
+        unpooled("POST", this.accessTokenUrl);
+        return unpooled("GET", this.userInfoUrl);
+    }
+
+    private static String unpooled(String method, String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            connection.setRequestProperty("Connection", "close");
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new SimpleHttpException("status: " + connection.getResponseCode());
+            }
+            try (InputStream in = connection.getInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+                byte[] buffer = new byte[1024];
+                int len;
+                while ((len = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, len);
+                }
+                return new String(out.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }
+        finally {
+            connection.disconnect();
+        }
+    }
+}
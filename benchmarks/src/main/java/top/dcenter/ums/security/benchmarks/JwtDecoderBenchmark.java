@@ -0,0 +1,193 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.benchmarks;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.jwt.Jwt;
+import top.dcenter.ums.security.benchmarks.support.InMemoryRedisConnectionFactory;
+import top.dcenter.ums.security.jwt.JwtContext;
+import top.dcenter.ums.security.jwt.decoder.UmsNimbusJwtDecoder;
+import top.dcenter.ums.security.jwt.key.JwtKey;
+import top.dcenter.ums.security.jwt.key.JwtKeyRing;
+import top.dcenter.ums.security.jwt.properties.JwtBlacklistProperties;
+import top.dcenter.ums.security.jwt.properties.JwtProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.REQUEST_POOL_SIZE;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.SEED;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.USER_COUNT;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.jti;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.rolesOfUser;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.userId;
+import static top.dcenter.ums.security.common.utils.ReflectionUtil.setFieldValue;
+import static top.dcenter.ums.security.jwt.config.JwtAutoConfiguration.BLACKLIST_PROPERTIES;
+import static top.dcenter.ums.security.jwt.config.JwtAutoConfiguration.PRINCIPAL_CLAIM_NAME;
+import static top.dcenter.ums.security.jwt.config.JwtAutoConfiguration.REDIS_CONNECTION_FACTORY;
+
+/**
+ * {@link UmsNimbusJwtDecoder#decode(String)} 基准测试: 解析, 验签(或命中已验签缓存), 黑名单/tokenInfo 校验, jwtValidator 校验.<br>
+ * redis 使用进程内替身 {@link InMemoryRedisConnectionFactory}:
+ * <pre>
+ * - blacklistEnable = true:  redis 中有 USER_COUNT / 100 个黑名单 jti, 被解码的 jwt 都不在黑名单中.
+ * - blacklistEnable = false: redis 中有 USER_COUNT 个用户的 tokenInfo, 被解码的 jwt 都能找到 tokenInfo.
+ * </pre>
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 21:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class JwtDecoderBenchmark {
+
+    private static final String KID = "ums-benchmark";
+
+    @Param({"RS256", "ES256"})
+    public String algorithm;
+
+    /**
+     * 已验签 jwt 的本地缓存最大数量, 0 表示不缓存, 每次都验签
+     */
+    @Param({"0", "100000"})
+    public int verifiedJwtCacheMaxSize;
+
+    @Param({"true", "false"})
+    public boolean blacklistEnable;
+
+    private InMemoryRedisConnectionFactory redisConnectionFactory;
+    private UmsNimbusJwtDecoder jwtDecoder;
+    private String[] tokens;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        JwtProperties jwtProperties = new JwtProperties();
+        JwtBlacklistProperties blacklistProperties = new JwtBlacklistProperties();
+        blacklistProperties.setEnable(this.blacklistEnable);
+
+        JWSAlgorithm jwsAlgorithm = JWSAlgorithm.parse(this.algorithm);
+        JwtKey key = JwtKey.of(KID, generateKeyPair(jwsAlgorithm), jwsAlgorithm, Instant.EPOCH, null);
+
+        this.jwtDecoder = UmsNimbusJwtDecoder.withKeyRing(new JwtKeyRing(Collections.singletonList(key)),
+                                                          jwtProperties.getRefreshHandlerPolicy(),
+                                                          jwtProperties.getRemainingRefreshInterval(),
+                                                          Boolean.TRUE)
+                                             .build();
+        this.jwtDecoder.setVerifiedJwtCacheMaxSize(this.verifiedJwtCacheMaxSize);
+
+        this.redisConnectionFactory = new InMemoryRedisConnectionFactory(USER_COUNT * 4 / 3 + 1);
+        Class<JwtContext> jwtContextClass = JwtContext.class;
+        setFieldValue(BLACKLIST_PROPERTIES, blacklistProperties, null, jwtContextClass);
+        setFieldValue(REDIS_CONNECTION_FACTORY, this.redisConnectionFactory, null, jwtContextClass);
+        setFieldValue(PRINCIPAL_CLAIM_NAME, jwtProperties.getPrincipalClaimName(), null, jwtContextClass);
+
+        byte[] value = "1".getBytes(StandardCharsets.UTF_8);
+        if (this.blacklistEnable) {
+            for (int i = 0; i < USER_COUNT / 100; i++) {
+                this.redisConnectionFactory.put(bytes(blacklistProperties.getBlacklistPrefix() + "revoked-" + i),
+                                                value);
+            }
+        }
+        else {
+            for (int i = 0; i < USER_COUNT; i++) {
+                this.redisConnectionFactory.put(bytes(blacklistProperties.getTokenInfoPrefix()
+                                                              + userId(i) + ":" + jti(i)), value);
+            }
+        }
+
+        JWSHeader header = new JWSHeader.Builder(jwsAlgorithm).keyID(KID).type(JOSEObjectType.JWT).build();
+        Random random = new Random(SEED);
+        Date now = new Date();
+        Date expiresAt = new Date(now.getTime() + TimeUnit.HOURS.toMillis(2));
+        this.tokens = new String[REQUEST_POOL_SIZE];
+        for (int i = 0; i < REQUEST_POOL_SIZE; i++) {
+            int user = random.nextInt(USER_COUNT);
+            JWTClaimsSet claimsSet = new JWTClaimsSet.Builder().subject(userId(user))
+                                                               .jwtID(jti(user))
+                                                               .issuer("http://www.dcenter.top")
+                                                               .issueTime(now)
+                                                               .notBeforeTime(now)
+                                                               .expirationTime(expiresAt)
+                                                               .claim("authorities",
+                                                                      new ArrayList<>(rolesOfUser(user)))
+                                                               .build();
+            SignedJWT signedJwt = new SignedJWT(header, claimsSet);
+            signedJwt.sign(key.getSigner());
+            this.tokens[i] = signedJwt.serialize();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.redisConnectionFactory.clear();
+    }
+
+    @Benchmark
+    public Jwt decode() {
+        return this.jwtDecoder.decode(this.tokens[this.cursor++ & (REQUEST_POOL_SIZE - 1)]);
+    }
+
+    private static KeyPair generateKeyPair(JWSAlgorithm jwsAlgorithm) throws Exception {
+        if (JWSAlgorithm.Family.EC.contains(jwsAlgorithm)) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        }
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(JwtContext.KEY_ALGORITHM);
+        generator.initialize(JwtContext.KEY_SIZE);
+        return generator.generateKeyPair();
+    }
+
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.benchmarks;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import top.dcenter.ums.security.jwt.JwtContext;
+import top.dcenter.ums.security.jwt.key.JwtKey;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.REQUEST_POOL_SIZE;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.SEED;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.USER_COUNT;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.jti;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.rolesOfUser;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.userId;
+
+/**
+ * jwt 签名基准测试, 对比 RS256(RSA 2048) 与 ES256(secp256r1) 签发 jwt 的速度(登录与 jwt 续期时的签名步骤).
+ * 签名的 {@link JWSSigner} 与生产环境相同, 都来自 {@link JwtKey#getSigner()}. 验签见 {@link JwtVerifyBenchmark}.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.22 17:20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtSignBenchmark {
+
+    private static final String KID = "ums-benchmark";
+
+    @Param({"RS256", "ES256"})
+    public String algorithm;
+
+    private JWSHeader header;
+    private JWSSigner signer;
+    private JWTClaimsSet[] claimsSets;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        JWSAlgorithm jwsAlgorithm = JWSAlgorithm.parse(this.algorithm);
+        JwtKey key = JwtKey.of(KID, generateKeyPair(jwsAlgorithm), jwsAlgorithm, Instant.EPOCH, null);
+        this.signer = key.getSigner();
+        this.header = new JWSHeader.Builder(jwsAlgorithm).keyID(KID).type(JOSEObjectType.JWT).build();
+
+        Random random = new Random(SEED);
+        Date now = new Date();
+        Date expiresAt = new Date(now.getTime() + TimeUnit.HOURS.toMillis(2));
+        this.claimsSets = new JWTClaimsSet[REQUEST_POOL_SIZE];
+        for (int i = 0; i < REQUEST_POOL_SIZE; i++) {
+            int user = random.nextInt(USER_COUNT);
+            this.claimsSets[i] = new JWTClaimsSet.Builder().subject(userId(user))
+                                                           .jwtID(jti(user))
+                                                           .issuer("http://www.dcenter.top")
+                                                           .issueTime(now)
+                                                           .notBeforeTime(now)
+                                                           .expirationTime(expiresAt)
+                                                           .claim("authorities", new ArrayList<>(rolesOfUser(user)))
+                                                           .build();
+        }
+    }
+
+    @Benchmark
+    public String sign() throws JOSEException {
+        SignedJWT signedJwt = new SignedJWT(this.header, this.claimsSets[this.cursor++ & (REQUEST_POOL_SIZE - 1)]);
+        signedJwt.sign(this.signer);
+        return signedJwt.serialize();
+    }
+
+    static KeyPair generateKeyPair(JWSAlgorithm jwsAlgorithm) throws Exception {
+        if (JWSAlgorithm.Family.EC.contains(jwsAlgorithm)) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        }
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(JwtContext.KEY_ALGORITHM);
+        generator.initialize(JwtContext.KEY_SIZE);
+        return generator.generateKeyPair();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.benchmarks;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import top.dcenter.ums.security.jwt.key.JwtKey;
+
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static top.dcenter.ums.security.benchmarks.JwtSignBenchmark.generateKeyPair;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.REQUEST_POOL_SIZE;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.SEED;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.USER_COUNT;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.jti;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.rolesOfUser;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.userId;
+
+/**
+ * jwt 验签基准测试, 对比 RS256(RSA 2048) 与 ES256(secp256r1) 验签 jwt 的速度(每次请求未命中已验签缓存时的解析与验签步骤).
+ * 验签的 {@link JWSVerifier} 与生产环境相同, 都来自 {@link JwtKey#getVerifier()}. 签名见 {@link JwtSignBenchmark}.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.23 16:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerifyBenchmark {
+
+    private static final String KID = "ums-benchmark";
+
+    @Param({"RS256", "ES256"})
+    public String algorithm;
+
+    private JWSVerifier verifier;
+    private String[] tokens;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        JWSAlgorithm jwsAlgorithm = JWSAlgorithm.parse(this.algorithm);
+        JwtKey key = JwtKey.of(KID, generateKeyPair(jwsAlgorithm), jwsAlgorithm, Instant.EPOCH, null);
+        this.verifier = key.getVerifier();
+        JWSHeader header = new JWSHeader.Builder(jwsAlgorithm).keyID(KID).type(JOSEObjectType.JWT).build();
+
+        Random random = new Random(SEED);
+        Date now = new Date();
+        Date expiresAt = new Date(now.getTime() + TimeUnit.HOURS.toMillis(2));
+        this.tokens = new String[REQUEST_POOL_SIZE];
+        for (int i = 0; i < REQUEST_POOL_SIZE; i++) {
+            int user = random.nextInt(USER_COUNT);
+            JWTClaimsSet claimsSet = new JWTClaimsSet.Builder().subject(userId(user))
+                                                               .jwtID(jti(user))
+                                                               .issuer("http://www.dcenter.top")
+                                                               .issueTime(now)
+                                                               .notBeforeTime(now)
+                                                               .expirationTime(expiresAt)
+                                                               .claim("authorities",
+                                                                      new ArrayList<>(rolesOfUser(user)))
+                                                               .build();
+            SignedJWT signedJwt = new SignedJWT(header, claimsSet);
+            signedJwt.sign(key.getSigner());
+            this.tokens[i] = signedJwt.serialize();
+        }
+    }
+
+    @Benchmark
+    public boolean verify() throws ParseException, JOSEException {
+        SignedJWT signedJwt = SignedJWT.parse(this.tokens[this.cursor++ & (REQUEST_POOL_SIZE - 1)]);
+        if (!signedJwt.verify(this.verifier)) {
+            throw new IllegalStateException("验签失败");
+        }
+        return true;
+    }
+}
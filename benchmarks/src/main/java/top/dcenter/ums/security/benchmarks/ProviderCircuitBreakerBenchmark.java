@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.benchmarks;
+
+import com.xkcoding.http.config.HttpConfig;
+import com.xkcoding.http.exception.SimpleHttpException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import top.dcenter.ums.security.benchmarks.support.StubOAuth2Server;
+import top.dcenter.ums.security.core.oauth.justauth.circuitbreaker.ProviderCircuitBreaker;
+import top.dcenter.ums.security.core.oauth.justauth.circuitbreaker.ProviderCircuitBreakerRegistry;
+import top.dcenter.ums.security.core.oauth.justauth.http.PooledHttpImpl;
+import top.dcenter.ums.security.core.oauth.properties.CircuitBreakerProperties;
+import top.dcenter.ums.security.core.oauth.properties.HttpPoolProperties;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 第三方隔离与熔断基准测试: 两个本地模拟的第三方服务器({@link StubOAuth2Server}), healthy 每次请求 2ms,
+ * faulty 注入故障(每次请求 3 秒, 超过 1 秒的请求超时). 200 个线程同时执行回调, 20% 的回调请求 faulty. <br>
+ * enabled: 经过 {@link ProviderCircuitBreaker}, faulty 熔断后直接失败, 线程不再等待超时;<br>
+ * disabled: 直接请求, 与未开启 ums.oauth.circuit-breaker.enable 时相同.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.21 14:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Threads(200)
+@Fork(value = 1, jvmArgsAppend = {"-Xss256k", "-Dhttp.maxConnections=256"})
+public class ProviderCircuitBreakerBenchmark {
+
+    private static final int TIMEOUT = 1000;
+    private static final int FAULTY_PERCENT = 20;
+
+    @Param({"enabled", "disabled"})
+    private String circuitBreaker;
+
+    private StubOAuth2Server healthyServer;
+    private StubOAuth2Server faultyServer;
+    private PooledHttpImpl pooledHttp;
+    private ProviderCircuitBreaker healthyBreaker;
+    private ProviderCircuitBreaker faultyBreaker;
+    private String healthyUrl;
+    private String faultyUrl;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.healthyServer = new StubOAuth2Server(256, 2L);
+        this.faultyServer = new StubOAuth2Server(256, 3000L);
+        this.healthyUrl = this.healthyServer.baseUrl() + "/oauth2/access_token?grant_type=authorization_code&code=code";
+        this.faultyUrl = this.faultyServer.baseUrl() + "/oauth2/access_token?grant_type=authorization_code&code=code";
+
+        HttpPoolProperties poolProperties = new HttpPoolProperties();
+        poolProperties.setMaxConnections(1000);
+        poolProperties.setMaxConnectionsPerProvider(1000);
+        poolProperties.setAcquireTimeout(Duration.ofSeconds(30));
+        this.pooledHttp = new PooledHttpImpl(HttpConfig.builder().timeout(TIMEOUT).build(), poolProperties);
+
+        CircuitBreakerProperties breakerProperties = new CircuitBreakerProperties();
+        breakerProperties.setMaxConcurrentCalls(200);
+        breakerProperties.setWaitDurationInOpenState(Duration.ofSeconds(5));
+        ProviderCircuitBreakerRegistry registry = new ProviderCircuitBreakerRegistry(breakerProperties);
+        this.healthyBreaker = registry.getCircuitBreaker("healthy");
+        this.faultyBreaker = registry.getCircuitBreaker("faulty");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.healthyServer.stop();
+        this.faultyServer.stop();
+    }
+
+    @Benchmark
+    public boolean callback() {
+        final boolean faulty = ThreadLocalRandom.current().nextInt(100) < FAULTY_PERCENT;
+        final String url = faulty ? this.faultyUrl : this.healthyUrl;
+        try {
+            if ("enabled".equals(this.circuitBreaker)) {
+                final ProviderCircuitBreaker breaker = faulty ? this.faultyBreaker : this.healthyBreaker;
+                return breaker.execute(() -> getAccessToken(url));
+            }
+            return getAccessToken(url);
+        }
+        catch (SimpleHttpException e) {
+            return false;
+        }
+    }
+
+    private boolean getAccessToken(String url) {
+        final String body = this.pooledHttp.post(url);
+        if (body == null || !body.contains("access_token")) {
+            throw new SimpleHttpException("获取 accessToken 失败: " + body);
+        }
+        return true;
+    }
+}
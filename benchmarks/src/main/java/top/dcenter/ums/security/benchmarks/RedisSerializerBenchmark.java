@@ -0,0 +1,232 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+import top.dcenter.ums.security.common.api.jackson2.SimpleModuleHolder;
+import top.dcenter.ums.security.common.enums.RedisSerializerType;
+import top.dcenter.ums.security.core.api.oauth.entity.ConnectionData;
+import top.dcenter.ums.security.core.oauth.userdetails.cache.RedisUserCache;
+import top.dcenter.ums.security.core.redis.config.RedisCacheAutoConfiguration;
+import top.dcenter.ums.security.core.redis.jackson2.Auth2Jackson2ModuleHolder;
+import top.dcenter.ums.security.core.redis.jackson2.AuthJackson2ModuleHolder;
+import top.dcenter.ums.security.core.redis.properties.RedisCacheProperties;
+import top.dcenter.ums.security.core.redis.serializer.VersionedRedisSerializer;
+import top.dcenter.ums.security.jwt.config.RedisSerializerAutoConfiguration;
+import top.dcenter.ums.security.jwt.jackson2.JwtJackson2ModuleHolder;
+import top.dcenter.ums.security.jwt.properties.JwtProperties;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.jti;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.rolesOfUser;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.userId;
+import static top.dcenter.ums.security.common.consts.RedisCacheConstants.USER_DETAILS_CACHE_NAME;
+
+/**
+ * redis 缓存值 JSON 与 Smile 格式的序列化/反序列化基准测试, 缓存值为 UMS 缓存中最常见的三种类型:
+ * {@link ConnectionData}(ums-commons 的 redis cache), UserDetails({@link RedisUserCache} 缓存的 JSON 字符串),
+ * {@link JwtAuthenticationToken}(jwt + session 模式的 tokenInfo).<br>
+ * 序列化器与生产环境相同: ums-commons 缓存值序列化器及 jwtTokenRedisSerializer, 都为 {@link VersionedRedisSerializer}.
+ * 序列化后的字节数通过 {@link SerializedSize#serializedBytes} 辅助计数器输出.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.22 10:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisSerializerBenchmark {
+
+    @Param({"JSON", "SMILE"})
+    public RedisSerializerType format;
+
+    @Param({"connectionData", "userDetails", "jwtAuthenticationToken"})
+    public String payload;
+
+    private RedisSerializer<Object> serializer;
+    private Object value;
+    private byte[] serialized;
+
+    /**
+     * 序列化后的字节数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SerializedSize {
+        public long serializedBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (!VersionedRedisSerializer.isSmilePresent()) {
+            throw new IllegalStateException("需要 jackson-dataformat-smile 依赖");
+        }
+        switch (this.payload) {
+            case "connectionData":
+                this.serializer = cacheValueSerializer(this.format);
+                this.value = connectionData();
+                break;
+            case "userDetails":
+                this.serializer = cacheValueSerializer(this.format);
+                this.value = userDetails();
+                break;
+            case "jwtAuthenticationToken":
+                this.serializer = jwtTokenSerializer(this.format);
+                this.value = jwtAuthenticationToken();
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的 payload: " + this.payload);
+        }
+        this.serialized = this.serializer.serialize(this.value);
+        if (this.serializer.deserialize(this.serialized) == null) {
+            throw new IllegalStateException("反序列化失败: " + this.payload);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize(SerializedSize size) {
+        byte[] bytes = this.serializer.serialize(this.value);
+        //noinspection ConstantConditions
+        size.serializedBytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return this.serializer.deserialize(this.serialized);
+    }
+
+    /**
+     * ums-commons redis cache(ConnectionData, UserDetails 等)的缓存值序列化器, 注册了 core/oauth/jwt 模块的 jackson2 module.
+     * @param format    写入格式
+     * @return  缓存值序列化器
+     */
+    private static RedisSerializer<Object> cacheValueSerializer(RedisSerializerType format) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        Map<String, SimpleModuleHolder> moduleHolders = new HashMap<>(8);
+        moduleHolders.put("authJackson2ModuleHolder", new AuthJackson2ModuleHolder());
+        moduleHolders.put("auth2Jackson2ModuleHolder", new Auth2Jackson2ModuleHolder());
+        moduleHolders.put("jwtJackson2ModuleHolder", new JwtJackson2ModuleHolder());
+        RedisCacheAutoConfiguration configuration =
+                new RedisCacheAutoConfiguration(new RedisCacheProperties(), new RedisProperties(),
+                                                beanFactory.getBeanProvider(RedisSentinelConfiguration.class),
+                                                beanFactory.getBeanProvider(RedisClusterConfiguration.class),
+                                                moduleHolders);
+        //noinspection ConstantConditions
+        return ReflectionTestUtils.invokeMethod(configuration, "getRedisValueSerializer", format);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisSerializer<Object> jwtTokenSerializer(RedisSerializerType format) {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.setRedisSerializerType(format);
+        RedisSerializer<?> serializer = new RedisSerializerAutoConfiguration().jwtRedisSerializer(jwtProperties);
+        return (RedisSerializer<Object>) serializer;
+    }
+
+    private static ConnectionData connectionData() {
+        return ConnectionData.builder()
+                             .userId(userId(1))
+                             .providerId("gitee")
+                             .providerUserId("5675391")
+                             .rank(1)
+                             .displayName("ZeroOrInfinity")
+                             .profileUrl("https://gitee.com/pcore")
+                             .imageUrl("https://portrait.gitee.com/uploads/avatars/user/1891/5675391_pcore_1591338823.png")
+                             .accessToken("6b1ca5e0b2b1b6d3a8fd8d72d1d1c1f0")
+                             .tokenId(10001L)
+                             .refreshToken("3e8b7f39b0b4c83fd3e1f0b4f5a1b2c4d5e6f7a8b9c0d1e2f3a4b5c6d7e8f9a0")
+                             .expireTime(Instant.now().plusSeconds(86400L).toEpochMilli())
+                             .build();
+    }
+
+    /**
+     * {@link RedisUserCache} 缓存的值: 由 Spring Security jackson2 modules 序列化的 {@link User} JSON 字符串
+     */
+    private static String userDetails() {
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(USER_DETAILS_CACHE_NAME);
+        new RedisUserCache(cacheManager).putUserInCache(
+                new User(userId(1), "{bcrypt}$2a$10$Fsr3ZJ8MkS0lWqY3SHnS6e4Rk3QkQnq1d8vVQ6mZrL9dYfGkV3n9e",
+                         true, true, true, true, authorities()));
+        //noinspection ConstantConditions
+        return (String) cacheManager.getCache(USER_DETAILS_CACHE_NAME).get("ud:" + userId(1)).get();
+    }
+
+    private static JwtAuthenticationToken jwtAuthenticationToken() {
+        Instant now = Instant.now();
+        Jwt jwt = Jwt.withTokenValue("eyJraWQiOiJ1bXMtYmVuY2htYXJrIiwidHlwIjoiSldUIiwiYWxnIjoiUlMyNTYifQ.payload.signature")
+                     .header("kid", "ums-benchmark")
+                     .header("typ", "JWT")
+                     .header("alg", "RS256")
+                     .subject(userId(1))
+                     .jti(jti(1))
+                     .issuer("http://www.dcenter.top")
+                     .issuedAt(now)
+                     .notBefore(now)
+                     .expiresAt(now.plusSeconds(3600L))
+                     .claim("authorities", new ArrayList<>(rolesOfUser(1)))
+                     .build();
+        return new JwtAuthenticationToken(jwt, authorities(), userId(1));
+    }
+
+    private static List<GrantedAuthority> authorities() {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        for (String role : rolesOfUser(1)) {
+            authorities.add(new SimpleGrantedAuthority(role));
+        }
+        return authorities;
+    }
+}
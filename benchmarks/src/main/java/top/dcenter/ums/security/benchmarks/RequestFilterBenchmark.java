@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import top.dcenter.ums.security.core.auth.filter.JsonRequestFilter;
+import top.dcenter.ums.security.core.mdc.filter.MdcLogFilter;
+import top.dcenter.ums.security.core.mdc.properties.MdcProperties;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.REQUEST_POOL_SIZE;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.SEED;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.URI_PATTERN_COUNT;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.requestUriOf;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.uriPatterns;
+
+/**
+ * 请求过滤器基准测试:
+ * <pre>
+ * - mdcLogFilter:      {@link MdcLogFilter}, includeUrls 为默认的 /**, excludeUrls 为 20 个静态资源 url, 请求都需要添加 MDC.
+ * - jsonRequestFilter: {@link JsonRequestFilter}, 约 1KB 的 json 表单登录请求, FilterChain 中读取一次表单参数.
+ * </pre>
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 22:35
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestFilterBenchmark {
+
+    private static final String[] EXCLUDE_URLS = {
+            "/static/**", "/webjars/**", "/swagger-ui/**", "/v3/api-docs/**", "/swagger-resources/**",
+            "/**/*.css", "/**/*.js", "/**/*.png", "/**/*.jpg", "/**/*.jpeg", "/**/*.gif", "/**/*.svg",
+            "/**/*.ico", "/**/*.woff", "/**/*.woff2", "/**/*.ttf", "/**/*.map", "/**/*.html", "/error",
+            "/actuator/**"
+    };
+
+    private MdcLogFilter mdcLogFilter;
+    private JsonRequestFilter jsonRequestFilter;
+    private MockHttpServletRequest[] requests;
+    private MockHttpServletRequest jsonRequest;
+    private byte[] jsonBody;
+    private MockHttpServletResponse response;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MdcProperties mdcProperties = new MdcProperties();
+        Set<String> excludeUrls = new HashSet<>(EXCLUDE_URLS.length * 2);
+        for (String excludeUrl : EXCLUDE_URLS) {
+            excludeUrls.add(excludeUrl);
+        }
+        mdcProperties.setExcludeUrls(excludeUrls);
+        this.mdcLogFilter = new MdcLogFilter(mdcProperties);
+        this.jsonRequestFilter = new JsonRequestFilter();
+        this.response = new MockHttpServletResponse();
+
+        List<String> patterns = uriPatterns(URI_PATTERN_COUNT);
+        Random random = new Random(SEED);
+        this.requests = new MockHttpServletRequest[REQUEST_POOL_SIZE];
+        for (int i = 0; i < REQUEST_POOL_SIZE; i++) {
+            this.requests[i] = new MockHttpServletRequest("GET",
+                                                          requestUriOf(patterns.get(random.nextInt(URI_PATTERN_COUNT)),
+                                                                       random.nextInt(10000)));
+        }
+
+        StringBuilder body = new StringBuilder(1024)
+                .append("{\"username\":\"user123456\",\"password\":\"P@ssw0rd-123456\",")
+                .append("\"imageCode\":\"8a3k\",\"rememberMe\":true,\"deviceId\":\"")
+                .append(Long.toHexString(random.nextLong())).append("\",\"attributes\":{");
+        for (int i = 0; i < 24; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("\"attr").append(i).append("\":\"").append(Long.toHexString(random.nextLong())).append('"');
+        }
+        body.append("}}");
+        this.jsonBody = body.toString().getBytes(StandardCharsets.UTF_8);
+        this.jsonRequest = new MockHttpServletRequest("POST", "/authentication/form");
+        this.jsonRequest.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    }
+
+    @Benchmark
+    public void mdcLogFilter(Blackhole blackhole) throws ServletException, IOException {
+        MockHttpServletRequest request = this.requests[this.cursor++ & (REQUEST_POOL_SIZE - 1)];
+        FilterChain filterChain = (req, res) -> blackhole.consume(req);
+        this.mdcLogFilter.doFilter(request, this.response, filterChain);
+    }
+
+    @Benchmark
+    public void jsonRequestFilter(Blackhole blackhole) throws ServletException, IOException {
+        // 重置 body, MockHttpServletRequest 的 inputStream 只能读取一次
+        this.jsonRequest.setContent(this.jsonBody);
+        FilterChain filterChain = (req, res) -> blackhole.consume(req.getParameter("username"));
+        this.jsonRequestFilter.doFilter(this.jsonRequest, this.response, filterChain);
+    }
+}
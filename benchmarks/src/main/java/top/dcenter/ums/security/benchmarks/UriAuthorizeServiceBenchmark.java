@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.lang.NonNull;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import top.dcenter.ums.security.core.api.permission.service.AbstractUriAuthorizeService;
+import top.dcenter.ums.security.core.api.permission.service.UpdateCacheOfRolesResourcesService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.REQUEST_POOL_SIZE;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.ROLE_COUNT;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.ROLE_PREFIX;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.SEED;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.URI_PATTERN_COUNT;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.USER_COUNT;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.requestUriOf;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.rolesAuthorities;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.rolesOfUser;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.uriPatterns;
+import static top.dcenter.ums.security.benchmarks.support.BenchmarkFixtures.userId;
+
+/**
+ * {@link AbstractUriAuthorizeService#hasPermission(Authentication, javax.servlet.http.HttpServletRequest)} 基准测试:
+ * 5000 个 uri pattern, 50 个角色, 请求来自 1000000 个用户中随机抽取的用户(每个用户 3 个角色), 约一半的请求有访问权限.
+ * <pre>
+ * - hasPermissionByIndex:  实现了 {@link UpdateCacheOfRolesResourcesService} 并开启 isPermissionIndexEnabled(), 使用预编译的 uri 权限索引.
+ * - hasPermissionByUriMap: 未实现 {@link UpdateCacheOfRolesResourcesService}, 每次合并用户角色的 uri 权限 Map 后逐个匹配.
+ * </pre>
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 22:05
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UriAuthorizeServiceBenchmark {
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+
+    private AbstractUriAuthorizeService indexedUriAuthorizeService;
+    private AbstractUriAuthorizeService uriMapAuthorizeService;
+    private Authentication[] authentications;
+    private MockHttpServletRequest[] requests;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<String> patterns = uriPatterns(URI_PATTERN_COUNT);
+        Map<String, Map<String, Set<String>>> rolesAuthorities = rolesAuthorities(patterns, ROLE_COUNT);
+        this.indexedUriAuthorizeService = new IndexedUriAuthorizeService(rolesAuthorities);
+        this.uriMapAuthorizeService = new UriMapAuthorizeService(rolesAuthorities);
+
+        Random random = new Random(SEED);
+        this.authentications = new Authentication[REQUEST_POOL_SIZE];
+        this.requests = new MockHttpServletRequest[REQUEST_POOL_SIZE];
+        for (int i = 0; i < REQUEST_POOL_SIZE; i++) {
+            int user = random.nextInt(USER_COUNT);
+            Set<String> roles = rolesOfUser(user);
+            this.authentications[i] = new UsernamePasswordAuthenticationToken(
+                    userId(user), null, AuthorityUtils.createAuthorityList(roles.toArray(new String[0])));
+
+            String pattern;
+            if (random.nextBoolean()) {
+                // 用户角色拥有的 uri
+                String ownRole = roles.iterator().next();
+                int roleIndex = Integer.parseInt(ownRole.substring(ROLE_PREFIX.length()));
+                pattern = patterns.get(roleIndex + ROLE_COUNT * random.nextInt(URI_PATTERN_COUNT / ROLE_COUNT));
+            }
+            else {
+                pattern = patterns.get(random.nextInt(URI_PATTERN_COUNT));
+            }
+            MockHttpServletRequest request = new MockHttpServletRequest(METHODS[random.nextInt(METHODS.length)],
+                                                                        requestUriOf(pattern, random.nextInt(10000)));
+            this.requests[i] = request;
+        }
+        // 预热权限索引
+        this.indexedUriAuthorizeService.refreshPermissionIndex();
+    }
+
+    @Benchmark
+    public boolean hasPermissionByIndex() {
+        int i = this.cursor++ & (REQUEST_POOL_SIZE - 1);
+        return this.indexedUriAuthorizeService.hasPermission(this.authentications[i], this.requests[i]);
+    }
+
+    @Benchmark
+    public boolean hasPermissionByUriMap() {
+        int i = this.cursor++ & (REQUEST_POOL_SIZE - 1);
+        return this.uriMapAuthorizeService.hasPermission(this.authentications[i], this.requests[i]);
+    }
+
+    static class UriMapAuthorizeService extends AbstractUriAuthorizeService {
+
+        private final Map<String, Map<String, Set<String>>> rolesAuthorities;
+
+        UriMapAuthorizeService(Map<String, Map<String, Set<String>>> rolesAuthorities) {
+            this.rolesAuthorities = rolesAuthorities;
+        }
+
+        @NonNull
+        @Override
+        public Map<String, Map<String, Set<String>>> getRolesAuthorities() {
+            return this.rolesAuthorities;
+        }
+    }
+
+    static class IndexedUriAuthorizeService extends UriMapAuthorizeService
+            implements UpdateCacheOfRolesResourcesService {
+
+        IndexedUriAuthorizeService(Map<String, Map<String, Set<String>>> rolesAuthorities) {
+            super(rolesAuthorities);
+        }
+
+        @Override
+        protected boolean isPermissionIndexEnabled() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.benchmarks.support;
+
+import org.springframework.lang.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 基准测试数据: 按生产环境量级生成的 uri 权限, 角色与用户数据, 使用固定的随机种子, 保证每次运行的数据相同, 结果可对比.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 21:25
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() { }
+
+    /**
+     * uri 权限(uri pattern)数量
+     */
+    public static final int URI_PATTERN_COUNT = 5000;
+    /**
+     * 角色数量
+     */
+    public static final int ROLE_COUNT = 50;
+    /**
+     * 用户数量
+     */
+    public static final int USER_COUNT = 1000000;
+    /**
+     * 每个用户拥有的角色数量
+     */
+    public static final int ROLES_PER_USER = 3;
+    /**
+     * 每个基准测试轮换使用的请求数量, 2 的幂
+     */
+    public static final int REQUEST_POOL_SIZE = 4096;
+    /**
+     * 随机种子
+     */
+    public static final long SEED = 20210609L;
+
+    /**
+     * 角色前缀
+     */
+    public static final String ROLE_PREFIX = "ROLE_";
+
+    private static final String[] PERMISSIONS = {"list", "add", "edit", "delete"};
+
+    /**
+     * 生成 uri pattern, 按 {@code 精确 uri : /* : /**} 约为 2 : 1 : 1 的比例, 以 50 个模块划分.
+     * @param count uri pattern 数量
+     * @return  uri pattern 列表
+     */
+    @NonNull
+    public static List<String> uriPatterns(int count) {
+        List<String> patterns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String uri = String.format("/api/v1/module%d/resource%d", i % ROLE_COUNT, i);
+            switch (i & 3) {
+                case 2:
+                    patterns.add(uri + "/*");
+                    break;
+                case 3:
+                    patterns.add(uri + "/**");
+                    break;
+                default:
+                    patterns.add(uri);
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * 生成角色的 uri 权限, 每个 uri pattern 分配给一个角色, 权限为 list/add/edit/delete 的随机非空子集.
+     * @param patterns  uri pattern 列表
+     * @param roleCount 角色数量
+     * @return Map(roleAuthority, Map(uri, Set(permission)))
+     */
+    @NonNull
+    public static Map<String, Map<String, Set<String>>> rolesAuthorities(@NonNull List<String> patterns,
+                                                                         int roleCount) {
+        Random random = new Random(SEED);
+        Map<String, Map<String, Set<String>>> rolesAuthorities = new HashMap<>(roleCount * 2);
+        for (int i = 0; i < patterns.size(); i++) {
+            String role = role(i % roleCount);
+            Set<String> permissions = new HashSet<>(PERMISSIONS.length * 2);
+            permissions.add(PERMISSIONS[0]);
+            for (int j = 1; j < PERMISSIONS.length; j++) {
+                if (random.nextBoolean()) {
+                    permissions.add(PERMISSIONS[j]);
+                }
+            }
+            rolesAuthorities.computeIfAbsent(role, k -> new HashMap<>(patterns.size() / roleCount * 2))
+                            .put(patterns.get(i), Collections.unmodifiableSet(permissions));
+        }
+        return rolesAuthorities;
+    }
+
+    /**
+     * 用户 id 对应的角色, 同一 userId 总是得到相同的角色
+     * @param userId    用户 id
+     * @return  角色集合
+     */
+    @NonNull
+    public static Set<String> rolesOfUser(long userId) {
+        Random random = new Random(SEED ^ userId);
+        Set<String> roles = new LinkedHashSet<>(ROLES_PER_USER * 2);
+        while (roles.size() < ROLES_PER_USER) {
+            roles.add(role(random.nextInt(ROLE_COUNT)));
+        }
+        return roles;
+    }
+
+    /**
+     * 把 uri pattern 转换为一个能被其匹配的请求 uri
+     * @param pattern   uri pattern
+     * @param id        替换通配符的路径参数
+     * @return  请求 uri
+     */
+    @NonNull
+    public static String requestUriOf(@NonNull String pattern, long id) {
+        if (pattern.endsWith("/**")) {
+            return pattern.substring(0, pattern.length() - 2) + id + "/detail";
+        }
+        if (pattern.endsWith("/*")) {
+            return pattern.substring(0, pattern.length() - 1) + id;
+        }
+        return pattern;
+    }
+
+    @NonNull
+    public static String role(int index) {
+        return ROLE_PREFIX + index;
+    }
+
+    @NonNull
+    public static String userId(long index) {
+        return "user" + index;
+    }
+
+    @NonNull
+    public static String jti(long index) {
+        return "jti-" + index;
+    }
+
+}
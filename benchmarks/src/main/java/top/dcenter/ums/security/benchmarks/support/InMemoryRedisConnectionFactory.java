@@ -0,0 +1,179 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.benchmarks.support;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 基准测试用的进程内 redis 替身, 只实现认证热点路径用到的字符串命令(get/set/setEx/exists/del/unlink),
+ * 不支持 ttl(忽略过期时间), 不支持的命令抛出 {@link UnsupportedOperationException}.<br>
+ * 用于在不依赖外部 redis 的情况下测量 UMS 自身的开销.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 21:10
+ */
+public class InMemoryRedisConnectionFactory implements RedisConnectionFactory {
+
+    /**
+     * Map(key, value), key 为 {@link ByteBuffer} 包装的 byte[], 以内容比较相等
+     */
+    private final ConcurrentMap<ByteBuffer, byte[]> store;
+
+    private final RedisConnection connection;
+
+    public InMemoryRedisConnectionFactory(int initialCapacity) {
+        this.store = new ConcurrentHashMap<>(initialCapacity);
+        this.connection = (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+                                                                   new Class<?>[]{RedisConnection.class},
+                                                                   new InMemoryConnectionHandler(this.store));
+    }
+
+    /**
+     * 直接写入 store, 用于准备基准测试数据
+     * @param key   key
+     * @param value value
+     */
+    public void put(@NonNull byte[] key, @NonNull byte[] value) {
+        this.store.put(ByteBuffer.wrap(key), value);
+    }
+
+    /**
+     * @return store 中 key 的数量
+     */
+    public int size() {
+        return this.store.size();
+    }
+
+    /**
+     * 清空 store
+     */
+    public void clear() {
+        this.store.clear();
+    }
+
+    @Override
+    @NonNull
+    public RedisConnection getConnection() {
+        return this.connection;
+    }
+
+    @Override
+    @NonNull
+    public RedisClusterConnection getClusterConnection() {
+        throw new UnsupportedOperationException("不支持 redis cluster");
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return false;
+    }
+
+    @Override
+    @NonNull
+    public RedisSentinelConnection getSentinelConnection() {
+        throw new UnsupportedOperationException("不支持 redis sentinel");
+    }
+
+    @Override
+    @Nullable
+    public DataAccessException translateExceptionIfPossible(@NonNull RuntimeException ex) {
+        return null;
+    }
+
+    private static class InMemoryConnectionHandler implements InvocationHandler {
+
+        private final ConcurrentMap<ByteBuffer, byte[]> store;
+
+        InMemoryConnectionHandler(ConcurrentMap<ByteBuffer, byte[]> store) {
+            this.store = store;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "get":
+                    return store.get(ByteBuffer.wrap((byte[]) args[0]));
+                case "set":
+                    store.put(ByteBuffer.wrap((byte[]) args[0]), (byte[]) args[1]);
+                    return Boolean.TRUE;
+                case "setEx":
+                case "pSetEx":
+                    store.put(ByteBuffer.wrap((byte[]) args[0]), (byte[]) args[2]);
+                    return Boolean.TRUE;
+                case "exists":
+                    if (args[0] instanceof byte[]) {
+                        return store.containsKey(ByteBuffer.wrap((byte[]) args[0]));
+                    }
+                    return countKeys((byte[][]) args[0]);
+                case "del":
+                case "unlink":
+                    return delKeys((byte[][]) args[0]);
+                case "close":
+                    return null;
+                case "isClosed":
+                    return Boolean.FALSE;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return InMemoryRedisConnectionFactory.class.getSimpleName() + ".connection";
+                default:
+                    throw new UnsupportedOperationException("InMemoryRedisConnectionFactory 不支持命令: "
+                                                                    + method.getName());
+            }
+        }
+
+        private long countKeys(byte[][] keys) {
+            long count = 0L;
+            for (byte[] key : keys) {
+                if (store.containsKey(ByteBuffer.wrap(key))) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private long delKeys(byte[][] keys) {
+            long count = 0L;
+            for (byte[] key : keys) {
+                if (store.remove(ByteBuffer.wrap(key)) != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
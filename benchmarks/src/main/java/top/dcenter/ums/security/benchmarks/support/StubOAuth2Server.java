@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.benchmarks.support;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 本地模拟第三方授权服务器: 所有路径返回 access token / 用户信息格式的 json, 每次请求模拟服务端处理耗时.
+ * 通过 {@link #setLatencyMillis(long)} 与 {@link #setFailureStatus(int)} 在运行中注入故障(变慢/返回错误状态码).
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.18 17:30
+ */
+public final class StubOAuth2Server {
+
+    private static final byte[] BODY = ("{\"access_token\":\"2.00abcdefghijklmnopqrstuvwxyz0123456789\",\"expires_in\":7200,"
+            + "\"refresh_token\":\"2.00refresh0123456789abcdef\",\"uid\":\"1234567890\",\"name\":\"stub\","
+            + "\"avatar_large\":\"https://127.0.0.1/avatar/1234567890.png\"}").getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile long latencyMillis;
+    private volatile int failureStatus;
+
+    /**
+     * @param serverThreads     服务端处理线程数
+     * @param latencyMillis     每次请求模拟的服务端处理耗时, 单位: 毫秒
+     * @throws IOException  启动失败
+     */
+    public StubOAuth2Server(int serverThreads, long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        this.executor = Executors.newFixedThreadPool(serverThreads);
+        this.server.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody())
+            {
+                byte[] buffer = new byte[1024];
+                //noinspection StatementWithEmptyBody
+                while (in.read(buffer) != -1) { }
+                Thread.sleep(this.latencyMillis);
+                final int status = this.failureStatus;
+                if (status > 0) {
+                    exchange.sendResponseHeaders(status, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json;charset=UTF-8");
+                exchange.sendResponseHeaders(200, BODY.length);
+                exchange.getResponseBody().write(BODY);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                exchange.close();
+            }
+        });
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /**
+     * @return  返回服务器地址, 如: http://127.0.0.1:8080
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * @param latencyMillis 每次请求模拟的服务端处理耗时, 单位: 毫秒
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @param failureStatus 大于 0 时所有请求返回此状态码(如 503), 0 时恢复正常响应
+     */
+    public void setFailureStatus(int failureStatus) {
+        this.failureStatus = failureStatus;
+    }
+
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+}
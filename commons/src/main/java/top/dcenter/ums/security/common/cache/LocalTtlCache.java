@@ -0,0 +1,163 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.common.cache;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * 有容量上限且每个元素带有过期时间的本地缓存. <br>
+ * 1. 读操作无锁, 过期元素在读取时惰性删除.<br>
+ * 2. 写操作超过容量上限时, 先清理过期元素, 再按迭代顺序淘汰元素(非严格 LRU)直到低于容量上限的 9/10,
+ *    因此两次 O(n) 的清理之间至少间隔 maxSize / 10 次写操作, 且同一时刻只有一个线程执行清理.<br>
+ * 用于不方便引入第三方缓存库的本地 near-cache 场景.
+ * @param <K>   key 类型
+ * @param <V>   value 类型
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.8 10:16
+ */
+public class LocalTtlCache<K, V> {
+
+    private final ConcurrentHashMap<K, Node<V>> store;
+    private final int maxSize;
+    /**
+     * 清理后的元素数量上限
+     */
+    private final int lowWaterMark;
+    private final AtomicBoolean shrinking = new AtomicBoolean(false);
+
+    /**
+     * @param maxSize   缓存最大元素数量, 必须大于 0
+     */
+    public LocalTtlCache(int maxSize) {
+        Assert.isTrue(maxSize > 0, "maxSize must be greater than 0");
+        this.maxSize = maxSize;
+        this.lowWaterMark = maxSize - Math.max(1, maxSize / 10);
+        this.store = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+    }
+
+    /**
+     * 获取缓存值
+     * @param key   key
+     * @return  返回缓存值, 不存在或已过期返回 null
+     */
+    @Nullable
+    public V get(@NonNull K key) {
+        Node<V> node = store.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (node.isExpired(System.currentTimeMillis())) {
+            store.remove(key, node);
+            return null;
+        }
+        return node.value;
+    }
+
+    /**
+     * 添加缓存值, ttlMillis 小于等于 0 时不缓存.
+     * @param key           key
+     * @param value         value
+     * @param ttlMillis     存活时间, 单位: 毫秒
+     */
+    public void put(@NonNull K key, @NonNull V value, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            store.remove(key);
+            return;
+        }
+        store.put(key, new Node<>(value, System.currentTimeMillis() + ttlMillis));
+        if (store.size() > maxSize && shrinking.compareAndSet(false, true)) {
+            try {
+                shrink();
+            }
+            finally {
+                shrinking.set(false);
+            }
+        }
+    }
+
+    /**
+     * 删除缓存值
+     * @param key   key
+     */
+    public void evict(@NonNull K key) {
+        store.remove(key);
+    }
+
+    /**
+     * 删除所有 key 符合 predicate 的缓存值
+     * @param predicate key 的断言
+     */
+    public void evictIf(@NonNull Predicate<K> predicate) {
+        store.keySet().removeIf(predicate);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        store.clear();
+    }
+
+    /**
+     * @return 返回当前缓存元素数量(含未清理的过期元素)
+     */
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * 先清理过期元素, 再淘汰元素直到不超过 {@link #lowWaterMark}, 避免超出上限后每次写操作都触发清理.
+     */
+    private void shrink() {
+        long now = System.currentTimeMillis();
+        store.values().removeIf(node -> node.isExpired(now));
+        int toRemove = store.size() - lowWaterMark;
+        Iterator<Map.Entry<K, Node<V>>> iterator = store.entrySet().iterator();
+        while (toRemove-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static final class Node<V> {
+        private final V value;
+        private final long expireAt;
+
+        private Node(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expireAt;
+        }
+    }
+}
@@ -43,4 +43,9 @@ public final class RedisCacheConstants {
      * 第三方授权登录信息 hash 缓存, 当清除缓存时模糊清除, 用按 hash key 清除.
      */
     public static final String USER_CONNECTION_HASH_ALL_CLEAR_CACHE_NAME = "UCHACC";
+
+    /**
+     * 第三方授权登录/一键登录时的用户信息(UserDetails) kv 缓存
+     */
+    public static final String USER_DETAILS_CACHE_NAME = "UDC";
 }
@@ -48,11 +48,17 @@ import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
 import java.util.StringJoiner;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
 
 
@@ -77,10 +83,30 @@ public class RedisHashCache extends RedisCache {
 
     private static final int HASH_KEY_ARRAY_LENGTH = 2;
 
+    /**
+     * 等待其他节点释放分布式加载锁时的重试间隔(毫秒)
+     */
+    private static final long LOAD_LOCK_RETRY_INTERVAL_MILLIS = 50L;
+
     private final String name;
     private final RedisHashCacheWriter cacheWriter;
     private final RedisCacheConfiguration cacheConfig;
     private final ConversionService conversionService;
+    /**
+     * 本地一级缓存, 为 null 时表示没有开启本地缓存
+     */
+    @Nullable
+    private final RedisHashCacheLocalStore localStore;
+    /**
+     * 正在加载中的 key 与其加载结果, 用于 {@link #get(Object, Callable)} 的 single-flight:
+     * 同一个 key 的并发缓存未命中只加载一次, 不同的 key 并行加载.
+     */
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlightLoads = new ConcurrentHashMap<>();
+    /**
+     * 当前线程正在加载的 key, 用于识别 valueLoader 在同一线程中重入 {@link #get(Object, Callable)} 加载同一个 key:
+     * 此时直接调用 valueLoader, 避免等待自身持有的 single-flight 加载结果或分布式加载锁而死锁.
+     */
+    private final ThreadLocal<Set<Object>> loadingKeys = ThreadLocal.withInitial(HashSet::new);
 
     /**
      * Create new {@link RedisHashCache}.
@@ -90,6 +116,19 @@ public class RedisHashCache extends RedisCache {
      * @param cacheConfig must not be {@literal null}.
      */
     protected RedisHashCache(String name, RedisHashCacheWriter cacheWriter, RedisCacheConfiguration cacheConfig) {
+        this(name, cacheWriter, cacheConfig, null);
+    }
+
+    /**
+     * Create new {@link RedisHashCache}.
+     *
+     * @param name        must not be {@literal null}.
+     * @param cacheWriter must not be {@literal null}.
+     * @param cacheConfig must not be {@literal null}.
+     * @param localStore  本地一级缓存, 为 null 时不开启本地缓存.
+     */
+    protected RedisHashCache(String name, RedisHashCacheWriter cacheWriter, RedisCacheConfiguration cacheConfig,
+                             @Nullable RedisHashCacheLocalStore localStore) {
 
         super(name, cacheWriter, cacheConfig);
 
@@ -101,11 +140,52 @@ public class RedisHashCache extends RedisCache {
         this.cacheWriter = cacheWriter;
         this.cacheConfig = cacheConfig;
         this.conversionService = cacheConfig.getConversionService();
+        this.localStore = localStore;
     }
 
     @Override
     protected Object lookup(@NonNull Object key) {
+        String localKey = null;
+        long localVersion = 0L;
+        if (localStore != null)
+        {
+            localKey = createCacheKey(key);
+            Object localValue = localStore.get(name, localKey);
+            if (localValue != null)
+            {
+                return localValue;
+            }
+            localVersion = localStore.version();
+        }
+
         Object[] keyPair = parsingKey(key);
+        if (localStore != null)
+        {
+            // 同时获取 redis 中的剩余过期时间, 本地缓存的 ttl 不超过此时间
+            RedisHashCacheWriter.ValueWithPttl valueWithPttl;
+            if (keyPair.length == HASH_KEY_ARRAY_LENGTH)
+            {
+                valueWithPttl = cacheWriter.hGetWithPttl(name, createAndConvertCacheKey(keyPair[0]),
+                                                         createAndConvertCacheField(keyPair[1]));
+            }
+            else
+            {
+                valueWithPttl = cacheWriter.getWithPttl(name, createAndConvertCacheKey(key));
+            }
+            if (valueWithPttl == null)
+            {
+                return null;
+            }
+            Object result = deserializeCacheValue(valueWithPttl.getValue());
+            final long pttl = valueWithPttl.getPttl();
+            // pttl: -1 表示没有过期时间, 使用本地缓存的 ttl; 0 或 -2 表示即将或已过期, 不缓存到本地
+            if (result != null && (pttl > 0L || pttl == -1L))
+            {
+                localStore.put(name, localKey, result, pttl > 0L ? Duration.ofMillis(pttl) : null, localVersion);
+            }
+            return result;
+        }
+
         byte[] value;
         if (keyPair.length == HASH_KEY_ARRAY_LENGTH)
         {
@@ -139,7 +219,7 @@ public class RedisHashCache extends RedisCache {
 
     @Override
     @SuppressWarnings("unchecked")
-    public synchronized <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+    public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
 
         Cache.ValueWrapper result = get(key);
 
@@ -148,9 +228,57 @@ public class RedisHashCache extends RedisCache {
             return (T) result.get();
         }
 
-        T value = valueFromLoader(key, valueLoader);
-        put(key, value);
-        return value;
+        final Set<Object> keysLoadingByCurrentThread = loadingKeys.get();
+        if (keysLoadingByCurrentThread.contains(key))
+        {
+            // valueLoader 在同一线程中重入加载同一个 key, 直接加载, 由外层的加载负责写入缓存
+            return valueFromLoader(key, valueLoader);
+        }
+
+        CompletableFuture<Object> loadFuture = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = inFlightLoads.putIfAbsent(key, loadFuture);
+        if (inFlight != null)
+        {
+            // 同一个 key 已有线程在加载, 等待其加载结果
+            return (T) awaitInFlightLoad(key, valueLoader, inFlight);
+        }
+
+        keysLoadingByCurrentThread.add(key);
+        try
+        {
+            // double check: 获取 single-flight 的过程中, 其他线程可能已完成加载
+            result = get(key);
+            T value;
+            if (result != null)
+            {
+                value = (T) result.get();
+            }
+            else if (cacheWriter.getLoadLockTtl() != null)
+            {
+                value = loadWithDistributedLock(key, valueLoader);
+            }
+            else
+            {
+                value = valueFromLoader(key, valueLoader);
+                put(key, value);
+            }
+            loadFuture.complete(value);
+            return value;
+        }
+        catch (RuntimeException | Error e)
+        {
+            loadFuture.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            keysLoadingByCurrentThread.remove(key);
+            if (keysLoadingByCurrentThread.isEmpty())
+            {
+                loadingKeys.remove();
+            }
+            inFlightLoads.remove(key, loadFuture);
+        }
     }
 
     @Override
@@ -167,17 +295,26 @@ public class RedisHashCache extends RedisCache {
         }
 
         Object[] keyPair = parsingKey(key);
+        Duration ttl = getRandomTtl(cacheConfig.getTtl());
         if (keyPair.length == HASH_KEY_ARRAY_LENGTH)
         {
             cacheWriter.hPut(name,
                              createAndConvertCacheKey(keyPair[0]),
                              createAndConvertCacheField(keyPair[1]),
                              serializeCacheValue(cacheValue),
-                             getRandomTtl(cacheConfig.getTtl()));
+                             ttl);
         }
         else
         {
-            cacheWriter.put(name, createAndConvertCacheKey(key), serializeCacheValue(cacheValue), getRandomTtl(cacheConfig.getTtl()));
+            cacheWriter.put(name, createAndConvertCacheKey(key), serializeCacheValue(cacheValue), ttl);
+        }
+
+        if (localStore != null)
+        {
+            String localKey = createCacheKey(key);
+            localStore.evictEntry(name, localKey);
+            //noinspection ConstantConditions
+            localStore.put(name, localKey, cacheValue, ttl, localStore.version());
         }
     }
 
@@ -207,6 +344,11 @@ public class RedisHashCache extends RedisCache {
                                                     getRandomTtl(cacheConfig.getTtl()));
         }
 
+        if (localStore != null)
+        {
+            localStore.evictEntry(name, createCacheKey(key));
+        }
+
         if (result == null)
         {
             return null;
@@ -221,9 +363,17 @@ public class RedisHashCache extends RedisCache {
         if (keyPair.length == HASH_KEY_ARRAY_LENGTH)
         {
             cacheWriter.hRemove(name, createAndConvertCacheKey(keyPair[0]),createAndConvertCacheField(keyPair[1]));
+            if (localStore != null)
+            {
+                localStore.evictEntry(name, createCacheKey(key));
+            }
             return;
         }
         cacheWriter.remove(name, createAndConvertCacheKey(key));
+        if (localStore != null)
+        {
+            localStore.evictKey(name, createCacheKey(key));
+        }
     }
 
     @Override
@@ -231,6 +381,10 @@ public class RedisHashCache extends RedisCache {
         byte[] pattern = conversionService.convert(createCacheKey("*"), byte[].class);
         //noinspection ConstantConditions
         cacheWriter.clean(name, pattern);
+        if (localStore != null)
+        {
+            localStore.clear(name);
+        }
     }
 
     /**
@@ -469,6 +623,95 @@ public class RedisHashCache extends RedisCache {
         return cacheConfig.getKeyPrefixFor(name) + key;
     }
 
+    /**
+     * 通过 key 级别的分布式加载锁加载缓存值, 保证集群中同一个 key 的并发缓存未命中只有一个节点加载.
+     * 没有获取到锁时, 轮询缓存直到其他节点加载完成; 超过锁的 ttl 仍未获取到锁时, 直接加载.
+     * @param key           the cache key.
+     * @param valueLoader   value loader
+     * @param <T>           value type
+     * @return 缓存值
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T loadWithDistributedLock(Object key, Callable<T> valueLoader) {
+
+        final Duration lockTtl = cacheWriter.getLoadLockTtl();
+        final byte[] lockKey = createAndConvertCacheKey(key);
+        String token = cacheWriter.tryLoadLock(name, lockKey);
+
+        if (token == null && lockTtl != null)
+        {
+            final long deadline = System.currentTimeMillis() + lockTtl.toMillis();
+            try
+            {
+                while (token == null && System.currentTimeMillis() < deadline)
+                {
+                    //noinspection BusyWait
+                    Thread.sleep(LOAD_LOCK_RETRY_INTERVAL_MILLIS);
+                    Cache.ValueWrapper result = get(key);
+                    if (result != null)
+                    {
+                        return (T) result.get();
+                    }
+                    token = cacheWriter.tryLoadLock(name, lockKey);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new Cache.ValueRetrievalException(key, valueLoader, e);
+            }
+        }
+
+        try
+        {
+            if (token != null)
+            {
+                // 获取锁前其他节点可能刚完成加载并释放了锁
+                Cache.ValueWrapper result = get(key);
+                if (result != null)
+                {
+                    return (T) result.get();
+                }
+            }
+            T value = valueFromLoader(key, valueLoader);
+            put(key, value);
+            return value;
+        }
+        finally
+        {
+            if (token != null)
+            {
+                cacheWriter.releaseLoadLock(name, lockKey, token);
+            }
+        }
+    }
+
+    private static Object awaitInFlightLoad(Object key, Callable<?> valueLoader, CompletableFuture<Object> inFlight) {
+
+        try
+        {
+            return inFlight.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new Cache.ValueRetrievalException(key, valueLoader, e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new Cache.ValueRetrievalException(key, valueLoader, cause);
+        }
+    }
+
     private static <T> T valueFromLoader(Object key, Callable<T> valueLoader) {
 
         try
@@ -0,0 +1,282 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.core.redis.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import top.dcenter.ums.security.common.cache.LocalTtlCache;
+import top.dcenter.ums.security.core.redis.config.RedisCacheAutoConfiguration;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link RedisHashCache} 的本地一级缓存(L1), redis 为二级缓存(L2). <br>
+ * 1. 每个 cacheName 一个有容量上限且带 ttl 的本地缓存, 本地缓存的 ttl 取配置的 ttl 与 redis 缓存随机 ttl 的最小值,
+ *    保证本地缓存不会比 redis 缓存存活更久.<br>
+ * 2. put/evict/clear 时通过 redis pub/sub 广播失效消息, 其他节点删除对应的本地缓存; 节点忽略自己发布的消息.<br>
+ * 3. 失效消息到达时递增版本号, 从 redis 读取缓存期间版本号发生变化时不写入本地缓存, 防止把旧值写入本地缓存.<br>
+ * 4. 本地缓存直接返回缓存的对象实例(不再反序列化), 调用方不应修改返回的对象.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 15:20
+ */
+public class RedisHashCacheLocalStore implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisHashCacheLocalStore.class);
+
+    /**
+     * 失效消息各字段的分隔符
+     */
+    private static final char MESSAGE_SEPARATE = '\n';
+    /**
+     * 失效消息类型: 删除单个缓存
+     */
+    private static final char EVICT_ENTRY = 'E';
+    /**
+     * 失效消息类型: 删除 key 及此 key 的所有 hash field 的缓存
+     */
+    private static final char EVICT_KEY = 'K';
+    /**
+     * 失效消息类型: 清空 cacheName 的所有缓存
+     */
+    private static final char CLEAR = 'C';
+
+    private final ConcurrentMap<String, LocalTtlCache<String, Object>> caches = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong(0L);
+    private final RedisConnectionFactory connectionFactory;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final String channel;
+    /**
+     * 节点 id, 用于忽略自己发布的失效消息
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+    private volatile RedisMessageListenerContainer listenerContainer;
+
+    /**
+     * @param connectionFactory 用于发布与订阅失效消息的 {@link RedisConnectionFactory}
+     * @param maxSize           每个 cacheName 的本地缓存最大数量, 必须大于 0
+     * @param ttl               本地缓存的最大 ttl, 必须大于 0
+     * @param channel           失效消息的 redis pub/sub channel
+     */
+    public RedisHashCacheLocalStore(@NonNull RedisConnectionFactory connectionFactory, int maxSize,
+                                    @NonNull Duration ttl, @NonNull String channel) {
+        Assert.notNull(connectionFactory, "ConnectionFactory must not be null!");
+        Assert.isTrue(maxSize > 0, "MaxSize must be greater than 0!");
+        Assert.isTrue(ttl != null && !ttl.isZero() && !ttl.isNegative(), "Ttl must be greater than 0!");
+        Assert.hasText(channel, "Channel must not be empty!");
+        this.connectionFactory = connectionFactory;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.channel = channel;
+    }
+
+    /**
+     * 启动失效消息的订阅
+     */
+    public synchronized void start() {
+        if (listenerContainer != null)
+        {
+            return;
+        }
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(this, new ChannelTopic(channel));
+        container.afterPropertiesSet();
+        container.start();
+        this.listenerContainer = container;
+    }
+
+    /**
+     * 停止失效消息的订阅并清空本地缓存
+     */
+    public synchronized void destroy() {
+        RedisMessageListenerContainer container = this.listenerContainer;
+        this.listenerContainer = null;
+        if (container != null)
+        {
+            try
+            {
+                container.destroy();
+            }
+            catch (Exception e)
+            {
+                log.warn("关闭本地缓存失效消息订阅失败: " + e.getMessage(), e);
+            }
+        }
+        caches.clear();
+    }
+
+    /**
+     * @return 当前版本号, 在从 redis 读取缓存前获取, 传递给 {@link #put(String, String, Object, Duration, long)}
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * 获取本地缓存
+     * @param cacheName cacheName
+     * @param key       缓存 key(已添加 cache key 前缀)
+     * @return 返回本地缓存的值, 未缓存返回 null
+     */
+    @Nullable
+    public Object get(@NonNull String cacheName, @NonNull String key) {
+        LocalTtlCache<String, Object> cache = caches.get(cacheName);
+        if (cache == null)
+        {
+            return null;
+        }
+        return cache.get(key);
+    }
+
+    /**
+     * 缓存到本地, 如果 {@code expectedVersion} 与当前版本号不同则不缓存.
+     * @param cacheName         cacheName
+     * @param key               缓存 key(已添加 cache key 前缀)
+     * @param value             缓存值
+     * @param redisTtl          redis 缓存的 ttl, 为 null 或不大于 0 时表示永久缓存
+     * @param expectedVersion   从 redis 读取缓存前通过 {@link #version()} 获取的版本号
+     */
+    public void put(@NonNull String cacheName, @NonNull String key, @NonNull Object value,
+                    @Nullable Duration redisTtl, long expectedVersion) {
+        long ttl = ttlMillis;
+        if (redisTtl != null && !redisTtl.isZero() && !redisTtl.isNegative())
+        {
+            ttl = Math.min(ttl, redisTtl.toMillis());
+        }
+        LocalTtlCache<String, Object> cache = caches.computeIfAbsent(cacheName, name -> new LocalTtlCache<>(maxSize));
+        cache.put(key, value, ttl);
+        // put 期间收到失效消息, 删除可能的旧值
+        if (version.get() != expectedVersion)
+        {
+            cache.evict(key);
+        }
+    }
+
+    /**
+     * 删除本地缓存并通知其他节点删除对应的本地缓存
+     * @param cacheName cacheName
+     * @param key       缓存 key(已添加 cache key 前缀)
+     */
+    public void evictEntry(@NonNull String cacheName, @NonNull String key) {
+        evictAndPublish(EVICT_ENTRY, cacheName, key);
+    }
+
+    /**
+     * 删除 key 及此 key 的所有 hash field 的本地缓存, 并通知其他节点删除对应的本地缓存
+     * @param cacheName cacheName
+     * @param key       缓存 key(已添加 cache key 前缀)
+     */
+    public void evictKey(@NonNull String cacheName, @NonNull String key) {
+        evictAndPublish(EVICT_KEY, cacheName, key);
+    }
+
+    /**
+     * 清空 cacheName 的本地缓存, 并通知其他节点清空对应的本地缓存
+     * @param cacheName cacheName
+     */
+    public void clear(@NonNull String cacheName) {
+        evictAndPublish(CLEAR, cacheName, "");
+    }
+
+    @Override
+    public void onMessage(@NonNull Message message, @Nullable byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        // 消息格式: nodeId \n type \n cacheName \n key
+        int nodeIdEnd = body.indexOf(MESSAGE_SEPARATE);
+        int typeEnd = nodeIdEnd + 2;
+        int cacheNameEnd = body.indexOf(MESSAGE_SEPARATE, typeEnd + 1);
+        if (nodeIdEnd < 0 || typeEnd >= body.length() || cacheNameEnd < 0)
+        {
+            log.warn("无效的本地缓存失效消息: {}", body);
+            return;
+        }
+        if (nodeId.equals(body.substring(0, nodeIdEnd)))
+        {
+            return;
+        }
+        evict(body.charAt(nodeIdEnd + 1), body.substring(typeEnd + 1, cacheNameEnd), body.substring(cacheNameEnd + 1));
+    }
+
+    private void evictAndPublish(char type, @NonNull String cacheName, @NonNull String key) {
+        evict(type, cacheName, key);
+        String message = nodeId + MESSAGE_SEPARATE + type + MESSAGE_SEPARATE + cacheName + MESSAGE_SEPARATE + key;
+        RedisConnection connection = null;
+        try
+        {
+            connection = connectionFactory.getConnection();
+            connection.publish(channel.getBytes(StandardCharsets.UTF_8), message.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (Exception e)
+        {
+            log.error("本地缓存失效消息发布失败: " + e.getMessage(), e);
+        }
+        finally
+        {
+            if (connection != null)
+            {
+                connection.close();
+            }
+        }
+    }
+
+    private void evict(char type, @NonNull String cacheName, @NonNull String key) {
+        version.incrementAndGet();
+        LocalTtlCache<String, Object> cache = caches.get(cacheName);
+        if (cache == null)
+        {
+            return;
+        }
+        switch (type)
+        {
+            case EVICT_ENTRY:
+                cache.evict(key);
+                break;
+            case EVICT_KEY:
+                String fieldPrefix = key + RedisCacheAutoConfiguration.REDIS_CACHE_HASH_KEY_SEPARATE;
+                cache.evictIf(k -> k.equals(key) || k.startsWith(fieldPrefix));
+                break;
+            case CLEAR:
+                cache.clear();
+                break;
+            default:
+                log.warn("未知的本地缓存失效消息类型: {}", type);
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package top.dcenter.ums.security.core.redis.cache;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
 import org.springframework.data.redis.cache.RedisCache;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
@@ -24,6 +25,7 @@ import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -54,12 +56,17 @@ import java.util.Set;
  * @see RedisHashCacheWriter
  */
 @SuppressWarnings({"AlibabaCommentsMustBeJavadocFormat", "unused"})
-public class RedisHashCacheManager extends AbstractTransactionSupportingCacheManager {
+public class RedisHashCacheManager extends AbstractTransactionSupportingCacheManager implements DisposableBean {
 
 	private final RedisHashCacheWriter cacheWriter;
 	private final RedisCacheConfiguration defaultCacheConfig;
 	private final Map<String, RedisCacheConfiguration> initialCacheConfiguration;
 	private final boolean allowInFlightCacheCreation;
+	/**
+	 * 本地一级缓存, 为 null 时表示没有开启本地缓存
+	 */
+	@Nullable
+	private RedisHashCacheLocalStore localStore;
 
 	/**
 	 * Creates new {@link RedisHashCacheManager} using given {@link RedisHashCacheWriter} and default
@@ -252,6 +259,21 @@ public class RedisHashCacheManager extends AbstractTransactionSupportingCacheMan
 		return caches;
 	}
 
+	@Override
+	public void afterPropertiesSet() {
+		super.afterPropertiesSet();
+		if (localStore != null) {
+			localStore.start();
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (localStore != null) {
+			localStore.destroy();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.springframework.cache.support.AbstractCacheManager#getMissingCache(java.lang.String)
@@ -286,7 +308,7 @@ public class RedisHashCacheManager extends AbstractTransactionSupportingCacheMan
 	 * @return never {@literal null}.
 	 */
 	protected RedisCache createRedisCache(String name, @Nullable RedisCacheConfiguration cacheConfig) {
-		return new RedisHashCache(name, cacheWriter, cacheConfig != null ? cacheConfig : defaultCacheConfig);
+		return new RedisHashCache(name, cacheWriter, cacheConfig != null ? cacheConfig : defaultCacheConfig, localStore);
 	}
 
 	/**
@@ -304,6 +326,7 @@ public class RedisHashCacheManager extends AbstractTransactionSupportingCacheMan
 		private final Map<String, RedisCacheConfiguration> initialCaches = new LinkedHashMap<>();
 		private boolean enableTransactions;
 		boolean allowInFlightCacheCreation = true;
+		private RedisHashCacheLocalStore localStore;
 
 		private RedisHashCacheManagerBuilder() {}
 
@@ -368,6 +391,54 @@ public class RedisHashCacheManager extends AbstractTransactionSupportingCacheMan
 			return this;
 		}
 
+		/**
+		 * 设置 {@link RedisHashCache#clear()} 时 SCAN 与批量 UNLINK 的参数.
+		 *
+		 * @param scanCount SCAN 命令的 COUNT, 必须大于 0.
+		 * @param batchSize 每批 UNLINK 的 key 数量, 必须大于 0.
+		 * @return this {@link RedisHashCacheManagerBuilder}.
+		 */
+		public RedisHashCacheManagerBuilder cleanOptions(int scanCount, int batchSize) {
+
+			Assert.state(cacheWriter != null, "CacheWriter must not be null!");
+
+			this.cacheWriter.setCleanOptions(scanCount, batchSize);
+
+			return this;
+		}
+
+		/**
+		 * 开启 {@link RedisHashCache#get(Object, java.util.concurrent.Callable)} 的 key 级别分布式加载锁(single-flight),
+		 * 集群中同一个 key 的并发缓存未命中只有一个节点执行加载.
+		 *
+		 * @param loadLockTtl 加载锁的 ttl, 也是等待其他节点加载的最长时间, 必须大于 0.
+		 * @return this {@link RedisHashCacheManagerBuilder}.
+		 */
+		public RedisHashCacheManagerBuilder distributedLoadLock(Duration loadLockTtl) {
+
+			Assert.state(cacheWriter != null, "CacheWriter must not be null!");
+			Assert.notNull(loadLockTtl, "LoadLockTtl must not be null!");
+
+			this.cacheWriter.setLoadLockTtl(loadLockTtl);
+
+			return this;
+		}
+
+		/**
+		 * 开启本地一级缓存(L1), redis 作为二级缓存(L2), 各节点通过 redis pub/sub 同步本地缓存的失效.
+		 *
+		 * @param localStore 本地一级缓存, must not be {@literal null}.
+		 * @return this {@link RedisHashCacheManagerBuilder}.
+		 */
+		public RedisHashCacheManagerBuilder localCache(RedisHashCacheLocalStore localStore) {
+
+			Assert.notNull(localStore, "LocalStore must not be null!");
+
+			this.localStore = localStore;
+
+			return this;
+		}
+
 		/**
 		 * Enable {@link RedisCache}s to synchronize cache put/evict operations with ongoing Spring-managed transactions.
 		 *
@@ -481,6 +552,7 @@ public class RedisHashCacheManager extends AbstractTransactionSupportingCacheMan
 			                                                     allowInFlightCacheCreation);
 
 			cm.setTransactionAware(enableTransactions);
+			cm.localStore = localStore;
 
 			return cm;
 		}
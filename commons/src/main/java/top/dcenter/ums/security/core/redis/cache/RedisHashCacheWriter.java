@@ -23,19 +23,34 @@
 
 package top.dcenter.ums.security.core.redis.cache;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
 import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
+import top.dcenter.ums.security.core.redis.script.RedisLuaScript;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -63,8 +78,48 @@ import static java.util.Optional.ofNullable;
  */
 class RedisHashCacheWriter implements IRedisHashCacheWriter {
 
+	private static final Logger log = LoggerFactory.getLogger(RedisHashCacheWriter.class);
+
+	/**
+	 * {@link #clean(String, byte[])} 时 SCAN 命令的默认 COUNT
+	 */
+	static final int DEFAULT_CLEAN_SCAN_COUNT = 1000;
+	/**
+	 * {@link #clean(String, byte[])} 时每批 UNLINK 的默认 key 数量
+	 */
+	static final int DEFAULT_CLEAN_BATCH_SIZE = 500;
+	/**
+	 * 释放 key 级别加载锁的 lua 脚本, 只有锁的值与持有者的 token 相同时才删除, 防止误删其他节点的锁
+	 */
+	private static final RedisLuaScript UNLOCK_LOAD_LOCK_SCRIPT =
+			RedisLuaScript.of("if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end");
+	private static final byte[] LOCK_SUFFIX = "~lock".getBytes(StandardCharsets.UTF_8);
+	/**
+	 * 一次往返获取 key 的值及剩余过期时间(毫秒)的 lua 脚本, key 不存在时返回 nil
+	 */
+	private static final RedisLuaScript GET_WITH_PTTL_SCRIPT =
+			RedisLuaScript.of("local v = redis.call('get', KEYS[1]) if not v then return nil end " +
+					"return {v, redis.call('pttl', KEYS[1])}");
+	/**
+	 * 一次往返获取 key 与 field 的值及 key 的剩余过期时间(毫秒)的 lua 脚本, field 不存在时返回 nil
+	 */
+	private static final RedisLuaScript HGET_WITH_PTTL_SCRIPT =
+			RedisLuaScript.of("local v = redis.call('hget', KEYS[1], ARGV[1]) if not v then return nil end " +
+					"return {v, redis.call('pttl', KEYS[1])}");
+
 	private final RedisConnectionFactory connectionFactory;
 	private final Duration sleepTime;
+	private volatile int cleanScanCount = DEFAULT_CLEAN_SCAN_COUNT;
+	private volatile int cleanBatchSize = DEFAULT_CLEAN_BATCH_SIZE;
+	/**
+	 * redis 服务器是否支持 UNLINK 命令(4.0+), 不支持时使用 DEL 命令
+	 */
+	private volatile boolean unlinkSupported = true;
+	/**
+	 * key 级别的分布式加载锁(single-flight)的 ttl, 为 null 时不开启分布式加载锁
+	 */
+	@Nullable
+	private volatile Duration loadLockTtl;
 
 	/**
 	 * @param connectionFactory must not be {@literal null}.
@@ -87,6 +142,79 @@ class RedisHashCacheWriter implements IRedisHashCacheWriter {
 		this.sleepTime = sleepTime;
 	}
 
+	/**
+	 * 设置 {@link #clean(String, byte[])} 的 SCAN 与批量删除参数
+	 * @param scanCount SCAN 命令的 COUNT, 必须大于 0
+	 * @param batchSize 每批 UNLINK 的 key 数量, 必须大于 0
+	 */
+	void setCleanOptions(int scanCount, int batchSize) {
+		Assert.isTrue(scanCount > 0, "ScanCount must be greater than 0!");
+		Assert.isTrue(batchSize > 0, "BatchSize must be greater than 0!");
+		this.cleanScanCount = scanCount;
+		this.cleanBatchSize = batchSize;
+	}
+
+	/**
+	 * 设置 key 级别的分布式加载锁(single-flight)的 ttl
+	 * @param loadLockTtl 加载锁的 ttl, 为 null 时关闭分布式加载锁, 不为 null 时必须大于 0
+	 */
+	void setLoadLockTtl(@Nullable Duration loadLockTtl) {
+		Assert.isTrue(loadLockTtl == null || (!loadLockTtl.isZero() && !loadLockTtl.isNegative()),
+		              "LoadLockTtl must be greater than 0!");
+		this.loadLockTtl = loadLockTtl;
+	}
+
+	/**
+	 * @return key 级别的分布式加载锁的 ttl, 返回 null 时表示没有开启分布式加载锁
+	 */
+	@Nullable
+	Duration getLoadLockTtl() {
+		return loadLockTtl;
+	}
+
+	/**
+	 * 尝试获取 key 级别的分布式加载锁, 锁 key 为 {@code key + "~lock"}.
+	 * @param name  the cache name.
+	 * @param key   the cache key.
+	 * @return 获取锁成功返回锁的 token(用于 {@link #releaseLoadLock(String, byte[], String)}), 获取失败或没有开启分布式加载锁返回 null.
+	 */
+	@Nullable
+	String tryLoadLock(@NonNull String name, @NonNull byte[] key) {
+
+		Assert.notNull(name, "Name must not be null!");
+		Assert.notNull(key, "Key must not be null!");
+
+		final Duration ttl = this.loadLockTtl;
+		if (ttl == null) {
+			return null;
+		}
+
+		final String token = UUID.randomUUID().toString();
+		RedisConnection connection = connectionFactory.getConnection();
+		//noinspection TryFinallyCanBeTryWithResources
+		try {
+			Boolean locked = doLock(createCacheLockKey(key), token.getBytes(StandardCharsets.UTF_8), ttl, connection);
+			return Boolean.TRUE.equals(locked) ? token : null;
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * 释放 key 级别的分布式加载锁
+	 * @param name  the cache name.
+	 * @param key   the cache key.
+	 * @param token {@link #tryLoadLock(String, byte[])} 返回的 token.
+	 */
+	void releaseLoadLock(@NonNull String name, @NonNull byte[] key, @NonNull String token) {
+
+		Assert.notNull(name, "Name must not be null!");
+		Assert.notNull(key, "Key must not be null!");
+		Assert.notNull(token, "Token must not be null!");
+
+		executeLockFree(connection -> doUnlock(createCacheLockKey(key), token.getBytes(StandardCharsets.UTF_8), connection));
+	}
+
 	@Override
 	public void put(@NonNull String name, @NonNull byte[] key, @NonNull byte[] value, @Nullable Duration ttl) {
 
@@ -148,6 +276,38 @@ class RedisHashCacheWriter implements IRedisHashCacheWriter {
 		return execute(name, connection -> connection.hGet(key,field));
 	}
 
+	/**
+	 * 获取 key 的值及 key 在 redis 中的剩余过期时间, 用于本地缓存的 ttl 不超过 redis 中的剩余过期时间.
+	 * @param name	cache name
+	 * @param key	cache key
+	 * @return	key 不存在时返回 null
+	 */
+	@Nullable
+	ValueWithPttl getWithPttl(@NonNull String name, @NonNull byte[] key) {
+		Assert.notNull(name, "Name must not be null!");
+		Assert.notNull(key, "Key must not be null!");
+
+		return execute(name, connection -> ValueWithPttl.of(GET_WITH_PTTL_SCRIPT.eval(connection, ReturnType.MULTI,
+																			  1, key)));
+	}
+
+	/**
+	 * 获取 key 与 field 的值及 key 在 redis 中的剩余过期时间, 用于本地缓存的 ttl 不超过 redis 中的剩余过期时间.
+	 * @param name	cache name
+	 * @param key	cache key
+	 * @param field	cache field
+	 * @return	key 或 field 不存在时返回 null
+	 */
+	@Nullable
+	ValueWithPttl hGetWithPttl(@NonNull String name, @NonNull byte[] key, @NonNull byte[] field) {
+		Assert.notNull(name, "Name must not be null!");
+		Assert.notNull(field, "field must not be null!");
+		Assert.notNull(key, "Key must not be null!");
+
+		return execute(name, connection -> ValueWithPttl.of(HGET_WITH_PTTL_SCRIPT.eval(connection, ReturnType.MULTI,
+																			  1, key, field)));
+	}
+
 	@Override
 	public byte[] putIfAbsent(@NonNull String name, @NonNull byte[] key, @NonNull byte[] value, @Nullable Duration ttl) {
 
@@ -254,12 +414,7 @@ class RedisHashCacheWriter implements IRedisHashCacheWriter {
 					wasLocked = true;
 				}
 
-				byte[][] keys = ofNullable(connection.keys(pattern)).orElse(Collections.emptySet())
-						.toArray(new byte[0][]);
-
-				if (keys.length > 0) {
-					connection.del(keys);
-				}
+				doClean(name, pattern, connection);
 			} finally {
 
 				if (wasLocked && isLockingCacheWriter()) {
@@ -271,6 +426,110 @@ class RedisHashCacheWriter implements IRedisHashCacheWriter {
 		});
 	}
 
+	/**
+	 * 通过 SCAN 增量遍历匹配 pattern 的 key 并分批 UNLINK, 避免 KEYS 命令阻塞 redis 服务器.
+	 * redis cluster 时对每个 master 节点分别 SCAN, 并按 slot 分组删除.
+	 * @param name          cache name
+	 * @param pattern       key pattern
+	 * @param connection    {@link RedisConnection}
+	 */
+	private void doClean(String name, byte[] pattern, RedisConnection connection) {
+
+		final long start = System.currentTimeMillis();
+		final String matchPattern = new String(pattern, StandardCharsets.UTF_8);
+		final ScanOptions options = ScanOptions.scanOptions().count(cleanScanCount).match(matchPattern).build();
+		// [0] 已扫描的 key 数量, [1] 已删除的 key 数量, [2] 批次
+		final long[] stats = new long[3];
+
+		if (connection instanceof RedisClusterConnection) {
+			RedisClusterConnection clusterConnection = (RedisClusterConnection) connection;
+			for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+				if (node.isMaster()) {
+					scanAndUnlink(name, clusterConnection.scan(node, options), connection, stats);
+				}
+			}
+		}
+		else {
+			scanAndUnlink(name, connection.scan(options), connection, stats);
+		}
+
+		if (log.isInfoEnabled()) {
+			log.info("redis cache clean: cacheName={}, pattern={}, scanned={}, deleted={}, batches={}, elapsed={}ms",
+			         name, matchPattern, stats[0], stats[1], stats[2],
+			         System.currentTimeMillis() - start);
+		}
+	}
+
+	private void scanAndUnlink(String name, Cursor<byte[]> cursor, RedisConnection connection, long[] stats) {
+
+		final int batchSize = this.cleanBatchSize;
+		final List<byte[]> batch = new ArrayList<>(batchSize);
+		try (Cursor<byte[]> keys = cursor) {
+			while (keys.hasNext()) {
+				batch.add(keys.next());
+				stats[0]++;
+				if (batch.size() >= batchSize) {
+					unlink(name, batch, connection, stats);
+				}
+			}
+			if (!batch.isEmpty()) {
+				unlink(name, batch, connection, stats);
+			}
+		}
+		catch (IOException e) {
+			log.warn("redis cache clean: 关闭 scan cursor 失败, cacheName={}", name, e);
+		}
+	}
+
+	/**
+	 * 删除 keys 并清空 keys, redis cluster 时按 slot 分组删除.
+	 */
+	private void unlink(String name, List<byte[]> keys, RedisConnection connection, long[] stats) {
+
+		if (connection instanceof RedisClusterConnection) {
+			Map<Integer, List<byte[]>> slotKeys = new HashMap<>(16);
+			for (byte[] key : keys) {
+				slotKeys.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(key), slot -> new ArrayList<>()).add(key);
+			}
+			for (List<byte[]> sameSlotKeys : slotKeys.values()) {
+				stats[1] += unlink(sameSlotKeys.toArray(new byte[0][]), connection);
+			}
+		}
+		else {
+			stats[1] += unlink(keys.toArray(new byte[0][]), connection);
+		}
+		stats[2]++;
+		keys.clear();
+
+		if (log.isDebugEnabled()) {
+			log.debug("redis cache clean progress: cacheName={}, scanned={}, deleted={}, batches={}",
+			          name, stats[0], stats[1], stats[2]);
+		}
+	}
+
+	private long unlink(byte[][] keys, RedisConnection connection) {
+		if (unlinkSupported) {
+			try {
+				return ofNullable(connection.unlink(keys)).orElse(0L);
+			}
+			catch (DataAccessException e) {
+				// redis 4.0 以下不支持 UNLINK 命令
+				if (!isUnknownCommand(e)) {
+					throw e;
+				}
+				log.warn("redis cache clean: redis 服务器不支持 UNLINK 命令, 改用 DEL 命令: {}", e.getMessage());
+				unlinkSupported = false;
+			}
+		}
+		return ofNullable(connection.del(keys)).orElse(0L);
+	}
+
+	private static boolean isUnknownCommand(DataAccessException e) {
+		Throwable cause = e.getMostSpecificCause();
+		String message = cause.getMessage();
+		return message != null && message.toLowerCase().contains("unknown command");
+	}
+
 	/**
 	 * Explicitly set a write lock on a cache.
 	 *
@@ -300,6 +559,16 @@ class RedisHashCacheWriter implements IRedisHashCacheWriter {
 		return connection.del(createCacheLockKey(name));
 	}
 
+	private Boolean doLock(byte[] lockKey, byte[] token, Duration ttl, RedisConnection connection) {
+		return connection.set(lockKey, token, Expiration.from(ttl.toMillis(), TimeUnit.MILLISECONDS),
+		                      SetOption.SET_IF_ABSENT);
+	}
+
+	@SuppressWarnings("UnusedReturnValue")
+	private Long doUnlock(byte[] lockKey, byte[] token, RedisConnection connection) {
+		return UNLOCK_LOAD_LOCK_SCRIPT.eval(connection, ReturnType.INTEGER, 1, lockKey, token);
+	}
+
 	boolean doCheckLock(String name, RedisConnection connection) {
 		return ofNullable(connection.exists(createCacheLockKey(name))).orElse(Boolean.FALSE);
 	}
@@ -366,4 +635,48 @@ class RedisHashCacheWriter implements IRedisHashCacheWriter {
 		return (name + "~lock").getBytes(StandardCharsets.UTF_8);
 	}
 
-}
\ No newline at end of file
+	private static byte[] createCacheLockKey(byte[] key) {
+		byte[] lockKey = new byte[key.length + LOCK_SUFFIX.length];
+		System.arraycopy(key, 0, lockKey, 0, key.length);
+		System.arraycopy(LOCK_SUFFIX, 0, lockKey, key.length, LOCK_SUFFIX.length);
+		return lockKey;
+	}
+
+	/**
+	 * 缓存值及 key 在 redis 中的剩余过期时间
+	 */
+	static final class ValueWithPttl {
+
+		private final byte[] value;
+		/**
+		 * 剩余过期时间(毫秒), -1 表示没有过期时间, -2 表示 key 已不存在
+		 */
+		private final long pttl;
+
+		private ValueWithPttl(byte[] value, long pttl) {
+			this.value = value;
+			this.pttl = pttl;
+		}
+
+		@Nullable
+		private static ValueWithPttl of(@Nullable Object result) {
+			if (!(result instanceof List) || ((List<?>) result).size() < 2) {
+				return null;
+			}
+			List<?> list = (List<?>) result;
+			if (!(list.get(0) instanceof byte[])) {
+				return null;
+			}
+			Object pttl = list.get(1);
+			return new ValueWithPttl((byte[]) list.get(0), pttl instanceof Number ? ((Number) pttl).longValue() : -1L);
+		}
+
+		byte[] getValue() {
+			return value;
+		}
+
+		long getPttl() {
+			return pttl;
+		}
+	}
+}
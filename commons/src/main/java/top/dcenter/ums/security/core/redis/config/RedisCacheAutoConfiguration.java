@@ -66,6 +66,7 @@ import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactor
 import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.lang.NonNull;
 import org.springframework.security.jackson2.CoreJackson2Module;
@@ -75,9 +76,12 @@ import org.springframework.security.web.server.jackson2.WebServerJackson2Module;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import top.dcenter.ums.security.common.api.jackson2.SimpleModuleHolder;
+import top.dcenter.ums.security.common.enums.RedisSerializerType;
+import top.dcenter.ums.security.core.redis.cache.RedisHashCacheLocalStore;
 import top.dcenter.ums.security.core.redis.cache.RedisHashCacheManager;
 import top.dcenter.ums.security.core.redis.key.generator.RemoveConnectionsByConnectionKeyWithUserIdKeyGenerator;
 import top.dcenter.ums.security.core.redis.properties.RedisCacheProperties;
+import top.dcenter.ums.security.core.redis.serializer.VersionedRedisSerializer;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -94,6 +98,7 @@ import static java.util.Objects.nonNull;
 import static top.dcenter.ums.security.common.consts.RedisCacheConstants.USER_CONNECTION_CACHE_NAME;
 import static top.dcenter.ums.security.common.consts.RedisCacheConstants.USER_CONNECTION_HASH_ALL_CLEAR_CACHE_NAME;
 import static top.dcenter.ums.security.common.consts.RedisCacheConstants.USER_CONNECTION_HASH_CACHE_NAME;
+import static top.dcenter.ums.security.common.consts.RedisCacheConstants.USER_DETAILS_CACHE_NAME;
 
 /**
  * 简单的实现 Redis cache 自定义配置 {@link CacheManager}, 向 IOC 容器中注入 beanName=auth2RedisHashCacheManager 的实例. <br><br>
@@ -138,20 +143,41 @@ public class RedisCacheAutoConfiguration {
         cacheNames.add(USER_CONNECTION_CACHE_NAME);
         cacheNames.add(USER_CONNECTION_HASH_CACHE_NAME);
         cacheNames.add(USER_CONNECTION_HASH_ALL_CLEAR_CACHE_NAME);
+        cacheNames.add(USER_DETAILS_CACHE_NAME);
         this.properties = properties;
         this.sentinelConfiguration = sentinelConfigurationProvider.getIfAvailable();
         this.clusterConfiguration = clusterConfigurationProvider.getIfAvailable();
     }
 
+    /**
+     * 根据 {@link RedisSerializerType} 获取缓存值的序列化器, 支持 JSON 与二进制格式共存
+     * @param serializerType    写入缓存值的序列化格式
+     * @return  缓存值的序列化器
+     */
+    private RedisSerializer<Object> getRedisValueSerializer(RedisSerializerType serializerType) {
+        Jackson2JsonRedisSerializer<Object> jsonSerializer = getJackson2JsonRedisSerializer(new ObjectMapper());
+        ObjectMapper smileMapper = VersionedRedisSerializer.newSmileObjectMapper();
+        Jackson2JsonRedisSerializer<Object> smileSerializer = null;
+        if (nonNull(smileMapper))
+        {
+            smileSerializer = getJackson2JsonRedisSerializer(smileMapper);
+        }
+        else if (RedisSerializerType.SMILE.equals(serializerType))
+        {
+            log.warn("ums.cache.redis.cache.serializer-type=SMILE 需要 jackson-dataformat-smile 依赖, 已使用 JSON 格式");
+            serializerType = RedisSerializerType.JSON;
+        }
+        return new VersionedRedisSerializer<>(jsonSerializer, smileSerializer, serializerType);
+    }
+
     /**
      * 配置 Jackson2JsonRedisSerializer 序列化器，在配置 redisTemplate需要用来做k,v的
      * 序列化器
+     * @param om    {@link ObjectMapper}, JSON 格式或 Smile 等二进制格式
      */
-    @SuppressWarnings({"rawtypes", "unchecked"})
-    private Jackson2JsonRedisSerializer getJackson2JsonRedisSerializer(){
-        Jackson2JsonRedisSerializer jackson2JsonRedisSerializer;
-        jackson2JsonRedisSerializer = new Jackson2JsonRedisSerializer(Object.class);
-        ObjectMapper om = new ObjectMapper();
+    private Jackson2JsonRedisSerializer<Object> getJackson2JsonRedisSerializer(ObjectMapper om){
+        Jackson2JsonRedisSerializer<Object> jackson2JsonRedisSerializer;
+        jackson2JsonRedisSerializer = new Jackson2JsonRedisSerializer<>(Object.class);
         om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
         om.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
                                  ObjectMapper.DefaultTyping.NON_FINAL);
@@ -207,14 +233,13 @@ public class RedisCacheAutoConfiguration {
 
         RedisCacheConfiguration defaultCacheConfig = RedisCacheConfiguration.defaultCacheConfig();
         // 设置缓存管理器管理的缓存的默认过期时间
-        //noinspection unchecked
         defaultCacheConfig = defaultCacheConfig.entryTtl(cache.getDefaultExpireTime())
                 // 设置 key为string序列化
                 .serializeKeysWith(RedisSerializationContext.SerializationPair
                                            .fromSerializer(new StringRedisSerializer()))
-                // 设置value为json序列化
+                // 设置value为json或二进制序列化
                 .serializeValuesWith(RedisSerializationContext.SerializationPair
-                                             .fromSerializer(getJackson2JsonRedisSerializer()));
+                                             .fromSerializer(getRedisValueSerializer(cache.getSerializerType())));
                 // 不缓存空值
                 //.disableCachingNullValues()
 
@@ -228,13 +253,23 @@ public class RedisCacheAutoConfiguration {
                           defaultCacheConfig.entryTtl(cache.getEntryTtl()));
         }
 
-        //noinspection UnnecessaryLocalVariable
-        RedisHashCacheManager cacheManager = RedisHashCacheManager.builder(lettuceConnectionFactory)
-                                                                  .cacheDefaults(defaultCacheConfig)
-                                                                  .initialCacheNames(cacheNames)
-                                                                  .withInitialCacheConfigurations(configMap)
-                                                                  .build();
-        return cacheManager;
+        RedisHashCacheManager.RedisHashCacheManagerBuilder builder =
+                RedisHashCacheManager.builder(lettuceConnectionFactory)
+                                     .cacheDefaults(defaultCacheConfig)
+                                     .initialCacheNames(cacheNames)
+                                     .withInitialCacheConfigurations(configMap)
+                                     .cleanOptions(cache.getCleanScanCount(), cache.getCleanBatchSize());
+        if (cache.getDistributedLoadLock())
+        {
+            builder.distributedLoadLock(cache.getLoadLockTtl());
+        }
+        RedisCacheProperties.Local local = redisCacheProperties.getLocal();
+        if (local.getEnable())
+        {
+            builder.localCache(new RedisHashCacheLocalStore(lettuceConnectionFactory, local.getMaxSize(),
+                                                            local.getTtl(), local.getChannel()));
+        }
+        return builder.build();
     }
 
     @Bean("removeConnectionsByConnectionKeyWithUserIdKeyGenerator")
@@ -25,6 +25,7 @@ package top.dcenter.ums.security.core.redis.properties;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
+import top.dcenter.ums.security.common.enums.RedisSerializerType;
 
 import java.time.Duration;
 import java.util.HashSet;
@@ -41,6 +42,9 @@ public class RedisCacheProperties {
     @NestedConfigurationProperty
     private final Cache cache = new Cache();
 
+    @NestedConfigurationProperty
+    private final Local local = new Local();
+
     /**
      * Redis cache is open, 默认 false
      */
@@ -71,6 +75,28 @@ public class RedisCacheProperties {
          * Names of the default caches to consider for caching operations defined in the annotated class.
          */
         private Set<String> cacheNames = new HashSet<>();
+        /**
+         * 清空缓存(cache.clear())时, 通过 SCAN 命令遍历 key 的 COUNT 值, 默认: 1000
+         */
+        private Integer cleanScanCount = 1000;
+        /**
+         * 清空缓存(cache.clear())时, 每批 UNLINK 删除的 key 数量, 默认: 500
+         */
+        private Integer cleanBatchSize = 500;
+        /**
+         * 是否开启 cache.get(key, valueLoader) 的 key 级别分布式加载锁(single-flight), 开启后集群中同一个 key 的并发缓存未命中
+         * 只有一个节点执行加载, 其他节点等待加载结果. 默认: false. 注意: 单节点内同一个 key 的并发加载始终只执行一次.
+         */
+        private Boolean distributedLoadLock = Boolean.FALSE;
+        /**
+         * 分布式加载锁的 ttl, 也是等待其他节点加载的最长时间, 默认: 10 秒
+         */
+        private Duration loadLockTtl = Duration.ofSeconds(10);
+        /**
+         * 写入缓存值的序列化格式, 默认: JSON. 读取时 JSON 与二进制格式的缓存值可以共存, 可用于平滑升级:
+         * 先以 JSON 格式部署所有节点, 再切换为 SMILE. SMILE 格式需要添加 jackson-dataformat-smile 依赖.
+         */
+        private RedisSerializerType serializerType = RedisSerializerType.JSON;
 
         public Integer getDatabaseIndex() {
             return databaseIndex;
@@ -103,12 +129,109 @@ public class RedisCacheProperties {
         public void setCacheNames(Set<String> cacheNames) {
             this.cacheNames = cacheNames;
         }
+
+        public Integer getCleanScanCount() {
+            return cleanScanCount;
+        }
+
+        public void setCleanScanCount(Integer cleanScanCount) {
+            this.cleanScanCount = cleanScanCount;
+        }
+
+        public Integer getCleanBatchSize() {
+            return cleanBatchSize;
+        }
+
+        public void setCleanBatchSize(Integer cleanBatchSize) {
+            this.cleanBatchSize = cleanBatchSize;
+        }
+
+        public Boolean getDistributedLoadLock() {
+            return distributedLoadLock;
+        }
+
+        public void setDistributedLoadLock(Boolean distributedLoadLock) {
+            this.distributedLoadLock = distributedLoadLock;
+        }
+
+        public Duration getLoadLockTtl() {
+            return loadLockTtl;
+        }
+
+        public void setLoadLockTtl(Duration loadLockTtl) {
+            this.loadLockTtl = loadLockTtl;
+        }
+
+        public RedisSerializerType getSerializerType() {
+            return serializerType;
+        }
+
+        public void setSerializerType(RedisSerializerType serializerType) {
+            this.serializerType = serializerType;
+        }
+    }
+
+    public static class Local {
+
+        /**
+         * 是否开启本地一级缓存(L1), redis 缓存作为二级缓存(L2), 默认: false. <br>
+         * 开启后每个 cacheName 有一个有容量上限且带 ttl 的本地缓存, put/evict/clear 时通过 redis pub/sub 通知其他节点删除对应的本地缓存.
+         */
+        private Boolean enable = Boolean.FALSE;
+        /**
+         * 每个 cacheName 的本地缓存最大数量, 默认: 10000
+         */
+        private Integer maxSize = 10000;
+        /**
+         * 本地缓存的最大 ttl, 实际 ttl 取此值与 redis 缓存随机 ttl 的最小值, 默认: 60 秒
+         */
+        private Duration ttl = Duration.ofSeconds(60);
+        /**
+         * 本地缓存失效消息的 redis pub/sub channel, 默认: UMS:CACHE:LOCAL:INVALIDATE
+         */
+        private String channel = "UMS:CACHE:LOCAL:INVALIDATE";
+
+        public Boolean getEnable() {
+            return enable;
+        }
+
+        public void setEnable(Boolean enable) {
+            this.enable = enable;
+        }
+
+        public Integer getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(Integer maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public String getChannel() {
+            return channel;
+        }
+
+        public void setChannel(String channel) {
+            this.channel = channel;
+        }
     }
 
     public Cache getCache() {
         return cache;
     }
 
+    public Local getLocal() {
+        return local;
+    }
+
     public Boolean getOpen() {
         return open;
     }
@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.redis.script;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.script.DigestUtils;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 通过 EVALSHA 执行的 lua 脚本, redis 返回 NOSCRIPT(脚本未缓存, 如 redis 重启, 主从切换或执行了 SCRIPT FLUSH)时
+ * 改用 EVAL 执行, EVAL 同时会使 redis 缓存该脚本.<br>
+ * pipeline 或事务中 NOSCRIPT 要到 closePipeline/exec 时才返回, 无法针对单个命令回退, 此时直接使用 EVAL 执行.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.23 22:05
+ */
+public final class RedisLuaScript {
+
+    private static final String NO_SCRIPT_ERROR_PREFIX = "NOSCRIPT";
+
+    private final byte[] script;
+    private final byte[] sha1;
+
+    private RedisLuaScript(@NonNull String script) {
+        this.script = script.getBytes(StandardCharsets.UTF_8);
+        this.sha1 = DigestUtils.sha1DigestAsHex(script).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 创建 {@link RedisLuaScript}
+     * @param script    lua 脚本
+     * @return  返回 {@link RedisLuaScript}
+     */
+    @NonNull
+    public static RedisLuaScript of(@NonNull String script) {
+        Assert.hasText(script, "script cannot be empty");
+        return new RedisLuaScript(script);
+    }
+
+    /**
+     * 执行脚本: 优先使用 EVALSHA, 返回 NOSCRIPT 时使用 EVAL; connection 处于 pipeline 或事务中时直接使用 EVAL.
+     * @param connection    {@link RedisConnection}
+     * @param returnType    返回值类型
+     * @param numKeys       key 的数量
+     * @param keysAndArgs   keys 与 args
+     * @param <T>           返回值类型
+     * @return  返回脚本执行结果, pipeline 或事务中返回 null
+     */
+    @Nullable
+    public <T> T eval(@NonNull RedisConnection connection, @NonNull ReturnType returnType,
+                      int numKeys, byte[]... keysAndArgs) {
+        if (connection.isPipelined() || connection.isQueueing()) {
+            return connection.eval(script, returnType, numKeys, keysAndArgs);
+        }
+        try {
+            return connection.evalSha(sha1, returnType, numKeys, keysAndArgs);
+        }
+        catch (DataAccessException e) {
+            if (!isScriptNotFound(e)) {
+                throw e;
+            }
+            return connection.eval(script, returnType, numKeys, keysAndArgs);
+        }
+    }
+
+    private static boolean isScriptNotFound(@NonNull Throwable e) {
+        Throwable current = e;
+        while (current != null) {
+            final String message = current.getMessage();
+            if (message != null && message.contains(NO_SCRIPT_ERROR_PREFIX)) {
+                return true;
+            }
+            current = current.getCause() == current ? null : current.getCause();
+        }
+        return false;
+    }
+
+}
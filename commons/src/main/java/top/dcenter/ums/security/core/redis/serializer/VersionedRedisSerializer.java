@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.redis.serializer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import top.dcenter.ums.security.common.enums.RedisSerializerType;
+
+import java.util.Arrays;
+
+/**
+ * 支持 JSON 与二进制格式共存的 {@link RedisSerializer}, 用于 JSON 格式到二进制格式的平滑升级. <br>
+ * 1. 二进制格式的值添加 {@link #HEADER_LENGTH} 个字节的头部: {@link #MAGIC} + 格式版本(即编码 id).
+ *    {@link #MAGIC} 为 UTF-8 的后续字节, 不会是 JSON 文本的第一个字节, 因此可以与无头部的 JSON 值区分.<br>
+ * 2. 写入格式为 {@link RedisSerializerType#JSON} 时不添加头部, 旧版本节点可以正常读取;
+ *    读取时根据头部选择对应的解码器, 无头部的值使用 JSON 解码.<br>
+ * 3. 升级步骤: 先以 JSON 格式部署所有节点(此时已可读取二进制格式), 再把写入格式切换为二进制格式.
+ * @param <T>   序列化对象类型
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 17:12
+ */
+public class VersionedRedisSerializer<T> implements RedisSerializer<T> {
+
+    /**
+     * 二进制格式头部的魔数
+     */
+    public static final byte MAGIC = (byte) 0xB7;
+    /**
+     * 二进制格式头部的长度
+     */
+    public static final int HEADER_LENGTH = 2;
+    /**
+     * Smile 格式的版本(编码 id)
+     */
+    public static final byte SMILE_VERSION = 1;
+
+    private static final String SMILE_FACTORY_CLASS_NAME = "com.fasterxml.jackson.dataformat.smile.SmileFactory";
+
+    private final RedisSerializer<T> jsonSerializer;
+    @Nullable
+    private final RedisSerializer<T> smileSerializer;
+    private final RedisSerializerType writeType;
+
+    /**
+     * @param jsonSerializer    JSON 格式的序列化器, 也用于解码无头部的值
+     * @param smileSerializer   Smile 格式的序列化器, 为 null 时不支持读写 Smile 格式
+     * @param writeType         写入格式, 为 {@link RedisSerializerType#SMILE} 时 smileSerializer 不能为 null
+     */
+    public VersionedRedisSerializer(@NonNull RedisSerializer<T> jsonSerializer,
+                                    @Nullable RedisSerializer<T> smileSerializer,
+                                    @NonNull RedisSerializerType writeType) {
+        Assert.notNull(jsonSerializer, "jsonSerializer cannot be null");
+        Assert.notNull(writeType, "writeType cannot be null");
+        Assert.isTrue(!RedisSerializerType.SMILE.equals(writeType) || smileSerializer != null,
+                      "smileSerializer cannot be null when writeType is SMILE");
+        this.jsonSerializer = jsonSerializer;
+        this.smileSerializer = smileSerializer;
+        this.writeType = writeType;
+    }
+
+    @Override
+    @Nullable
+    public byte[] serialize(@Nullable T t) throws SerializationException {
+        if (!RedisSerializerType.SMILE.equals(writeType))
+        {
+            return jsonSerializer.serialize(t);
+        }
+        //noinspection ConstantConditions
+        byte[] body = smileSerializer.serialize(t);
+        if (body == null || body.length == 0)
+        {
+            return body;
+        }
+        byte[] result = new byte[HEADER_LENGTH + body.length];
+        result[0] = MAGIC;
+        result[1] = SMILE_VERSION;
+        System.arraycopy(body, 0, result, HEADER_LENGTH, body.length);
+        return result;
+    }
+
+    @Override
+    @Nullable
+    public T deserialize(@Nullable byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length < HEADER_LENGTH || bytes[0] != MAGIC)
+        {
+            return jsonSerializer.deserialize(bytes);
+        }
+        if (bytes[1] == SMILE_VERSION && smileSerializer != null)
+        {
+            return smileSerializer.deserialize(Arrays.copyOfRange(bytes, HEADER_LENGTH, bytes.length));
+        }
+        throw new SerializationException(String.format("不支持的缓存值格式版本: %d", bytes[1]));
+    }
+
+    /**
+     * @return 是否存在 jackson-dataformat-smile 依赖
+     */
+    public static boolean isSmilePresent() {
+        return ClassUtils.isPresent(SMILE_FACTORY_CLASS_NAME, VersionedRedisSerializer.class.getClassLoader());
+    }
+
+    /**
+     * 创建 Smile 格式的 {@link ObjectMapper}, 需要 jackson-dataformat-smile 依赖
+     * @return Smile 格式的 {@link ObjectMapper}, 不存在 jackson-dataformat-smile 依赖时返回 null
+     */
+    @Nullable
+    public static ObjectMapper newSmileObjectMapper() {
+        if (!isSmilePresent())
+        {
+            return null;
+        }
+        try
+        {
+            Class<?> factoryClass = ClassUtils.forName(SMILE_FACTORY_CLASS_NAME,
+                                                       VersionedRedisSerializer.class.getClassLoader());
+            return new ObjectMapper((JsonFactory) BeanUtils.instantiateClass(factoryClass));
+        }
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            return null;
+        }
+    }
+
+}
@@ -23,18 +23,24 @@
 package top.dcenter.ums.security.jwt;
 
 import com.nimbusds.jose.JOSEException;
-import com.nimbusds.jose.JOSEObjectType;
 import com.nimbusds.jose.JWSAlgorithm;
-import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
 import com.nimbusds.jose.jwk.KeyUse;
 import com.nimbusds.jose.jwk.RSAKey;
 import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.JWTParser;
 import com.nimbusds.jwt.SignedJWT;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.types.Expiration;
@@ -51,15 +57,16 @@ import org.springframework.security.oauth2.jwt.JwtException;
 import org.springframework.security.oauth2.server.resource.authentication.AbstractOAuth2TokenAuthenticationToken;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
-import org.springframework.util.CollectionUtils;
-import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 import top.dcenter.ums.security.common.enums.ErrorCodeEnum;
 import top.dcenter.ums.security.core.api.service.UmsUserDetailsService;
+import top.dcenter.ums.security.core.redis.script.RedisLuaScript;
 import top.dcenter.ums.security.jwt.api.cache.service.JwtCacheTransformService;
 import top.dcenter.ums.security.jwt.api.id.service.JwtIdService;
+import top.dcenter.ums.security.jwt.cache.JwtBlacklistNearCache;
+import top.dcenter.ums.security.jwt.cache.JwtRedisCommandBatch;
 import top.dcenter.ums.security.jwt.claims.service.GenerateClaimsSetService;
 import top.dcenter.ums.security.jwt.decoder.UmsNimbusJwtDecoder;
 import top.dcenter.ums.security.jwt.enums.JwtCustomClaimNames;
@@ -70,26 +77,36 @@ import top.dcenter.ums.security.jwt.exception.JwtInvalidException;
 import top.dcenter.ums.security.jwt.exception.MismatchRefreshJwtPolicyException;
 import top.dcenter.ums.security.jwt.exception.RefreshTokenInvalidException;
 import top.dcenter.ums.security.jwt.exception.SaveRefreshTokenException;
+import top.dcenter.ums.security.jwt.key.JwsHeaderTemplate;
+import top.dcenter.ums.security.jwt.key.JwtKey;
+import top.dcenter.ums.security.jwt.key.JwtKeyRing;
 import top.dcenter.ums.security.jwt.properties.BearerTokenProperties;
 import top.dcenter.ums.security.jwt.properties.JwtBlacklistProperties;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.text.ParseException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
@@ -101,7 +118,6 @@ import static org.springframework.data.redis.connection.RedisStringCommands.SetO
 import static org.springframework.data.redis.connection.RedisStringCommands.SetOption.UPSERT;
 import static org.springframework.util.StringUtils.hasText;
 import static org.springframework.web.context.request.RequestAttributes.SCOPE_SESSION;
-import static top.dcenter.ums.security.common.utils.ReflectionUtil.invokeToJsonObjectMethod;
 import static top.dcenter.ums.security.core.mdc.utils.MdcUtil.getMdcTraceId;
 import static top.dcenter.ums.security.jwt.enums.JwtRefreshHandlerPolicy.AUTO_RENEW;
 import static top.dcenter.ums.security.jwt.enums.JwtRefreshHandlerPolicy.REFRESH_TOKEN;
@@ -126,9 +142,37 @@ public final class JwtContext {
     public static final String TEMPORARY_JWT_REFRESH_TOKEN = "TEMPORARY_JWT_REFRESH_TOKEN";
 
     /**
-     * {@link JWSHeader#toJSONObject()} 的 {@link Method}, 增加对 nimbus-jose-jwt:9.x.x/8.x.x 的兼容性.
+     * 注册 tokenInfo key 到用户的 tokenInfo 索引(ZSET, score 为过期时间戳), 同时清理索引中已过期的 tokenInfo,
+     * 索引的 ttl 不小于其中 tokenInfo 的最大 ttl. 脚本只操作一个 key, 兼容 redis cluster.<br>
+     * KEYS[1] = tokenInfo 索引 key,
+     * ARGV[1] = tokenInfo key, ARGV[2] = 过期时间戳(秒), ARGV[3] = 当前时间戳(秒), ARGV[4] = ttl(秒)
      */
-    private static final Method TO_JSON_OBJECT_METHOD = ReflectionUtils.findMethod(JWSHeader.class, "toJSONObject");
+    private static final RedisLuaScript INDEX_TOKEN_INFO_SCRIPT =
+            RedisLuaScript.of("redis.call('zadd', KEYS[1], ARGV[2], ARGV[1]) " +
+                              "redis.call('zremrangebyscore', KEYS[1], '-inf', '(' .. ARGV[3]) " +
+                              "if redis.call('ttl', KEYS[1]) < tonumber(ARGV[4]) then redis.call('expire', KEYS[1], ARGV[4]) end " +
+                              "return redis.status_reply('OK')");
+
+    /**
+     * 删除用户所有 tokenInfo 时每批 UNLINK 的 key 数量
+     */
+    private static final int TOKEN_INFO_UNLINK_BATCH_SIZE = 500;
+
+    /**
+     * 旧版本(无 tokenInfo 索引)保存的 tokenInfo 的 SCAN 兜底截止时间标志的后缀, 完整 key 为
+     * tokenInfoIndexPrefix + 此后缀, 值为截止时间戳(秒), 永久保存.
+     */
+    private static final String LEGACY_TOKEN_INFO_SCAN_UNTIL_SUFFIX = "#legacyScanUntil";
+
+    /**
+     * 旧版本 tokenInfo 的 SCAN 兜底是否已结束, 结束后删除用户所有 tokenInfo 时不再访问兜底标志.
+     */
+    private volatile static boolean legacyTokenInfoScanFinished = false;
+
+    /**
+     * redis 服务器是否支持 UNLINK 命令(redis 4.0+), 不支持时改用 DEL 命令.
+     */
+    private volatile static boolean unlinkSupported = true;
 
     /**
      * JSON Web Signature (JWS) signer.<br>
@@ -204,6 +248,22 @@ public final class JwtContext {
      * 方法注入.
      */
     private volatile static  String principalClaimName = null;
+    /**
+     * {@link JwtBlacklistNearCache}, 为 null 时表示不开启本地 near-cache.
+     * 如果支持 JWT 功能且 {@link JwtBlacklistProperties#getNearCacheEnable()} = true,
+     * 通过 {@code top.dcenter.ums.security.jwt.config.JwtAutoConfiguration#afterPropertiesSet()} 方法注入.
+     */
+    private volatile static JwtBlacklistNearCache nearCache = null;
+    /**
+     * JWT 密钥环, 不为 null 时使用密钥环中当前签名的密钥(及其 kid)签名, 代替 {@link #signer} 与 {@link #kid}.
+     * 如果支持 JWT 功能且使用 jks 密钥, 通过 {@code top.dcenter.ums.security.jwt.config.JwtAutoConfiguration#afterPropertiesSet()}
+     * 方法注入.
+     */
+    private volatile static JwtKeyRing keyRing = null;
+    /**
+     * 不使用密钥环时(如: HMAC), 根据 {@link #jwsAlgorithm} 与 {@link #kid} 构建的 JWS header 模板, 第一次签名时创建.
+     */
+    private volatile static JwsHeaderTemplate jwsHeaderTemplate = null;
 
     // ====================== JWK 相关 ======================
 
@@ -256,11 +316,19 @@ public final class JwtContext {
      *                  The key ID may also correspond to a JWS/JWE kid header parameter value.
      * @param keyUse    Enumeration of public key uses. Represents the use parameter in a JSON Web Key (JWK).
      *                  Public JWK use values: {@link KeyUse#SIGNATURE} {@link KeyUse#ENCRYPTION}
-     * @return  返回 {@link JWK}
+     * @return  返回 {@link JWK}, EC 密钥对返回 {@link ECKey}, 否则返回 {@link RSAKey}
      */
     public static JWK generateJwk(KeyPair keyPair, String kid, KeyUse keyUse) {
 
         // Convert to JWK format
+        if (keyPair.getPublic() instanceof ECPublicKey) {
+            ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+            return new ECKey.Builder(Curve.forECParameterSpec(publicKey.getParams()), publicKey)
+                    .privateKey((ECPrivateKey) keyPair.getPrivate())
+                    .keyUse(keyUse)
+                    .keyID(kid)
+                    .build();
+        }
         return new RSAKey.Builder((RSAPublicKey)keyPair.getPublic())
                 .privateKey((RSAPrivateKey)keyPair.getPrivate())
                 .keyUse(keyUse)
@@ -283,28 +351,22 @@ public final class JwtContext {
                                      @Nullable GenerateClaimsSetService generateClaimsSetService) throws JwtCreateException {
         // 生成 Jwt 并转换为 JwtAuthenticationToken
         if (nonNull(generateClaimsSetService) && isSupportCreateJwt(authentication)) {
+            // 合并登录流程中 redis 写命令为一次 pipeline 执行
+            final boolean isBatchOwner = JwtRedisCommandBatch.begin();
             try {
-                // 是否生成 refreshToken JWT
-                Jwt refreshTokenJwt = null;
-                if (REFRESH_TOKEN.equals(JwtContext.refreshHandlerPolicy)) {
-                    // 生成 refreshToken 并缓存进 redis
-                    refreshTokenJwt = generateRefreshToken(authentication.getName());
+                Throwable failure = null;
+                try {
+                    return doCreateJwtAndToJwtAuthenticationToken(authentication, generateClaimsSetService);
+                }
+                catch (Throwable e) {
+                    failure = e;
+                    throw e;
+                }
+                finally {
+                    // 执行批量的 redis 写命令, 保存 refreshToken 失败时抛出 SaveRefreshTokenException,
+                    // 生成 jwt 已抛出异常时, 执行写命令的异常添加到 suppressed 中
+                    JwtRedisCommandBatch.end(isBatchOwner, redisConnectionFactory, failure);
                 }
-
-                // 生成 JWT
-                JWTClaimsSet claimsSet = generateClaimsSetService.generateClaimsSet(authentication, refreshTokenJwt);
-                Jwt jwt = createJwt(claimsSet);
-
-                setBearerTokenAndRefreshTokenToHeader(jwt, refreshTokenJwt, FALSE);
-                /* 转换为 JwtAuthenticationToken, 再根据 isSetContext 保存 jwtAuthenticationToken 到 SecurityContext, 如果
-                   JwtBlacklistProperties.getEnable() = false, 则同时保存到 redis 缓存
-                 */
-                JwtAuthenticationToken authenticationToken = toJwtAuthenticationToken(jwt,
-                                                                                      generateClaimsSetService.getJwtAuthenticationConverter(),
-                                                                                      FALSE);
-                // 删除 reAuth 标志.
-                removeReAuthFlag(authentication.getName());
-                return authenticationToken;
             }
             catch (Exception e) {
                 String msg = String.format("创建 jwt token 失败: %s", authentication);
@@ -316,6 +378,33 @@ public final class JwtContext {
         return authentication;
     }
 
+    @NonNull
+    private static JwtAuthenticationToken doCreateJwtAndToJwtAuthenticationToken(@NonNull Authentication authentication,
+                                                                                 @NonNull GenerateClaimsSetService generateClaimsSetService)
+            throws JOSEException, ParseException {
+        // 是否生成 refreshToken JWT
+        Jwt refreshTokenJwt = null;
+        if (REFRESH_TOKEN.equals(JwtContext.refreshHandlerPolicy)) {
+            // 生成 refreshToken 并缓存进 redis
+            refreshTokenJwt = generateRefreshToken(authentication.getName());
+        }
+
+        // 生成 JWT
+        JWTClaimsSet claimsSet = generateClaimsSetService.generateClaimsSet(authentication, refreshTokenJwt);
+        Jwt jwt = createJwt(claimsSet);
+
+        setBearerTokenAndRefreshTokenToHeader(jwt, refreshTokenJwt, FALSE);
+        /* 转换为 JwtAuthenticationToken, 再根据 isSetContext 保存 jwtAuthenticationToken 到 SecurityContext, 如果
+           JwtBlacklistProperties.getEnable() = false, 则同时保存到 redis 缓存
+         */
+        JwtAuthenticationToken authenticationToken = toJwtAuthenticationToken(jwt,
+                                                                              generateClaimsSetService.getJwtAuthenticationConverter(),
+                                                                              FALSE);
+        // 删除 reAuth 标志.
+        removeReAuthFlag(authentication.getName());
+        return authenticationToken;
+    }
+
 
     // ====================== 刷新 Jwt 相关 ======================
     /**
@@ -332,6 +421,25 @@ public final class JwtContext {
     public static Jwt resetJwtExpOfAutoRenewPolicy(@NonNull Jwt jwt, @NonNull UmsNimbusJwtDecoder jwtDecoder,
                                                    @NonNull JwtRefreshHandlerPolicy policy)
             throws ParseException, JOSEException, JwtInvalidException {
+        // 合并刷新流程中 redis 写命令为一次 pipeline 执行
+        final boolean isBatchOwner = JwtRedisCommandBatch.begin();
+        Throwable failure = null;
+        try {
+            return doResetJwtExpOfAutoRenewPolicy(jwt, jwtDecoder, policy);
+        }
+        catch (Throwable e) {
+            failure = e;
+            throw e;
+        }
+        finally {
+            JwtRedisCommandBatch.end(isBatchOwner, redisConnectionFactory, failure);
+        }
+    }
+
+    @NonNull
+    private static Jwt doResetJwtExpOfAutoRenewPolicy(@NonNull Jwt jwt, @NonNull UmsNimbusJwtDecoder jwtDecoder,
+                                                      @NonNull JwtRefreshHandlerPolicy policy)
+            throws ParseException, JOSEException, JwtInvalidException {
 
         Jwt newJwt;
 
@@ -380,7 +488,7 @@ public final class JwtContext {
               .filter((entry -> entry.getValue() instanceof Instant))
               .forEach(entry -> entry.setValue(((Instant) entry.getValue()).getEpochSecond()));
 
-        newJwt = createJwt(getJwsHeader(), toJwtClaimsSet(claims));
+        newJwt = createJwt(getJwsHeaderTemplate(), toJwtClaimsSet(claims));
 
         // 3. 添加黑名单
         addBlacklist(jwt, newJwt);
@@ -414,9 +522,35 @@ public final class JwtContext {
                                                 @NonNull UmsUserDetailsService umsUserDetailsService,
                                                 @NonNull GenerateClaimsSetService generateClaimsSetService)
             throws JwtCreateException, RefreshTokenInvalidException, JwtInvalidException {
+        // 合并刷新流程中 redis 写命令为一次 pipeline 执行
+        final boolean isBatchOwner = JwtRedisCommandBatch.begin();
+        Throwable failure = null;
+        try {
+            return doGenerateJwtByRefreshToken(refreshToken, alwaysRefresh, request, jwtDecoder,
+                                               umsUserDetailsService, generateClaimsSetService);
+        }
+        catch (Throwable e) {
+            failure = e;
+            throw e;
+        }
+        finally {
+            JwtRedisCommandBatch.end(isBatchOwner, redisConnectionFactory, failure);
+        }
+    }
+
+    @NonNull
+    private static Jwt doGenerateJwtByRefreshToken(@NonNull String refreshToken,
+                                                   @NonNull Boolean alwaysRefresh,
+                                                   @NonNull HttpServletRequest request,
+                                                   @NonNull UmsNimbusJwtDecoder jwtDecoder,
+                                                   @NonNull UmsUserDetailsService umsUserDetailsService,
+                                                   @NonNull GenerateClaimsSetService generateClaimsSetService)
+            throws JwtCreateException, RefreshTokenInvalidException, JwtInvalidException {
 
         // 1. 获取 userId 且判断 refreshToken 是否有效
         Jwt refreshTokenJwt = jwtDecoder.decodeRefreshTokenOfJwt(removeBearerForJwtTokenString(refreshToken));
+        // 合并 refreshToken 有效性校验与旧 jwt 黑名单校验的 redis 读命令为一次 pipeline
+        prefetchForRefreshToken(refreshTokenJwt, request);
         String userIdByRefreshToken = getUserIdByRefreshToken(refreshTokenJwt);
         if (!hasText(userIdByRefreshToken)) {
             throw new RefreshTokenInvalidException(ErrorCodeEnum.JWT_REFRESH_TOKEN_INVALID, getMdcTraceId());
@@ -576,33 +710,56 @@ public final class JwtContext {
      */
     @NonNull
     public static BlacklistType jtiInTheBlacklist(@NonNull Jwt jwt) {
-        // 不支持黑名单逻辑
-        try (RedisConnection connection = getConnection()) {
-            if (!blacklistProperties.getEnable()) {
-                Boolean exists = connection.exists(getTokenKey(jwt));
-                if (nonNull(exists) && exists) {
-                    return BlacklistType.NOT_IN_BLACKLIST;
-                }
-                else {
-                    return BlacklistType.IN_BLACKLIST;
-                }
+        final boolean isBlacklistEnable = blacklistProperties.getEnable();
+        final byte[] key = isBlacklistEnable ? getBlacklistKey(jwt.getId()) : getTokenKey(jwt);
+
+        // 优先从本地 near-cache 中获取
+        JwtBlacklistNearCache nearCache = JwtContext.nearCache;
+        long epoch = 0L;
+        if (nonNull(nearCache)) {
+            String cachedValue = nearCache.get(key);
+            if (nonNull(cachedValue)) {
+                return BlacklistType.getBlacklistType(cachedValue);
             }
+            if (isBlacklistEnable ? JwtRedisCommandBatch.containsGet(key)
+                                  : nonNull(JwtRedisCommandBatch.getExists(key))) {
+                // 批处理中预读的值读取于获取 epoch 之前, 无法判断读取期间是否收到了删除, 不写入 near-cache
+                nearCache = null;
+            }
+            else {
+                // 在读取 redis 前获取 epoch, 读取期间收到删除时不写入 near-cache
+                epoch = nearCache.getEpoch();
+            }
+        }
 
-            // 支持黑名单逻辑
-
-            // 从 redis jwt 黑名单中获取 jti 的值
-            byte[] result = connection.get(getBlacklistKey(jwt.getId()));
-
-            String blacklistValue;
-            if (isNull(result)) {
-                blacklistValue = null;
+        // 不支持黑名单逻辑
+        if (!isBlacklistEnable) {
+            if (exists(key)) {
+                cacheBlacklistValue(nearCache, key, null, FALSE, jwt, epoch);
+                return BlacklistType.NOT_IN_BLACKLIST;
             }
             else {
-                blacklistValue = new String(result, StandardCharsets.UTF_8);
+                // tokenInfo 不存在视为在黑名单中, 可能是 tokenInfo 还未写入 redis, 以 negative ttl 缓存
+                cacheBlacklistValue(nearCache, key, BlacklistType.IN_BLACKLIST.name(), TRUE, jwt, epoch);
+                return BlacklistType.IN_BLACKLIST;
             }
+        }
+
+        // 支持黑名单逻辑
 
-            return BlacklistType.getBlacklistType(blacklistValue);
+        // 从 redis jwt 黑名单中获取 jti 的值
+        byte[] result = get(key);
+
+        String blacklistValue;
+        if (isNull(result)) {
+            blacklistValue = null;
+        }
+        else {
+            blacklistValue = new String(result, StandardCharsets.UTF_8);
         }
+
+        cacheBlacklistValue(nearCache, key, blacklistValue, FALSE, jwt, epoch);
+        return BlacklistType.getBlacklistType(blacklistValue);
     }
 
     /**
@@ -612,22 +769,10 @@ public final class JwtContext {
      */
     @NonNull
     public static Boolean isRefreshJwtInTheBlacklist(@NonNull Jwt refreshJwt) {
-        try (RedisConnection connection = getConnection()) {
-            // 不支持黑名单逻辑
-            if (!blacklistProperties.getEnable()) {
-                Boolean exists =
-                        connection.exists(getRefreshTokenKey(refreshJwt.getClaimAsString(principalClaimName)));
-                return isNull(exists) || !exists;
-            }
-
-            // 支持黑名单逻辑
-
-            // 从 redis jwt 黑名单中获取 jti 的值
-            Boolean exists = connection.exists(getBlacklistKey(refreshJwt.getId()));
-
-            return nonNull(exists) && exists;
-
-        }
+        // 不支持黑名单逻辑: refreshToken 不存在表示在黑名单;
+        // 支持黑名单逻辑: 从 redis jwt 黑名单中查询 jti
+        final boolean exists = exists(getRefreshTokenCheckKey(refreshJwt));
+        return blacklistProperties.getEnable() ? exists : !exists;
     }
 
     /**
@@ -653,10 +798,12 @@ public final class JwtContext {
             Instant now = Instant.now();
             // jwt 还在有效期内, 放入黑名单
             if (expiresAt.isAfter(now.minus(clockSkew))) {
-                connection.set(getBlacklistKey(refreshTokenJwt.getId()),
+                byte[] blacklistKey = getBlacklistKey(refreshTokenJwt.getId());
+                connection.set(blacklistKey,
                                BlacklistType.IN_BLACKLIST.name().getBytes(StandardCharsets.UTF_8),
                                Expiration.seconds(expiresAt.getEpochSecond() - now.getEpochSecond() + clockSkew.getSeconds()),
                                SET_IF_ABSENT);
+                evictNearCache(blacklistKey, connection);
             }
 
         }
@@ -808,10 +955,9 @@ public final class JwtContext {
      * @param userId    用户 ID
      */
     private static void removeReAuthFlag(@NonNull String userId) {
-        try (RedisConnection connection = getConnection()) {
-            connection.del(getReAuthKey(userId), getDelAllTokenInfoInRedisLockKey(userId));
-        }
-
+        final byte[] reAuthKey = getReAuthKey(userId);
+        final byte[] lockKey = getDelAllTokenInfoInRedisLockKey(userId);
+        executeWrite(connection -> connection.del(reAuthKey, lockKey));
     }
 
     // ====================== 黑名单 与 redis 私有方法 ======================
@@ -839,13 +985,21 @@ public final class JwtContext {
             if (isSetContext) {
                 SecurityContextHolder.getContext().setAuthentication(authentication);
             }
-            final Duration ttl = Duration.ofSeconds(expiresAt.getEpochSecond() - Instant.now().getEpochSecond());
-            try (RedisConnection connection = getConnection()) {
-                connection.set(getTokenKey(jwt),
-                               tokenValue,
-                               Expiration.from(ttl),
-                               UPSERT);
+            final long nowSeconds = Instant.now().getEpochSecond();
+            final long ttlSeconds = expiresAt.getEpochSecond() - nowSeconds;
+            if (ttlSeconds <= 0) {
+                return;
             }
+            final byte[] tokenKey = getTokenKey(jwt);
+            final byte[] tokenInfoIndexKey = getTokenInfoIndexKey(jwt.getClaimAsString(principalClaimName));
+            // 保存 tokenInfo 并注册到用户的 tokenInfo 索引, 同时清理索引中已过期的 tokenInfo;
+            // tokenInfo 与索引可能不在同一个 slot, 分两个命令执行.
+            executeWrite(connection -> {
+                connection.set(tokenKey, tokenValue, Expiration.seconds(ttlSeconds), UPSERT);
+                INDEX_TOKEN_INFO_SCRIPT.eval(connection, ReturnType.STATUS, 1,
+                                             tokenInfoIndexKey, tokenKey, toBytes(expiresAt.getEpochSecond()),
+                                             toBytes(nowSeconds), toBytes(ttlSeconds));
+            });
         }
     }
 
@@ -860,27 +1014,32 @@ public final class JwtContext {
                                              @NonNull String userIdByRefreshToken,
                                              @NonNull Jwt oldJwt,
                                              @NonNull Jwt newJwt) {
-        try (RedisConnection connection = getConnection()) {
-            // 不支持 jwt 黑名单逻辑
-            if (!blacklistProperties.getEnable()) {
-                // 删除 redis 中的 oldJwt 缓存
-                connection.del(getTokenKey(oldJwt));
-                return;
-            }
-
-            // 校验 refresh 的 jwt 与 旧 jwt 是否相同 userId
-            Object oldUserId = oldJwt.getClaim(principalClaimName);
-            if (!Objects.equals(oldUserId, userIdByRefreshToken)) {
-                log.error("oldUserId: {} 与 userIdByRefreshToken: {} 不匹配, refreshToken: {}",
-                          oldUserId, userIdByRefreshToken, refreshToken);
-                // userId 与 refreshToken 不匹配, 删除 refreshToken
-                connection.del(getRefreshTokenKey(userIdByRefreshToken));
-                throw new RefreshTokenInvalidException(ErrorCodeEnum.JWT_REFRESH_TOKEN_INVALID, getMdcTraceId());
-            }
+        // 不支持 jwt 黑名单逻辑
+        if (!blacklistProperties.getEnable()) {
+            // 删除 redis 中的 oldJwt 缓存
+            final byte[] tokenKey = getTokenKey(oldJwt);
+            final byte[] tokenInfoIndexKey = getTokenInfoIndexKey(oldJwt.getClaimAsString(principalClaimName));
+            executeWrite(connection -> {
+                connection.del(tokenKey);
+                connection.zRem(tokenInfoIndexKey, tokenKey);
+                evictNearCache(tokenKey, connection);
+            });
+            return;
+        }
 
-            addBlacklist(oldJwt, newJwt);
+        // 校验 refresh 的 jwt 与 旧 jwt 是否相同 userId
+        Object oldUserId = oldJwt.getClaim(principalClaimName);
+        if (!Objects.equals(oldUserId, userIdByRefreshToken)) {
+            log.error("oldUserId: {} 与 userIdByRefreshToken: {} 不匹配, refreshToken: {}",
+                      oldUserId, userIdByRefreshToken, refreshToken);
+            // userId 与 refreshToken 不匹配, 删除 refreshToken
+            final byte[] refreshTokenKey = getRefreshTokenKey(userIdByRefreshToken);
+            executeWrite(connection -> connection.del(refreshTokenKey));
+            throw new RefreshTokenInvalidException(ErrorCodeEnum.JWT_REFRESH_TOKEN_INVALID, getMdcTraceId());
         }
 
+        addBlacklist(oldJwt, newJwt);
+
     }
 
     /**
@@ -893,70 +1052,85 @@ public final class JwtContext {
     private static void addBlacklist(@NonNull Jwt oldJwt, @NonNull byte[] value, @NonNull Boolean isReAuth) {
         String userId = oldJwt.getClaimAsString(principalClaimName);
         boolean isReAuthAndRefreshPolicy = isReAuth && REFRESH_TOKEN.equals(refreshHandlerPolicy);
-        try (RedisConnection connection = getConnection()) {
-            // 不支持黑名单逻辑
-            if (!blacklistProperties.getEnable()) {
-                if (isReAuthAndRefreshPolicy) {
+        // 不支持黑名单逻辑
+        if (!blacklistProperties.getEnable()) {
+            if (isReAuthAndRefreshPolicy) {
+                // 需要获取锁, 不能批量执行
+                try (RedisConnection connection = getConnection()) {
                     connection.del(getRefreshTokenKey(userId));
                     // 删除同一用户下的所有客户端登录信息
                     delAllTokenInfoInRedisByUserId(userId, connection);
                 }
-                else {
-                    connection.del(getTokenKey(oldJwt));
-                }
-                return;
             }
+            else {
+                final byte[] tokenKey = getTokenKey(oldJwt);
+                final byte[] tokenInfoIndexKey = getTokenInfoIndexKey(userId);
+                executeWrite(connection -> {
+                    connection.del(tokenKey);
+                    connection.zRem(tokenInfoIndexKey, tokenKey);
+                    evictNearCache(tokenKey, connection);
+                });
+            }
+            return;
+        }
 
-            // 支持黑名单逻辑
+        // 支持黑名单逻辑
 
-            Instant expiresAt = oldJwt.getExpiresAt();
-            if (isNull(expiresAt)) {
-                return;
-            }
-            Instant now = Instant.now();
+        final Instant expiresAt = oldJwt.getExpiresAt();
+        if (isNull(expiresAt)) {
+            return;
+        }
+        final Instant now = Instant.now();
+        executeWrite(connection -> {
             // 旧的 jwt 还在有效期内, 放入黑名单
             if (expiresAt.isAfter(now.minus(clockSkew))) {
-                connection.set(getBlacklistKey(oldJwt.getId()),
+                byte[] blacklistKey = getBlacklistKey(oldJwt.getId());
+                connection.set(blacklistKey,
                                value,
                                Expiration.seconds(expiresAt.getEpochSecond() - now.getEpochSecond() + clockSkew.getSeconds()),
                                SET_IF_ABSENT);
+                evictNearCache(blacklistKey, connection);
             }
             // 如果需要重新认证, 对 refreshToken 也一并加入黑名单.
             if (isReAuthAndRefreshPolicy) {
                 String rJti = oldJwt.getClaimAsString(JwtCustomClaimNames.REFRESH_TOKEN_JTI.getClaimName());
-                connection.set(getBlacklistKey(rJti),
+                byte[] blacklistKey = getBlacklistKey(rJti);
+                connection.set(blacklistKey,
                                value,
                                Expiration.seconds(blacklistProperties.getRefreshTokenTtl().getSeconds()),
                                SET_IF_ABSENT);
+                evictNearCache(blacklistKey, connection);
             }
-        }
+        });
     }
 
     /**
-     * 删除 userId 用户所有客户端在 redis 的 tokenInfo; 发生错误未做处理, 待扩展.
+     * 删除 userId 用户所有客户端在 redis 的 tokenInfo; 发生错误未做处理, 待扩展.<br>
+     * 从用户的 tokenInfo 索引中读取所有 tokenInfo 的 key, 按 slot 分组批量 UNLINK, 不再 scan 整个 redis.<br>
+     * 升级前保存的 tokenInfo 不在索引中, 在升级后的一个 jwt 有效期内(见 {@link #isLegacyTokenInfoScanRequired(RedisConnection)})
+     * 仍然通过 SCAN 兜底删除, 之后旧 tokenInfo 都已过期, 不再 SCAN.
      * @param userId        用户唯一 ID
      * @param connection    {@link RedisConnection}, 在此方法中不会关闭吃连接, 需要调用方关闭
      */
     private static void delAllTokenInfoInRedisByUserId(String userId, RedisConnection connection) {
-        // 用于防止用户并发访问时重复执行删除动作(scan)
+        // 用于防止用户并发访问时重复执行删除动作
         if (getDelAllTokenInfoInRedisLock(userId, connection)) {
-            ScanOptions options = ScanOptions.scanOptions()
-                                             .count(1000)
-                                             .match(blacklistProperties.getTokenInfoPrefix()
-                                                                       .concat(userId)
-                                                                       .concat(":*"))
-                                             .build();
-            try (Cursor<byte[]> cursor = connection.scan(options)) {
-                ArrayList<byte[]> tokenInfoKeyList = new ArrayList<>();
-                while (cursor.hasNext()) {
-                    tokenInfoKeyList.add(cursor.next());
+            try {
+                String pattern = blacklistProperties.getTokenInfoPrefix().concat(userId).concat(":*");
+                // 删除同一用户所有客户端的 tokenInfo 及 tokenInfo 索引
+                final byte[] tokenInfoIndexKey = getTokenInfoIndexKey(userId);
+                final Set<byte[]> tokenKeys = connection.zRange(tokenInfoIndexKey, 0, -1);
+                if (nonNull(tokenKeys) && !tokenKeys.isEmpty()) {
+                    unlinkBySlot(new ArrayList<>(tokenKeys), connection);
                 }
-                // 删除同一用户所有客户端的 tokenInfo
-                if (!CollectionUtils.isEmpty(tokenInfoKeyList)) {
-                    connection.del(tokenInfoKeyList.toArray(new byte[0][0]));
+                unlink(new byte[][]{tokenInfoIndexKey}, connection);
+                // 升级前保存的 tokenInfo 不在索引中, 通过 SCAN 兜底删除
+                if (isLegacyTokenInfoScanRequired(connection)) {
+                    scanAndUnlinkTokenInfo(pattern, connection);
                 }
+                evictNearCache(pattern.getBytes(StandardCharsets.UTF_8), connection);
             }
-            catch (IOException e) {
+            catch (Exception e) {
                 log.error(e.getMessage(), e);
                 connection.del(getDelAllTokenInfoInRedisLockKey(userId));
                 // 待扩展: 删除同一用户所有客户端的 tokenInfo 发生错误, 未做处理
@@ -964,6 +1138,161 @@ public final class JwtContext {
         }
     }
 
+    /**
+     * 是否需要通过 SCAN 兜底删除升级前(无 tokenInfo 索引)保存的 tokenInfo.<br>
+     * 第一次调用时以 SET NX 保存截止时间(当前时间 + jwt 有效期 + 时钟偏差)到永久的兜底标志 key, 多实例共享同一截止时间;
+     * 超过截止时间后旧 tokenInfo 都已过期, 本实例不再访问兜底标志. 滚动升级时旧版本实例仍会保存无索引的 tokenInfo,
+     * 如升级完成时间晚于截止时间, 可删除兜底标志 key (tokenInfoIndexPrefix + "#legacyScanUntil") 并重启实例以重新计算截止时间.
+     * @param connection    {@link RedisConnection}
+     * @return  返回 true 表示需要 SCAN 兜底
+     */
+    private static boolean isLegacyTokenInfoScanRequired(@NonNull RedisConnection connection) {
+        if (legacyTokenInfoScanFinished) {
+            return false;
+        }
+        final byte[] markerKey = blacklistProperties.getTokenInfoIndexPrefix()
+                                                    .concat(LEGACY_TOKEN_INFO_SCAN_UNTIL_SUFFIX)
+                                                    .getBytes(StandardCharsets.UTF_8);
+        final long nowSeconds = Instant.now().getEpochSecond();
+        connection.set(markerKey, toBytes(nowSeconds + timeout.getSeconds() + clockSkew.getSeconds()),
+                       Expiration.persistent(), SET_IF_ABSENT);
+        final byte[] until = connection.get(markerKey);
+        if (isNull(until)) {
+            return true;
+        }
+        if (nowSeconds < Long.parseLong(new String(until, StandardCharsets.UTF_8))) {
+            return true;
+        }
+        legacyTokenInfoScanFinished = true;
+        return false;
+    }
+
+    /**
+     * 通过 SCAN 增量遍历匹配 pattern 的 tokenInfo 并分批 UNLINK, redis cluster 时对每个 master 节点分别 SCAN.
+     * @param pattern       tokenInfo key pattern
+     * @param connection    {@link RedisConnection}
+     */
+    private static void scanAndUnlinkTokenInfo(@NonNull String pattern, @NonNull RedisConnection connection) {
+        final ScanOptions options = ScanOptions.scanOptions().count(1000).match(pattern).build();
+        if (connection instanceof RedisClusterConnection) {
+            RedisClusterConnection clusterConnection = (RedisClusterConnection) connection;
+            for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+                if (node.isMaster()) {
+                    scanAndUnlinkTokenInfo(clusterConnection.scan(node, options), connection);
+                }
+            }
+        }
+        else {
+            scanAndUnlinkTokenInfo(connection.scan(options), connection);
+        }
+    }
+
+    private static void scanAndUnlinkTokenInfo(@NonNull Cursor<byte[]> cursor, @NonNull RedisConnection connection) {
+        final List<byte[]> keys = new ArrayList<>();
+        try (Cursor<byte[]> c = cursor) {
+            while (c.hasNext()) {
+                keys.add(c.next());
+            }
+        }
+        catch (IOException e) {
+            log.warn("关闭 scan cursor 失败: {}", e.getMessage());
+        }
+        if (!keys.isEmpty()) {
+            unlinkBySlot(keys, connection);
+        }
+    }
+
+    /**
+     * 分批(每批 {@link #TOKEN_INFO_UNLINK_BATCH_SIZE} 个) UNLINK keys, redis cluster 时按 slot 分组删除,
+     * 避免 CROSSSLOT 错误.
+     * @param keys          要删除的 keys
+     * @param connection    {@link RedisConnection}
+     */
+    private static void unlinkBySlot(@NonNull List<byte[]> keys, @NonNull RedisConnection connection) {
+        final Collection<List<byte[]>> groups;
+        if (connection instanceof RedisClusterConnection) {
+            Map<Integer, List<byte[]>> slotKeys = new HashMap<>(16);
+            for (byte[] key : keys) {
+                slotKeys.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(key), slot -> new ArrayList<>()).add(key);
+            }
+            groups = slotKeys.values();
+        }
+        else {
+            groups = Collections.singletonList(keys);
+        }
+        for (List<byte[]> group : groups) {
+            for (int i = 0, size = group.size(); i < size; i += TOKEN_INFO_UNLINK_BATCH_SIZE) {
+                List<byte[]> batch = group.subList(i, Math.min(i + TOKEN_INFO_UNLINK_BATCH_SIZE, size));
+                unlink(batch.toArray(new byte[0][]), connection);
+            }
+        }
+    }
+
+    private static void unlink(@NonNull byte[][] keys, @NonNull RedisConnection connection) {
+        if (unlinkSupported) {
+            try {
+                connection.unlink(keys);
+                return;
+            }
+            catch (DataAccessException e) {
+                // redis 4.0 以下不支持 UNLINK 命令
+                String message = e.getMostSpecificCause().getMessage();
+                if (isNull(message) || !message.toLowerCase().contains("unknown command")) {
+                    throw e;
+                }
+                log.warn("redis 服务器不支持 UNLINK 命令, 改用 DEL 命令: {}", message);
+                unlinkSupported = false;
+            }
+        }
+        connection.del(keys);
+    }
+
+    // ====================== 本地 near-cache 私有方法 ======================
+
+    /**
+     * 缓存 jti 校验结果到本地 near-cache, nearCache 为 null 时不做任何处理.
+     * @param nearCache         {@link JwtBlacklistNearCache}
+     * @param key               redis key
+     * @param blacklistValue    黑名单的值, 为 null 时表示不在黑名单中
+     * @param isMissing         是否为 redis 中不存在而视为在黑名单中的值, 为 true 时以 negative ttl 缓存
+     * @param jwt               {@link Jwt}
+     * @param epoch             读取 redis 前 {@link JwtBlacklistNearCache#getEpoch()} 的值
+     */
+    private static void cacheBlacklistValue(@Nullable JwtBlacklistNearCache nearCache, @NonNull byte[] key,
+                                            @Nullable String blacklistValue, boolean isMissing, @NonNull Jwt jwt,
+                                            long epoch) {
+        if (isNull(nearCache)) {
+            return;
+        }
+        Instant expiresAt = jwt.getExpiresAt();
+        if (isNull(expiresAt)) {
+            return;
+        }
+        // jwt 的剩余有效期
+        long ttlMillis = expiresAt.plus(clockSkew).toEpochMilli() - System.currentTimeMillis();
+        if (!hasText(blacklistValue)) {
+            nearCache.putNotBlacklisted(key, ttlMillis, epoch);
+        }
+        else if (isMissing) {
+            nearCache.putMissingAsBlacklisted(key, blacklistValue, ttlMillis, epoch);
+        }
+        else {
+            nearCache.putBlacklisted(key, blacklistValue, ttlMillis, epoch);
+        }
+    }
+
+    /**
+     * 删除本地 near-cache 并通知其他节点删除, 未开启 near-cache 时不做任何处理.
+     * @param key           redis key
+     * @param connection    {@link RedisConnection}, 在此方法中不会关闭此连接, 需要调用方关闭
+     */
+    private static void evictNearCache(@NonNull byte[] key, @NonNull RedisConnection connection) {
+        final JwtBlacklistNearCache nearCache = JwtContext.nearCache;
+        if (nonNull(nearCache)) {
+            nearCache.evictAndPublish(key, connection);
+        }
+    }
+
     // ====================== redis 获取指定 key 或 RedisConnection 私有方法 ======================
 
     /**
@@ -986,6 +1315,17 @@ public final class JwtContext {
         return blacklistProperties.getReAuthPrefix().concat(userId).getBytes(StandardCharsets.UTF_8);
     }
 
+    /**
+     * 获取用户 tokenInfo 索引的 redis key: TokenInfoIndexPrefix + userId,
+     * 索引为 ZSET, member 为 tokenInfo 的 redis key, score 为 tokenInfo 过期时间的时间戳(秒).
+     * @param userId  用户 Id
+     * @return  返回 用户 tokenInfo 索引的 redis key
+     */
+    @NonNull
+    private static byte[] getTokenInfoIndexKey(String userId) {
+        return blacklistProperties.getTokenInfoIndexPrefix().concat(userId).getBytes(StandardCharsets.UTF_8);
+    }
+
     /**
      * 获取删除 redis 中指定用户的所有 TokenInfo 的 redis 锁的 key
      * @param userId  用户 Id
@@ -1027,11 +1367,41 @@ public final class JwtContext {
      */
     @NonNull
     private static byte[] getTokenKey(Jwt jwt) {
+        return getTokenKey(jwt.getClaimAsString(principalClaimName), jwt.getId());
+    }
+
+    /**
+     * 获取 jwt token redis key: TokenInfoPrefix + userId:jti
+     * @param userId    用户 Id
+     * @param jti       {@link JwtClaimNames#JTI}
+     * @return  返回 token 的 redis key: TokenInfoPrefix + userId:jti
+     */
+    @NonNull
+    private static byte[] getTokenKey(String userId, String jti) {
         return blacklistProperties.getTokenInfoPrefix()
-                                  .concat(jwt.getClaimAsString(principalClaimName) + ":" + jwt.getId())
+                                  .concat(userId + ":" + jti)
                                   .getBytes(StandardCharsets.UTF_8);
     }
 
+    /**
+     * 获取校验 refreshToken 是否有效的 redis key: 不支持黑名单时为 refresh token redis key(存在表示有效),
+     * 支持黑名单时为 refreshToken 的 jwt 黑名单 redis key(存在表示失效).
+     * @param refreshTokenJwt   refreshToken
+     * @return  返回校验 refreshToken 是否有效的 redis key
+     */
+    @NonNull
+    private static byte[] getRefreshTokenCheckKey(@NonNull Jwt refreshTokenJwt) {
+        if (blacklistProperties.getEnable()) {
+            return getBlacklistKey(refreshTokenJwt.getId());
+        }
+        return getRefreshTokenKey(refreshTokenJwt.getClaimAsString(principalClaimName));
+    }
+
+    @NonNull
+    private static byte[] toBytes(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.UTF_8);
+    }
+
     /**
      * 获取 {@link RedisConnection}
      * @return  返回 {@link RedisConnection}
@@ -1040,6 +1410,56 @@ public final class JwtContext {
         return redisConnectionFactory.getConnection();
     }
 
+    /**
+     * 执行 redis EXISTS 命令, 当前线程开启了 {@link JwtRedisCommandBatch} 时优先返回批处理中已读取的结果,
+     * 并记录本次读取的结果.
+     * @param key   redis key
+     * @return  返回 key 是否存在
+     */
+    private static boolean exists(@NonNull byte[] key) {
+        Boolean exists = JwtRedisCommandBatch.getExists(key);
+        if (nonNull(exists)) {
+            return exists;
+        }
+        try (RedisConnection connection = getConnection()) {
+            exists = connection.exists(key);
+        }
+        JwtRedisCommandBatch.putExists(key, exists);
+        return nonNull(exists) && exists;
+    }
+
+    /**
+     * 执行 redis GET 命令, 当前线程开启了 {@link JwtRedisCommandBatch} 时优先返回批处理中已读取的结果,
+     * 并记录本次读取的结果.
+     * @param key   redis key
+     * @return  返回 key 的值, 不存在时返回 null
+     */
+    @Nullable
+    private static byte[] get(@NonNull byte[] key) {
+        if (JwtRedisCommandBatch.containsGet(key)) {
+            return JwtRedisCommandBatch.get(key);
+        }
+        final byte[] value;
+        try (RedisConnection connection = getConnection()) {
+            value = connection.get(key);
+        }
+        JwtRedisCommandBatch.putGet(key, value);
+        return value;
+    }
+
+    /**
+     * 执行 redis 写命令, 当前线程开启了 {@link JwtRedisCommandBatch} 时添加到批处理中, 否则直接执行.
+     * @param command   不依赖返回值的 redis 写命令
+     */
+    private static void executeWrite(@NonNull Consumer<RedisConnection> command) {
+        if (JwtRedisCommandBatch.add(command)) {
+            return;
+        }
+        try (RedisConnection connection = getConnection()) {
+            command.accept(connection);
+        }
+    }
+
     // ====================== refreshToken 辅助私有方法 ======================
 
     /**
@@ -1087,28 +1507,46 @@ public final class JwtContext {
     private static String getUserIdByRefreshToken(@NonNull Jwt refreshTokenJwt)
             throws JwtInvalidException {
 
-        String userId = refreshTokenJwt.getClaimAsString(principalClaimName);
-        try (RedisConnection connection = getConnection()) {
-            // 不支持 jwt 黑名单逻辑
-            if (!blacklistProperties.getEnable()) {
-                Boolean exists = connection.exists(getRefreshTokenKey(userId));
+        if (isRefreshJwtInTheBlacklist(refreshTokenJwt)) {
+            return null;
+        }
+        return refreshTokenJwt.getClaimAsString(principalClaimName);
+    }
+
+    /**
+     * 通过一次 pipeline 预读 refreshToken 有效性校验与 request 中旧 jwt 黑名单校验的 redis 值,
+     * 供后续 {@link #getUserIdByRefreshToken(Jwt)} 与 {@link #jtiInTheBlacklist(Jwt)} 使用.
+     * 当前线程没有开启 {@link JwtRedisCommandBatch} 时不做任何处理.
+     * @param refreshTokenJwt   refreshToken
+     * @param request           {@link HttpServletRequest}
+     */
+    private static void prefetchForRefreshToken(@NonNull Jwt refreshTokenJwt, @NonNull HttpServletRequest request) {
+        final List<byte[]> existsKeys = new ArrayList<>(2);
+        final List<byte[]> getKeys = new ArrayList<>(1);
+        existsKeys.add(getRefreshTokenCheckKey(refreshTokenJwt));
 
-                if (isNull(exists) || !exists) {
-                    return null;
+        String jwtString = getRefreshTokenOrBearerToken(request,
+                                                        bearerToken.getBearerTokenParameterName(),
+                                                        bearerToken.getBearerTokenHeaderName());
+        if (hasText(jwtString)) {
+            try {
+                // 只用于计算旧 jwt 的 redis key, 验签与校验仍在 getJwtByRequest 中执行
+                JWTClaimsSet claimsSet = JWTParser.parse(removeBearerForJwtTokenString(jwtString)).getJWTClaimsSet();
+                final boolean isBlacklistEnable = blacklistProperties.getEnable();
+                final byte[] key = isBlacklistEnable
+                        ? getBlacklistKey(claimsSet.getJWTID())
+                        : getTokenKey(String.valueOf(claimsSet.getClaim(principalClaimName)), claimsSet.getJWTID());
+                final JwtBlacklistNearCache nearCache = JwtContext.nearCache;
+                // 本地 near-cache 中已存在时不需要预读
+                if (isNull(nearCache) || isNull(nearCache.get(key))) {
+                    (isBlacklistEnable ? getKeys : existsKeys).add(key);
                 }
-                return userId;
             }
-
-            // 支持 jwt 黑名单逻辑
-            Boolean exists = connection.exists(getBlacklistKey(refreshTokenJwt.getId()));
-            if (nonNull(exists) && exists) {
-                // 在黑名单
-                return null;
+            catch (ParseException e) {
+                log.debug("解析旧的 jwt 失败, 不预读旧 jwt 的黑名单: {}", e.getMessage());
             }
-
-            return userId;
         }
-
+        JwtRedisCommandBatch.prefetch(redisConnectionFactory, existsKeys, getKeys);
     }
 
     /**
@@ -1152,22 +1590,28 @@ public final class JwtContext {
     @NonNull
     private static Boolean saveRefreshToken(@NonNull String userId, @NonNull String refreshToken) {
 
-        try (RedisConnection connection = getConnection()) {
-            // 不支持 jwt 黑名单则缓存 refreshToken 到 redis
-            if (!blacklistProperties.getEnable() && REFRESH_TOKEN.equals(refreshHandlerPolicy)) {
-                Boolean isSuccess = connection.set(getRefreshTokenKey(userId),
-                                                   refreshToken.getBytes(StandardCharsets.UTF_8),
-                                                   Expiration.from(blacklistProperties.getRefreshTokenTtl().minusSeconds(1L)),
-                                                   UPSERT);
-                if (isNull(isSuccess)) {
-                    return false;
-                }
-                return isSuccess;
-            }
+        // 支持 jwt 黑名单直接返回
+        if (blacklistProperties.getEnable() || !REFRESH_TOKEN.equals(refreshHandlerPolicy)) {
+            return true;
+        }
 
-            // 支持 jwt 黑名单直接返回
+        // 不支持 jwt 黑名单则缓存 refreshToken 到 redis
+        final byte[] refreshTokenKey = getRefreshTokenKey(userId);
+        final Function<RedisConnection, Boolean> command =
+                connection -> connection.set(refreshTokenKey,
+                                             refreshToken.getBytes(StandardCharsets.UTF_8),
+                                             Expiration.from(blacklistProperties.getRefreshTokenTtl().minusSeconds(1L)),
+                                             UPSERT);
+        // 批量执行时, 保存失败在执行批量命令时抛出 SaveRefreshTokenException
+        if (JwtRedisCommandBatch.add(command,
+                                     () -> new SaveRefreshTokenException(ErrorCodeEnum.SAVE_REFRESH_TOKEN_ERROR,
+                                                                         getMdcTraceId()))) {
             return true;
         }
+        try (RedisConnection connection = getConnection()) {
+            Boolean isSuccess = command.apply(connection);
+            return nonNull(isSuccess) && isSuccess;
+        }
 
     }
 
@@ -1298,28 +1742,41 @@ public final class JwtContext {
 
         requireNonNull(signer, "JWSSigner 不存在, 不支持创建 JWT 功能");
 
-        JWSHeader jwsHeader = getJwsHeader();
-
-        return createJwt(jwsHeader, claimsSet);
+        return createJwt(getJwsHeaderTemplate(), claimsSet);
     }
 
     /**
      * 生成 {@link Jwt}
-     * @param jwsHeader         {@link JWSHeader}
+     * @param headerTemplate    {@link JwsHeaderTemplate}
      * @param claimsSet         JWT Payload(负载), 注意: {@link JWTClaimsSet} 中"日期"都以"时间戳"表示且"时间戳"以秒为单位
      * @return                  返回 {@link Jwt}
      * @throws JOSEException    转换异常
      */
     @NonNull
-    private static Jwt createJwt(@NonNull JWSHeader jwsHeader, @NonNull JWTClaimsSet claimsSet) throws JOSEException,
-            ParseException {
+    private static Jwt createJwt(@NonNull JwsHeaderTemplate headerTemplate, @NonNull JWTClaimsSet claimsSet)
+            throws JOSEException, ParseException {
 
         requireNonNull(signer, "signer 不存在, 不支持 JWT 功能");
 
-        SignedJWT signedjwt = new SignedJWT(jwsHeader, claimsSet);
+        JWSSigner currentSigner = signer;
+        final JwtKeyRing currentKeyRing = keyRing;
+        if (nonNull(currentKeyRing)) {
+            // 使用与 header kid 对应的密钥签名; 对应的密钥不可签名时(如刚好发生密钥轮换), 使用当前签名的密钥并重建 header
+            JwtKey jwtKey = currentKeyRing.getKey(headerTemplate.getKid());
+            if (isNull(jwtKey) || isNull(jwtKey.getSigner())) {
+                jwtKey = currentKeyRing.getActiveKey();
+                requireNonNull(jwtKey, "密钥环中没有可签名的密钥, 不支持创建 JWT 功能");
+                headerTemplate = jwtKey.getHeaderTemplate();
+            }
+            currentSigner = jwtKey.getSigner();
+        }
+
+        // header 模板已缓存 base64url 编码后的 header, 只需序列化 claimsSet
+        SignedJWT signedjwt = new SignedJWT(headerTemplate.getJwsHeader(), claimsSet);
 
         // Compute the RSA signature
-        signedjwt.sign(signer);
+        //noinspection ConstantConditions
+        signedjwt.sign(currentSigner);
 
         // To serialize to compact form, produces something like
         // eyJhbGciOiJSUzI1NiJ9.SW4gUlNBIHdlIHRydXN0IQ.IRMQENi4nJyp4er2L
@@ -1333,30 +1790,35 @@ public final class JwtContext {
         if (nonNull(issueTime)) {
             issueAt = Instant.ofEpochSecond(issueTime);
         }
-        try {
-            return new Jwt(tokenValue, issueAt,
-                           Instant.ofEpochSecond(claimsSet.getLongClaim(JwtClaimNames.EXP)),
-                           invokeToJsonObjectMethod(jwsHeader, TO_JSON_OBJECT_METHOD), claimsSet.getClaims());
-        }
-        catch (IllegalAccessException | InvocationTargetException e) {
-            throw new JOSEException(e.getMessage());
-        }
+        return new Jwt(tokenValue, issueAt,
+                       Instant.ofEpochSecond(claimsSet.getLongClaim(JwtClaimNames.EXP)),
+                       headerTemplate.getHeaders(), claimsSet.getClaims());
     }
 
     /**
-     * 生成 JwsHeader
-     * @return  返回 {@link JWSHeader}
+     * 获取当前签名使用的 JWS header 模板, 每个 kid/算法只构建一次
+     * @return  返回 {@link JwsHeaderTemplate}
      */
     @NonNull
-    private static JWSHeader getJwsHeader() {
-        requireNonNull(jwsAlgorithm, "未设置 jwsAlgorithm, 不支持 JWT 功能");
+    private static JwsHeaderTemplate getJwsHeaderTemplate() {
+        final JwtKeyRing currentKeyRing = keyRing;
+        if (nonNull(currentKeyRing)) {
+            JwtKey activeKey = currentKeyRing.getActiveKey();
+            requireNonNull(activeKey, "密钥环中没有可签名的密钥, 不支持创建 JWT 功能");
+            return activeKey.getHeaderTemplate();
+        }
+
+        final String currentJwsAlgorithm = jwsAlgorithm;
+        requireNonNull(currentJwsAlgorithm, "未设置 jwsAlgorithm, 不支持 JWT 功能");
 
-        JWSHeader.Builder builder = new JWSHeader.Builder(JWSAlgorithm.parse(jwsAlgorithm));
-        builder.type(JOSEObjectType.JWT);
-        if (hasText(kid)) {
-            builder.keyID(kid);
+        // jwsAlgorithm 与 kid 通过反射注入, 不匹配时重新构建
+        final String currentKid = hasText(kid) ? kid : null;
+        JwsHeaderTemplate template = jwsHeaderTemplate;
+        if (isNull(template) || !template.matches(currentJwsAlgorithm, currentKid)) {
+            template = JwsHeaderTemplate.of(JWSAlgorithm.parse(currentJwsAlgorithm), currentKid);
+            jwsHeaderTemplate = template;
         }
-        return builder.build();
+        return template;
     }
 
     // ====================== 内部类 ======================
@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.jwt.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import top.dcenter.ums.security.common.cache.LocalTtlCache;
+import top.dcenter.ums.security.jwt.properties.JwtBlacklistProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JWT 黑名单 / tokenInfo 是否存在的本地 near-cache, 用于减少每次请求校验 jti 时的 redis 访问.<br>
+ * 1. 缓存值为 {@code JwtContext.BlacklistType#getBlacklistType(String)} 可解析的字符串,
+ *    在黑名单中的值以 JWT 的剩余有效期为 ttl, 不在黑名单中的值以 {@link JwtBlacklistProperties#getNearCacheNegativeTtl()} 为 ttl.<br>
+ * 2. 通过 redis pub/sub 广播失效消息, 任一节点执行 addBlacklist/addBlacklistForReAuth 等操作后, 所有节点删除对应的本地缓存.<br>
+ * 3. 失效消息为 redis key, 以 {@link #WILDCARD} 结尾时表示删除以此为前缀的所有本地缓存.<br>
+ * 4. 每次删除都递增 {@link #getEpoch()}; 写入时传入读取 redis 前获取的 epoch, epoch 已变化(读取期间收到了删除)时不写入,
+ *    避免读取到的旧值在其他节点的删除之后才写入本地缓存.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.8 11:02
+ */
+@Slf4j
+public class JwtBlacklistNearCache implements MessageListener {
+
+    /**
+     * 失效消息的前缀通配符
+     */
+    public static final String WILDCARD = "*";
+
+    private final LocalTtlCache<String, String> cache;
+    private final long negativeTtlMillis;
+    private final byte[] channel;
+    /**
+     * 删除次数, 用于判断读取 redis 期间是否收到了删除
+     */
+    private final AtomicLong epoch = new AtomicLong(0L);
+
+    public JwtBlacklistNearCache(@NonNull JwtBlacklistProperties blacklistProperties) {
+        this.cache = new LocalTtlCache<>(blacklistProperties.getNearCacheMaxSize());
+        this.negativeTtlMillis = blacklistProperties.getNearCacheNegativeTtl().toMillis();
+        this.channel = blacklistProperties.getNearCacheChannel().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 获取缓存的黑名单值
+     * @param key   redis key
+     * @return  返回缓存的黑名单值, 未缓存返回 null; 返回空字符串表示不在黑名单中.
+     */
+    @Nullable
+    public String get(@NonNull byte[] key) {
+        return cache.get(new String(key, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 获取当前的删除 epoch, 在读取 redis 前调用, 并传入 put 方法.
+     * @return  当前的删除 epoch
+     */
+    public long getEpoch() {
+        return epoch.get();
+    }
+
+    /**
+     * 缓存在黑名单中的值
+     * @param key           redis key
+     * @param value         黑名单的值
+     * @param ttlMillis     ttl, 一般为 JWT 的剩余有效期, 单位: 毫秒
+     * @param epoch         读取 redis 前 {@link #getEpoch()} 的值
+     */
+    public void putBlacklisted(@NonNull byte[] key, @NonNull String value, long ttlMillis, long epoch) {
+        put(new String(key, StandardCharsets.UTF_8), value, ttlMillis, epoch);
+    }
+
+    /**
+     * 缓存在黑名单中的值, ttl 为 {@link JwtBlacklistProperties#getNearCacheNegativeTtl()} 与 maxTtlMillis 的最小值.
+     * 用于 redis 中不存在而视为在黑名单中的值(如不支持黑名单时 tokenInfo 不存在), 此类值可能在稍后写入 redis.
+     * @param key           redis key
+     * @param value         黑名单的值
+     * @param maxTtlMillis  最大的 ttl, 一般为 JWT 的剩余有效期, 单位: 毫秒
+     * @param epoch         读取 redis 前 {@link #getEpoch()} 的值
+     */
+    public void putMissingAsBlacklisted(@NonNull byte[] key, @NonNull String value, long maxTtlMillis, long epoch) {
+        put(new String(key, StandardCharsets.UTF_8), value, Math.min(negativeTtlMillis, maxTtlMillis), epoch);
+    }
+
+    /**
+     * 缓存不在黑名单中的值, ttl 为 {@link JwtBlacklistProperties#getNearCacheNegativeTtl()} 与 maxTtlMillis 的最小值.
+     * @param key           redis key
+     * @param maxTtlMillis  最大的 ttl, 一般为 JWT 的剩余有效期, 单位: 毫秒
+     * @param epoch         读取 redis 前 {@link #getEpoch()} 的值
+     */
+    public void putNotBlacklisted(@NonNull byte[] key, long maxTtlMillis, long epoch) {
+        put(new String(key, StandardCharsets.UTF_8), "", Math.min(negativeTtlMillis, maxTtlMillis), epoch);
+    }
+
+    /**
+     * 删除本地缓存并通过 redis pub/sub 通知其他节点删除对应的本地缓存
+     * @param key           redis key, 以 {@link #WILDCARD} 结尾时表示删除以此为前缀的所有本地缓存
+     * @param connection    {@link RedisConnection}, 在此方法中不会关闭此连接, 需要调用方关闭
+     */
+    public void evictAndPublish(@NonNull byte[] key, @NonNull RedisConnection connection) {
+        evict(new String(key, StandardCharsets.UTF_8));
+        try {
+            connection.publish(channel, key);
+        }
+        catch (Exception e) {
+            log.error("JWT near-cache 失效消息发布失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void onMessage(@NonNull Message message, @Nullable byte[] pattern) {
+        evict(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return 返回 redis pub/sub 的 channel
+     */
+    @NonNull
+    public String getChannel() {
+        return new String(channel, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * epoch 未变化时写入; 写入后 epoch 发生变化时删除刚写入的值, 因为此时的删除可能先于写入执行.
+     */
+    private void put(@NonNull String key, @NonNull String value, long ttlMillis, long epoch) {
+        if (this.epoch.get() != epoch) {
+            return;
+        }
+        cache.put(key, value, ttlMillis);
+        if (this.epoch.get() != epoch) {
+            cache.evict(key);
+        }
+    }
+
+    private void evict(@NonNull String key) {
+        // 先递增 epoch 再删除, 与 put 中的两次检查配合, 保证删除之后不会残留旧值
+        epoch.incrementAndGet();
+        if (key.endsWith(WILDCARD)) {
+            String prefix = key.substring(0, key.length() - WILDCARD.length());
+            cache.evictIf(k -> k.startsWith(prefix));
+            return;
+        }
+        cache.evict(key);
+    }
+
+}
@@ -0,0 +1,329 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.jwt.cache;
+
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * 绑定到当前线程的 redis 命令批处理器, 用于把 JwtContext 中一次登录/刷新流程的多个写命令合并为一次 pipeline 执行,
+ * 流程中的读命令通过 {@link #prefetch(RedisConnectionFactory, List, List)} 合并为一次 pipeline 预读.<br>
+ * 使用方式:
+ * <pre>
+ * final boolean isOwner = JwtRedisCommandBatch.begin();
+ * Throwable failure = null;
+ * try {
+ *     // 流程中的写命令通过 JwtRedisCommandBatch.add(command) 添加
+ * }
+ * catch (Throwable e) {
+ *     failure = e;
+ *     throw e;
+ * }
+ * finally {
+ *     JwtRedisCommandBatch.end(isOwner, redisConnectionFactory, failure);
+ * }
+ * </pre>
+ * 注意: 1. 批处理中只能添加不依赖返回值的写命令, 需要校验执行结果的写命令通过 {@link #add(Function, Supplier)} 添加,
+ * 结果在 {@link #end(boolean, RedisConnectionFactory, Throwable)} 时校验; 2. 不支持嵌套, 嵌套调用 {@link #begin()} 时命令合并到外层批处理中;
+ * 3. redis cluster 时顺序执行; 4. 写命令在批处理结束时才执行, 因此批处理中读取过的结果在批处理结束前不会变化,
+ * 同一个 key 的重复读取直接返回已读取的结果.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 15:20
+ */
+public final class JwtRedisCommandBatch {
+
+    private JwtRedisCommandBatch() {}
+
+    private static final ThreadLocal<Batch> BATCH = new ThreadLocal<>();
+
+    /**
+     * 开启当前线程的批处理
+     * @return  返回 true 表示开启了新的批处理, 需要调用 {@link #end(boolean, RedisConnectionFactory, Throwable)} 执行;
+     *          返回 false 表示当前线程已有批处理.
+     */
+    public static boolean begin() {
+        if (isNull(BATCH.get())) {
+            BATCH.set(new Batch());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 添加写命令到当前线程的批处理
+     * @param command   写命令, 在 {@link #end(boolean, RedisConnectionFactory, Throwable)} 时执行
+     * @return  返回 true 表示已添加, 返回 false 表示当前线程没有开启批处理, 需要调用方直接执行.
+     */
+    public static boolean add(@NonNull Consumer<RedisConnection> command) {
+        final Batch batch = BATCH.get();
+        if (isNull(batch)) {
+            return false;
+        }
+        batch.commands.add(command);
+        return true;
+    }
+
+    /**
+     * 添加需要校验执行结果的写命令到当前线程的批处理, 此类命令在批处理中先于其他命令执行,
+     * 执行结果不为 true 时 {@link #end(boolean, RedisConnectionFactory, Throwable)} 抛出 failure 提供的异常.
+     * @param command   只包含一个返回 Boolean 的 redis 写命令, 如: SET
+     * @param failure   执行结果不为 true 时抛出的异常
+     * @return  返回 true 表示已添加, 返回 false 表示当前线程没有开启批处理, 需要调用方直接执行.
+     */
+    public static boolean add(@NonNull Function<RedisConnection, Boolean> command,
+                              @NonNull Supplier<? extends RuntimeException> failure) {
+        final Batch batch = BATCH.get();
+        if (isNull(batch)) {
+            return false;
+        }
+        batch.checkedCommands.add(command);
+        batch.failures.add(failure);
+        return true;
+    }
+
+    /**
+     * 通过一次 pipeline 预读 EXISTS 与 GET 的结果, 预读的结果在当前批处理结束前有效, 已读取过的 key 不再读取,
+     * 当前线程没有开启批处理时不做任何处理.
+     * @param redisConnectionFactory    {@link RedisConnectionFactory}
+     * @param existsKeys                需要 EXISTS 的 redis key
+     * @param getKeys                   需要 GET 的 redis key
+     */
+    public static void prefetch(@NonNull RedisConnectionFactory redisConnectionFactory,
+                                @NonNull List<byte[]> existsKeys, @NonNull List<byte[]> getKeys) {
+        final Batch batch = BATCH.get();
+        if (isNull(batch)) {
+            return;
+        }
+        final List<byte[]> pendingExists = new ArrayList<>(existsKeys.size());
+        for (byte[] key : existsKeys) {
+            if (!batch.existsResults.containsKey(ByteBuffer.wrap(key))) {
+                pendingExists.add(key);
+            }
+        }
+        final List<byte[]> pendingGets = new ArrayList<>(getKeys.size());
+        for (byte[] key : getKeys) {
+            if (!batch.getResults.containsKey(ByteBuffer.wrap(key))) {
+                pendingGets.add(key);
+            }
+        }
+        if (pendingExists.isEmpty() && pendingGets.isEmpty()) {
+            return;
+        }
+        try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+            // 单个命令或 redis cluster 时顺序执行
+            if (pendingExists.size() + pendingGets.size() == 1 || connection instanceof RedisClusterConnection) {
+                pendingExists.forEach(key -> cacheExists(batch, key, connection.exists(key)));
+                pendingGets.forEach(key -> batch.getResults.put(ByteBuffer.wrap(key), connection.get(key)));
+                return;
+            }
+            final List<Object> results;
+            connection.openPipeline();
+            try {
+                pendingExists.forEach(connection::exists);
+                pendingGets.forEach(connection::get);
+            }
+            finally {
+                results = connection.closePipeline();
+            }
+            if (results.size() != pendingExists.size() + pendingGets.size()) {
+                return;
+            }
+            int i = 0;
+            for (byte[] key : pendingExists) {
+                cacheExists(batch, key, (Boolean) results.get(i++));
+            }
+            for (byte[] key : pendingGets) {
+                batch.getResults.put(ByteBuffer.wrap(key), (byte[]) results.get(i++));
+            }
+        }
+    }
+
+    /**
+     * 获取当前批处理中已读取的 EXISTS 结果
+     * @param key   redis key
+     * @return  返回已读取的结果, 当前线程没有开启批处理或未读取过此 key 时返回 null
+     */
+    @Nullable
+    public static Boolean getExists(@NonNull byte[] key) {
+        final Batch batch = BATCH.get();
+        return isNull(batch) ? null : batch.existsResults.get(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * 记录 EXISTS 的结果到当前批处理, 当前线程没有开启批处理时不做任何处理.
+     * @param key       redis key
+     * @param exists    EXISTS 的结果
+     */
+    public static void putExists(@NonNull byte[] key, @Nullable Boolean exists) {
+        final Batch batch = BATCH.get();
+        if (nonNull(batch)) {
+            cacheExists(batch, key, exists);
+        }
+    }
+
+    /**
+     * 当前批处理中是否已读取过此 key 的 GET 结果
+     * @param key   redis key
+     * @return  返回 true 表示已读取过, 可通过 {@link #get(byte[])} 获取结果
+     */
+    public static boolean containsGet(@NonNull byte[] key) {
+        final Batch batch = BATCH.get();
+        return nonNull(batch) && batch.getResults.containsKey(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * 获取当前批处理中已读取的 GET 结果
+     * @param key   redis key
+     * @return  返回已读取的结果, key 不存在, 当前线程没有开启批处理或未读取过此 key 时返回 null
+     */
+    @Nullable
+    public static byte[] get(@NonNull byte[] key) {
+        final Batch batch = BATCH.get();
+        return isNull(batch) ? null : batch.getResults.get(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * 记录 GET 的结果到当前批处理, 当前线程没有开启批处理时不做任何处理.
+     * @param key       redis key
+     * @param value     GET 的结果, key 不存在时为 null
+     */
+    public static void putGet(@NonNull byte[] key, @Nullable byte[] value) {
+        final Batch batch = BATCH.get();
+        if (nonNull(batch)) {
+            batch.getResults.put(ByteBuffer.wrap(key), value);
+        }
+    }
+
+    /**
+     * 结束当前线程的批处理并通过一次 pipeline 执行所有写命令, isOwner 为 false 时不做任何处理.
+     * @param isOwner                   {@link #begin()} 的返回值
+     * @param redisConnectionFactory    {@link RedisConnectionFactory}
+     * @throws RuntimeException 通过 {@link #add(Function, Supplier)} 添加的命令执行结果不为 true 时抛出对应的异常
+     */
+    public static void end(boolean isOwner, @NonNull RedisConnectionFactory redisConnectionFactory) {
+        end(isOwner, redisConnectionFactory, null);
+    }
+
+    /**
+     * 结束当前线程的批处理并通过一次 pipeline 执行所有写命令, isOwner 为 false 时不做任何处理.
+     * 流程已抛出异常(failure 不为 null)时, 执行写命令的异常添加到 failure 的 suppressed 中, 不覆盖流程抛出的异常.
+     * @param isOwner                   {@link #begin()} 的返回值
+     * @param redisConnectionFactory    {@link RedisConnectionFactory}
+     * @param failure                   流程抛出的异常, 没有异常时为 null
+     * @throws RuntimeException failure 为 null 且通过 {@link #add(Function, Supplier)} 添加的命令执行结果不为 true 时抛出对应的异常
+     */
+    public static void end(boolean isOwner, @NonNull RedisConnectionFactory redisConnectionFactory,
+                           @Nullable Throwable failure) {
+        if (!isOwner) {
+            return;
+        }
+        final Batch batch = BATCH.get();
+        BATCH.remove();
+        if (isNull(batch) || batch.isEmpty()) {
+            return;
+        }
+        if (isNull(failure)) {
+            execute(batch, redisConnectionFactory);
+            return;
+        }
+        try {
+            execute(batch, redisConnectionFactory);
+        }
+        catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private static void execute(@NonNull Batch batch, @NonNull RedisConnectionFactory redisConnectionFactory) {
+        final List<Function<RedisConnection, Boolean>> checkedCommands = batch.checkedCommands;
+        try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+            // 单个命令或 redis cluster 时顺序执行, 校验失败时不再执行其他命令
+            if (batch.size() == 1 || connection instanceof RedisClusterConnection) {
+                for (int i = 0; i < checkedCommands.size(); i++) {
+                    batch.check(i, checkedCommands.get(i).apply(connection));
+                }
+                batch.commands.forEach(command -> command.accept(connection));
+                return;
+            }
+            final List<Object> results;
+            connection.openPipeline();
+            try {
+                checkedCommands.forEach(command -> command.apply(connection));
+                batch.commands.forEach(command -> command.accept(connection));
+            }
+            finally {
+                results = connection.closePipeline();
+            }
+            // 需要校验的命令最先执行, 对应 pipeline 结果中的前 checkedCommands.size() 个
+            for (int i = 0; i < checkedCommands.size(); i++) {
+                batch.check(i, i < results.size() ? results.get(i) : null);
+            }
+        }
+    }
+
+    private static void cacheExists(@NonNull Batch batch, @NonNull byte[] key, @Nullable Boolean exists) {
+        batch.existsResults.put(ByteBuffer.wrap(key), nonNull(exists) && exists);
+    }
+
+    /**
+     * 当前线程批处理中的写命令与已读取的结果
+     */
+    private static final class Batch {
+
+        private final List<Consumer<RedisConnection>> commands = new ArrayList<>(4);
+        private final List<Function<RedisConnection, Boolean>> checkedCommands = new ArrayList<>(1);
+        private final List<Supplier<? extends RuntimeException>> failures = new ArrayList<>(1);
+        private final Map<ByteBuffer, Boolean> existsResults = new HashMap<>(4);
+        private final Map<ByteBuffer, byte[]> getResults = new HashMap<>(4);
+
+        private boolean isEmpty() {
+            return commands.isEmpty() && checkedCommands.isEmpty();
+        }
+
+        private int size() {
+            return commands.size() + checkedCommands.size();
+        }
+
+        private void check(int index, Object result) {
+            if (!Boolean.TRUE.equals(result)) {
+                throw failures.get(index).get();
+            }
+        }
+    }
+
+}
@@ -38,8 +38,6 @@ import top.dcenter.ums.security.jwt.api.id.service.JwtIdService;
 import top.dcenter.ums.security.jwt.claims.service.GenerateClaimsSetService;
 import top.dcenter.ums.security.jwt.enums.JwtCustomClaimNames;
 
-import java.time.Instant;
-
 import static java.util.Objects.nonNull;
 
 /**
@@ -104,10 +102,6 @@ public class UmsGenerateClaimsSetServiceImpl implements GenerateClaimsSetService
                                                                     userDetails.getUsername(),
                                                                     refreshTokenJwt);
 
-        if (nonNull(refreshTokenJwt)) {
-            builder.claim(JwtCustomClaimNames.REFRESH_TOKEN_JTI.getClaimName(), refreshTokenJwt.getId());
-        }
-
         if (nonNull(customClaimsSetService)) {
             JWTClaimsSet jwtClaimsSet = customClaimsSetService.toClaimsSet(userDetails);
             jwtClaimsSet.getClaims().forEach(builder::claim);
@@ -163,7 +157,7 @@ public class UmsGenerateClaimsSetServiceImpl implements GenerateClaimsSetService
         // jti
         builder.jwtID(this.jwtIdService.generateJtiId());
         builder.claim(this.principalClaimName, userId)
-               .claim(JwtClaimNames.EXP, Instant.now().plusSeconds(timeout).getEpochSecond());
+               .claim(JwtClaimNames.EXP, System.currentTimeMillis() / 1000L + timeout);
 
         if (nonNull(refreshTokenJwt)) {
             builder.claim(JwtCustomClaimNames.REFRESH_TOKEN_JTI.getClaimName(), refreshTokenJwt.getId());
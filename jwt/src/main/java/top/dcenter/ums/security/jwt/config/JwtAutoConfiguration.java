@@ -22,11 +22,10 @@
  */
 package top.dcenter.ums.security.jwt.config;
 
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.crypto.MACSigner;
-import com.nimbusds.jose.crypto.RSASSASigner;
-import com.nimbusds.jose.jwk.KeyUse;
-import com.nimbusds.jose.jwk.RSAKey;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.InitializingBean;
@@ -41,6 +40,8 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.core.annotation.Order;
 import org.springframework.core.io.Resource;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.lang.NonNull;
 import org.springframework.security.oauth2.core.OAuth2TokenValidator;
 import org.springframework.security.oauth2.jose.jws.JwsAlgorithm;
@@ -56,26 +57,33 @@ import top.dcenter.ums.security.jwt.api.endpoind.service.JwkEndpointPermissionSe
 import top.dcenter.ums.security.jwt.api.endpoind.service.JwkSetUriConfig;
 import top.dcenter.ums.security.jwt.api.id.service.JwtIdService;
 import top.dcenter.ums.security.jwt.api.validator.service.ReAuthService;
+import top.dcenter.ums.security.jwt.cache.JwtBlacklistNearCache;
 import top.dcenter.ums.security.jwt.claims.service.GenerateClaimsSetService;
 import top.dcenter.ums.security.jwt.controller.JwtRefreshTokenController;
 import top.dcenter.ums.security.jwt.decoder.UmsNimbusJwtDecoder;
 import top.dcenter.ums.security.jwt.endpoint.JwkEndpoint;
 import top.dcenter.ums.security.jwt.enums.JwtRefreshHandlerPolicy;
 import top.dcenter.ums.security.jwt.factory.KeyStoreKeyFactory;
+import top.dcenter.ums.security.jwt.key.JwtKey;
+import top.dcenter.ums.security.jwt.key.JwtKeyRing;
 import top.dcenter.ums.security.jwt.properties.BearerTokenProperties;
 import top.dcenter.ums.security.jwt.properties.JwtBlacklistProperties;
+import top.dcenter.ums.security.jwt.properties.JwtKeyRingProperties;
 import top.dcenter.ums.security.jwt.properties.JwtProperties;
 
 import javax.crypto.spec.SecretKeySpec;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
-import java.security.interfaces.RSAPublicKey;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
+import static java.util.Optional.ofNullable;
 import static org.springframework.util.StringUtils.hasText;
 import static top.dcenter.ums.security.common.utils.ReflectionUtil.setFieldValue;
 import static top.dcenter.ums.security.jwt.properties.JwtProperties.MACS_SECRET_LENGTH;
@@ -144,8 +152,15 @@ public class JwtAutoConfiguration implements InitializingBean {
      * {@link JwtContext} 的 principalClaimName 字段名称
      */
     public static final String PRINCIPAL_CLAIM_NAME = "principalClaimName";
+    /**
+     * {@link JwtContext} 的 nearCache 字段名称
+     */
+    public static final String NEAR_CACHE = "nearCache";
+    /**
+     * {@link JwtContext} 的 keyRing 字段名称
+     */
+    public static final String KEY_RING = "keyRing";
 
-    private final RSAPublicKey publicKey;
     private final JWSSigner signer;
     private final JwsAlgorithm jwsAlgorithm;
     private final String kid;
@@ -156,6 +171,14 @@ public class JwtAutoConfiguration implements InitializingBean {
     private final JwtIdService jwtIdService;
     private final JwtCacheTransformService<?> jwtCacheTransformService;
     private final String principalClaimName;
+    /**
+     * jwt 黑名单/tokenInfo 校验的本地 near-cache, 未开启时为 null
+     */
+    private final JwtBlacklistNearCache nearCache;
+    /**
+     * JWT 密钥环, 使用 jks 密钥时不为 null
+     */
+    private final JwtKeyRing keyRing;
     /**
      * JWT 的有效期
      */
@@ -203,20 +226,30 @@ public class JwtAutoConfiguration implements InitializingBean {
         this.oAuth2TokenValidator = oAuth2TokenValidator;
         this.mappedJwtClaimSetConverter = mappedJwtClaimSetConverter;
         this.principalClaimName = jwtProperties.getPrincipalClaimName();
+        if (this.jwtBlacklistProperties.getNearCacheEnable()) {
+            this.nearCache = new JwtBlacklistNearCache(this.jwtBlacklistProperties);
+        }
+        else {
+            this.nearCache = null;
+        }
 
         Resource resource = jwtProperties.getJksKeyPairLocation();
         if (nonNull(resource)) {
             KeyStoreKeyFactory keyStoreKeyFactory = new KeyStoreKeyFactory(resource, jwtProperties.getJksPassword().toCharArray());
             KeyPair keyPair = keyStoreKeyFactory.getKeyPair(jwtProperties.getJksAlias());
 
-            this.publicKey = (RSAPublicKey) keyPair.getPublic();
             this.kid = jwtProperties.getKid();
 
-            RSAKey rsaJwk = (RSAKey) JwtContext.generateJwk(keyPair, this.kid, KeyUse.SIGNATURE);
-
-            // Create RSA-signer with the private key
-            this.signer = new RSASSASigner(rsaJwk);
             this.jwsAlgorithm = SignatureAlgorithm.from(jwtProperties.getJwsAlgorithms());
+            if (isNull(this.jwsAlgorithm)) {
+                throw new RuntimeException("ums.jwt.jwsAlgorithms 不是有效的 RSA/EC 签名算法: "
+                                                   + jwtProperties.getJwsAlgorithms());
+            }
+            JWSAlgorithm algorithm = JWSAlgorithm.parse(this.jwsAlgorithm.getName());
+            // 根据密钥类型创建 RSA-signer 或 EC-signer, 主密钥一直可用于签名, activeFrom 更大的密钥优先签名
+            JwtKey mainKey = JwtKey.of(this.kid, keyPair, algorithm, Instant.EPOCH, null);
+            this.signer = mainKey.getSigner();
+            this.keyRing = createKeyRing(jwtProperties, mainKey, algorithm);
         }
         else if (nonNull(jwtProperties.getMacsSecret())) {
 
@@ -227,8 +260,8 @@ public class JwtAutoConfiguration implements InitializingBean {
             // Create HMAC signer
             this.signer = new MACSigner(macsSecret.getBytes(StandardCharsets.UTF_8));
             this.jwsAlgorithm = MacAlgorithm.from(jwtProperties.getJwsAlgorithms());
-            this.publicKey = null;
             this.kid = jwtProperties.getKid();
+            this.keyRing = null;
         }
         else {
 
@@ -240,12 +273,42 @@ public class JwtAutoConfiguration implements InitializingBean {
             else {
                 this.jwsAlgorithm = null;
             }
-            this.publicKey = null;
             this.signer = null;
             this.kid = null;
+            this.keyRing = null;
         }
     }
 
+    /**
+     * 创建 JWT 密钥环, 由主密钥与 ums.jwt.keyRing.keys 中的密钥组成
+     * @param jwtProperties     {@link JwtProperties}
+     * @param mainKey           主密钥
+     * @param jwsAlgorithm      签名算法
+     * @return  {@link JwtKeyRing}
+     * @throws JOSEException    创建签名器或验签器异常
+     */
+    @NonNull
+    private static JwtKeyRing createKeyRing(@NonNull JwtProperties jwtProperties, @NonNull JwtKey mainKey,
+                                            @NonNull JWSAlgorithm jwsAlgorithm) throws JOSEException {
+        List<JwtKeyRingProperties.KeyProperties> keyPropertiesList = jwtProperties.getKeyRing().getKeys();
+        List<JwtKey> keys = new ArrayList<>(keyPropertiesList.size() + 1);
+        keys.add(mainKey);
+        for (JwtKeyRingProperties.KeyProperties keyProperties : keyPropertiesList) {
+            if (!hasText(keyProperties.getKid()) || !hasText(keyProperties.getJksAlias())) {
+                throw new RuntimeException("ums.jwt.key-ring.keys 中密钥的 kid 与 jksAlias 不能为空");
+            }
+            Resource location = ofNullable(keyProperties.getJksKeyPairLocation())
+                    .orElse(jwtProperties.getJksKeyPairLocation());
+            String password = hasText(keyProperties.getJksPassword()) ? keyProperties.getJksPassword()
+                                                                     : jwtProperties.getJksPassword();
+            KeyPair keyPair = new KeyStoreKeyFactory(location, password.toCharArray())
+                    .getKeyPair(keyProperties.getJksAlias());
+            keys.add(JwtKey.of(keyProperties.getKid(), keyPair, jwsAlgorithm,
+                               keyProperties.getActiveFrom(), keyProperties.getExpireAt()));
+        }
+        return new JwtKeyRing(keys);
+    }
+
     @SuppressWarnings("SpringJavaInjectionPointsAutowiringInspection")
     @Bean
     @ConditionalOnProperty(prefix = "ums.jwt", name = "expose-refresh-token-uri", havingValue = "true")
@@ -261,10 +324,20 @@ public class JwtAutoConfiguration implements InitializingBean {
     @ConditionalOnProperty(prefix = "ums.jwt", name = "expose-jwk-set-uri", havingValue = "true")
     public JwkEndpoint jwkEndpoint(JwtProperties jwtProperties, JwkEndpointPermissionService jwkEndpointPermissionService)
             throws InvocationTargetException, IllegalAccessException {
-        requireNonNull(this.publicKey, "jks-key-pair-location cannot bu null");
+        requireNonNull(this.keyRing, "jks-key-pair-location cannot bu null");
         requireNonNull(jwkEndpointPermissionService, "jwkEndpointPermissionService cannot bu null");
-        return new JwkEndpoint(this.publicKey, jwtProperties.getJwsAlgorithms(),
-                               jwkEndpointPermissionService, jwtProperties.getKid());
+        return new JwkEndpoint(this.keyRing, jwkEndpointPermissionService,
+                               jwtProperties.getKeyRing().getJwksMaxAge());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "ums.jwt.blacklist", name = "near-cache-enable", havingValue = "true")
+    public RedisMessageListenerContainer jwtNearCacheListenerContainer() {
+        requireNonNull(this.nearCache, "nearCache cannot be null");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(this.redisConnectionFactory);
+        container.addMessageListener(this.nearCache, new ChannelTopic(this.nearCache.getChannel()));
+        return container;
     }
 
     @Bean
@@ -277,11 +350,10 @@ public class JwtAutoConfiguration implements InitializingBean {
         String macsSecret = jwtProperties.getMacsSecret();
         UmsNimbusJwtDecoder jwtDecoder = null;
         if (nonNull(jksKeyPairResource)) {
-            jwtDecoder = UmsNimbusJwtDecoder.withPublicKey(this.publicKey,
-                                                           jwtProperties.getRefreshHandlerPolicy(),
-                                                           jwtProperties.getRemainingRefreshInterval(),
-                                                           Boolean.TRUE)
-                                            .signatureAlgorithm((SignatureAlgorithm) this.jwsAlgorithm)
+            jwtDecoder = UmsNimbusJwtDecoder.withKeyRing(this.keyRing,
+                                                         jwtProperties.getRefreshHandlerPolicy(),
+                                                         jwtProperties.getRemainingRefreshInterval(),
+                                                         Boolean.TRUE)
                                             .build();
         }
         else if (hasText(macsSecret)) {
@@ -313,6 +385,7 @@ public class JwtAutoConfiguration implements InitializingBean {
         }
 
         jwtDecoder.setReAuthService(reAuthService);
+        jwtDecoder.setVerifiedJwtCacheMaxSize(jwtProperties.getVerifiedJwtCacheMaxSize());
         setJwtValidatorAndClaimSetConverter(oAuth2TokenValidator, mappedJwtClaimSetConverter, jwtDecoder);
 
         return jwtDecoder;
@@ -380,6 +453,14 @@ public class JwtAutoConfiguration implements InitializingBean {
             setFieldValue(PRINCIPAL_CLAIM_NAME, this.principalClaimName, null, jwtUtilClass);
         }
 
+        if (nonNull(this.nearCache)) {
+            setFieldValue(NEAR_CACHE, this.nearCache, null, jwtUtilClass);
+        }
+
+        if (nonNull(this.keyRing)) {
+            setFieldValue(KEY_RING, this.keyRing, null, jwtUtilClass);
+        }
+
     }
 
     private void setJwtValidatorAndClaimSetConverter(@NonNull OAuth2TokenValidator<Jwt> oAuth2TokenValidator,
@@ -29,6 +29,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -41,7 +42,12 @@ import org.springframework.security.oauth2.server.resource.authentication.JwtAut
 import org.springframework.security.web.jackson2.WebJackson2Module;
 import org.springframework.security.web.jackson2.WebServletJackson2Module;
 import org.springframework.security.web.server.jackson2.WebServerJackson2Module;
+import top.dcenter.ums.security.common.enums.RedisSerializerType;
+import top.dcenter.ums.security.core.redis.serializer.VersionedRedisSerializer;
 import top.dcenter.ums.security.jwt.jackson2.JwtJackson2Module;
+import top.dcenter.ums.security.jwt.properties.JwtProperties;
+
+import static java.util.Objects.nonNull;
 
 /**
  * redis 序列化器自动配置
@@ -51,17 +57,33 @@ import top.dcenter.ums.security.jwt.jackson2.JwtJackson2Module;
 @Configuration
 @AutoConfigureAfter({JwtPropertiesAutoConfiguration.class})
 @ConditionalOnProperty(prefix = "ums.jwt", name = "enable", havingValue = "true")
+@Slf4j
 public class RedisSerializerAutoConfiguration {
 
     /**
-     * 配置 Jackson2JsonRedisSerializer 序列化器, 注册同名 bean 可以覆盖此序列化器
+     * 配置 Jackson2JsonRedisSerializer 序列化器, 注册同名 bean 可以覆盖此序列化器.
+     * 通过 ums.jwt.redisSerializerType 设置写入格式, JSON 与 Smile 二进制格式的缓存可以共存.
      */
     @Bean("jwtTokenRedisSerializer")
     @ConditionalOnMissingBean(name = "jwtTokenRedisSerializer")
-    public RedisSerializer<JwtAuthenticationToken> jwtRedisSerializer(){
+    public RedisSerializer<JwtAuthenticationToken> jwtRedisSerializer(JwtProperties jwtProperties){
+        RedisSerializerType serializerType = jwtProperties.getRedisSerializerType();
+        ObjectMapper smileMapper = VersionedRedisSerializer.newSmileObjectMapper();
+        Jackson2JsonRedisSerializer<JwtAuthenticationToken> smileSerializer = null;
+        if (nonNull(smileMapper)) {
+            smileSerializer = getJackson2JsonRedisSerializer(smileMapper);
+        }
+        else if (RedisSerializerType.SMILE.equals(serializerType)) {
+            log.warn("ums.jwt.redis-serializer-type=SMILE 需要 jackson-dataformat-smile 依赖, 已使用 JSON 格式");
+            serializerType = RedisSerializerType.JSON;
+        }
+        return new VersionedRedisSerializer<>(getJackson2JsonRedisSerializer(new ObjectMapper()),
+                                              smileSerializer, serializerType);
+    }
+
+    private Jackson2JsonRedisSerializer<JwtAuthenticationToken> getJackson2JsonRedisSerializer(ObjectMapper mapper) {
         Jackson2JsonRedisSerializer<JwtAuthenticationToken> jackson2JsonRedisSerializer
                  = new Jackson2JsonRedisSerializer<>(JwtAuthenticationToken.class);
-        ObjectMapper mapper = new ObjectMapper();
         mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
         mapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
                                  ObjectMapper.DefaultTyping.NON_FINAL);
@@ -0,0 +1,339 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.jwt.decoder;
+
+import com.nimbusds.jose.RemoteKeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.ResourceRetriever;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import top.dcenter.ums.security.common.executor.DefaultThreadFactory;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 后台提前刷新(refresh-ahead)的 JWK set {@link JWKSource}:<br>
+ * 1. 由后台线程按 refreshInterval 定时拉取 jwk set uri, 在缓存的 JWK set 过期前完成更新, 验签线程不会因缓存过期而同步访问 jwk set uri.<br>
+ * 2. 同一时刻只有一个拉取请求(single-flight), 其他线程共享该次拉取结果.<br>
+ * 3. 未匹配到 kid 时在后台触发刷新, 且两次刷新间隔不小于 unknownKidRefreshInterval, 防止伪造 kid 的请求放大对 jwk set uri 的访问;
+ * 触发了刷新的验签线程最多等待 unknownKidWaitTimeout, 以便密钥轮换后第一个携带新 kid 的 jwt 也能验签通过.<br>
+ * 4. 拉取失败时继续使用已缓存的 JWK set(stale-on-failure), 并在下一个刷新周期重试.<br>
+ * 5. 从 cache 加载的 JWK set 使用其实际获取时间(与 JWK set 一起存入 cache)作为获取时间, 以正确判断是否超过有效期.<br>
+ * 6. 拉取到的 JWK set 与当前的内容不同时递增 {@link #getVersion()}, 用于使已验签 JWT 的缓存失效.<br>
+ * 除上述第 3 点外, 只有在启动后还没有成功获取过 JWK set 时, 验签线程才会等待拉取结果.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 13:26
+ */
+@Slf4j
+public final class RefreshAheadJwkSource implements JWKSource<SecurityContext>, DisposableBean {
+
+    /**
+     * JWK set 获取时间在 cache 中的 key 的后缀, 完整 key 为 jwkSetUrl + 此后缀
+     */
+    private static final String FETCHED_AT_CACHE_KEY_SUFFIX = ":fetchedAt";
+
+    private final URL jwkSetUrl;
+    private final ResourceRetriever jwkSetRetriever;
+    /**
+     * 用于存储 JWK set 的 {@link Cache}, 为 null 时不使用.
+     */
+    private final Cache cache;
+    private final long lifespanMillis;
+    private final long unknownKidRefreshIntervalMillis;
+    private final long unknownKidWaitTimeoutMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile JWKSet jwkSet;
+    /**
+     * 最近一次成功获取 JWK set 的时间, 从 cache 加载时为 cache 中记录的获取时间
+     */
+    private volatile long fetchedAt;
+    /**
+     * 当前 JWK set 的内容, 用于判断拉取到的 JWK set 是否发生变化
+     */
+    private volatile String jwkSetContent;
+    /**
+     * JWK set 的版本号, JWK set 内容变化时递增
+     */
+    private final AtomicLong version = new AtomicLong(0L);
+    private final AtomicReference<CompletableFuture<JWKSet>> inFlight = new AtomicReference<>();
+    private final AtomicLong lastUnknownKidRefresh = new AtomicLong(0L);
+
+    /**
+     * 创建并启动后台刷新任务
+     * @param jwkSetUrl                 jwk set uri
+     * @param jwkSetRetriever           获取 jwk set 的 {@link ResourceRetriever}
+     * @param cache                     用于存储 JWK set 的 {@link Cache}, 启动时优先从 cache 中读取, 刷新成功后更新 cache, 可以为 null
+     * @param refreshInterval           后台刷新的间隔, 为 null 时不定时刷新, 只在启动时与未匹配到 kid 时刷新
+     * @param lifespan                  JWK set 的有效期, 超过有效期且刷新失败时继续使用已缓存的 JWK set 并输出 warn 日志, 为 null 时不过期
+     * @param unknownKidRefreshInterval 未匹配到 kid 时触发刷新的最小间隔
+     * @param unknownKidWaitTimeout     未匹配到 kid 且触发了刷新时, 验签线程等待刷新结果的最长时间
+     */
+    public RefreshAheadJwkSource(@NonNull URL jwkSetUrl,
+                                 @NonNull ResourceRetriever jwkSetRetriever,
+                                 @Nullable Cache cache,
+                                 @Nullable Duration refreshInterval,
+                                 @Nullable Duration lifespan,
+                                 @NonNull Duration unknownKidRefreshInterval,
+                                 @NonNull Duration unknownKidWaitTimeout) {
+        Assert.notNull(jwkSetUrl, "jwkSetUrl cannot be null");
+        Assert.notNull(jwkSetRetriever, "jwkSetRetriever cannot be null");
+        Assert.notNull(unknownKidRefreshInterval, "unknownKidRefreshInterval cannot be null");
+        Assert.notNull(unknownKidWaitTimeout, "unknownKidWaitTimeout cannot be null");
+        this.jwkSetUrl = jwkSetUrl;
+        this.jwkSetRetriever = jwkSetRetriever;
+        this.cache = cache;
+        this.lifespanMillis = isNull(lifespan) ? -1L : lifespan.toMillis();
+        this.unknownKidRefreshIntervalMillis = unknownKidRefreshInterval.toMillis();
+        this.unknownKidWaitTimeoutMillis = unknownKidWaitTimeout.toMillis();
+        loadFromCache();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("jwkSetRefresher"));
+        if (nonNull(refreshInterval) && refreshInterval.toMillis() > 0L) {
+            final long interval = refreshInterval.toMillis();
+            this.scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0L, interval, TimeUnit.MILLISECONDS);
+        }
+        else {
+            this.scheduler.execute(this::refreshQuietly);
+        }
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws RemoteKeySourceException {
+        JWKSet current = this.jwkSet;
+        if (isNull(current)) {
+            // 还没有成功获取过 JWK set, 只能等待拉取结果
+            current = awaitRefresh();
+        }
+        List<JWK> matches = jwkSelector.select(current);
+        if (matches.isEmpty()) {
+            final CompletableFuture<JWKSet> pending = triggerUnknownKidRefresh();
+            if (nonNull(pending)) {
+                final JWKSet refreshed = awaitUnknownKidRefresh(pending);
+                if (nonNull(refreshed) && refreshed != current) {
+                    matches = jwkSelector.select(refreshed);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 获取最近一次成功获取 JWK set 的时间戳(毫秒), 还未成功获取时返回 0.
+     * @return  最近一次成功获取 JWK set 的时间戳
+     */
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    /**
+     * 获取 JWK set 的版本号, 拉取到的 JWK set 内容发生变化(如密钥轮换或删除)时递增.
+     * @return  JWK set 的版本号
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 未匹配到 kid 时, 在后台触发刷新, 两次触发的间隔不小于 unknownKidRefreshInterval
+     * @return  返回刷新后的 JWK set(刷新失败时为刷新前的 JWK set), 未触发刷新时返回 null
+     */
+    @Nullable
+    private CompletableFuture<JWKSet> triggerUnknownKidRefresh() {
+        final long now = System.currentTimeMillis();
+        final long last = lastUnknownKidRefresh.get();
+        if (now - last < unknownKidRefreshIntervalMillis || !lastUnknownKidRefresh.compareAndSet(last, now)) {
+            return null;
+        }
+        final CompletableFuture<JWKSet> result = new CompletableFuture<>();
+        try {
+            scheduler.execute(() -> {
+                refreshQuietly();
+                result.complete(this.jwkSet);
+            });
+        }
+        catch (RejectedExecutionException e) {
+            log.debug("jwkSetRefresher 已关闭, 忽略刷新 JWK set: {}", jwkSetUrl);
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * 等待未匹配到 kid 时触发的刷新, 最多等待 unknownKidWaitTimeout
+     * @param pending   刷新结果
+     * @return  返回刷新后的 JWK set, 超时或被中断时返回 null
+     */
+    @Nullable
+    private JWKSet awaitUnknownKidRefresh(@NonNull CompletableFuture<JWKSet> pending) {
+        if (unknownKidWaitTimeoutMillis <= 0L) {
+            return null;
+        }
+        try {
+            return pending.get(unknownKidWaitTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException | TimeoutException e) {
+            log.debug("等待刷新 JWK set 超时, 刷新继续在后台执行: {}", jwkSetUrl);
+            return null;
+        }
+    }
+
+    private JWKSet awaitRefresh() throws RemoteKeySourceException {
+        try {
+            return refresh().get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteKeySourceException("获取 JWK set 时被中断: " + jwkSetUrl, e);
+        }
+        catch (ExecutionException e) {
+            throw new RemoteKeySourceException("获取 JWK set 失败: " + jwkSetUrl + ", " + e.getCause().getMessage(),
+                                               e.getCause());
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh().get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            final JWKSet stale = this.jwkSet;
+            if (isNull(stale)) {
+                log.error("获取 JWK set 失败: {}, {}", jwkSetUrl, e.getCause().getMessage());
+                return;
+            }
+            final long age = System.currentTimeMillis() - fetchedAt;
+            if (lifespanMillis > 0L && age > lifespanMillis) {
+                log.warn("获取 JWK set 失败, 继续使用已过期 {} ms 的 JWK set: {}, {}",
+                         age - lifespanMillis, jwkSetUrl, e.getCause().getMessage());
+            }
+            else {
+                log.warn("获取 JWK set 失败, 继续使用已缓存的 JWK set: {}, {}", jwkSetUrl, e.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * 拉取 JWK set, 同一时刻只有一个拉取请求, 其他线程共享该次拉取的结果.
+     * @return  拉取结果
+     */
+    private CompletableFuture<JWKSet> refresh() {
+        final CompletableFuture<JWKSet> future = new CompletableFuture<>();
+        while (true) {
+            final CompletableFuture<JWKSet> existing = inFlight.get();
+            if (nonNull(existing)) {
+                return existing;
+            }
+            if (inFlight.compareAndSet(null, future)) {
+                break;
+            }
+        }
+        try {
+            final String content = jwkSetRetriever.retrieveResource(jwkSetUrl).getContent();
+            final JWKSet fetched = JWKSet.parse(content);
+            final long now = System.currentTimeMillis();
+            final boolean changed = !content.equals(this.jwkSetContent);
+            this.jwkSet = fetched;
+            this.jwkSetContent = content;
+            this.fetchedAt = now;
+            if (changed) {
+                version.incrementAndGet();
+            }
+            if (nonNull(cache)) {
+                cache.put(jwkSetUrl.toString(), content);
+                cache.put(getFetchedAtCacheKey(), Long.toString(now));
+            }
+            future.complete(fetched);
+        }
+        catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        finally {
+            inFlight.set(null);
+        }
+        return future;
+    }
+
+    /**
+     * 从 cache 中加载 JWK set 及其获取时间, cache 中没有获取时间(旧版本写入)时获取时间为 0, 即视为已过期.
+     */
+    private void loadFromCache() {
+        if (isNull(cache)) {
+            return;
+        }
+        try {
+            final String content = cache.get(jwkSetUrl.toString(), String.class);
+            if (isNull(content)) {
+                return;
+            }
+            final JWKSet cached = JWKSet.parse(content);
+            final String cachedFetchedAt = cache.get(getFetchedAtCacheKey(), String.class);
+            this.fetchedAt = hasText(cachedFetchedAt) ? Long.parseLong(cachedFetchedAt) : 0L;
+            this.jwkSet = cached;
+            this.jwkSetContent = content;
+        }
+        catch (Exception e) {
+            log.warn("从缓存中读取 JWK set 失败: {}, {}", jwkSetUrl, e.getMessage());
+        }
+    }
+
+    @NonNull
+    private String getFetchedAtCacheKey() {
+        return jwkSetUrl.toString().concat(FETCHED_AT_CACHE_KEY_SUFFIX);
+    }
+
+}
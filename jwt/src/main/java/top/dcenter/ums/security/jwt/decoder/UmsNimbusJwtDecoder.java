@@ -21,15 +21,16 @@ import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWEHeader;
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
 import com.nimbusds.jose.PlainHeader;
 import com.nimbusds.jose.RemoteKeySourceException;
-import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
+import com.nimbusds.jose.jca.JCAContext;
 import com.nimbusds.jose.jwk.source.DefaultJWKSetCache;
-import com.nimbusds.jose.jwk.source.JWKSetCache;
 import com.nimbusds.jose.jwk.source.JWKSource;
-import com.nimbusds.jose.jwk.source.RemoteJWKSet;
 import com.nimbusds.jose.proc.JWSKeySelector;
 import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.JWSVerifierFactory;
 import com.nimbusds.jose.proc.SecurityContext;
 import com.nimbusds.jose.proc.SingleKeyJWSKeySelector;
 import com.nimbusds.jose.util.Resource;
@@ -46,6 +47,7 @@ import com.nimbusds.jwt.proc.JWTProcessor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cache.Cache;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.http.HttpHeaders;
@@ -74,18 +76,22 @@ import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestOperations;
 import org.springframework.web.client.RestTemplate;
+import top.dcenter.ums.security.common.cache.LocalTtlCache;
 import top.dcenter.ums.security.common.enums.ErrorCodeEnum;
 import top.dcenter.ums.security.jwt.JwtContext;
 import top.dcenter.ums.security.jwt.api.endpoind.service.JwkSetUriConfig;
 import top.dcenter.ums.security.jwt.api.validator.service.ReAuthService;
 import top.dcenter.ums.security.jwt.enums.JwtRefreshHandlerPolicy;
 import top.dcenter.ums.security.jwt.exception.JwtInvalidException;
+import top.dcenter.ums.security.jwt.key.JwtKey;
+import top.dcenter.ums.security.jwt.key.JwtKeyRing;
 
 import javax.crypto.SecretKey;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.security.Key;
 import java.security.interfaces.RSAPublicKey;
 import java.text.ParseException;
 import java.time.Duration;
@@ -97,8 +103,11 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
 import static top.dcenter.ums.security.common.utils.ReflectionUtil.invokeToJsonObjectMethod;
@@ -112,6 +121,8 @@ import static top.dcenter.ums.security.jwt.JwtContext.getClockSkew;
  * 2. 增加是否需要重新登录认证处理.<br>
  * 3. 增加只针对 refreshToken 的 decode 方法, 以提高效率.
  * 4. 增加只针对 刚刷新的 Jwt 无校验的 decode 方法, 以提高效率.
+ * 5. 增加已验签 {@link Jwt} 的本地缓存, 相同的 jwt 在有效期内再次 decode 时不需要重新解析与验签, 黑名单与刷新策略校验照常执行.
+ * 6. jwk set uri 模式使用 {@link RefreshAheadJwkSource}, 由后台线程提前刷新 JWK set, 验签时不再同步访问 jwk set uri.
  *
  * A low-level Nimbus implementation of {@link JwtDecoder} which takes a raw Nimbus
  * configuration.
@@ -124,7 +135,7 @@ import static top.dcenter.ums.security.jwt.JwtContext.getClockSkew;
  */
 @SuppressWarnings("unused")
 @Slf4j
-public final class UmsNimbusJwtDecoder implements JwtDecoder {
+public final class UmsNimbusJwtDecoder implements JwtDecoder, DisposableBean {
 
 	private static final String DECODING_ERROR_MESSAGE_TEMPLATE = "An error occurred while attempting to decode the Jwt: %s";
 
@@ -162,6 +173,22 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 	@Setter
 	private ReAuthService reAuthService;
 
+	/**
+	 * 已验签的 {@link Jwt} 缓存, key 为 jwt 字符串, 缓存到 jwt 过期为止, 为 null 时不缓存.
+	 * 命中时验签密钥集合的版本号与缓存时不同(密钥被删除/到达 expireAt/JWK set 轮换)则重新验签.
+	 */
+	private volatile LocalTtlCache<String, VerifiedJwt> verifiedJwtCache;
+
+	/**
+	 * 验签密钥集合的版本号, 密钥环或 jwk set uri 模式时有值, 其他模式(单一固定密钥)为 null.
+	 */
+	private LongSupplier keySetVersion;
+
+	/**
+	 * jwk set uri 模式时的 {@link RefreshAheadJwkSource}, 用于关闭后台刷新线程, 其他模式为 null.
+	 */
+	private RefreshAheadJwkSource refreshAheadJwkSource;
+
 	/**
 	 * Configures a {@link UmsNimbusJwtDecoder} with the given parameters
 	 * @param jwtProcessor              the {@link JWTProcessor} to use
@@ -198,6 +225,19 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 	public void setClaimSetConverter(Converter<Map<String, Object>, Map<String, Object>> claimSetConverter) {
 		Assert.notNull(claimSetConverter, "claimSetConverter cannot be null");
 		this.claimSetConverter = claimSetConverter;
+		// claimSetConverter 变更, 已缓存的 Jwt 失效
+		LocalTtlCache<String, VerifiedJwt> cache = this.verifiedJwtCache;
+		if (nonNull(cache)) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * 设置已验签 {@link Jwt} 的本地缓存最大数量, 小于等于 0 时不缓存.
+	 * @param maxSize   已验签 {@link Jwt} 的本地缓存最大数量
+	 */
+	public void setVerifiedJwtCacheMaxSize(int maxSize) {
+		this.verifiedJwtCache = maxSize > 0 ? new LocalTtlCache<>(maxSize) : null;
 	}
 
 	/**
@@ -208,12 +248,7 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 	 */
 	@Override
 	public Jwt decode(String token) throws JwtException {
-		JWT jwt = parse(token);
-		if (jwt instanceof PlainJWT) {
-			log.trace("Failed to decode unsigned token");
-			throw new BadJwtException("Unsupported algorithm of " + jwt.getHeader().getAlgorithm());
-		}
-		Jwt createdJwt = createJwt(token, jwt);
+		Jwt createdJwt = getVerifiedJwt(token);
 		// AUTO_RENEW 策略时 前置校验
 		if (JwtRefreshHandlerPolicy.AUTO_RENEW.equals(this.refreshHandlerPolicy)) {
 			createdJwt = validateJwt(createdJwt);
@@ -236,12 +271,7 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 	 * @throws JwtException JwtException
 	 */
 	public Jwt decodeNotRefreshToken(String token) throws JwtException {
-		JWT jwt = parse(token);
-		if (jwt instanceof PlainJWT) {
-			log.trace("Failed to decode unsigned token");
-			throw new BadJwtException("Unsupported algorithm of " + jwt.getHeader().getAlgorithm());
-		}
-		Jwt createdJwt = createJwt(token, jwt);
+		Jwt createdJwt = getVerifiedJwt(token);
 		createdJwt = validateJwt(createdJwt);
 		return createdJwt;
 	}
@@ -328,6 +358,45 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 		}
 	}
 
+	/**
+	 * 从已验签 {@link Jwt} 的缓存中获取, 不存在时解析 token 并验签, 验签成功后缓存到 jwt 过期为止.
+	 * 缓存命中但验签密钥集合的版本号已变化时重新验签, 因此删除密钥或密钥到达 expireAt 后, 此密钥签名的 jwt 不会再从缓存中通过.
+	 * 注意: 返回的 {@link Jwt} 只是验签通过, 未做黑名单与 {@link #jwtValidator} 校验.
+	 * @param token the JWT value
+	 * @return 验签通过的 {@link Jwt}
+	 * @throws JwtException JwtException
+	 */
+	@NonNull
+	Jwt getVerifiedJwt(String token) throws JwtException {
+		final LocalTtlCache<String, VerifiedJwt> cache = this.verifiedJwtCache;
+		// 在验签前读取版本号, 验签期间密钥集合发生变化时, 下次命中会重新验签
+		final long version = isNull(this.keySetVersion) ? 0L : this.keySetVersion.getAsLong();
+		if (nonNull(cache) && nonNull(token)) {
+			VerifiedJwt cachedJwt = cache.get(token);
+			if (nonNull(cachedJwt)) {
+				if (cachedJwt.keySetVersion == version) {
+					return cachedJwt.jwt;
+				}
+				cache.evict(token);
+			}
+		}
+		JWT jwt = parse(token);
+		if (jwt instanceof PlainJWT) {
+			log.trace("Failed to decode unsigned token");
+			throw new BadJwtException("Unsupported algorithm of " + jwt.getHeader().getAlgorithm());
+		}
+		Jwt createdJwt = createJwt(token, jwt);
+		if (isNull(cache)) {
+			return createdJwt;
+		}
+		Instant expiresAt = createdJwt.getExpiresAt();
+		if (nonNull(expiresAt)) {
+			// 缓存到 jwt 过期为止, 过期后的校验交给 jwtValidator
+			cache.put(token, new VerifiedJwt(createdJwt, version), expiresAt.toEpochMilli() - System.currentTimeMillis());
+		}
+		return createdJwt;
+	}
+
 	private JWT parse(String token) {
 		try {
 			return JWTParser.parse(token);
@@ -450,6 +519,26 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 		return "Unable to validate Jwt";
 	}
 
+	@Override
+	public void destroy() {
+		if (nonNull(this.refreshAheadJwkSource)) {
+			this.refreshAheadJwkSource.destroy();
+		}
+	}
+
+	/**
+	 * 已验签的 {@link Jwt} 及验签时的密钥集合版本号
+	 */
+	private static final class VerifiedJwt {
+		private final Jwt jwt;
+		private final long keySetVersion;
+
+		private VerifiedJwt(Jwt jwt, long keySetVersion) {
+			this.jwt = jwt;
+			this.keySetVersion = keySetVersion;
+		}
+	}
+
 	/**
 	 * Use the given <a href="https://tools.ietf.org/html/rfc7517#section-5">JWK Set</a>
 	 * uri.
@@ -486,6 +575,21 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 		return new PublicKeyJwtDecoderBuilder(key, refreshHandlerPolicy, remainingRefreshInterval, isReAuth);
 	}
 
+	/**
+	 * Use the given {@link JwtKeyRing} to validate JWTs, 根据 JWS header 的 kid 选择预先构建好的验签器
+	 * @param keyRing                   the {@link JwtKeyRing} to use
+	 * @param refreshHandlerPolicy      {@link Jwt} 刷新处理策略
+	 * @param remainingRefreshInterval  JWT 剩余的有效期间隔小于此值后自动刷新 JWT, 此配置在 {@link JwtRefreshHandlerPolicy#AUTO_RENEW} 时有效
+	 * @param isReAuth                  是否需要重新认证检查
+	 * @return a {@link KeyRingJwtDecoderBuilder} for further configurations
+	 */
+	public static KeyRingJwtDecoderBuilder withKeyRing(JwtKeyRing keyRing,
+	                                                   JwtRefreshHandlerPolicy refreshHandlerPolicy,
+	                                                   Duration remainingRefreshInterval,
+	                                                   Boolean isReAuth) {
+		return new KeyRingJwtDecoderBuilder(keyRing, refreshHandlerPolicy, remainingRefreshInterval, isReAuth);
+	}
+
 	/**
 	 * Use the given {@code SecretKey} to validate the MAC on a JSON Web Signature (JWS).
 	 * @param secretKey                 the {@code SecretKey} used to validate the MAC
@@ -521,6 +625,16 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 
 		private Cache cache;
 
+		/**
+		 * 未匹配到 kid 时触发后台刷新 JWK set 的最小间隔, 默认: 30 秒
+		 */
+		private Duration unknownKidRefreshInterval = Duration.ofSeconds(30);
+
+		/**
+		 * 未匹配到 kid 且触发了刷新时, 验签线程等待刷新结果的最长时间, 默认: 1 秒
+		 */
+		private Duration unknownKidWaitTimeout = Duration.ofSeconds(1);
+
 		private Consumer<ConfigurableJWTProcessor<SecurityContext>> jwtProcessorCustomizer;
 
 		private JwkSetUriJwtDecoderBuilder(String jwkSetUri,
@@ -596,6 +710,28 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 			return this;
 		}
 
+		/**
+		 * 未匹配到 kid 时触发后台刷新 JWK set 的最小间隔, 默认: 30 秒
+		 * @param unknownKidRefreshInterval 未匹配到 kid 时触发后台刷新 JWK set 的最小间隔
+		 * @return a {@link JwkSetUriJwtDecoderBuilder} for further configurations
+		 */
+		public JwkSetUriJwtDecoderBuilder unknownKidRefreshInterval(Duration unknownKidRefreshInterval) {
+			Assert.notNull(unknownKidRefreshInterval, "unknownKidRefreshInterval cannot be null");
+			this.unknownKidRefreshInterval = unknownKidRefreshInterval;
+			return this;
+		}
+
+		/**
+		 * 未匹配到 kid 且触发了刷新时, 验签线程等待刷新结果的最长时间, 默认: 1 秒, 为 0 时不等待
+		 * @param unknownKidWaitTimeout 未匹配到 kid 且触发了刷新时, 验签线程等待刷新结果的最长时间
+		 * @return a {@link JwkSetUriJwtDecoderBuilder} for further configurations
+		 */
+		public JwkSetUriJwtDecoderBuilder unknownKidWaitTimeout(Duration unknownKidWaitTimeout) {
+			Assert.notNull(unknownKidWaitTimeout, "unknownKidWaitTimeout cannot be null");
+			this.unknownKidWaitTimeout = unknownKidWaitTimeout;
+			return this;
+		}
+
 		/**
 		 * Use the given {@link Consumer} to customize the {@link JWTProcessor
 		 * ConfigurableJWTProcessor} before passing it to the build
@@ -623,26 +759,24 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 			return new JWSVerificationKeySelector<>(jwsAlgorithms, jwkSource);
 		}
 
-		JWKSource<SecurityContext> jwkSource(ResourceRetriever jwkSetRetriever) {
-			if (this.cache == null) {
-				return new RemoteJWKSet<>(toURL(this.jwkSetUri), jwkSetRetriever);
-			}
-			ResourceRetriever cachingJwkSetRetriever = new CachingResourceRetriever(this.cache, jwkSetRetriever);
+		RefreshAheadJwkSource jwkSource(ResourceRetriever jwkSetRetriever) {
+			Duration refreshInterval = Duration.ofMinutes(DefaultJWKSetCache.DEFAULT_REFRESH_TIME_MINUTES);
+			Duration lifespan = Duration.ofMinutes(DefaultJWKSetCache.DEFAULT_LIFESPAN_MINUTES);
 			if (nonNull(this.jwkSetUriConfig)) {
-				return new RemoteJWKSet<>(toURL(this.jwkSetUri), cachingJwkSetRetriever,
-				                          new DefaultJWKSetCache(this.jwkSetUriConfig.lifespan(),
-				                                                 this.jwkSetUriConfig.refreshTime(),
-				                                                 this.jwkSetUriConfig.timeUnit()));
-			}
-			else {
-				return new RemoteJWKSet<>(toURL(this.jwkSetUri), cachingJwkSetRetriever, new DefaultJWKSetCache());
+				TimeUnit timeUnit = this.jwkSetUriConfig.timeUnit();
+				refreshInterval = toDuration(this.jwkSetUriConfig.refreshTime(), timeUnit);
+				lifespan = toDuration(this.jwkSetUriConfig.lifespan(), timeUnit);
+				// 没有刷新时间时, 在 JWK set 过期时刷新
+				if (isNull(refreshInterval)) {
+					refreshInterval = lifespan;
+				}
 			}
+			return new RefreshAheadJwkSource(toURL(this.jwkSetUri), jwkSetRetriever, this.cache,
+			                                 refreshInterval, lifespan, this.unknownKidRefreshInterval,
+			                                 this.unknownKidWaitTimeout);
 		}
 
-		JWTProcessor<SecurityContext> processor() {
-			ResourceRetriever jwkSetRetriever = new RestOperationsResourceRetriever(this.restOperations,
-			                                                                        this.jwkSetUriConfig);
-			JWKSource<SecurityContext> jwkSource = jwkSource(jwkSetRetriever);
+		JWTProcessor<SecurityContext> processor(JWKSource<SecurityContext> jwkSource) {
 			ConfigurableJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
 			jwtProcessor.setJWSKeySelector(jwsKeySelector(jwkSource));
 			// Spring Security validates the claim set independent from Nimbus
@@ -657,7 +791,28 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 		 * @return the configured {@link UmsNimbusJwtDecoder}
 		 */
 		public UmsNimbusJwtDecoder build() {
-			return new UmsNimbusJwtDecoder(processor(), refreshHandlerPolicy, remainingRefreshInterval, isReAuth);
+			ResourceRetriever jwkSetRetriever = new RestOperationsResourceRetriever(this.restOperations,
+			                                                                        this.jwkSetUriConfig);
+			RefreshAheadJwkSource jwkSource = jwkSource(jwkSetRetriever);
+			UmsNimbusJwtDecoder jwtDecoder = new UmsNimbusJwtDecoder(processor(jwkSource), refreshHandlerPolicy,
+			                                                         remainingRefreshInterval, isReAuth);
+			jwtDecoder.refreshAheadJwkSource = jwkSource;
+			jwtDecoder.keySetVersion = jwkSource::getVersion;
+			return jwtDecoder;
+		}
+
+		/**
+		 * 转换为 {@link Duration}, amount 为负数时返回 null
+		 * @param amount    时间数量
+		 * @param timeUnit  时间单位
+		 * @return  {@link Duration}, amount 为负数时返回 null
+		 */
+		@Nullable
+		private static Duration toDuration(long amount, @Nullable TimeUnit timeUnit) {
+			if (amount < 0L || isNull(timeUnit)) {
+				return null;
+			}
+			return Duration.ofMillis(timeUnit.toMillis(amount));
 		}
 
 		@SuppressWarnings("AlibabaLowerCamelCaseVariableNaming")
@@ -670,57 +825,6 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 			}
 		}
 
-		private static class NoOpJwkSetCache implements JWKSetCache {
-
-			@Override
-			public void put(JWKSet jwkSet) {
-			}
-
-			@Override
-			public JWKSet get() {
-				return null;
-			}
-
-			@Override
-			public boolean requiresRefresh() {
-				return true;
-			}
-
-		}
-
-		private static class CachingResourceRetriever implements ResourceRetriever {
-
-			private final Cache cache;
-
-			private final ResourceRetriever resourceRetriever;
-
-			CachingResourceRetriever(Cache cache, ResourceRetriever resourceRetriever) {
-				this.cache = cache;
-				this.resourceRetriever = resourceRetriever;
-			}
-
-			@Override
-			public Resource retrieveResource(URL url) throws IOException {
-				try {
-					String jwkSet = this.cache.get(url.toString(),
-							() -> this.resourceRetriever.retrieveResource(url).getContent());
-					//noinspection ConstantConditions
-					return new Resource(jwkSet, "UTF-8");
-				}
-				catch (Cache.ValueRetrievalException ex) {
-					Throwable thrownByValueLoader = ex.getCause();
-					if (thrownByValueLoader instanceof IOException) {
-						throw (IOException) thrownByValueLoader;
-					}
-					throw new IOException(thrownByValueLoader);
-				}
-				catch (Exception ex) {
-					throw new IOException(ex);
-				}
-			}
-
-		}
-
 		private static class RestOperationsResourceRetriever implements ResourceRetriever {
 
 			private static final MediaType APPLICATION_JWK_SET_JSON = new MediaType("application", "jwk-set+json");
@@ -858,6 +962,104 @@ public final class UmsNimbusJwtDecoder implements JwtDecoder {
 
 	}
 
+	/**
+	 * A builder for creating {@link UmsNimbusJwtDecoder} instances based on a {@link JwtKeyRing}.
+	 */
+	public static final class KeyRingJwtDecoderBuilder {
+
+		private final JwtKeyRing keyRing;
+		private final JwtRefreshHandlerPolicy refreshHandlerPolicy;
+		private final Duration remainingRefreshInterval;
+		private final Boolean isReAuth;
+
+		private Consumer<ConfigurableJWTProcessor<SecurityContext>> jwtProcessorCustomizer;
+
+		private KeyRingJwtDecoderBuilder(JwtKeyRing keyRing,
+		                                 JwtRefreshHandlerPolicy refreshHandlerPolicy,
+		                                 Duration remainingRefreshInterval,
+		                                 Boolean isReAuth) {
+			Assert.notNull(keyRing, "keyRing cannot be null");
+			Assert.notNull(refreshHandlerPolicy, "refreshHandlerPolicy cannot be null");
+			Assert.notNull(remainingRefreshInterval, "remainingRefreshInterval cannot be null");
+			Assert.notNull(isReAuth, "isReAuth cannot be null");
+			this.keyRing = keyRing;
+			this.refreshHandlerPolicy = refreshHandlerPolicy;
+			this.remainingRefreshInterval = remainingRefreshInterval;
+			this.isReAuth = isReAuth;
+			this.jwtProcessorCustomizer = (processor) -> {
+			};
+		}
+
+		/**
+		 * Use the given {@link Consumer} to customize the {@link JWTProcessor
+		 * ConfigurableJWTProcessor} before passing it to the build
+		 * {@link UmsNimbusJwtDecoder}.
+		 * @param jwtProcessorCustomizer the callback used to alter the processor
+		 * @return a {@link KeyRingJwtDecoderBuilder} for further configurations
+		 */
+		public KeyRingJwtDecoderBuilder jwtProcessorCustomizer(
+				Consumer<ConfigurableJWTProcessor<SecurityContext>> jwtProcessorCustomizer) {
+			Assert.notNull(jwtProcessorCustomizer, "jwtProcessorCustomizer cannot be null");
+			this.jwtProcessorCustomizer = jwtProcessorCustomizer;
+			return this;
+		}
+
+		JWTProcessor<SecurityContext> processor() {
+			DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+			jwtProcessor.setJWSKeySelector((header, context) -> this.keyRing.selectJwsKeys(header));
+			jwtProcessor.setJWSVerifierFactory(new KeyRingJwsVerifierFactory(this.keyRing));
+			// Spring Security validates the claim set independent from Nimbus
+			jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+			});
+			this.jwtProcessorCustomizer.accept(jwtProcessor);
+			return jwtProcessor;
+		}
+
+		/**
+		 * Build the configured {@link UmsNimbusJwtDecoder}.
+		 * @return the configured {@link UmsNimbusJwtDecoder}
+		 */
+		public UmsNimbusJwtDecoder build() {
+			UmsNimbusJwtDecoder jwtDecoder = new UmsNimbusJwtDecoder(processor(), refreshHandlerPolicy,
+			                                                         remainingRefreshInterval, isReAuth);
+			jwtDecoder.keySetVersion = this.keyRing::getVersion;
+			return jwtDecoder;
+		}
+
+		/**
+		 * 返回 {@link JwtKeyRing} 中预先构建好的 {@link JWSVerifier}, 不是密钥环中的公钥时委托给 {@link DefaultJWSVerifierFactory}
+		 */
+		private static class KeyRingJwsVerifierFactory implements JWSVerifierFactory {
+
+			private final JwtKeyRing keyRing;
+			private final DefaultJWSVerifierFactory delegate = new DefaultJWSVerifierFactory();
+
+			private KeyRingJwsVerifierFactory(JwtKeyRing keyRing) {
+				this.keyRing = keyRing;
+			}
+
+			@Override
+			public JWSVerifier createJWSVerifier(JWSHeader header, Key key) throws JOSEException {
+				JwtKey jwtKey = this.keyRing.getKeyByPublicKey(key);
+				if (nonNull(jwtKey) && jwtKey.getAlgorithm().equals(header.getAlgorithm())) {
+					return jwtKey.getVerifier();
+				}
+				return this.delegate.createJWSVerifier(header, key);
+			}
+
+			@Override
+			public Set<JWSAlgorithm> supportedJWSAlgorithms() {
+				return this.delegate.supportedJWSAlgorithms();
+			}
+
+			@Override
+			public JCAContext getJCAContext() {
+				return this.delegate.getJCAContext();
+			}
+		}
+
+	}
+
 	/**
 	 * A builder for creating {@link UmsNimbusJwtDecoder} instances based on a
 	 * {@code SecretKey}.
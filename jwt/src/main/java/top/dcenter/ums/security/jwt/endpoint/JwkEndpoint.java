@@ -30,26 +30,37 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
 import top.dcenter.ums.security.common.enums.ErrorCodeEnum;
 import top.dcenter.ums.security.common.utils.JsonUtil;
 import top.dcenter.ums.security.common.utils.ReflectionUtil;
 import top.dcenter.ums.security.jwt.api.endpoind.service.JwkEndpointPermissionService;
 import top.dcenter.ums.security.jwt.exception.JwkSetUriAccessDeniedException;
+import top.dcenter.ums.security.jwt.key.JwtKeyRing;
 
 import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.nonNull;
 
 import static top.dcenter.ums.security.core.mdc.utils.MdcUtil.getMdcTraceId;
 
@@ -66,7 +77,19 @@ import static top.dcenter.ums.security.core.mdc.utils.MdcUtil.getMdcTraceId;
 public class JwkEndpoint implements InitializingBean, ApplicationContextAware {
 
     public static final String JWS_SET_URI = "/.well-known/jwks.json";
+    /**
+     * 单密钥时预先生成的 jws set json string, 使用密钥环时为 null
+     */
+    @Nullable
     private final String jwsSetJsonString;
+    @Nullable
+    private final String jwsSetEtag;
+    /**
+     * 密钥环, 单密钥时为 null
+     */
+    @Nullable
+    private final JwtKeyRing keyRing;
+    private final CacheControl cacheControl;
     private final JwkEndpointPermissionService jwkEndpointPermissionService;
 
     private ApplicationContext applicationContext;
@@ -101,14 +124,46 @@ public class JwkEndpoint implements InitializingBean, ApplicationContextAware {
             publicKey.put("kid", kid);
         }
         this.jwsSetJsonString = JsonUtil.toJsonString(jwk);
+        this.jwsSetEtag = "\"" + DigestUtils.md5DigestAsHex(this.jwsSetJsonString.getBytes(StandardCharsets.UTF_8)) + "\"";
+        this.keyRing = null;
+        this.cacheControl = CacheControl.noCache();
+    }
+
+    /**
+     * 曝露 {@link JwtKeyRing} 中所有未失效密钥的公钥, 响应带有 ETag 与 Cache-Control
+     * @param keyRing                       密钥环
+     * @param jwkEndpointPermissionService  jwk-set-uri 的权限服务
+     * @param jwksMaxAge                    Cache-Control 的 max-age
+     */
+    public JwkEndpoint(@NonNull JwtKeyRing keyRing, @NonNull JwkEndpointPermissionService jwkEndpointPermissionService,
+                       @NonNull Duration jwksMaxAge) {
+        this.keyRing = keyRing;
+        this.jwkEndpointPermissionService = jwkEndpointPermissionService;
+        this.cacheControl = CacheControl.maxAge(jwksMaxAge.getSeconds(), TimeUnit.SECONDS);
+        this.jwsSetJsonString = null;
+        this.jwsSetEtag = null;
     }
 
     @RequestMapping(path = JWS_SET_URI, method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE})
-    public String getKey(HttpServletRequest request) {
+    public ResponseEntity<String> getKey(HttpServletRequest request) {
         if (!this.jwkEndpointPermissionService.hasPermission(request)) {
             throw new JwkSetUriAccessDeniedException(ErrorCodeEnum.NOT_FOUND, getMdcTraceId());
         }
-        return this.jwsSetJsonString;
+        String json;
+        String etag;
+        if (nonNull(this.keyRing)) {
+            json = this.keyRing.getJwkSetJson();
+            etag = this.keyRing.getJwkSetEtag();
+        }
+        else {
+            json = this.jwsSetJsonString;
+            etag = this.jwsSetEtag;
+        }
+        //noinspection ConstantConditions
+        if (new ServletWebRequest(request).checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(this.cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(this.cacheControl).body(json);
     }
 
     @Override
@@ -22,13 +22,14 @@ import java.io.InputStream;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyStore;
+import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.Certificate;
 import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.spec.RSAPublicKeySpec;
 
 /**
- * RSA
+ * RSA 或 EC(ES256/ES384/ES512) 密钥对
  * @author Dave Syer
  * @author Tim Ysewyn
  *
@@ -79,14 +80,15 @@ public class KeyStoreKeyFactory {
 					}
 				}
 			}
-			RSAPrivateCrtKey key = (RSAPrivateCrtKey) store.getKey(alias, password);
+			PrivateKey key = (PrivateKey) store.getKey(alias, password);
 			Certificate certificate = store.getCertificate(alias);
 			PublicKey publicKey = null;
 			if (certificate != null) {
 				publicKey = certificate.getPublicKey();
-			} else if (key != null) {
-				RSAPublicKeySpec spec = new RSAPublicKeySpec(key.getModulus(),
-						key.getPublicExponent());
+			} else if (key instanceof RSAPrivateCrtKey) {
+				RSAPrivateCrtKey rsaKey = (RSAPrivateCrtKey) key;
+				RSAPublicKeySpec spec = new RSAPublicKeySpec(rsaKey.getModulus(),
+						rsaKey.getPublicExponent());
 				publicKey = KeyFactory.getInstance("RSA").generatePublic(spec);
 			}
 			return new KeyPair(publicKey, key);
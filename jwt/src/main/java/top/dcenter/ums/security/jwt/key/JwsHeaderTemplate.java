@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.jwt.key;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import lombok.Getter;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 预先构建的不可变 JWS header 模板(alg/typ/kid), 每个 kid/算法只构建一次:<br>
+ * 1. {@link #getJwsHeader()} 通过 base64url 解析得到, 已缓存 base64url 编码后的 header, 签名与序列化时不再重复序列化 header.<br>
+ * 2. {@link #getHeaders()} 为对应的不可变 header Map, 创建 {@link Jwt} 时直接使用, 不再反射调用 {@code toJSONObject()}.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 23:10
+ */
+@Getter
+public final class JwsHeaderTemplate {
+
+    private static final String HEADER_ALG = "alg";
+    private static final String HEADER_TYP = "typ";
+    private static final String HEADER_KID = "kid";
+
+    private final JWSAlgorithm algorithm;
+    @Nullable
+    private final String kid;
+    private final JWSHeader jwsHeader;
+    /**
+     * 与 {@link #jwsHeader} 对应的不可变 header Map
+     */
+    private final Map<String, Object> headers;
+
+    private JwsHeaderTemplate(@NonNull JWSAlgorithm algorithm, @Nullable String kid) {
+        this.algorithm = algorithm;
+        this.kid = kid;
+        JWSHeader.Builder builder = new JWSHeader.Builder(algorithm).type(JOSEObjectType.JWT);
+        if (hasText(kid)) {
+            builder.keyID(kid);
+        }
+        try {
+            this.jwsHeader = JWSHeader.parse(builder.build().toBase64URL());
+        }
+        catch (ParseException e) {
+            throw new IllegalStateException("创建 JWS header 模板失败: " + e.getMessage(), e);
+        }
+        Map<String, Object> headerMap = new LinkedHashMap<>(4);
+        headerMap.put(HEADER_ALG, algorithm.getName());
+        headerMap.put(HEADER_TYP, JOSEObjectType.JWT.getType());
+        if (hasText(kid)) {
+            headerMap.put(HEADER_KID, kid);
+        }
+        this.headers = Collections.unmodifiableMap(headerMap);
+    }
+
+    /**
+     * 创建 JWS header 模板
+     * @param algorithm     签名算法
+     * @param kid           key id, 为 null 或空字符串时 header 中不设置 kid
+     * @return  {@link JwsHeaderTemplate}
+     */
+    @NonNull
+    public static JwsHeaderTemplate of(@NonNull JWSAlgorithm algorithm, @Nullable String kid) {
+        return new JwsHeaderTemplate(algorithm, kid);
+    }
+
+    /**
+     * 此模板是否与指定的签名算法与 kid 匹配
+     * @param algorithmName 签名算法名称, 如: RS256
+     * @param kid           key id
+     * @return  匹配返回 true
+     */
+    public boolean matches(@NonNull String algorithmName, @Nullable String kid) {
+        return this.algorithm.getName().equals(algorithmName) && Objects.equals(this.kid, kid);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.jwt.key;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import lombok.Getter;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * {@link JwtKeyRing} 中的一个密钥, 创建时即构建好 {@link JWSSigner}/{@link JWSVerifier} 与公钥 {@link JWK},
+ * 签名与验签时不需要再重新构建密钥对象.<br>
+ * 1. activeFrom 为 null 时表示此密钥只用于验签(verify-only), 否则从 activeFrom 开始可用于签名,
+ *    多个可签名的密钥时取 activeFrom 最大的密钥签名.<br>
+ * 2. expireAt 不为 null 时, 从 expireAt 开始此密钥不再用于签名与验签, 也不再出现在 JWKS 中.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 19:10
+ */
+@Getter
+public final class JwtKey {
+
+    /**
+     * key id, 只有主密钥(兼容没有配置 kid 的旧配置)可以为 null
+     */
+    @Nullable
+    private final String kid;
+    private final JWSAlgorithm algorithm;
+    private final Key publicKey;
+    /**
+     * 签名器, 只用于验签的密钥(没有私钥)时为 null
+     */
+    @Nullable
+    private final JWSSigner signer;
+    private final JWSVerifier verifier;
+    /**
+     * 只包含公钥的 {@link JWK}, 用于 JWKS
+     */
+    private final JWK publicJwk;
+    /**
+     * 开始用于签名的时间, 为 null 时表示只用于验签
+     */
+    @Nullable
+    private final Instant activeFrom;
+    /**
+     * 失效时间, 为 null 时表示永不失效
+     */
+    @Nullable
+    private final Instant expireAt;
+    /**
+     * 用于 {@code JWSKeySelector} 的返回值, 避免每次验签时创建 list
+     */
+    private final List<Key> publicKeys;
+    /**
+     * 预先构建的 JWS header 模板, 签名时不再重新构建与序列化 header
+     */
+    private final JwsHeaderTemplate headerTemplate;
+
+    private JwtKey(@Nullable String kid, @NonNull JWSAlgorithm algorithm, @NonNull Key publicKey,
+                   @Nullable JWSSigner signer, @NonNull JWSVerifier verifier, @NonNull JWK publicJwk,
+                   @Nullable Instant activeFrom, @Nullable Instant expireAt) {
+        this.kid = kid;
+        this.algorithm = algorithm;
+        this.publicKey = publicKey;
+        this.signer = signer;
+        this.verifier = verifier;
+        this.publicJwk = publicJwk;
+        this.activeFrom = activeFrom;
+        this.expireAt = expireAt;
+        this.publicKeys = Collections.singletonList(publicKey);
+        this.headerTemplate = JwsHeaderTemplate.of(algorithm, kid);
+    }
+
+    /**
+     * 根据密钥对的类型创建 RSA 或 EC 密钥
+     * @param kid           key id, 为 null 时 JWS header 中不设置 kid
+     * @param keyPair       RSA 或 EC 密钥对, 私钥为 null 时只用于验签
+     * @param algorithm     签名算法, RSA 密钥为 RS256, RS384, RS512 中的一个, EC 密钥为 ES256, ES384, ES512 中的一个
+     * @param activeFrom    开始用于签名的时间, 为 null 时表示只用于验签
+     * @param expireAt      失效时间, 为 null 时表示永不失效
+     * @return  {@link JwtKey}
+     * @throws JOSEException 创建签名器或验签器异常
+     */
+    @NonNull
+    public static JwtKey of(@Nullable String kid, @NonNull KeyPair keyPair, @NonNull JWSAlgorithm algorithm,
+                            @Nullable Instant activeFrom, @Nullable Instant expireAt) throws JOSEException {
+        Assert.notNull(keyPair, "keyPair cannot be null");
+        if (keyPair.getPublic() instanceof ECPublicKey) {
+            return ec(kid, keyPair, algorithm, activeFrom, expireAt);
+        }
+        if (keyPair.getPublic() instanceof RSAPublicKey) {
+            return rsa(kid, keyPair, algorithm, activeFrom, expireAt);
+        }
+        throw new JOSEException("不支持的密钥类型: " + keyPair.getPublic().getAlgorithm());
+    }
+
+    /**
+     * 创建 EC 密钥, 签名速度与 JWT 长度均优于 RSA 密钥
+     * @param kid           key id, 为 null 时 JWS header 中不设置 kid
+     * @param keyPair       EC 密钥对, 私钥为 null 时只用于验签
+     * @param algorithm     签名算法, ES256(P-256), ES384(P-384), ES512(P-521) 中的一个, 必须与密钥的曲线匹配
+     * @param activeFrom    开始用于签名的时间, 为 null 时表示只用于验签
+     * @param expireAt      失效时间, 为 null 时表示永不失效
+     * @return  {@link JwtKey}
+     * @throws JOSEException 创建签名器或验签器异常, 或签名算法与密钥的曲线不匹配
+     */
+    @NonNull
+    public static JwtKey ec(@Nullable String kid, @NonNull KeyPair keyPair, @NonNull JWSAlgorithm algorithm,
+                            @Nullable Instant activeFrom, @Nullable Instant expireAt) throws JOSEException {
+        Assert.notNull(keyPair, "keyPair cannot be null");
+        Assert.isTrue(JWSAlgorithm.Family.EC.contains(algorithm), () -> "EC 密钥不支持签名算法: " + algorithm);
+        ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+        Curve curve = Curve.forECParameterSpec(publicKey.getParams());
+        if (isNull(curve) || !Curve.forJWSAlgorithm(algorithm).contains(curve)) {
+            throw new JOSEException("EC 密钥的曲线 " + curve + " 与签名算法 " + algorithm + " 不匹配");
+        }
+        ECKey publicJwk = new ECKey.Builder(curve, publicKey).keyID(kid)
+                                                            .keyUse(KeyUse.SIGNATURE)
+                                                            .algorithm(algorithm)
+                                                            .build();
+        JWSSigner signer = null;
+        if (keyPair.getPrivate() instanceof ECPrivateKey && nonNull(activeFrom)) {
+            signer = new ECDSASigner((ECPrivateKey) keyPair.getPrivate());
+        }
+        return new JwtKey(kid, algorithm, publicKey, signer, new ECDSAVerifier(publicKey),
+                          publicJwk, activeFrom, expireAt);
+    }
+
+    /**
+     * 创建 RSA 密钥
+     * @param kid           key id, 为 null 时 JWS header 中不设置 kid
+     * @param keyPair       RSA 密钥对, 私钥为 null 时只用于验签
+     * @param algorithm     签名算法, RS256, RS384, RS512 中的一个
+     * @param activeFrom    开始用于签名的时间, 为 null 时表示只用于验签
+     * @param expireAt      失效时间, 为 null 时表示永不失效
+     * @return  {@link JwtKey}
+     * @throws JOSEException 创建签名器或验签器异常
+     */
+    @NonNull
+    public static JwtKey rsa(@Nullable String kid, @NonNull KeyPair keyPair, @NonNull JWSAlgorithm algorithm,
+                             @Nullable Instant activeFrom, @Nullable Instant expireAt) throws JOSEException {
+        Assert.notNull(keyPair, "keyPair cannot be null");
+        Assert.isTrue(JWSAlgorithm.Family.RSA.contains(algorithm), () -> "RSA 密钥不支持签名算法: " + algorithm);
+        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+        RSAKey publicJwk = new RSAKey.Builder(publicKey).keyID(kid)
+                                                        .keyUse(KeyUse.SIGNATURE)
+                                                        .algorithm(algorithm)
+                                                        .build();
+        JWSSigner signer = null;
+        if (nonNull(keyPair.getPrivate()) && nonNull(activeFrom)) {
+            signer = new RSASSASigner(keyPair.getPrivate());
+        }
+        return new JwtKey(kid, algorithm, publicKey, signer, new RSASSAVerifier(publicKey),
+                          publicJwk, activeFrom, expireAt);
+    }
+
+    /**
+     * @param nowMillis 当前时间戳(毫秒)
+     * @return 是否已失效
+     */
+    public boolean isExpired(long nowMillis) {
+        return nonNull(expireAt) && expireAt.toEpochMilli() <= nowMillis;
+    }
+
+    /**
+     * @param nowMillis 当前时间戳(毫秒)
+     * @return 当前是否可用于签名
+     */
+    public boolean isSignable(long nowMillis) {
+        return nonNull(signer) && nonNull(activeFrom) && activeFrom.toEpochMilli() <= nowMillis && !isExpired(nowMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "JwtKey{kid='" + kid + "', algorithm=" + algorithm + ", activeFrom=" + activeFrom
+                + ", expireAt=" + expireAt + "}";
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.jwt.key;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.ReflectionUtils;
+import top.dcenter.ums.security.common.utils.JsonUtil;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * JWT 密钥环, 支持多个不同 kid 的密钥同时存在, 用于不停机的密钥轮换:<br>
+ * 1. 签名: 使用当前可签名(activeFrom &lt;= now 且未失效)且 activeFrom 最大的密钥, 到达下一个密钥的 activeFrom 时自动切换,
+ *    各节点按相同的时间切换, 不需要协调.<br>
+ * 2. 验签: 根据 JWS header 的 kid O(1) 选择预先构建好的 {@link com.nimbusds.jose.JWSVerifier}, 旧密钥在失效前仍可验签,
+ *    因此轮换密钥时已签发的 JWT 不会失效.<br>
+ * 3. JWKS: 预先生成包含所有未失效密钥(包括尚未开始签名的密钥, 便于资源服务器提前缓存)公钥的 JSON 字符串与 ETag.<br>
+ * 4. 内部状态为不可变的快照, 读操作无锁, 只有在密钥变化或到达密钥的 activeFrom/expireAt 时才重建快照.<br>
+ * 5. 可验签的密钥集合发生变化(添加/删除密钥或密钥到达 expireAt)时递增 {@link #getVersion()}, 用于使已验签 JWT 的缓存失效.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 19:36
+ */
+@Slf4j
+public class JwtKeyRing {
+
+    /**
+     * {@link JWKSet#toJSONObject()} 的 {@link Method}, 增加对 nimbus-jose-jwt:9.x.x/8.x.x 的兼容性.
+     */
+    private static final Method TO_JSON_OBJECT_METHOD = ReflectionUtils.findMethod(JWKSet.class, "toJSONObject");
+
+    private final Map<String, JwtKey> keys = new LinkedHashMap<>();
+    private final Object lock = new Object();
+    private volatile Snapshot snapshot;
+
+    public JwtKeyRing(@NonNull Collection<JwtKey> keys) {
+        Assert.notEmpty(keys, "keys cannot be empty");
+        for (JwtKey key : keys) {
+            Assert.isTrue(!this.keys.containsKey(key.getKid()), () -> "kid 重复: " + key.getKid());
+            this.keys.put(key.getKid(), key);
+        }
+        this.snapshot = buildSnapshot(System.currentTimeMillis());
+    }
+
+    /**
+     * 获取当前用于签名的密钥
+     * @return 当前用于签名的密钥, 没有可签名的密钥时返回 null
+     */
+    @Nullable
+    public JwtKey getActiveKey() {
+        return snapshot().active;
+    }
+
+    /**
+     * 获取可验签密钥集合的版本号, 添加/删除密钥或密钥到达 expireAt 时递增, 只有密钥到达 activeFrom 时不变.
+     * @return  可验签密钥集合的版本号
+     */
+    public long getVersion() {
+        return snapshot().version;
+    }
+
+    /**
+     * 根据 kid 获取未失效的密钥
+     * @param kid   key id
+     * @return  未失效的密钥, 不存在或已失效时返回 null
+     */
+    @Nullable
+    public JwtKey getKey(@Nullable String kid) {
+        if (isNull(kid)) {
+            return null;
+        }
+        return snapshot().byKid.get(kid);
+    }
+
+    /**
+     * 根据 JWS header 选择验签的公钥, 用于 {@code JWSKeySelector}
+     * @param header    JWS header
+     * @return  验签的公钥, 没有匹配的公钥时返回空列表
+     */
+    @NonNull
+    public List<Key> selectJwsKeys(@NonNull JWSHeader header) {
+        Snapshot current = snapshot();
+        String kid = header.getKeyID();
+        if (isNull(kid)) {
+            // 没有 kid 时(兼容旧的 JWT), 返回所有此签名算法的公钥
+            return current.keysByAlgorithm.getOrDefault(header.getAlgorithm(), Collections.emptyList());
+        }
+        JwtKey key = current.byKid.get(kid);
+        if (isNull(key) || !key.getAlgorithm().equals(header.getAlgorithm())) {
+            return Collections.emptyList();
+        }
+        return key.getPublicKeys();
+    }
+
+    /**
+     * 根据 {@link #selectJwsKeys(JWSHeader)} 返回的公钥获取预先构建的密钥
+     * @param publicKey {@link #selectJwsKeys(JWSHeader)} 返回的公钥
+     * @return  密钥, 不是此密钥环的公钥时返回 null
+     */
+    @Nullable
+    public JwtKey getKeyByPublicKey(@NonNull Key publicKey) {
+        return snapshot().byPublicKey.get(publicKey);
+    }
+
+    /**
+     * @return 所有未失效密钥的公钥组成的 JWKS json 字符串
+     */
+    @NonNull
+    public String getJwkSetJson() {
+        return snapshot().jwkSetJson;
+    }
+
+    /**
+     * @return {@link #getJwkSetJson()} 的 ETag(带双引号)
+     */
+    @NonNull
+    public String getJwkSetEtag() {
+        return snapshot().jwkSetEtag;
+    }
+
+    /**
+     * 添加密钥, 用于运行时的密钥轮换
+     * @param key   密钥
+     */
+    public void addKey(@NonNull JwtKey key) {
+        Assert.notNull(key, "key cannot be null");
+        synchronized (lock) {
+            Assert.isTrue(!this.keys.containsKey(key.getKid()), () -> "kid 重复: " + key.getKid());
+            this.keys.put(key.getKid(), key);
+            this.snapshot = buildSnapshot(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 删除密钥, 删除后此密钥签名的 JWT 不能再通过验签
+     * @param kid   key id
+     * @return  被删除的密钥, 不存在时返回 null
+     */
+    @Nullable
+    public JwtKey removeKey(@NonNull String kid) {
+        synchronized (lock) {
+            JwtKey removed = this.keys.remove(kid);
+            if (nonNull(removed)) {
+                this.snapshot = buildSnapshot(System.currentTimeMillis());
+            }
+            return removed;
+        }
+    }
+
+    @NonNull
+    private Snapshot snapshot() {
+        Snapshot current = this.snapshot;
+        long now = System.currentTimeMillis();
+        if (now < current.nextTransitionMillis) {
+            return current;
+        }
+        synchronized (lock) {
+            current = this.snapshot;
+            if (now >= current.nextTransitionMillis) {
+                current = buildSnapshot(now);
+                this.snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    @NonNull
+    private Snapshot buildSnapshot(long now) {
+        JwtKey active = null;
+        long nextTransition = Long.MAX_VALUE;
+        Map<String, JwtKey> byKid = new HashMap<>(this.keys.size() * 2);
+        Map<Key, JwtKey> byPublicKey = new IdentityHashMap<>(this.keys.size());
+        Map<JWSAlgorithm, List<Key>> keysByAlgorithm = new HashMap<>(4);
+        List<JwtKey> validKeys = new ArrayList<>(this.keys.size());
+        for (JwtKey key : this.keys.values()) {
+            if (key.isExpired(now)) {
+                continue;
+            }
+            validKeys.add(key);
+            if (nonNull(key.getExpireAt())) {
+                nextTransition = Math.min(nextTransition, key.getExpireAt().toEpochMilli());
+            }
+            if (nonNull(key.getActiveFrom()) && key.getActiveFrom().toEpochMilli() > now) {
+                nextTransition = Math.min(nextTransition, key.getActiveFrom().toEpochMilli());
+            }
+            if (key.isSignable(now)
+                    && (isNull(active) || key.getActiveFrom().isAfter(active.getActiveFrom()))) {
+                active = key;
+            }
+        }
+
+        // 当前签名的密钥排在前面, 无 kid 的 JWT 验签时优先匹配
+        final JwtKey currentActive = active;
+        validKeys.sort(Comparator.comparing(key -> key != currentActive));
+        List<JWK> jwks = new ArrayList<>(validKeys.size());
+        for (JwtKey key : validKeys) {
+            byKid.put(key.getKid(), key);
+            byPublicKey.put(key.getPublicKey(), key);
+            keysByAlgorithm.computeIfAbsent(key.getAlgorithm(), alg -> new ArrayList<>(2)).add(key.getPublicKey());
+            jwks.add(key.getPublicJwk());
+        }
+
+        String jwkSetJson = toJwkSetJson(jwks);
+        String etag = "\"" + DigestUtils.md5DigestAsHex(jwkSetJson.getBytes(StandardCharsets.UTF_8)) + "\"";
+        if (log.isDebugEnabled()) {
+            log.debug("JWT 密钥环: 签名密钥 kid={}, 有效的密钥数量={}", nonNull(active) ? active.getKid() : null,
+                      validKeys.size());
+        }
+        // 可验签的密钥集合不变时(如只是密钥到达 activeFrom)版本号不变
+        final Snapshot previous = this.snapshot;
+        long version = 0L;
+        if (nonNull(previous)) {
+            version = isSameKeys(previous.byKid, byKid) ? previous.version : previous.version + 1;
+        }
+        return new Snapshot(active, byKid, byPublicKey, keysByAlgorithm, jwkSetJson, etag, nextTransition, version);
+    }
+
+    private static boolean isSameKeys(@NonNull Map<String, JwtKey> previous, @NonNull Map<String, JwtKey> current) {
+        if (previous.size() != current.size()) {
+            return false;
+        }
+        for (Map.Entry<String, JwtKey> entry : current.entrySet()) {
+            if (previous.get(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NonNull
+    private static String toJwkSetJson(@NonNull List<JWK> jwks) {
+        try {
+            // 改用反射方式调用, 增加对 nimbus-jose-jwt:9.x.x/8.x.x 的兼容性
+            //noinspection ConstantConditions
+            Object jwkSet = TO_JSON_OBJECT_METHOD.invoke(new JWKSet(jwks));
+            String json = JsonUtil.toJsonString(jwkSet);
+            if (isNull(json)) {
+                throw new IllegalStateException("生成 jws set json string 错误");
+            }
+            return json;
+        }
+        catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("生成 jws set json string 错误", e);
+        }
+    }
+
+    private static final class Snapshot {
+
+        @Nullable
+        private final JwtKey active;
+        private final Map<String, JwtKey> byKid;
+        private final Map<Key, JwtKey> byPublicKey;
+        private final Map<JWSAlgorithm, List<Key>> keysByAlgorithm;
+        private final String jwkSetJson;
+        private final String jwkSetEtag;
+        /**
+         * 下一个密钥开始签名或失效的时间戳(毫秒), 到达此时间时需要重建快照
+         */
+        private final long nextTransitionMillis;
+        /**
+         * 可验签密钥集合的版本号
+         */
+        private final long version;
+
+        private Snapshot(@Nullable JwtKey active, Map<String, JwtKey> byKid, Map<Key, JwtKey> byPublicKey,
+                         Map<JWSAlgorithm, List<Key>> keysByAlgorithm, String jwkSetJson, String jwkSetEtag,
+                         long nextTransitionMillis, long version) {
+            this.active = active;
+            this.byKid = byKid;
+            this.byPublicKey = byPublicKey;
+            this.keysByAlgorithm = keysByAlgorithm;
+            this.jwkSetJson = jwkSetJson;
+            this.jwkSetEtag = jwkSetEtag;
+            this.nextTransitionMillis = nextTransitionMillis;
+            this.version = version;
+        }
+    }
+}
@@ -52,6 +52,12 @@ public class JwtBlacklistProperties {
      */
     private String tokenInfoPrefix = "JWT:tokenInfo:";
 
+    /**
+     * 用户 tokenInfo 索引的前缀, 后面会添加 userId, 默认: "JWT:tokenInfoIndex:".
+     * 索引记录用户所有客户端的 tokenInfo key, 用于删除用户所有客户端的 tokenInfo, 不需要 scan 整个 redis.
+     */
+    private String tokenInfoIndexPrefix = "JWT:tokenInfoIndex:";
+
     /**
      * JWT refresh token 缓存前缀, 默认: JWT:refreshToken:
      */
@@ -67,4 +73,26 @@ public class JwtBlacklistProperties {
      */
     private String blacklistPrefix = "JWT:BLACKLIST:";
 
+    /**
+     * 是否开启 jwt 黑名单/tokenInfo 校验的本地 near-cache, 开启后稳定状态下校验 jti 不再访问 redis, 默认: false.
+     * 各节点通过 redis pub/sub({@link #nearCacheChannel}) 同步失效.
+     */
+    private Boolean nearCacheEnable = Boolean.FALSE;
+
+    /**
+     * 本地 near-cache 最大缓存数量, 默认: 100000
+     */
+    private Integer nearCacheMaxSize = 100000;
+
+    /**
+     * 本地 near-cache 中 "不在黑名单" 结果的 ttl, 默认: 30 秒.
+     * 不支持黑名单时 "tokenInfo 不存在" 结果的 ttl 同样不超过此值, 其他 "在黑名单" 结果的 ttl 为 jwt 的剩余有效期.
+     */
+    private Duration nearCacheNegativeTtl = Duration.ofSeconds(30);
+
+    /**
+     * 本地 near-cache 失效消息的 redis pub/sub channel, 默认: JWT:NEAR_CACHE:INVALIDATE
+     */
+    private String nearCacheChannel = "JWT:NEAR_CACHE:INVALIDATE";
+
 }
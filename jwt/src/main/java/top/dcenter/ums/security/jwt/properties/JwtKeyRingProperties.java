@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.jwt.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.core.io.Resource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JWT 密钥环(多密钥轮换)属性. <br>
+ * 由 ums.jwt.jksKeyPairLocation/jksAlias/kid 配置的主密钥与 {@link #keys} 中的密钥组成密钥环, 主密钥一直可用于签名,
+ * {@link #keys} 中 activeFrom 最大且已到达的密钥优先用于签名; 所有未失效的密钥都可用于验签并出现在 JWKS 中.<br>
+ * 密钥轮换步骤: 1. 添加新密钥并设置未来的 activeFrom(提前发布到 JWKS); 2. 到达 activeFrom 后所有节点自动用新密钥签名;
+ * 3. 旧 JWT 全部过期后再给旧密钥设置 expireAt 或删除旧密钥.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 20:05
+ */
+@Getter
+@Setter
+public class JwtKeyRingProperties {
+
+    /**
+     * 密钥环中除主密钥外的其他密钥, 默认: 空
+     */
+    private List<KeyProperties> keys = new ArrayList<>();
+
+    /**
+     * jwk-set-uri 响应头 Cache-Control 的 max-age, 默认: 5 分钟
+     */
+    private Duration jwksMaxAge = Duration.ofMinutes(5);
+
+    @Getter
+    @Setter
+    public static class KeyProperties {
+        /**
+         * 密钥的 kid, 必须唯一
+         */
+        private String kid;
+        /**
+         * 密钥键值对(KeyPair)的文件位置, 为 null 时使用 ums.jwt.jksKeyPairLocation
+         */
+        private Resource jksKeyPairLocation;
+        /**
+         * 密钥键值对(KeyPair)的别名
+         */
+        private String jksAlias;
+        /**
+         * 密钥键值对(KeyPair)的密码, 为 null 时使用 ums.jwt.jksPassword
+         */
+        private String jksPassword;
+        /**
+         * 开始用于签名的时间, 例如: 2021-07-01T00:00:00Z; 为 null 时此密钥只用于验签
+         */
+        private Instant activeFrom;
+        /**
+         * 失效时间, 例如: 2021-08-01T00:00:00Z; 失效后不再用于签名与验签; 为 null 时永不失效
+         */
+        private Instant expireAt;
+    }
+}
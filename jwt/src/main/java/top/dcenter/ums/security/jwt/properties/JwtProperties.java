@@ -34,6 +34,7 @@ import org.springframework.security.oauth2.jwt.JwtClaimNames;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.util.Assert;
 import org.springframework.util.StreamUtils;
+import top.dcenter.ums.security.common.enums.RedisSerializerType;
 import top.dcenter.ums.security.jwt.api.endpoind.service.JwkEndpointPermissionService;
 import top.dcenter.ums.security.jwt.enums.JwtRefreshHandlerPolicy;
 
@@ -65,6 +66,12 @@ public class JwtProperties {
     @NestedConfigurationProperty
     public final JwtBlacklistProperties blacklist = new JwtBlacklistProperties();
 
+    /**
+     * JWT 密钥环(多密钥轮换)属性
+     */
+    @NestedConfigurationProperty
+    public final JwtKeyRingProperties keyRing = new JwtKeyRingProperties();
+
     // ================= JWT 相关 =================
 
     /**
@@ -128,8 +135,10 @@ public class JwtProperties {
     private Boolean exposeJwkSetUri = Boolean.FALSE;
 
     /**
-     * Use the given signing algorithm . The value should be one of RS256, RS384, RS512, HS256, HS384, or HS512 .
-     * 默认: RS256
+     * Use the given signing algorithm . The value should be one of RS256, RS384, RS512, ES256, ES384, ES512, HS256, HS384, or HS512 .
+     * ES256 需要 EC 密钥(jksKeyPairLocation), JWT 更短; JDK 8 上 JwtSignBenchmark/JwtVerifyBenchmark 的结果:
+     * 签名 RS256 与 ES256 相近(约 1.1 ~ 2.0 ms/op, 在误差范围内), 验签 RS256 约 0.07 ms/op, ES256 约 2.8 ms/op,
+     * 因此验签频繁(未命中已验签缓存)的场景不建议改为 ES256. 默认: RS256
      */
     private String jwsAlgorithms = JwsAlgorithms.RS256;
     /**
@@ -139,7 +148,9 @@ public class JwtProperties {
      */
     private String macsSecret;
     /**
-     * 用于 JWT 的密钥键值对(KeyPair)的文件位置; 当设置此属性时, 属性 jwsAlgorithms 必须是 RS256, RS384, RS512 中的一个.<br>
+     * 用于 JWT 的密钥键值对(KeyPair)的文件位置; 当设置此属性时, RSA 密钥的属性 jwsAlgorithms 必须是 RS256, RS384, RS512 中的一个,
+     * EC 密钥的属性 jwsAlgorithms 必须是 ES256(secp256r1), ES384(secp384r1), ES512(secp521r1) 中的一个并与密钥曲线匹配.<br>
+     * EC 密钥生成示例: keytool -genkeypair -alias ums -keyalg EC -keysize 256 -keystore ums.jks (JDK 8 的 keytool 不支持 -groupname)<br>
      * 注意: 属性 macsSecret 与 jksKeyPairLocation 同时配置, jksKeyPairLocation 属性优于 macsSecret.
      */
     private Resource jksKeyPairLocation;
@@ -179,6 +190,20 @@ public class JwtProperties {
      */
     private String iss;
 
+    /**
+     * 已验签 {@link Jwt} 的本地缓存最大数量, 缓存到 jwt 过期为止, 相同 jwt 再次访问时不需要重新解析与验签
+     * (黑名单, 刷新策略与 jwtValidator 校验照常执行); 密钥环中的密钥被删除或到达 expireAt, 或 jwk set uri 的 JWK set 发生变化时,
+     * 已缓存的 jwt 会重新验签. 小于等于 0 时不缓存, 默认: 10000
+     */
+    private Integer verifiedJwtCacheMaxSize = 10000;
+
+    /**
+     * jwt + session 模式时, 默认的 jwtTokenRedisSerializer 写入 {@code JwtAuthenticationToken} 缓存的序列化格式, 默认: JSON.
+     * 读取时 JSON 与二进制格式的缓存可以共存, 可用于平滑升级: 先以 JSON 格式部署所有节点, 再切换为 SMILE.
+     * SMILE 格式需要添加 jackson-dataformat-smile 依赖.
+     */
+    private RedisSerializerType redisSerializerType = RedisSerializerType.JSON;
+
     // ==================================================
 
     public String readJksKeyPair() throws IOException {
@@ -0,0 +1,259 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.jwt.resolver;
+
+import org.springframework.lang.NonNull;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 预编译的 ignoreUrls 匹配器, 构建后不可变, 更新时整体替换. 用于 {@link UmsBearerTokenResolver}.<br>
+ * 1. 不含通配符的 url 放入 {@link HashSet}, 完全相同的路径直接命中.<br>
+ * 2. 所有 pattern 按前导的字面量路径段(不含 '*', '?', '{' 的段)组织成路径树, 匹配时只沿路径段遍历一次,
+ *    只有遍历到的节点上的 pattern 才需要 {@link AntPathMatcher} 匹配.<br>
+ * 3. 路径树的子节点以路径段的 hash 排序存储, 查找子节点时直接比较路径的区间, 不需要截取路径段.<br>
+ * 注意: 此匹配器假定 {@link AntPathMatcher} 为默认的区分大小写与以 "/" 为路径分隔符的配置.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 15:10
+ */
+public final class IgnoreUrlMatcher {
+
+    private static final char PATH_SEPARATOR = '/';
+
+    private static final IgnoreUrlMatcher EMPTY = new IgnoreUrlMatcher(Collections.emptySet(),
+                                                                       Collections.emptySet(), new Node());
+
+    /**
+     * 编译前的 ignoreUrls
+     */
+    private final Set<String> ignoreUrls;
+    /**
+     * 不含通配符的 ignoreUrls
+     */
+    private final Set<String> exactUrls;
+    private final Node root;
+
+    private IgnoreUrlMatcher(Set<String> ignoreUrls, Set<String> exactUrls, Node root) {
+        this.ignoreUrls = ignoreUrls;
+        this.exactUrls = exactUrls;
+        this.root = root;
+    }
+
+    /**
+     * 编译 ignoreUrls
+     * @param ignoreUrls    需要忽略的 urls, 支持 {@link AntPathMatcher} 模式, 忽略 null 与空字符串.
+     * @return  返回 {@link IgnoreUrlMatcher}
+     */
+    @NonNull
+    public static IgnoreUrlMatcher compile(@NonNull Collection<String> ignoreUrls) {
+        final Set<String> urls = new HashSet<>(ignoreUrls.size());
+        for (String url : ignoreUrls) {
+            if (url != null && !url.isEmpty()) {
+                urls.add(url);
+            }
+        }
+        if (urls.isEmpty()) {
+            return EMPTY;
+        }
+        final Set<String> exactUrls = new HashSet<>(urls.size());
+        final BuildNode root = new BuildNode();
+        for (String url : urls) {
+            if (isLiteral(url)) {
+                exactUrls.add(url);
+            }
+            root.add(url);
+        }
+        return new IgnoreUrlMatcher(Collections.unmodifiableSet(urls), exactUrls, root.freeze());
+    }
+
+    /**
+     * 路径是否匹配 ignoreUrls
+     * @param path              不包含 ServletContextPath 的路径
+     * @param antPathMatcher    {@link AntPathMatcher}
+     * @return  匹配任意一个 ignoreUrl 时返回 true
+     */
+    public boolean matches(@NonNull String path, @NonNull AntPathMatcher antPathMatcher) {
+        if (exactUrls.contains(path)) {
+            return true;
+        }
+        Node node = root;
+        if (node.matches(path, antPathMatcher)) {
+            return true;
+        }
+        // 沿路径段遍历路径树
+        final int length = path.length();
+        int start = 0;
+        while (start < length) {
+            int end = path.indexOf(PATH_SEPARATOR, start);
+            if (end == -1) {
+                end = length;
+            }
+            if (end > start) {
+                node = node.child(path, start, end);
+                if (node == null) {
+                    return false;
+                }
+                if (node.matches(path, antPathMatcher)) {
+                    return true;
+                }
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * @return 返回编译前的 ignoreUrls(不可修改)
+     */
+    @NonNull
+    public Set<String> getIgnoreUrls() {
+        return ignoreUrls;
+    }
+
+    private static boolean isLiteral(@NonNull String segment) {
+        return segment.indexOf('*') == -1 && segment.indexOf('?') == -1 && segment.indexOf('{') == -1;
+    }
+
+    /**
+     * 与 {@link String#hashCode()} 相同的 hash 算法, 计算 str 在 [start, end) 区间的 hash.
+     */
+    private static int hash(@NonNull String str, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + str.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * 不可变的路径树节点, 子节点按路径段的 hash 排序存储, patterns 为前导字面量路径段到此节点为止的 pattern.
+     */
+    private static final class Node {
+
+        private static final int[] EMPTY_HASHES = new int[0];
+        private static final String[] EMPTY_STRINGS = new String[0];
+        private static final Node[] EMPTY_NODES = new Node[0];
+
+        private final int[] hashes;
+        private final String[] segments;
+        private final Node[] children;
+        private final String[] patterns;
+
+        private Node() {
+            this(EMPTY_HASHES, EMPTY_STRINGS, EMPTY_NODES, EMPTY_STRINGS);
+        }
+
+        private Node(int[] hashes, String[] segments, Node[] children, String[] patterns) {
+            this.hashes = hashes;
+            this.segments = segments;
+            this.children = children;
+            this.patterns = patterns;
+        }
+
+        private Node child(@NonNull String path, int start, int end) {
+            final int h = hash(path, start, end);
+            int i = Arrays.binarySearch(hashes, h);
+            if (i < 0) {
+                return null;
+            }
+            // hash 相同的子节点是相邻的
+            while (i > 0 && hashes[i - 1] == h) {
+                i--;
+            }
+            final int len = end - start;
+            for (; i < hashes.length && hashes[i] == h; i++) {
+                final String segment = segments[i];
+                if (segment.length() == len && path.regionMatches(start, segment, 0, len)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private boolean matches(@NonNull String path, @NonNull AntPathMatcher antPathMatcher) {
+            for (String pattern : patterns) {
+                if (antPathMatcher.match(pattern, path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 构建时使用的可变路径树节点
+     */
+    private static final class BuildNode {
+
+        private final Map<String, BuildNode> children = new HashMap<>(8);
+        private final List<String> patterns = new ArrayList<>(0);
+
+        private void add(@NonNull String pattern) {
+            BuildNode node = this;
+            final int length = pattern.length();
+            int start = 0;
+            while (start < length) {
+                int end = pattern.indexOf(PATH_SEPARATOR, start);
+                if (end == -1) {
+                    end = length;
+                }
+                if (end > start) {
+                    String segment = pattern.substring(start, end);
+                    if (!isLiteral(segment)) {
+                        break;
+                    }
+                    node = node.children.computeIfAbsent(segment, k -> new BuildNode());
+                }
+                start = end + 1;
+            }
+            node.patterns.add(pattern);
+        }
+
+        @NonNull
+        private Node freeze() {
+            final int size = children.size();
+            final List<Map.Entry<String, BuildNode>> entries = new ArrayList<>(children.entrySet());
+            entries.sort((e1, e2) -> Integer.compare(e1.getKey().hashCode(), e2.getKey().hashCode()));
+            final int[] hashes = new int[size];
+            final String[] segments = new String[size];
+            final Node[] nodes = new Node[size];
+            for (int i = 0; i < size; i++) {
+                final Map.Entry<String, BuildNode> entry = entries.get(i);
+                hashes[i] = entry.getKey().hashCode();
+                segments[i] = entry.getKey();
+                nodes[i] = entry.getValue().freeze();
+            }
+            return new Node(hashes, segments, nodes, patterns.toArray(new String[0]));
+        }
+    }
+
+}
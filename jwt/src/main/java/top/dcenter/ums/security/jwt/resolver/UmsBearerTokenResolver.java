@@ -24,14 +24,12 @@ import org.springframework.security.oauth2.server.resource.BearerTokenError;
 import org.springframework.security.oauth2.server.resource.BearerTokenErrors;
 import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
 import org.springframework.util.AntPathMatcher;
-import org.springframework.util.StringUtils;
 import top.dcenter.ums.security.common.utils.UrlUtil;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * The default {@link BearerTokenResolver} implementation based on RFC 6750.
@@ -44,8 +42,11 @@ import java.util.regex.Pattern;
  */
 public final class UmsBearerTokenResolver implements BearerTokenResolver {
 
-    private static final Pattern AUTHORIZATION_PATTERN = Pattern.compile("^Bearer (?<token>[a-zA-Z0-9-._~+/]+=*)$",
-                                                                         Pattern.CASE_INSENSITIVE);
+    private static final String BEARER = "bearer";
+    /**
+     * "bearer " 的长度
+     */
+    private static final int TOKEN_START = BEARER.length() + 1;
 
     private final String requestParameterName;
 
@@ -57,25 +58,23 @@ public final class UmsBearerTokenResolver implements BearerTokenResolver {
 
     /**
      * 需要忽略的 url, 如: 通过 refreshToken 刷新 jwt uri, 登录的 uri. 支持 {@link AntPathMatcher} 模式.
+     * 预编译为 {@link IgnoreUrlMatcher}, {@link #addIgnoreUrls(Set)} 时整体替换.
      */
-    private final Set<String> ignoreUrls = new HashSet<>();
+    private volatile IgnoreUrlMatcher ignoreUrlMatcher;
 
     private final AntPathMatcher matcher = new AntPathMatcher();
 
     public UmsBearerTokenResolver(@NonNull String requestParameterName, @Nullable String jwtByRefreshTokenUri) {
         this.requestParameterName = requestParameterName;
-        this.ignoreUrls.add(jwtByRefreshTokenUri);
+        this.ignoreUrlMatcher = IgnoreUrlMatcher.compile(Collections.singleton(jwtByRefreshTokenUri));
     }
 
     @Override
     public String resolve(HttpServletRequest request) {
         final String pathWithinApplication = UrlUtil.getUrlPathHelper().getPathWithinApplication(request);
-        boolean anyMatch = ignoreUrls.stream()
-                                     .anyMatch((ignoreUrl) -> matcher.match(ignoreUrl,
-                                                                            pathWithinApplication));
 
         // 如果是匹配 ignoreUrls 则返回 null
-        if (anyMatch) {
+        if (ignoreUrlMatcher.matches(pathWithinApplication, matcher)) {
             return null;
         }
 
@@ -100,8 +99,19 @@ public final class UmsBearerTokenResolver implements BearerTokenResolver {
      *
      * @param ignoreUrls 需要忽略解析 JWT token 的 urls, 支持 {@link AntPathMatcher} 模式.
      */
-    public void addIgnoreUrls(Set<String> ignoreUrls) {
-        this.ignoreUrls.addAll(ignoreUrls);
+    public synchronized void addIgnoreUrls(Set<String> ignoreUrls) {
+        final Set<String> urls = new HashSet<>(this.ignoreUrlMatcher.getIgnoreUrls());
+        urls.addAll(ignoreUrls);
+        this.ignoreUrlMatcher = IgnoreUrlMatcher.compile(urls);
+    }
+
+    /**
+     * 获取需要忽略解析 JWT token 的 url
+     *
+     * @return 需要忽略解析 JWT token 的 urls(不可修改)
+     */
+    public Set<String> getIgnoreUrls() {
+        return this.ignoreUrlMatcher.getIgnoreUrls();
     }
 
     /**
@@ -144,16 +154,51 @@ public final class UmsBearerTokenResolver implements BearerTokenResolver {
 
     private String resolveFromAuthorizationHeader(HttpServletRequest request) {
         String authorization = request.getHeader(this.bearerTokenHeaderName);
-        String bearer = "bearer";
-        if (!StringUtils.startsWithIgnoreCase(authorization, bearer)) {
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
             return null;
         }
-        Matcher matcher = AUTHORIZATION_PATTERN.matcher(authorization);
-        if (!matcher.matches()) {
-            BearerTokenError error = BearerTokenErrors.invalidToken("Bearer token is malformed");
-            throw new OAuth2AuthenticationException(error);
+        return parseBearerToken(authorization);
+    }
+
+    /**
+     * 解析 "Bearer token" 格式的 authorization, 等价于正则 "^Bearer (?&lt;token&gt;[a-zA-Z0-9-._~+/]+=*)$"(不区分大小写),
+     * 只遍历一次 authorization.
+     * @param authorization 以 "bearer"(不区分大小写) 开头的 authorization
+     * @return  返回 token
+     * @throws OAuth2AuthenticationException 格式错误时抛出
+     */
+    static String parseBearerToken(@NonNull String authorization) throws OAuth2AuthenticationException {
+        final int length = authorization.length();
+        if (length <= TOKEN_START || authorization.charAt(TOKEN_START - 1) != ' ') {
+            throw malformedBearerToken();
         }
-        return matcher.group("token");
+        int i = TOKEN_START;
+        while (i < length && isTokenChar(authorization.charAt(i))) {
+            i++;
+        }
+        if (i == TOKEN_START) {
+            throw malformedBearerToken();
+        }
+        while (i < length && authorization.charAt(i) == '=') {
+            i++;
+        }
+        if (i != length) {
+            throw malformedBearerToken();
+        }
+        return authorization.substring(TOKEN_START);
+    }
+
+    /**
+     * RFC 6750 b64token 的字符(不含结尾的 '=')
+     */
+    private static boolean isTokenChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~' || c == '+' || c == '/';
+    }
+
+    private static OAuth2AuthenticationException malformedBearerToken() {
+        BearerTokenError error = BearerTokenErrors.invalidToken("Bearer token is malformed");
+        return new OAuth2AuthenticationException(error);
     }
 
     private String resolveFromRequestParameters(HttpServletRequest request) {
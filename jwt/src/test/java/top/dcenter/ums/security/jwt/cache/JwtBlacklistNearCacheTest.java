@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.jwt.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import top.dcenter.ums.security.jwt.properties.JwtBlacklistProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link JwtBlacklistNearCache} 的测试: 读取期间收到删除时不写入, tokenInfo 不存在的结果以 negative ttl 缓存.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.23 18:10
+ */
+public class JwtBlacklistNearCacheTest {
+
+    private static final byte[] KEY = "ums:jwt:blacklist:jti".getBytes(StandardCharsets.UTF_8);
+    private static final long JWT_TTL_MILLIS = 60_000L;
+
+    private JwtBlacklistNearCache nearCache;
+
+    @Before
+    public void setUp() {
+        JwtBlacklistProperties properties = new JwtBlacklistProperties();
+        properties.setNearCacheNegativeTtl(Duration.ofMillis(100));
+        nearCache = new JwtBlacklistNearCache(properties);
+    }
+
+    @Test
+    public void putIsSkippedWhenEvictionArrivedDuringLookup() {
+        long epoch = nearCache.getEpoch();
+        // 读取 redis 期间, 其他节点添加黑名单并广播删除
+        nearCache.onMessage(new DefaultMessage(nearCache.getChannel().getBytes(StandardCharsets.UTF_8), KEY), null);
+
+        nearCache.putNotBlacklisted(KEY, JWT_TTL_MILLIS, epoch);
+        assertNull(nearCache.get(KEY));
+
+        nearCache.putNotBlacklisted(KEY, JWT_TTL_MILLIS, nearCache.getEpoch());
+        assertEquals("", nearCache.get(KEY));
+    }
+
+    @Test
+    public void missingTokenInfoIsCachedForNegativeTtlOnly() throws InterruptedException {
+        byte[] blacklistedKey = "ums:jwt:blacklist:other".getBytes(StandardCharsets.UTF_8);
+        long epoch = nearCache.getEpoch();
+        nearCache.putMissingAsBlacklisted(KEY, "IN_BLACKLIST", JWT_TTL_MILLIS, epoch);
+        nearCache.putBlacklisted(blacklistedKey, "IN_BLACKLIST", JWT_TTL_MILLIS, epoch);
+        assertEquals("IN_BLACKLIST", nearCache.get(KEY));
+
+        Thread.sleep(150);
+
+        assertNull(nearCache.get(KEY));
+        assertEquals("IN_BLACKLIST", nearCache.get(blacklistedKey));
+    }
+}
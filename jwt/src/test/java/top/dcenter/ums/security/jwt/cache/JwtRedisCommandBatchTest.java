@@ -0,0 +1,141 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.jwt.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link JwtRedisCommandBatch} 的测试: 读命令合并为一次 pipeline 预读, 流程异常时写命令的异常作为 suppressed 添加.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.23 15:40
+ */
+public class JwtRedisCommandBatchTest {
+
+    private static final byte[] EXISTS_KEY = "exists".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GET_KEY = "get".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] VALUE = "value".getBytes(StandardCharsets.UTF_8);
+
+    private RedisConnectionFactory connectionFactory;
+    private RedisConnection connection;
+    private boolean isOwner;
+
+    @Before
+    public void setUp() {
+        connection = mock(RedisConnection.class);
+        connectionFactory = mock(RedisConnectionFactory.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        isOwner = JwtRedisCommandBatch.begin();
+    }
+
+    @After
+    public void tearDown() {
+        JwtRedisCommandBatch.end(isOwner, connectionFactory, new IllegalStateException("cleanup"));
+    }
+
+    @Test
+    public void prefetchPipelinesReadsOnce() {
+        assertTrue(isOwner);
+        when(connection.closePipeline()).thenReturn(Arrays.asList(Boolean.TRUE, VALUE));
+
+        JwtRedisCommandBatch.prefetch(connectionFactory, Collections.singletonList(EXISTS_KEY),
+                                      Collections.singletonList(GET_KEY));
+        // 已读取过的 key 不再读取
+        JwtRedisCommandBatch.prefetch(connectionFactory, Collections.singletonList(EXISTS_KEY),
+                                      Collections.singletonList(GET_KEY));
+
+        verify(connection, times(1)).openPipeline();
+        verify(connectionFactory, times(1)).getConnection();
+        assertEquals(Boolean.TRUE, JwtRedisCommandBatch.getExists(EXISTS_KEY.clone()));
+        assertTrue(JwtRedisCommandBatch.containsGet(GET_KEY.clone()));
+        assertArrayEquals(VALUE, JwtRedisCommandBatch.get(GET_KEY.clone()));
+    }
+
+    @Test
+    public void readsAreDiscardedAtEnd() {
+        JwtRedisCommandBatch.putExists(EXISTS_KEY, Boolean.FALSE);
+        JwtRedisCommandBatch.putGet(GET_KEY, null);
+        assertEquals(Boolean.FALSE, JwtRedisCommandBatch.getExists(EXISTS_KEY));
+        assertTrue(JwtRedisCommandBatch.containsGet(GET_KEY));
+
+        JwtRedisCommandBatch.end(isOwner, connectionFactory);
+        isOwner = false;
+
+        // 只有读取结果时不访问 redis
+        verify(connectionFactory, never()).getConnection();
+        assertNull(JwtRedisCommandBatch.getExists(EXISTS_KEY));
+        assertFalse(JwtRedisCommandBatch.containsGet(GET_KEY));
+    }
+
+    @Test
+    public void endAddsWriteFailureAsSuppressed() {
+        when(connection.set(any(byte[].class), any(byte[].class))).thenReturn(Boolean.FALSE);
+        JwtRedisCommandBatch.add(conn -> conn.set(EXISTS_KEY, VALUE), () -> new IllegalArgumentException("write"));
+        RuntimeException failure = new RuntimeException("flow");
+
+        JwtRedisCommandBatch.end(isOwner, connectionFactory, failure);
+        isOwner = false;
+
+        assertEquals(1, failure.getSuppressed().length);
+        assertEquals("write", failure.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    public void endThrowsWriteFailureWithoutFlowFailure() {
+        when(connection.set(any(byte[].class), any(byte[].class))).thenReturn(Boolean.FALSE);
+        IllegalArgumentException expected = new IllegalArgumentException("write");
+        JwtRedisCommandBatch.add(conn -> conn.set(EXISTS_KEY, VALUE), () -> expected);
+
+        try {
+            JwtRedisCommandBatch.end(isOwner, connectionFactory, null);
+            fail("expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+            assertSame(expected, e);
+        }
+        finally {
+            isOwner = false;
+        }
+    }
+}
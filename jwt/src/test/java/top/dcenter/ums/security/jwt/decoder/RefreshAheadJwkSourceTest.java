@@ -0,0 +1,147 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.jwt.decoder;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link RefreshAheadJwkSource} 的测试: 由本地 http server 提供 JWK set, 验证过期前的后台提前刷新与未匹配到 kid 时的等待刷新.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.23 21:10
+ */
+public class RefreshAheadJwkSourceTest {
+
+    private RSAKey key1;
+    private RSAKey key2;
+    private HttpServer server;
+    private URL jwkSetUrl;
+    private volatile String jwkSetContent;
+    private final AtomicInteger requests = new AtomicInteger(0);
+    private RefreshAheadJwkSource jwkSource;
+
+    @Before
+    public void setUp() throws Exception {
+        key1 = new RSAKeyGenerator(2048).keyID("key1").generate();
+        key2 = new RSAKeyGenerator(2048).keyID("key2").generate();
+        jwkSetContent = new JWKSet(key1).toString();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/jwks", exchange -> {
+            requests.incrementAndGet();
+            final byte[] body = jwkSetContent.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        jwkSetUrl = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/jwks");
+    }
+
+    @After
+    public void tearDown() {
+        if (jwkSource != null) {
+            jwkSource.destroy();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    public void refreshAheadBeforeLifespanExpires() throws Exception {
+        jwkSource = new RefreshAheadJwkSource(jwkSetUrl, new DefaultResourceRetriever(1000, 1000), null,
+                                              Duration.ofMillis(100L), Duration.ofSeconds(10L),
+                                              Duration.ofMinutes(1L), Duration.ofSeconds(2L));
+        awaitTrue(() -> jwkSource.getFetchedAt() > 0L);
+        final long firstFetchedAt = jwkSource.getFetchedAt();
+        final long firstVersion = jwkSource.getVersion();
+        assertEquals(1, select("key1").size());
+
+        // 密钥轮换: 后台刷新在 JWK set 过期前拉取到新的 JWK set, 验签线程无需访问 jwk set uri
+        jwkSetContent = new JWKSet(key2).toString();
+        awaitTrue(() -> jwkSource.getVersion() > firstVersion);
+
+        assertTrue(jwkSource.getFetchedAt() > firstFetchedAt);
+        assertTrue(jwkSource.getFetchedAt() - firstFetchedAt < Duration.ofSeconds(10L).toMillis());
+        final List<JWK> matches = select("key2");
+        assertEquals(1, matches.size());
+        assertEquals(key2.toPublicJWK(), matches.get(0).toPublicJWK());
+    }
+
+    @Test
+    public void unknownKidWaitsForRefresh() throws Exception {
+        jwkSource = new RefreshAheadJwkSource(jwkSetUrl, new DefaultResourceRetriever(1000, 1000), null,
+                                              null, Duration.ofSeconds(10L),
+                                              Duration.ofMinutes(1L), Duration.ofSeconds(2L));
+        awaitTrue(() -> jwkSource.getFetchedAt() > 0L);
+        assertEquals(1, requests.get());
+
+        // 携带新 kid 的第一个 jwt: 触发刷新并等待刷新结果, 同一次调用即可匹配到新密钥
+        jwkSetContent = new JWKSet(Arrays.asList(key1, key2)).toString();
+        final List<JWK> matches = select("key2");
+        assertEquals(1, matches.size());
+        assertEquals(key2.toPublicJWK(), matches.get(0).toPublicJWK());
+        assertEquals(2, requests.get());
+
+        // unknownKidRefreshInterval 内伪造的 kid 不会再次访问 jwk set uri
+        assertTrue(select("forged").isEmpty());
+        assertTrue(select("forged").isEmpty());
+        assertEquals(2, requests.get());
+    }
+
+    private List<JWK> select(String kid) throws Exception {
+        return jwkSource.get(new JWKSelector(new JWKMatcher.Builder().keyID(kid).build()), null);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue("condition not met within 5s", System.currentTimeMillis() < deadline);
+            Thread.sleep(10L);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.jwt.decoder;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import top.dcenter.ums.security.jwt.enums.JwtRefreshHandlerPolicy;
+import top.dcenter.ums.security.jwt.key.JwtKey;
+import top.dcenter.ums.security.jwt.key.JwtKeyRing;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link UmsNimbusJwtDecoder} 已验签 {@link Jwt} 缓存的测试: 删除密钥或密钥到达 expireAt 后, 已缓存的 jwt 不能再通过验签.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.23 10:05
+ */
+public class UmsNimbusJwtDecoderVerifiedJwtCacheTest {
+
+    private JwtKey key1;
+    private JwtKey key2;
+    private JwtKeyRing keyRing;
+    private UmsNimbusJwtDecoder jwtDecoder;
+
+    @Before
+    public void setUp() throws Exception {
+        Instant activeFrom = Instant.now().minusSeconds(60);
+        key1 = JwtKey.of("k1", rsaKeyPair(), JWSAlgorithm.RS256, activeFrom, null);
+        key2 = JwtKey.of("k2", rsaKeyPair(), JWSAlgorithm.RS256, activeFrom.minusSeconds(60), null);
+        keyRing = new JwtKeyRing(Arrays.asList(key1, key2));
+        jwtDecoder = UmsNimbusJwtDecoder.withKeyRing(keyRing, JwtRefreshHandlerPolicy.REJECT,
+                                                     Duration.ofSeconds(30), false).build();
+        jwtDecoder.setVerifiedJwtCacheMaxSize(100);
+    }
+
+    @Test
+    public void removeKeyRejectsCachedJwt() throws Exception {
+        String token1 = sign(key1);
+        String token2 = sign(key2);
+        Jwt jwt1 = jwtDecoder.getVerifiedJwt(token1);
+        Jwt jwt2 = jwtDecoder.getVerifiedJwt(token2);
+        // 命中缓存
+        assertSame(jwt1, jwtDecoder.getVerifiedJwt(token1));
+        assertSame(jwt2, jwtDecoder.getVerifiedJwt(token2));
+
+        keyRing.removeKey("k1");
+
+        assertRejected(token1);
+        // 其他密钥签名的 jwt 重新验签后仍然有效
+        Jwt reverified = jwtDecoder.getVerifiedJwt(token2);
+        assertNotSame(jwt2, reverified);
+        assertSame(reverified, jwtDecoder.getVerifiedJwt(token2));
+    }
+
+    @Test
+    public void expiredKeyRejectsCachedJwt() throws Exception {
+        JwtKey expiring = JwtKey.of("k3", rsaKeyPair(), JWSAlgorithm.RS256, Instant.now().minusSeconds(300),
+                                    Instant.now().plusMillis(500));
+        keyRing.addKey(expiring);
+        String token = sign(expiring);
+        Jwt jwt = jwtDecoder.getVerifiedJwt(token);
+        assertSame(jwt, jwtDecoder.getVerifiedJwt(token));
+
+        Thread.sleep(600);
+
+        assertRejected(token);
+    }
+
+    private void assertRejected(String token) {
+        try {
+            jwtDecoder.getVerifiedJwt(token);
+            fail("expected JwtException");
+        }
+        catch (JwtException e) {
+            // 密钥已不在密钥环中, 验签失败
+        }
+    }
+
+    private static String sign(JwtKey key) throws JOSEException {
+        JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
+                .subject("user")
+                .jwtID(key.getKid())
+                .expirationTime(Date.from(Instant.now().plusSeconds(3600)))
+                .build();
+        SignedJWT signedJwt = new SignedJWT(new JWSHeader.Builder(key.getAlgorithm()).keyID(key.getKid()).build(),
+                                            claimsSet);
+        //noinspection ConstantConditions
+        signedJwt.sign(key.getSigner());
+        return signedJwt.serialize();
+    }
+
+    private static KeyPair rsaKeyPair() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+}
@@ -37,4 +37,14 @@ public interface Auth2StateCache extends AuthStateCache {
      * @return CacheKeyStrategy
      */
     CacheKeyStrategy getCacheKeyStrategy();
+
+    /**
+     * 校验 state 并删除 state 缓存(原子操作), 用于第三方授权回调时校验 state, 同一个 state 只能成功校验一次, 防止 state 被重放.<br>
+     * 默认实现为 {@link #containsKey(String)}, 不删除 state 缓存, 实现类应覆盖此方法.
+     * @param key   state 缓存的 key
+     * @return  state 存在且未过期时删除 state 缓存并返回 true, 否则返回 false
+     */
+    default boolean verifyAndConsume(String key) {
+        return containsKey(key);
+    }
 }
\ No newline at end of file
@@ -61,6 +61,7 @@ import java.time.Instant;
  * 12. {@link #getAuthTokenPo(Integer, Long, AuthResponse)},<br>
  * 13. {@link #expireIn2Timestamp(Integer, Integer, AuthTokenPo)},<br>
  * 14. {@link #responseError(Exception)}<br>
+ * 15. {@link #isIgnoreCheckState()}<br>
  * @author YongWu zheng
  * @version V1.0  Created by 2020/10/7 20:27
  */
@@ -135,6 +136,15 @@ public interface Auth2DefaultRequest {
      */
     AuthTokenPo refreshToken(AuthTokenPo authToken) throws SimpleHttpException, AuthException, RefreshTokenFailureException;
 
+    /**
+     * 是否忽略校验 state, 对应 {@code AuthConfig#isIgnoreCheckState()}.
+     * state 在 {@code Auth2LoginAuthenticationFilter} 中校验并删除, {@link #login(AuthCallback)} 不再校验 state.
+     * @return  忽略校验 state 返回 true, 默认: false
+     */
+    default boolean isIgnoreCheckState() {
+        return false;
+    }
+
     /**
      * 生成一个用户 id. 默认使用 {@link UuidUtils#getUUID()}
      * @return  返回一个用户 Id
@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.core.api.oauth.repository.jdbc;
+
+import org.springframework.lang.NonNull;
+import top.dcenter.ums.security.core.api.oauth.entity.AuthTokenPo;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 按 id 升序流式遍历过期时间小于等于 expiredTime 且 enableRefresh=1 的 token 数据, 每次通过
+ * {@link UsersConnectionTokenRepository#findAuthTokenByExpireTimeAndIdAfter(Long, Long, Long, int)}
+ * 获取一页(keyset 分页: id &gt; 上一页最后的 id), 内存中最多只有一页数据.<br>
+ * 非线程安全. 查询异常时 {@link #hasNext()} 抛出 {@link RuntimeException}.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 21:12
+ */
+public final class AuthTokenKeysetIterator implements Iterator<AuthTokenPo> {
+
+    private final UsersConnectionTokenRepository repository;
+    private final Long expiredTime;
+    private final Long endId;
+    private final int pageSize;
+
+    /**
+     * 已获取的最后一条记录的 id
+     */
+    private long lastId;
+    private List<AuthTokenPo> page = Collections.emptyList();
+    private int index;
+    /**
+     * 最后一页的记录数小于 pageSize 时, 表示已没有更多数据
+     */
+    private boolean exhausted;
+
+    /**
+     * 按 id 升序流式遍历 id 范围在 afterId(不包含) 与 endId(包含) 之间且过期时间小于等于 expiredTime 且 enableRefresh=1 的 token 数据
+     * @param repository    {@link UsersConnectionTokenRepository}
+     * @param expiredTime   过期时间
+     * @param afterId       起始 id, 不包含
+     * @param endId         结束 id, 包含
+     * @param pageSize      每页的记录数
+     */
+    public AuthTokenKeysetIterator(@NonNull UsersConnectionTokenRepository repository, @NonNull Long expiredTime,
+                                   @NonNull Long afterId, @NonNull Long endId, int pageSize) {
+        this.repository = repository;
+        this.expiredTime = expiredTime;
+        this.endId = endId;
+        this.pageSize = Math.max(1, pageSize);
+        this.lastId = afterId;
+        this.exhausted = afterId >= endId;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index < page.size()) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+        fetchNextPage();
+        return index < page.size();
+    }
+
+    @Override
+    @NonNull
+    public AuthTokenPo next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(index++);
+    }
+
+    private void fetchNextPage() {
+        final List<AuthTokenPo> nextPage;
+        try {
+            nextPage = repository.findAuthTokenByExpireTimeAndIdAfter(expiredTime, lastId, endId, pageSize);
+        }
+        catch (Exception e) {
+            throw new RuntimeException(String.format("获取 token 数据失败: id > %d AND id <= %d, error=%s",
+                                                     lastId, endId, e.getMessage()), e);
+        }
+        page = nextPage;
+        index = 0;
+        if (nextPage.size() < pageSize) {
+            exhausted = true;
+        }
+        if (!nextPage.isEmpty()) {
+            final Long id = nextPage.get(nextPage.size() - 1).getId();
+            lastId = id;
+            if (id >= endId) {
+                exhausted = true;
+            }
+        }
+    }
+
+}
@@ -187,6 +187,18 @@ public interface UsersConnectionRepository {
 	 */
 	ConnectionData updateConnectionByTokenId(AuthTokenPo token);
 
+	/**
+	 * 根据 {@code AuthTokenPo#getId()} 批量更新 {@link ConnectionData} 的 accessToken, refreshToken 与 expireTime,
+	 * 更新完成后一次性清除相关的 spring cache 缓存. 用于 refreshToken 的定时任务.<br>
+	 * 默认实现为逐条调用 {@link #updateConnectionByTokenId(AuthTokenPo)}.
+	 * @param tokens    {@link AuthTokenPo} 列表
+	 */
+	default void batchUpdateConnections(List<AuthTokenPo> tokens) {
+		for (AuthTokenPo token : tokens) {
+			updateConnectionByTokenId(token);
+		}
+	}
+
 	/**
 	 * 根据 tokenId 查找 {@link ConnectionData}<br>
 	 * 注意: 这里不做 spring cache 缓存处理, 这个接口主要用于 refreshToken 的定时任务, 只调用一次, 缓存无意义
@@ -28,7 +28,10 @@ import org.springframework.lang.Nullable;
 import top.dcenter.ums.security.core.api.oauth.entity.AuthTokenPo;
 import top.dcenter.ums.security.core.oauth.enums.EnableRefresh;
 
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * A data access interface for managing a global store of users connections token to service providers.
@@ -66,6 +69,18 @@ public interface UsersConnectionTokenRepository {
 	@NonNull
 	AuthTokenPo updateAuthToken(@NonNull AuthTokenPo authToken) throws Exception;
 
+	/**
+	 * 批量更新 {@link AuthTokenPo}, 更新完成后一次性清除相关的 spring cache 缓存. 用于 refreshToken 的定时任务.<br>
+	 * 默认实现为逐条调用 {@link #updateAuthToken(AuthTokenPo)}.
+	 * @param authTokens    需要更新的 {@link AuthTokenPo} 列表
+	 * @throws Exception    数据更新异常
+	 */
+	default void batchUpdateTokens(@NonNull List<AuthTokenPo> authTokens) throws Exception {
+		for (AuthTokenPo authToken : authTokens) {
+			updateAuthToken(authToken);
+		}
+	}
+
 	/**
 	 * 删除 id = tokenId 的记录
 	 * @param tokenId   tokenId
@@ -94,6 +109,45 @@ public interface UsersConnectionTokenRepository {
 	List<AuthTokenPo> findAuthTokenByExpireTimeAndBetweenId(@NonNull Long expiredTime, @NonNull Long startId,
 	                                                        @NonNull Long endId) throws Exception;
 
+	/**
+	 * keyset 分页: 按 id 升序获取 id 范围在 afterId(不包含) 与 endId(包含) 之间且过期时间小于等于 expiredTime 且
+	 * enableRefresh=1 的前 limit 条 token 数据, 下一页以本页最后一条记录的 id 作为 afterId.<br>
+	 *     用于定时 refreshToken 任务, 不做 spring cache 缓存处理.<br>
+	 * 默认实现通过 {@link #findAuthTokenByExpireTimeAndBetweenId(Long, Long, Long)} 获取后排序截取, 不能限制内存,
+	 * 实现类应覆盖此方法, 如: {@code WHERE enableRefresh = 1 AND id > ? AND id <= ? AND expireTime <= ? ORDER BY id LIMIT ?}
+	 * @param expiredTime   过期时间
+	 * @param afterId       起始 id, 不包含
+	 * @param endId         结束 id, 包含
+	 * @param limit         最大记录数
+	 * @return  符合条件的 {@link AuthTokenPo} 列表, 按 id 升序
+	 * @throws Exception   查询错误
+	 */
+	@NonNull
+	default List<AuthTokenPo> findAuthTokenByExpireTimeAndIdAfter(@NonNull Long expiredTime, @NonNull Long afterId,
+	                                                              @NonNull Long endId, int limit) throws Exception {
+		return findAuthTokenByExpireTimeAndBetweenId(expiredTime, afterId + 1L, endId)
+				.stream()
+				.sorted(Comparator.comparing(AuthTokenPo::getId))
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * 按 id 升序流式遍历 id 范围在 afterId(不包含) 与 endId(包含) 之间且过期时间小于等于 expiredTime 且 enableRefresh=1 的
+	 * token 数据, 通过 {@link #findAuthTokenByExpireTimeAndIdAfter(Long, Long, Long, int)} 分页获取, 内存中最多只有一页数据.<br>
+	 *     用于定时 refreshToken 任务.
+	 * @param expiredTime   过期时间
+	 * @param afterId       起始 id, 不包含
+	 * @param endId         结束 id, 包含
+	 * @param pageSize      每页的记录数
+	 * @return  {@link AuthTokenKeysetIterator}
+	 */
+	@NonNull
+	default Iterator<AuthTokenPo> iterateAuthTokenByExpireTime(@NonNull Long expiredTime, @NonNull Long afterId,
+	                                                           @NonNull Long endId, int pageSize) {
+		return new AuthTokenKeysetIterator(this, expiredTime, afterId, endId, pageSize);
+	}
+
 	/**
 	 * 根据 tokenId 更新 auth_token 表中的 enableRefresh 字段
 	 * @param enableRefresh {@link EnableRefresh}
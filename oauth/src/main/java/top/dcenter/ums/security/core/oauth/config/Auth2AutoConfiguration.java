@@ -23,6 +23,7 @@
 
 package top.dcenter.ums.security.core.oauth.config;
 
+import com.xkcoding.http.HttpUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,9 +31,11 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.crypto.encrypt.Encryptors;
 import org.springframework.security.crypto.encrypt.TextEncryptor;
 import org.springframework.util.StringUtils;
@@ -48,12 +51,16 @@ import top.dcenter.ums.security.core.api.service.UmsUserDetailsService;
 import top.dcenter.ums.security.core.executor.config.ExecutorAutoConfiguration;
 import top.dcenter.ums.security.core.oauth.job.RefreshTokenJobHandler;
 import top.dcenter.ums.security.core.oauth.justauth.Auth2RequestHolder;
+import top.dcenter.ums.security.core.oauth.justauth.circuitbreaker.ProviderCircuitBreakerRegistry;
+import top.dcenter.ums.security.core.oauth.justauth.http.PooledHttpImpl;
 import top.dcenter.ums.security.core.oauth.properties.Auth2Properties;
 import top.dcenter.ums.security.core.oauth.properties.RepositoryProperties;
 import top.dcenter.ums.security.core.oauth.repository.factory.Auth2JdbcUsersConnectionRepositoryFactory;
 import top.dcenter.ums.security.core.oauth.repository.jdbc.Auth2JdbcUsersConnectionTokenRepository;
 import top.dcenter.ums.security.core.oauth.service.DefaultAuth2UserServiceImpl;
 import top.dcenter.ums.security.core.oauth.signup.DefaultConnectionServiceImpl;
+import top.dcenter.ums.security.core.oauth.userdetails.cache.LocalTtlUserCache;
+import top.dcenter.ums.security.core.oauth.userdetails.cache.RedisUserCache;
 import top.dcenter.ums.security.core.redis.jackson2.Auth2Jackson2ModuleHolder;
 import top.dcenter.ums.security.jwt.userdetails.converter.Oauth2TokenAuthenticationTokenToUserConverter;
 
@@ -61,8 +68,12 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
+import static java.util.Objects.nonNull;
+
 import static top.dcenter.ums.security.common.consts.SecurityConstants.QUERY_TABLE_EXIST_SQL_RESULT_SET_COLUMN_INDEX;
 
 /**
@@ -142,10 +153,53 @@ public class Auth2AutoConfiguration implements InitializingBean {
     public ConnectionService connectionSignUp(UmsUserDetailsService userDetailsService,
                                               @Autowired(required = false) UsersConnectionTokenRepository usersConnectionTokenRepository,
                                               UsersConnectionRepository usersConnectionRepository,
-                                              @Autowired(required = false) Auth2StateCoder auth2StateCoder) {
+                                              @Autowired(required = false) Auth2StateCoder auth2StateCoder,
+                                              @Autowired(required = false) UserCache userCache) {
         return new DefaultConnectionServiceImpl(userDetailsService, auth2Properties,
                                                 usersConnectionRepository, usersConnectionTokenRepository,
-                                                auth2StateCoder);
+                                                auth2StateCoder, userCache);
+    }
+
+    /**
+     * 第三方授权登录与一键登录的用户信息缓存, 有 auth2RedisHashCacheManager 时缓存到 redis, 否则缓存到本地.
+     * @param cacheManager            auth2RedisHashCacheManager
+     * @param jackson2ModuleHolderMap   用于序列化缓存的用户的 jackson2 module
+     * @return UserCache
+     */
+    @Bean
+    @ConditionalOnMissingBean(type = "org.springframework.security.core.userdetails.UserCache")
+    @ConditionalOnProperty(prefix = "ums.oauth", name = "user-cache-enable", havingValue = "true", matchIfMissing = true)
+    public UserCache auth2UserCache(@Autowired(required = false) @Qualifier("auth2RedisHashCacheManager")
+                                    CacheManager cacheManager,
+                                    @Autowired(required = false) Map<String, SimpleModuleHolder> jackson2ModuleHolderMap) {
+        if (nonNull(cacheManager)) {
+            return new RedisUserCache(cacheManager, nonNull(jackson2ModuleHolderMap) ? jackson2ModuleHolderMap.values() : null);
+        }
+        return new LocalTtlUserCache(auth2Properties.getUserCacheMaxSize(), auth2Properties.getUserCacheTtl());
+    }
+
+    /**
+     * JustAuth 第三方 http 请求的连接池实现, 创建后替换 simple-http {@link HttpUtil} 的默认实现
+     * @return PooledHttpImpl
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "ums.oauth.http-pool", name = "enable", havingValue = "true")
+    public PooledHttpImpl pooledHttp() {
+        PooledHttpImpl pooledHttp = new PooledHttpImpl(auth2Properties.getProxy().getHttpConfig(),
+                                                       auth2Properties.getHttpPool());
+        HttpUtil.setHttp(pooledHttp);
+        return pooledHttp;
+    }
+
+    /**
+     * 第三方请求(获取 accessToken / 用户信息 / 刷新 token)的隔离与熔断器注册中心
+     * @return ProviderCircuitBreakerRegistry
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "ums.oauth.circuit-breaker", name = "enable", havingValue = "true")
+    public ProviderCircuitBreakerRegistry providerCircuitBreakerRegistry(@Autowired(required = false)
+                                                                                 PooledHttpImpl pooledHttp) {
+        return new ProviderCircuitBreakerRegistry(auth2Properties.getCircuitBreaker(), pooledHttp);
     }
 
     @Bean
@@ -230,6 +284,10 @@ public class Auth2AutoConfiguration implements InitializingBean {
                             connection.commit();
                         }
                     }
+                    else
+                    {
+                        createAuthTokenIndexIfAbsent(connection, database);
+                    }
                 }
             }
             else
@@ -242,6 +300,40 @@ public class Auth2AutoConfiguration implements InitializingBean {
 
     }
 
+    /**
+     * 旧版本创建的 authTokenTableName 没有 refreshToken 定时任务 keyset 分页索引时添加索引,
+     * 添加失败(如没有 ALTER 权限)时只输出 warn 日志, 需手动执行添加索引的语句.
+     * @param connection    {@link Connection}
+     * @param database      数据库名称
+     */
+    @edu.umd.cs.findbugs.annotations.SuppressFBWarnings({"SQL_PREPARED_STATEMENT_GENERATED_FROM_NONCONSTANT_STRING"})
+    private void createAuthTokenIndexIfAbsent(Connection connection, String database) {
+        String createAuthTokenIndexSql = repositoryProperties.getCreateAuthTokenIndexSql();
+        try (final PreparedStatement preparedStatement =
+                     connection.prepareStatement(repositoryProperties.getQueryAuthTokenIndexExistSql(database));
+             ResultSet resultSet = preparedStatement.executeQuery())
+        {
+            resultSet.next();
+            if (resultSet.getInt(QUERY_TABLE_EXIST_SQL_RESULT_SET_COLUMN_INDEX) > 0)
+            {
+                return;
+            }
+            try (final PreparedStatement alterStatement = connection.prepareStatement(createAuthTokenIndexSql)) {
+                alterStatement.executeUpdate();
+                log.info("{} 表索引添加成功，SQL：{}", repositoryProperties.getAuthTokenTableName(),
+                         createAuthTokenIndexSql);
+                if (!connection.getAutoCommit())
+                {
+                    connection.commit();
+                }
+            }
+        }
+        catch (SQLException e) {
+            log.warn("{} 表添加索引失败, 请手动执行: {}, {}", repositoryProperties.getAuthTokenTableName(),
+                     createAuthTokenIndexSql, e.getMessage());
+        }
+    }
+
     @Configuration
     @ConditionalOnProperty(prefix = "ums.oauth", name = "enable-user-connection-and-auth-token-table", havingValue = "true")
     static class JobAutoConfiguration {
@@ -279,7 +371,8 @@ public class Auth2AutoConfiguration implements InitializingBean {
                                                                              JdbcTemplate auth2UserConnectionJdbcTemplate) {
             return new Auth2JdbcUsersConnectionTokenRepository(auth2UserConnectionJdbcTemplate,
                                                                connectionTextEncryptor,
-                                                               repositoryProperties.getAuthTokenTableName());
+                                                               repositoryProperties.getAuthTokenTableName(),
+                                                               repositoryProperties.getBatchUpdateSize());
         }
 
     }
@@ -33,6 +33,7 @@ import org.springframework.security.authentication.AuthenticationDetailsSource;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.SecurityConfigurerAdapter;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.web.DefaultSecurityFilterChain;
 import org.springframework.security.web.authentication.RememberMeServices;
 import org.springframework.security.web.authentication.preauth.AbstractPreAuthenticatedProcessingFilter;
@@ -100,6 +101,9 @@ public class Auth2AutoConfigurer extends SecurityConfigurerAdapter<DefaultSecuri
     @SuppressWarnings("SpringJavaAutowiredFieldsWarningInspection")
     @Autowired(required = false)
     private GenerateClaimsSetService generateClaimsSetService;
+    @SuppressWarnings("SpringJavaAutowiredFieldsWarningInspection")
+    @Autowired(required = false)
+    private UserCache userCache;
 
     @SuppressWarnings("SpringJavaInjectionPointsAutowiringInspection")
     public Auth2AutoConfigurer(Auth2Properties auth2Properties, UmsUserDetailsService umsUserDetailsService,
@@ -169,6 +173,10 @@ public class Auth2AutoConfigurer extends SecurityConfigurerAdapter<DefaultSecuri
                 updateConnectionTaskExecutor, auth2Properties.getAutoSignUp(), generateClaimsSetService,
                 auth2Properties.getTemporaryUserAuthorities(), auth2Properties.getTemporaryUserPassword(),
                 authenticationToUserDetailsConverter);
+        if (userCache != null)
+        {
+            auth2LoginAuthenticationProvider.setUserCache(userCache);
+        }
         http.authenticationProvider(postProcess(auth2LoginAuthenticationProvider));
     }
 
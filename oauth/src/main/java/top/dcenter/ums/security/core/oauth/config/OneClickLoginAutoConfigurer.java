@@ -9,6 +9,7 @@ import org.springframework.security.authentication.AuthenticationDetailsSource;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.SecurityConfigurerAdapter;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.web.DefaultSecurityFilterChain;
 import org.springframework.security.web.authentication.preauth.AbstractPreAuthenticatedProcessingFilter;
 import top.dcenter.ums.security.core.api.authentication.handler.BaseAuthenticationFailureHandler;
@@ -46,6 +47,9 @@ public class OneClickLoginAutoConfigurer extends SecurityConfigurerAdapter<Defau
     @SuppressWarnings("SpringJavaAutowiredFieldsWarningInspection")
     @Autowired(required = false)
     private GenerateClaimsSetService generateClaimsSetService;
+    @SuppressWarnings("SpringJavaAutowiredFieldsWarningInspection")
+    @Autowired(required = false)
+    private UserCache userCache;
 
     public OneClickLoginAutoConfigurer(OneClickLoginProperties oneClickLoginProperties,
                                        OneClickLoginService oneClickLoginService,
@@ -69,6 +73,10 @@ public class OneClickLoginAutoConfigurer extends SecurityConfigurerAdapter<Defau
         OneClickLoginAuthenticationProvider oneClickLoginAuthenticationProvider =
                 new OneClickLoginAuthenticationProvider(userDetailsService, oneClickLoginService,
                                                         generateClaimsSetService);
+        if (userCache != null)
+        {
+            oneClickLoginAuthenticationProvider.setUserCache(userCache);
+        }
         http.authenticationProvider(postProcess(oneClickLoginAuthenticationProvider))
             .addFilterAfter(postProcess(oneClickLoginAuthenticationFilter), AbstractPreAuthenticatedProcessingFilter.class);
 
@@ -1,6 +1,8 @@
 
 package top.dcenter.ums.security.core.oauth.filter.login;
 
+import me.zhyd.oauth.cache.AuthStateCache;
+import me.zhyd.oauth.config.AuthDefaultSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -16,12 +18,14 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
 import org.springframework.security.oauth2.core.OAuth2Error;
 import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
 import org.springframework.security.web.DefaultRedirectStrategy;
 import org.springframework.security.web.RedirectStrategy;
 import org.springframework.security.web.authentication.AbstractAuthenticationProcessingFilter;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
 import top.dcenter.ums.security.common.utils.JsonUtil;
+import top.dcenter.ums.security.core.api.oauth.justauth.cache.Auth2StateCache;
 import top.dcenter.ums.security.core.api.oauth.justauth.request.Auth2DefaultRequest;
 import top.dcenter.ums.security.core.oauth.filter.redirect.Auth2DefaultRequestResolver;
 import top.dcenter.ums.security.core.oauth.justauth.Auth2RequestHolder;
@@ -59,6 +63,7 @@ public class Auth2LoginAuthenticationFilter extends AbstractAuthenticationProces
     public static final String TEMPORARY_USER_CACHE_KEY_PREFIX = "TEMPORARY_USER_REDIS_CACHE_KEY:";
     public static final String TEMPORARY_USERNAME_PARAM_NAME = "temporary_username";
     private static final String AUTHORIZATION_REQUEST_NOT_FOUND_ERROR_CODE = "authorization_request_not_found";
+    private static final String INVALID_STATE_PARAMETER_ERROR_CODE = "invalid_state_parameter";
 
     private final Auth2DefaultRequestResolver authorizationRequestResolver;
     private final RedisConnectionFactory redisConnectionFactory;
@@ -118,6 +123,16 @@ public class Auth2LoginAuthenticationFilter extends AbstractAuthenticationProces
             throw new OAuth2AuthenticationException(oauth2Error, oauth2Error.toString());
         }
 
+        // 校验 state 并删除 state 缓存, 同一个 state 只能使用一次
+        if (!auth2DefaultRequest.isIgnoreCheckState()
+                && !AuthDefaultSource.TWITTER.equals(auth2DefaultRequest.getAuthSource())
+                && !verifyAndConsumeState(auth2DefaultRequest.getAuthStateCache(),
+                                          params.getFirst(OAuth2ParameterNames.STATE))) {
+            OAuth2Error oauth2Error = new OAuth2Error(INVALID_STATE_PARAMETER_ERROR_CODE,
+                                                      "Illegal state for Client Registration: " + registrationId, null);
+            throw new OAuth2AuthenticationException(oauth2Error, oauth2Error.toString());
+        }
+
         Auth2LoginAuthenticationToken authenticationRequest = new Auth2LoginAuthenticationToken(auth2DefaultRequest, request);
 
         // Allow subclasses to set the "details" property
@@ -176,6 +191,22 @@ public class Auth2LoginAuthenticationFilter extends AbstractAuthenticationProces
         getSuccessHandler().onAuthenticationSuccess(request, response, authResult);
     }
 
+    /**
+     * 校验 state 并删除 state 缓存, {@link Auth2StateCache} 为一次原子操作, 其他 {@link AuthStateCache} 只校验不删除.
+     * @param authStateCache    {@link AuthStateCache}
+     * @param state             授权回调的 state 参数
+     * @return  state 有效返回 true
+     */
+    private static boolean verifyAndConsumeState(@NonNull AuthStateCache authStateCache, @Nullable String state) {
+        if (!StringUtils.hasText(state)) {
+            return false;
+        }
+        if (authStateCache instanceof Auth2StateCache) {
+            return ((Auth2StateCache) authStateCache).verifyAndConsume(state);
+        }
+        return authStateCache.containsKey(state);
+    }
+
     /**
      * Provided so that subclasses may configure what is put into the auth
      * request's details property.
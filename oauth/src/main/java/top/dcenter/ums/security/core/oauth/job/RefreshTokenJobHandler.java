@@ -20,7 +20,6 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
-
 package top.dcenter.ums.security.core.oauth.job;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -30,30 +29,62 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 import top.dcenter.ums.security.common.api.tasks.handler.JobHandler;
+import top.dcenter.ums.security.common.executor.DefaultThreadFactory;
 import top.dcenter.ums.security.core.api.oauth.entity.AuthTokenPo;
 import top.dcenter.ums.security.core.api.oauth.justauth.request.Auth2DefaultRequest;
 import top.dcenter.ums.security.core.api.oauth.repository.jdbc.UsersConnectionRepository;
 import top.dcenter.ums.security.core.api.oauth.repository.jdbc.UsersConnectionTokenRepository;
 import top.dcenter.ums.security.core.oauth.justauth.Auth2RequestHolder;
+import top.dcenter.ums.security.core.oauth.justauth.circuitbreaker.ProviderCallNotPermittedException;
+import top.dcenter.ums.security.core.oauth.justauth.circuitbreaker.ProviderCircuitBreakerRegistry;
+import top.dcenter.ums.security.core.oauth.justauth.http.PooledHttpImpl;
 import top.dcenter.ums.security.core.oauth.properties.Auth2Properties;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import static top.dcenter.ums.security.core.oauth.enums.EnableRefresh.NO;
 
 /**
- * 刷新第三方授权登录的 accessToken 有效期的定时任务实现, 前提条件, {@link AuthTokenPo} auth_token 表的 id 为 Long 类型
+ * 刷新第三方授权登录的 accessToken 有效期的定时任务实现, 前提条件, {@link AuthTokenPo} auth_token 表的 id 为 Long 类型.<br>
+ * 1. 分布式执行时 auth_token 表按 batchCount 切分为多个批次(tokenId 范围), 各节点从随机的批次开始, 通过 redis 租约领取批次,
+ *    执行批次期间定时续期租约, 批次的所有 token 处理完成后才标记为已完成; 节点宕机时租约过期, 其他节点会接管未完成的批次.
+ *    单机执行时不切分批次.<br>
+ * 2. 批次内通过 keyset 分页(id &gt; 上一页最后的 id)流式获取需要刷新的 token, 每页 refreshTokenJobPageSize 条,
+ *    tokenId 稀疏时也只查询需要刷新的 token, 内存中最多只有一页待分发的 token.<br>
+ * 3. 每个节点同时处理的 token 数量不超过 refreshTokenJobMaxInFlight, 达到最大数量时暂停分发(背压), 不会在线程池队列中堆积.<br>
+ * 4. 每个第三方同时刷新的 token 数量不超过 refreshTokenJobProviderConcurrency, 一个慢的第三方只会延后自己的 token,
+ *    不会阻塞其他第三方的 token.<br>
+ * 5. 刷新成功的 token 累积到 refreshTokenJobFlushSize 时通过 batchUpdate 批量更新 auth_token 与 user_connection 表,
+ *    并一次性清除相关缓存, 批次剩余的 token 在批次标记为已完成前更新.<br>
+ * 6. 执行进度与吞吐量通过 {@link #getMetrics()} 获取, 每个批次完成时输出日志.
  * @author YongWu zheng
  * @version V2.0  Created by 2020/10/14 14:03
  */
@@ -61,21 +92,71 @@ import static top.dcenter.ums.security.core.oauth.enums.EnableRefresh.NO;
 public class RefreshTokenJobHandler implements JobHandler {
 
     /**
-     * refresh token 定时任务锁的 redis key
+     * refresh token 定时任务已完成批次的 redis hash key, field 为批次
      */
     public static final String REFRESH_TOKEN_JOB = "RefreshTokenJob:HashKey:lock";
+    /**
+     * refresh token 定时任务批次租约的 redis key 前缀, 后面添加批次
+     */
+    public static final String REFRESH_TOKEN_JOB_LEASE_PREFIX = "RefreshTokenJob:lease:";
     /**
      * refresh token 定时任务锁的 redis key 的过期时间, 单位: 小时
      */
     public static final Integer REFRESH_TOKEN_JOB_KEY_EXPIRED_IN = 6;
 
+    /**
+     * 租约仍属于当前节点时续期
+     */
+    private static final byte[] RENEW_LEASE_SCRIPT = ("if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end").getBytes(StandardCharsets.UTF_8);
+    /**
+     * 租约仍属于当前节点时释放
+     */
+    private static final byte[] RELEASE_LEASE_SCRIPT = ("if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('del', KEYS[1]) else return 0 end").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DONE = "1".getBytes(StandardCharsets.UTF_8);
+    /**
+     * 所有第三方等待执行的 token 都已满时, 等待任意一个 token 处理完成的最长时间
+     */
+    private static final long COMPLETION_WAIT_MILLIS = 100L;
+
     private final UsersConnectionRepository usersConnectionRepository;
     private final UsersConnectionTokenRepository usersConnectionTokenRepository;
     private final Auth2Properties auth2Properties;
     private final ExecutorService refreshTokenTaskExecutor;
     private final String cronExp;
+    /**
+     * 当前节点的租约标识
+     */
+    private final byte[] nodeId = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+    /**
+     * 当前节点同时处理的 token 数量限制
+     */
+    private final Semaphore inFlight;
+    /**
+     * Map(providerId, ProviderLimiter)
+     */
+    private final Map<String, ProviderLimiter> providerLimiters = new ConcurrentHashMap<>();
+    /**
+     * 当前节点持有租约的批次
+     */
+    private final Set<Long> heldLeases = ConcurrentHashMap.newKeySet();
+    private final RefreshTokenJobMetrics metrics = new RefreshTokenJobMetrics();
+    /**
+     * token 处理完成时通知分发线程
+     */
+    private final Object completion = new Object();
+    /**
+     * 刷新成功等待批量更新的 token, 通过 synchronized (refreshedTokens) 访问
+     */
+    private final List<AuthTokenPo> refreshedTokens = new ArrayList<>();
+    private final int flushSize;
     @Autowired(required = false)
     private RedisConnectionFactory redisConnectionFactory;
+    @Autowired(required = false)
+    private PooledHttpImpl pooledHttp;
+    @Autowired(required = false)
+    private ProviderCircuitBreakerRegistry circuitBreakerRegistry;
 
     public RefreshTokenJobHandler(UsersConnectionRepository usersConnectionRepository,
                                   @Autowired(required = false) UsersConnectionTokenRepository usersConnectionTokenRepository,
@@ -90,6 +171,8 @@ public class RefreshTokenJobHandler implements JobHandler {
         this.usersConnectionTokenRepository = usersConnectionTokenRepository;
         this.auth2Properties = auth2Properties;
         this.cronExp = auth2Properties.getRefreshTokenJobCron();
+        this.inFlight = new Semaphore(Math.max(1, auth2Properties.getRefreshTokenJobMaxInFlight()));
+        this.flushSize = Math.max(1, auth2Properties.getRefreshTokenJobFlushSize());
     }
 
     @Override
@@ -115,54 +198,120 @@ public class RefreshTokenJobHandler implements JobHandler {
         return this.cronExp;
     }
 
+    /**
+     * 获取当前节点最近一次定时任务的执行进度与吞吐量指标
+     * @return  {@link RefreshTokenJobMetrics}
+     */
+    @NonNull
+    public RefreshTokenJobMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * 分布式执行定时任务
      */
     @SuppressFBWarnings("REC_CATCH_EXCEPTION")
     private void distributedRefreshToken() {
+        final long leaseTtl = auth2Properties.getRefreshTokenJobLeaseTtl().toMillis();
+        final ScheduledExecutorService heartbeat =
+                Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("refreshTokenLease"));
         try (final RedisConnection connection = this.redisConnectionFactory.getConnection())
         {
             final Instant now = Instant.now();
-
-            final byte[] key = REFRESH_TOKEN_JOB.getBytes(StandardCharsets.UTF_8.name());
-            final long expiredIn = Duration.ofHours(REFRESH_TOKEN_JOB_KEY_EXPIRED_IN).getSeconds();
-            // 设置过期时间
-            connection.expireAt(key, now.plusSeconds(expiredIn).toEpochMilli());
+            final long deadline = now.plus(Duration.ofHours(REFRESH_TOKEN_JOB_KEY_EXPIRED_IN)).toEpochMilli();
+            final byte[] key = REFRESH_TOKEN_JOB.getBytes(StandardCharsets.UTF_8);
 
             Long maxTokenId = usersConnectionTokenRepository.getMaxTokenId();
             Integer batchCount = auth2Properties.getBatchCount();
             long total = maxTokenId / batchCount + (maxTokenId % batchCount == 0 ? 0 : 1);
+            metrics.reset(total);
             log.info("分布式 refreshToken 定时刷新任务开始: 总批次={}, batchCount={}, maxTokenId={}",
                      total, batchCount, maxTokenId);
-            for (int i = 0; i < total; i++)
+            if (total == 0) {
+                return;
+            }
+
+            // 定时续期当前节点持有的租约
+            final long heartbeatInterval = Math.max(1L, leaseTtl / 3);
+            heartbeat.scheduleWithFixedDelay(() -> renewLeases(leaseTtl), heartbeatInterval, heartbeatInterval,
+                                             TimeUnit.MILLISECONDS);
+
+            // 各节点从随机的批次开始领取, 减少竞争
+            final long offset = ThreadLocalRandom.current().nextLong(total);
+            // 曾经被其他节点持有租约的批次, 之后由当前节点领取时即为接管
+            final Set<Long> leasedByOthers = new HashSet<>();
+            while (true)
             {
-                try {
-                    final byte[] field = Integer.toString(i).getBytes(StandardCharsets.UTF_8.name());
-                    // 获取锁
-                    final Boolean lock = connection.hSetNX(key, field, "0".getBytes(StandardCharsets.UTF_8.name()));
-                    // 获取锁失败, 继续下一批次
+                int pending = 0;
+                for (long k = 0; k < total; k++)
+                {
+                    final long batch = (offset + k) % total;
+                    final byte[] field = Long.toString(batch).getBytes(StandardCharsets.UTF_8);
+                    if (Boolean.TRUE.equals(connection.hExists(key, field))) {
+                        continue;
+                    }
+                    final byte[] leaseKey = getLeaseKey(batch);
+                    final Boolean lock = connection.set(leaseKey, nodeId, Expiration.milliseconds(leaseTtl),
+                                                        RedisStringCommands.SetOption.SET_IF_ABSENT);
+                    // 其他节点执行中, 继续下一批次
                     if (lock == null || !lock)
                     {
-                        log.info("分布式 refreshToken 定时刷新任务: 获取锁失败, 跳过第 {} 批次", i);
+                        leasedByOthers.add(batch);
+                        pending++;
                         continue;
                     }
-                    log.info("分布式 refreshToken 定时刷新任务: 获取锁成功, 执行第 {} 批次", i);
-                    // 从数据库表 auth_token 获取符合条件的记录数; 从第三方刷新 token 信息, 并对 user_connection 与 auth_token 表进行更新
-                    refresh(batchCount, i);
+                    heldLeases.add(batch);
+                    try {
+                        // 领取租约前其他节点可能刚好完成此批次
+                        if (Boolean.TRUE.equals(connection.hExists(key, field))) {
+                            continue;
+                        }
+                        if (leasedByOthers.contains(batch)) {
+                            metrics.rangeTakenOver();
+                            log.info("分布式 refreshToken 定时刷新任务: 第 {} 批次的租约已过期, 接管执行", batch);
+                        }
+                        // 从数据库表 auth_token 获取符合条件的记录数; 从第三方刷新 token 信息, 并对 user_connection 与 auth_token 表进行更新
+                        if (refresh(batch, batch * batchCount, Math.min(maxTokenId, (batch + 1L) * batchCount), deadline)) {
+                            connection.hSet(key, field, DONE);
+                            if (connection.ttl(key) < 0) {
+                                connection.expireAt(key, now.plus(Duration.ofHours(REFRESH_TOKEN_JOB_KEY_EXPIRED_IN))
+                                                            .getEpochSecond());
+                            }
+                        }
+                    }
+                    finally {
+                        heldLeases.remove(batch);
+                        connection.eval(RELEASE_LEASE_SCRIPT, ReturnType.INTEGER, 1, leaseKey, nodeId);
+                    }
                 }
-                catch (UnsupportedEncodingException e) {
-                    log.error(String.format("分布式 refreshToken 定时刷新任务 key(%d) 类型转换异常, error=%s", i, e.getMessage()), e);
+                if (pending == 0) {
+                    break;
                 }
+                if (System.currentTimeMillis() > deadline) {
+                    log.warn("分布式 refreshToken 定时刷新任务超时: 仍有 {} 个批次未完成", pending);
+                    break;
+                }
+                // 等待其他节点完成或其租约过期
+                TimeUnit.MILLISECONDS.sleep(Math.max(1000L, leaseTtl / 2));
             }
 
-            log.info("分布式 refreshToken 定时刷新任务结束: 总批次={}, batchCount={}, maxTokenId={}, 总耗时={} 毫秒",
-                     total, batchCount, maxTokenId, Instant.now().toEpochMilli() - now.toEpochMilli());
+            metrics.finish();
+            log.info("分布式 refreshToken 定时刷新任务结束: 总批次={}, batchCount={}, maxTokenId={}, 总耗时={} 毫秒, {}",
+                     total, batchCount, maxTokenId, Instant.now().toEpochMilli() - now.toEpochMilli(), metrics);
 
         }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("分布式 refreshToken 定时刷新任务被中断: {}", metrics);
+        }
         catch (Exception e)
         {
             log.error(String.format("分布式 refreshToken 定时刷新任务异常, error=%s", e.getMessage()), e);
         }
+        finally {
+            heartbeat.shutdownNow();
+            metrics.finish();
+        }
 
     }
 
@@ -173,59 +322,213 @@ public class RefreshTokenJobHandler implements JobHandler {
         try
         {
             long start = Instant.now().toEpochMilli();
+            final long deadline = start + Duration.ofHours(REFRESH_TOKEN_JOB_KEY_EXPIRED_IN).toMillis();
 
+            // 只处理任务开始时已存在的 token
             Long maxTokenId = usersConnectionTokenRepository.getMaxTokenId();
-            Integer batchCount = auth2Properties.getBatchCount();
-            long total = maxTokenId / batchCount + (maxTokenId % batchCount == 0 ? 0 : 1);
+            metrics.reset(1L);
 
-            log.info("refreshToken 定时刷新任务开始: 总批次={}, batchCount={}, maxTokenId={}",
-                     total, batchCount, maxTokenId);
-            for (int i = 0; i < total; i++)
-            {
-                log.info("refreshToken 定时刷新任务: 执行第 {} 批次", i);
-                // 从数据库表 auth_token 获取符合条件的记录数; 从第三方刷新 token 信息, 并对 user_connection 与 auth_token 表进行更新
-                refresh(batchCount, i);
-            }
+            log.info("refreshToken 定时刷新任务开始: maxTokenId={}, pageSize={}",
+                     maxTokenId, auth2Properties.getRefreshTokenJobPageSize());
+            // 从数据库表 auth_token 流式获取符合条件的记录; 从第三方刷新 token 信息, 并对 user_connection 与 auth_token 表进行更新
+            refresh(0L, 0L, maxTokenId, deadline);
 
-            log.info("refreshToken 定时刷新任务结束: 总批次={}, batchCount={}, maxTokenId={}, 总耗时={} 毫秒",
-                     total, batchCount, maxTokenId, Instant.now().toEpochMilli() - start);
+            metrics.finish();
+            log.info("refreshToken 定时刷新任务结束: maxTokenId={}, 总耗时={} 毫秒, {}",
+                     maxTokenId, Instant.now().toEpochMilli() - start, metrics);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            metrics.finish();
+            log.warn("单机 refreshToken 定时刷新任务被中断: {}", metrics);
         }
         catch (Exception e)
         {
+            metrics.finish();
             log.error(String.format("单机 refreshToken 定时刷新任务异常, error=%s", e.getMessage()), e);
         }
     }
 
     /**
-     * 从数据库表 auth_token 获取符合条件的记录数; 从第三方刷新 token 信息, 并对 user_connection 与 auth_token 表进行更新
-     * @param batchCount    每次从数据库表 auth_token 获取的记录数
-     * @param batch         迭代批次, 通过与 batchCount 来计算 tokenId 范围
+     * 从数据库表 auth_token 通过 keyset 分页流式获取符合条件的记录; 从第三方刷新 token 信息, 并对 user_connection 与 auth_token 表进行更新,
+     * 等待此批次的所有 token 处理完成后返回.
+     * @param batch         批次, 用于日志
+     * @param afterId       批次的起始 tokenId, 不包含
+     * @param endId         批次的结束 tokenId, 包含
+     * @param deadline      定时任务的截止时间戳(毫秒)
+     * @return  此批次的所有 token 都已处理时返回 true
+     * @throws InterruptedException 等待时被中断
      */
-    private void refresh(Integer batchCount, int batch) {
+    private boolean refresh(long batch, long afterId, long endId, long deadline) throws InterruptedException {
 
+        final long start = System.currentTimeMillis();
         // 过期时间戳(获取小于此时间戳的记录)
-        final long expiredTime = Instant.now().toEpochMilli() + Duration.ofHours(auth2Properties.getRemainingExpireIn()).toMillis();
+        final long expiredTime = start + Duration.ofHours(auth2Properties.getRemainingExpireIn()).toMillis();
+        final int pageSize = Math.max(1, auth2Properties.getRefreshTokenJobPageSize());
+        final Iterator<AuthTokenPo> tokens =
+                usersConnectionTokenRepository.iterateAuthTokenByExpireTime(expiredTime, afterId, endId, pageSize);
+
+        final PendingTokens pending = new PendingTokens();
+        // 第三方等待执行的 token 已满时延后分发, 先分发其他第三方的 token
+        final List<AuthTokenPo> deferred = new ArrayList<>();
+        long count = 0L;
+        boolean loaded = true;
         try {
-            // 获取 token 记录
-            List<AuthTokenPo> authTokenPoList =
-                    usersConnectionTokenRepository.findAuthTokenByExpireTimeAndBetweenId(expiredTime,
-                                                                                         1L + ((long) batch) * batchCount,
-                                                                                         (batch + 1L) * batchCount);
-            // 异步更新, 如果异步线程池处理过慢, refreshTokenTaskExecutor 的默认拒绝策略为 CallerRunsPolicy, 即改为同步更新
-            authTokenPoList.forEach(
-                    token ->
-                    {
-                        final Auth2DefaultRequest auth2DefaultRequest = Auth2RequestHolder.getAuth2DefaultRequest(token.getProviderId());
-                        refreshTokenTaskExecutor.execute(() -> getTokenAndUpdateAuthTokenPo(token, auth2DefaultRequest));
+            while (tokens.hasNext()) {
+                final AuthTokenPo token = tokens.next();
+                count++;
+                metrics.tokensLoaded(1L);
+                if (!dispatch(token, pending)) {
+                    deferred.add(token);
+                    // 延后的 token 最多一页
+                    if (deferred.size() >= pageSize) {
+                        dispatchDeferred(deferred, pending);
                     }
-            );
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            log.error(String.format("refreshToken 定时刷新任务从 auth_token 获取记录出现异常: 第 %d 批次, id > %d AND id <= %d, error=%s",
+                                    batch, afterId, endId, e.getMessage()), e);
+            loaded = false;
+        }
+        dispatchDeferred(deferred, pending);
+
+        // 等待此批次的所有 token 处理完成, 租约由心跳续期
+        while (!pending.await(TimeUnit.MINUTES.toMillis(1L))) {
+            if (System.currentTimeMillis() > deadline) {
+                log.warn("refreshToken 定时刷新任务: 第 {} 批次超时, 未完成 token 数量={}", batch, pending.getCount());
+                return false;
+            }
+            log.info("refreshToken 定时刷新任务: 等待第 {} 批次完成, 未完成 token 数量={}, {}", batch, pending.getCount(), metrics);
+        }
+        // 更新此批次剩余的 token 后才标记为已完成
+        if (!flushRefreshedTokens(drainRefreshedTokens()) || !loaded) {
+            return false;
+        }
+        metrics.rangeCompleted();
+        log.info("refreshToken 定时刷新任务: 第 {} 批次完成, token 数量={}, 耗时={} 毫秒, {}",
+                 batch, count, System.currentTimeMillis() - start, metrics);
+        return true;
+    }
+
+    /**
+     * 分发延后的 token, 直到全部分发完成
+     * @param deferred  延后的 token, 返回时为空
+     * @param pending   此批次未完成的 token 数量
+     * @throws InterruptedException 等待时被中断
+     */
+    private void dispatchDeferred(@NonNull List<AuthTokenPo> deferred,
+                                  @NonNull PendingTokens pending) throws InterruptedException {
+        while (!deferred.isEmpty()) {
+            final int size = deferred.size();
+            final Iterator<AuthTokenPo> it = deferred.iterator();
+            while (it.hasNext()) {
+                if (dispatch(it.next(), pending)) {
+                    it.remove();
+                }
+            }
+            if (deferred.size() == size) {
+                awaitCompletion();
+            }
+        }
+    }
+
+    /**
+     * 分发 token 到 refreshTokenTaskExecutor, 当前节点同时处理的 token 数量达到上限时阻塞等待.
+     * @param token     {@link AuthTokenPo}
+     * @param pending   此批次未完成的 token 数量, 分发时加 1, token 处理完成时减 1
+     * @return  已分发返回 true, 第三方等待执行的 token 已满时不分发并返回 false
+     * @throws InterruptedException 等待时被中断
+     */
+    private boolean dispatch(@NonNull AuthTokenPo token, @NonNull PendingTokens pending) throws InterruptedException {
+        final String providerId = token.getProviderId();
+        final Auth2DefaultRequest auth2DefaultRequest = Auth2RequestHolder.getAuth2DefaultRequest(providerId);
+        if (auth2DefaultRequest == null) {
+            log.info("RefreshToken 不支持: providerId={}, ", providerId);
+            metrics.tokenUnsupported();
+            return true;
+        }
+        final ProviderLimiter limiter = providerLimiters.computeIfAbsent(providerId, this::createProviderLimiter);
+        if (limiter.isSaturated()) {
+            return false;
+        }
+        inFlight.acquire();
+        pending.increment();
+        limiter.submit(() -> {
+            try {
+                getTokenAndUpdateAuthTokenPo(token, auth2DefaultRequest);
+            }
+            finally {
+                inFlight.release();
+                pending.decrement();
+                synchronized (completion) {
+                    completion.notifyAll();
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 等待任意一个 token 处理完成
+     * @throws InterruptedException 等待时被中断
+     */
+    @SuppressFBWarnings({"WA_NOT_IN_LOOP", "UW_UNCOND_WAIT"})
+    private void awaitCompletion() throws InterruptedException {
+        synchronized (completion) {
+            // 超时避免错过通知
+            completion.wait(COMPLETION_WAIT_MILLIS);
+        }
+    }
+
+    @NonNull
+    private ProviderLimiter createProviderLimiter(@NonNull String providerId) {
+        int concurrency = auth2Properties.getRefreshTokenJobProviderConcurrencyMap()
+                                         .getOrDefault(providerId,
+                                                       auth2Properties.getRefreshTokenJobProviderConcurrency());
+        if (this.pooledHttp != null)
+        {
+            // 不超过第三方的最大请求数量, 超出的 token 在 ProviderLimiter 中排队, 不占用执行线程等待请求许可
+            concurrency = Math.min(concurrency, this.pooledHttp.getMaxConnections(providerId));
+        }
+        if (this.circuitBreakerRegistry != null)
+        {
+            // 不超过隔离的最大请求数量, 避免超出的刷新请求被隔离直接拒绝
+            concurrency = Math.min(concurrency,
+                                   this.circuitBreakerRegistry.getCircuitBreaker(providerId).getMaxConcurrentCalls());
+        }
+        return new ProviderLimiter(Math.max(1, concurrency));
+    }
+
+    /**
+     * 续期当前节点持有的租约, 在心跳线程中执行
+     * @param leaseTtl  租约的有效期(毫秒)
+     */
+    private void renewLeases(long leaseTtl) {
+        if (heldLeases.isEmpty()) {
+            return;
+        }
+        final byte[] ttl = Long.toString(leaseTtl).getBytes(StandardCharsets.UTF_8);
+        try (final RedisConnection connection = this.redisConnectionFactory.getConnection()) {
+            for (Long batch : heldLeases) {
+                final Long renewed = connection.eval(RENEW_LEASE_SCRIPT, ReturnType.INTEGER, 1,
+                                                     getLeaseKey(batch), nodeId, ttl);
+                if (renewed == null || renewed == 0L) {
+                    log.warn("refreshToken 定时刷新任务: 第 {} 批次的租约已丢失, 此批次可能被其他节点重复执行", batch);
+                }
+            }
         }
         catch (Exception e) {
-            log.error(String.format("refreshToken 定时刷新任务从 auth_token 获取的记录数出现异常: 第 %d 批次, batchCount=%d, error=%s",
-                                    batch, batchCount, e.getMessage()), e);
+            log.error(String.format("refreshToken 定时刷新任务续期租约失败, error=%s", e.getMessage()), e);
         }
     }
 
+    @NonNull
+    private static byte[] getLeaseKey(long batch) {
+        return (REFRESH_TOKEN_JOB_LEASE_PREFIX + batch).getBytes(StandardCharsets.UTF_8);
+    }
+
     /**
      * 从第三方刷新 token 信息, 并对 user_connection 与 auth_token 表进行更新
      * @param token                 {@link AuthTokenPo}
@@ -249,33 +552,86 @@ public class RefreshTokenJobHandler implements JobHandler {
                         msg = String.format("RefreshToken 第三方 %s 不支持: tokenId=%s",
                                             token.getProviderId(), token.getId());
                         log.info(msg);
+                        metrics.tokenUnsupported();
                         authTokenPo = token;
                         authTokenPo.setEnableRefresh(NO);
                         // 更新为第三方不支持 refresh token
                         usersConnectionTokenRepository.updateEnableRefreshByTokenId(NO, token.getId());
                     }
+                    else if (e instanceof ProviderCallNotPermittedException)
+                    {
+                        // 第三方熔断时直接失败, 不输出异常栈, 下次定时任务再刷新
+                        log.warn("RefreshToken 失败: tokenId={}, error={}", token.getId(), e.getMessage());
+                        metrics.tokenFailed();
+                    }
                     else
                     {
                         msg = String.format("RefreshToken 失败: tokenId=%s, error=%s",
                                             token.getId(), e.getMessage());
                         log.error(msg, e);
+                        metrics.tokenFailed();
                     }
                     return;
                 }
 
-                // 根据 authTokenPo 对 user_connection 与 auth_token 表进行更新
-                updateAuthTokenPo(authTokenPo);
+                // 累积到 flushSize 时批量对 user_connection 与 auth_token 表进行更新
+                final List<AuthTokenPo> tokens;
+                synchronized (refreshedTokens) {
+                    refreshedTokens.add(authTokenPo);
+                    tokens = refreshedTokens.size() >= flushSize ? drainRefreshedTokens() : null;
+                }
+                if (tokens != null) {
+                    flushRefreshedTokens(tokens);
+                }
 
             }
             catch (Exception e) {
                 String msg = String.format("RefreshToken 失败: tokenId=%s, error=%s",
                                            token.getId(), e.getMessage());
                 log.error(msg, e);
+                metrics.tokenFailed();
             }
         }
         else
         {
             log.info("RefreshToken 不支持: providerId={}, ", token.getProviderId());
+            metrics.tokenUnsupported();
+        }
+    }
+
+    /**
+     * 取出所有等待批量更新的 token
+     * @return  等待批量更新的 token
+     */
+    @NonNull
+    private List<AuthTokenPo> drainRefreshedTokens() {
+        synchronized (refreshedTokens) {
+            final List<AuthTokenPo> tokens = new ArrayList<>(refreshedTokens);
+            refreshedTokens.clear();
+            return tokens;
+        }
+    }
+
+    /**
+     * 根据 tokens 批量对 auth_token 与 user_connection 表进行更新, 相关缓存在批量更新后一次性清除
+     * @param tokens    刷新成功的 {@link AuthTokenPo}
+     * @return  更新成功返回 true
+     */
+    private boolean flushRefreshedTokens(@NonNull List<AuthTokenPo> tokens) {
+        if (tokens.isEmpty()) {
+            return true;
+        }
+        try {
+            usersConnectionTokenRepository.batchUpdateTokens(tokens);
+            usersConnectionRepository.batchUpdateConnections(tokens);
+            metrics.tokensRefreshed(tokens.size());
+            return true;
+        }
+        catch (Exception e) {
+            log.error(String.format("RefreshToken 批量更新失败: token 数量=%d, error=%s",
+                                    tokens.size(), e.getMessage()), e);
+            metrics.tokensFailed(tokens.size());
+            return false;
         }
     }
 
@@ -290,4 +646,107 @@ public class RefreshTokenJobHandler implements JobHandler {
         usersConnectionRepository.updateConnectionByTokenId(token);
     }
 
-}
\ No newline at end of file
+    /**
+     * 批次中已分发但未处理完成的 token 数量
+     */
+    private static final class PendingTokens {
+
+        private int count;
+
+        private synchronized void increment() {
+            count++;
+        }
+
+        private synchronized void decrement() {
+            if (--count == 0) {
+                notifyAll();
+            }
+        }
+
+        private synchronized int getCount() {
+            return count;
+        }
+
+        /**
+         * 等待所有 token 处理完成
+         * @param timeoutMillis 最长等待时间(毫秒)
+         * @return  所有 token 都已处理完成返回 true, 超时返回 false
+         * @throws InterruptedException 等待时被中断
+         */
+        private synchronized boolean await(long timeoutMillis) throws InterruptedException {
+            final long end = System.currentTimeMillis() + timeoutMillis;
+            while (count > 0) {
+                final long remaining = end - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 单个第三方的并发限制: 同时执行的 token 数量不超过 concurrency, 超出的 token 在此第三方的队列中等待,
+     * 有 token 执行完成时由执行线程提交下一个 token.
+     */
+    private final class ProviderLimiter {
+
+        private final int concurrency;
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int running;
+
+        private ProviderLimiter(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        /**
+         * @return 等待执行的 token 数量已达到 concurrency 时返回 true
+         */
+        private synchronized boolean isSaturated() {
+            return running >= concurrency && waiting.size() >= concurrency;
+        }
+
+        private void submit(@NonNull Runnable task) {
+            synchronized (this) {
+                if (running >= concurrency) {
+                    waiting.add(task);
+                    return;
+                }
+                running++;
+            }
+            execute(task);
+        }
+
+        private void execute(@NonNull Runnable task) {
+            final Runnable wrapped = () -> {
+                try {
+                    task.run();
+                }
+                finally {
+                    onComplete();
+                }
+            };
+            try {
+                refreshTokenTaskExecutor.execute(wrapped);
+            }
+            catch (RejectedExecutionException e) {
+                // 线程池已关闭时, 在当前线程执行
+                wrapped.run();
+            }
+        }
+
+        private void onComplete() {
+            final Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    running--;
+                    return;
+                }
+            }
+            execute(next);
+        }
+    }
+
+}
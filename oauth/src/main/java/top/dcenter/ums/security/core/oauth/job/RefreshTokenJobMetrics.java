@@ -0,0 +1,172 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.oauth.job;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link RefreshTokenJobHandler} 在当前节点的执行进度与吞吐量指标, 每次定时任务开始时重置.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 16:05
+ */
+public final class RefreshTokenJobMetrics {
+
+    private final AtomicLong rangesTotal = new AtomicLong(0L);
+    private final AtomicLong rangesCompleted = new AtomicLong(0L);
+    private final AtomicLong rangesTakenOver = new AtomicLong(0L);
+    private final AtomicLong tokensLoaded = new AtomicLong(0L);
+    private final AtomicLong tokensRefreshed = new AtomicLong(0L);
+    private final AtomicLong tokensUnsupported = new AtomicLong(0L);
+    private final AtomicLong tokensFailed = new AtomicLong(0L);
+    private volatile long startTime;
+    private volatile long endTime;
+
+    void reset(long rangesTotal) {
+        this.rangesTotal.set(rangesTotal);
+        this.rangesCompleted.set(0L);
+        this.rangesTakenOver.set(0L);
+        this.tokensLoaded.set(0L);
+        this.tokensRefreshed.set(0L);
+        this.tokensUnsupported.set(0L);
+        this.tokensFailed.set(0L);
+        this.startTime = System.currentTimeMillis();
+        this.endTime = 0L;
+    }
+
+    void rangeCompleted() {
+        rangesCompleted.incrementAndGet();
+    }
+
+    void rangeTakenOver() {
+        rangesTakenOver.incrementAndGet();
+    }
+
+    void tokensLoaded(long count) {
+        tokensLoaded.addAndGet(count);
+    }
+
+    void tokensRefreshed(long count) {
+        tokensRefreshed.addAndGet(count);
+    }
+
+    void tokenUnsupported() {
+        tokensUnsupported.incrementAndGet();
+    }
+
+    void tokenFailed() {
+        tokensFailed.incrementAndGet();
+    }
+
+    void tokensFailed(long count) {
+        tokensFailed.addAndGet(count);
+    }
+
+    void finish() {
+        this.endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return 总批次(tokenId 范围)数量
+     */
+    public long getRangesTotal() {
+        return rangesTotal.get();
+    }
+
+    /**
+     * @return 当前节点已完成的批次数量
+     */
+    public long getRangesCompleted() {
+        return rangesCompleted.get();
+    }
+
+    /**
+     * @return 当前节点接管的其他节点租约已过期的批次数量
+     */
+    public long getRangesTakenOver() {
+        return rangesTakenOver.get();
+    }
+
+    /**
+     * @return 当前节点从数据库获取的 token 数量
+     */
+    public long getTokensLoaded() {
+        return tokensLoaded.get();
+    }
+
+    /**
+     * @return 当前节点刷新成功的 token 数量
+     */
+    public long getTokensRefreshed() {
+        return tokensRefreshed.get();
+    }
+
+    /**
+     * @return 当前节点第三方不支持刷新的 token 数量
+     */
+    public long getTokensUnsupported() {
+        return tokensUnsupported.get();
+    }
+
+    /**
+     * @return 当前节点刷新失败的 token 数量
+     */
+    public long getTokensFailed() {
+        return tokensFailed.get();
+    }
+
+    /**
+     * @return 定时任务开始的时间戳(毫秒), 还未执行过时为 0
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return 定时任务结束的时间戳(毫秒), 执行中时为 0
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return 当前节点每秒处理的 token 数量
+     */
+    public double getThroughput() {
+        final long start = startTime;
+        if (start == 0L) {
+            return 0D;
+        }
+        final long end = endTime == 0L ? System.currentTimeMillis() : endTime;
+        final long processed = tokensRefreshed.get() + tokensUnsupported.get() + tokensFailed.get();
+        return processed * 1000D / Math.max(1L, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ranges=%d/%d, takenOver=%d, tokens: loaded=%d, refreshed=%d, unsupported=%d, failed=%d, " +
+                                     "throughput=%.1f/s",
+                             getRangesCompleted(), getRangesTotal(), getRangesTakenOver(), getTokensLoaded(),
+                             getTokensRefreshed(), getTokensUnsupported(), getTokensFailed(), getThroughput());
+    }
+
+}
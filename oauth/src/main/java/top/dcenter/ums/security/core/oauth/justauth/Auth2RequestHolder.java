@@ -50,6 +50,8 @@ import top.dcenter.ums.security.core.api.oauth.justauth.request.Auth2DefaultRequ
 import top.dcenter.ums.security.core.oauth.justauth.cache.AuthStateRedisCache;
 import top.dcenter.ums.security.core.oauth.justauth.cache.AuthStateSessionCache;
 import top.dcenter.ums.security.core.oauth.justauth.enums.StateCacheType;
+import top.dcenter.ums.security.core.oauth.justauth.circuitbreaker.ProviderCircuitBreakerRegistry;
+import top.dcenter.ums.security.core.oauth.justauth.http.PooledHttpImpl;
 import top.dcenter.ums.security.core.oauth.justauth.request.AuthDefaultRequestAdapter;
 import top.dcenter.ums.security.core.oauth.properties.Auth2Properties;
 import top.dcenter.ums.security.core.oauth.properties.BaseAuth2Properties;
@@ -128,6 +130,14 @@ public final class Auth2RequestHolder implements InitializingBean, ApplicationCo
     private static final Map<AuthSource, String> SOURCE_PROVIDER_ID_MAP = new ConcurrentHashMap<>();
 
     private ApplicationContext applicationContext;
+    /**
+     * 开启 ums.oauth.http-pool.enable 时不为 null, 用于注册第三方的 host
+     */
+    private PooledHttpImpl pooledHttp;
+    /**
+     * 开启 ums.oauth.circuit-breaker.enable 时不为 null, 用于获取第三方的熔断器
+     */
+    private ProviderCircuitBreakerRegistry circuitBreakerRegistry;
 
     /**
      * 自定义 OAuth2 Login source, 应用启动时自动注入, 如果未实现此为 null 值,
@@ -232,6 +242,9 @@ public final class Auth2RequestHolder implements InitializingBean, ApplicationCo
 
         // 获取 auth2Properties
         Auth2Properties auth2Properties = applicationContext.getBean(Auth2Properties.class);
+        this.pooledHttp = applicationContext.getBeanProvider(PooledHttpImpl.class).getIfAvailable();
+        this.circuitBreakerRegistry =
+                applicationContext.getBeanProvider(ProviderCircuitBreakerRegistry.class).getIfAvailable();
 
         JustAuthProperties justAuthProperties = auth2Properties.getJustAuth();
         StateCacheType stateCacheType = justAuthProperties.getCacheType();
@@ -522,6 +535,13 @@ public final class Auth2RequestHolder implements InitializingBean, ApplicationCo
                                                                    @Nullable String alipayProxyHost,
                                                                    @Nullable Integer alipayProxyPort) throws ClassNotFoundException {
         final AuthDefaultRequestAdapter adapter = new AuthDefaultRequestAdapter(config, source, authStateCache);
+        if (nonNull(this.pooledHttp)) {
+            // 注册第三方的 host, 使用第三方的请求许可与超时配置
+            this.pooledHttp.registerProvider(adapter.getProviderId(), source, config.getHttpConfig());
+        }
+        if (nonNull(this.circuitBreakerRegistry)) {
+            adapter.setCircuitBreaker(this.circuitBreakerRegistry.getCircuitBreaker(adapter.getProviderId()));
+        }
         Class<?>[] argumentTypes = new Class[]{AuthConfig.class, AuthStateCache.class};
         Object[] arguments = new Object[]{config, authStateCache};
         if (ALIPAY.equals(source) && hasText(alipayProxyHost) && nonNull(alipayProxyPort)) {
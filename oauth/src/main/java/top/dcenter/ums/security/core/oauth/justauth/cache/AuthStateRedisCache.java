@@ -71,6 +71,19 @@ public class AuthStateRedisCache implements Auth2StateCache {
         return StringUtils.hasText(stringRedisTemplate.opsForValue().get(parsingKey(key)));
     }
 
+    /**
+     * 通过 DEL 的返回值校验 state 是否存在, 校验与删除为一次 redis 请求的原子操作, 并发的重放请求只有一个能校验成功
+     * @param key   state 缓存的 key
+     * @return  state 存在时删除并返回 true, 否则返回 false
+     */
+    @Override
+    public boolean verifyAndConsume(String key) {
+        if (!StringUtils.hasText(key)) {
+            return false;
+        }
+        return Boolean.TRUE.equals(stringRedisTemplate.delete(parsingKey(key)));
+    }
+
     @Override
     public CacheKeyStrategy getCacheKeyStrategy() {
         return CacheKeyStrategy.UUID;
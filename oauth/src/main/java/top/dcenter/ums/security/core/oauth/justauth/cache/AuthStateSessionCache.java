@@ -45,6 +45,7 @@ import static org.springframework.web.context.request.RequestAttributes.SCOPE_SE
  *     3. 清除缓存时间点: 获取缓存时(<code>get(key)</code>)会判断是否过期, 过期则删除, 调用 <code>containsKey(key)</code> 时会走 <code>get(key)
  *     </code> 流程. <br>
  *     4. 相同 session 与 相同的第三方 {@link AuthDefaultSource} 的 <code>name()</code>, <code>cache(key, value)</code> 会覆盖上一次的 value; <br>
+ *     5. <code>verifyAndConsume(key)</code> 在 session mutex 中校验并删除缓存, 同一个 key 只能成功校验一次. <br>
  *
  * @author YongWu zheng
  * @version V1.0  Created by 2020/10/6 15:59
@@ -112,6 +113,21 @@ public class AuthStateSessionCache implements Auth2StateCache {
         return StringUtils.hasText(this.get(key));
     }
 
+    @Override
+    public boolean verifyAndConsume(String key) {
+        if (!StringUtils.hasText(key)) {
+            return false;
+        }
+        RequestAttributes requestAttributes = RequestContextHolder.currentRequestAttributes();
+        synchronized (requestAttributes.getSessionMutex()) {
+            if (!StringUtils.hasText(this.get(key))) {
+                return false;
+            }
+            this.remove(key);
+            return true;
+        }
+    }
+
     @Override
     public CacheKeyStrategy getCacheKeyStrategy() {
         return CacheKeyStrategy.PROVIDER_ID;
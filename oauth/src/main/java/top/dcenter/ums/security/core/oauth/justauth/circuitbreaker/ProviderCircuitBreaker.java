@@ -0,0 +1,369 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.oauth.justauth.circuitbreaker;
+
+import lombok.extern.slf4j.Slf4j;
+import me.zhyd.oauth.exception.AuthException;
+import org.springframework.lang.NonNull;
+import top.dcenter.ums.security.core.oauth.properties.CircuitBreakerProperties;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 单个第三方(providerId)请求的隔离(bulkhead)与熔断器(circuit breaker): <br>
+ * 1. 隔离: 每个第三方同时执行的请求数量不超过 maxConcurrentCalls, 达到上限的请求等待 maxWaitDuration 后直接失败,
+ *    一个第三方变慢时不会占满登录线程与 refreshTokenTaskExecutor 线程.<br>
+ * 2. 熔断: 统计最近 slidingWindowSize 次请求的失败率(异常或耗时超过 slowCallDurationThreshold),
+ *    达到 failureRateThreshold 时熔断(OPEN), 熔断期间直接抛出 {@link ProviderCallNotPermittedException};
+ *    waitDurationInOpenState 后进入半开状态(HALF_OPEN)放行 permittedCallsInHalfOpenState 个试探请求, 全部成功则关闭熔断(CLOSED),
+ *    有任意失败则重新熔断.<br>
+ * 3. 第三方返回的业务错误({@link AuthException}, 如 code 失效)说明第三方可用, 不计为失败.<br>
+ * 4. 熔断状态与请求统计通过 getXxx() 方法获取.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.21 10:50
+ */
+@Slf4j
+public class ProviderCircuitBreaker {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        /**
+         * 正常放行请求
+         */
+        CLOSED,
+        /**
+         * 熔断, 直接拒绝请求
+         */
+        OPEN,
+        /**
+         * 半开, 放行少量试探请求
+         */
+        HALF_OPEN
+    }
+
+    private final String providerId;
+    private final int maxConcurrentCalls;
+    private final Semaphore bulkhead;
+    private final long maxWaitNanos;
+    private final int minimumNumberOfCalls;
+    private final int failureRateThreshold;
+    private final long slowCallNanos;
+    private final long waitInOpenNanos;
+    private final int permittedCallsInHalfOpenState;
+
+    /**
+     * 最近请求的结果(true 为失败)的环形缓冲区, 由 this 锁保护
+     */
+    private final boolean[] window;
+    private int windowIndex;
+    private int bufferedCalls;
+    private int failedBufferedCalls;
+
+    private volatile State state = State.CLOSED;
+    /**
+     * 每次状态转换时加 1, 状态转换前放行的请求结果不再统计
+     */
+    private long epoch;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    private final AtomicLong successfulCalls = new AtomicLong(0L);
+    private final AtomicLong failedCalls = new AtomicLong(0L);
+    private final AtomicLong slowCalls = new AtomicLong(0L);
+    private final AtomicLong notPermittedCalls = new AtomicLong(0L);
+    private final AtomicLong bulkheadRejectedCalls = new AtomicLong(0L);
+
+    public ProviderCircuitBreaker(@NonNull String providerId, @NonNull CircuitBreakerProperties properties) {
+        this(providerId, properties, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param providerId                第三方服务商 id
+     * @param properties                隔离与熔断配置
+     * @param maxConcurrentCallsLimit   同时执行的最大请求数量的上限, 如: http 连接池中此第三方的最大请求数量,
+     *                                  maxConcurrentCalls 取配置值与此值中的较小值
+     */
+    public ProviderCircuitBreaker(@NonNull String providerId, @NonNull CircuitBreakerProperties properties,
+                                  int maxConcurrentCallsLimit) {
+        this.providerId = providerId;
+        this.maxConcurrentCalls = Math.max(1, Math.min(maxConcurrentCallsLimit,
+                                                       properties.getProviderMaxConcurrentCalls()
+                                                                 .getOrDefault(providerId,
+                                                                               properties.getMaxConcurrentCalls())));
+        this.bulkhead = new Semaphore(this.maxConcurrentCalls);
+        this.maxWaitNanos = properties.getMaxWaitDuration().toNanos();
+        this.window = new boolean[Math.max(1, properties.getSlidingWindowSize())];
+        this.minimumNumberOfCalls = Math.max(1, Math.min(this.window.length, properties.getMinimumNumberOfCalls()));
+        this.failureRateThreshold = properties.getFailureRateThreshold();
+        this.slowCallNanos = properties.getSlowCallDurationThreshold().toNanos();
+        this.waitInOpenNanos = properties.getWaitDurationInOpenState().toNanos();
+        this.permittedCallsInHalfOpenState = Math.max(1, properties.getPermittedCallsInHalfOpenState());
+    }
+
+    /**
+     * 在隔离与熔断的保护下执行第三方请求
+     * @param call  第三方请求
+     * @param <T>   返回值类型
+     * @return  第三方请求的返回值
+     * @throws ProviderCallNotPermittedException    熔断或同时执行的请求数量已达上限时直接拒绝
+     */
+    public <T> T execute(@NonNull Supplier<T> call) throws ProviderCallNotPermittedException {
+        acquireBulkhead();
+        final long permittedEpoch;
+        try {
+            permittedEpoch = acquirePermission();
+        }
+        catch (ProviderCallNotPermittedException e) {
+            this.bulkhead.release();
+            throw e;
+        }
+
+        final long start = System.nanoTime();
+        boolean failure = true;
+        try {
+            T result = call.get();
+            failure = false;
+            return result;
+        }
+        catch (RuntimeException e) {
+            failure = isFailure(e);
+            throw e;
+        }
+        finally {
+            this.bulkhead.release();
+            onComplete(permittedEpoch, System.nanoTime() - start, failure);
+        }
+    }
+
+    private void acquireBulkhead() throws ProviderCallNotPermittedException {
+        boolean acquired;
+        try {
+            acquired = this.maxWaitNanos > 0L ? this.bulkhead.tryAcquire(this.maxWaitNanos, TimeUnit.NANOSECONDS)
+                                              : this.bulkhead.tryAcquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            this.bulkheadRejectedCalls.incrementAndGet();
+            throw new ProviderCallNotPermittedException(String.format("第三方 %s 同时执行的请求数量已达上限: %d",
+                                                                      this.providerId, this.maxConcurrentCalls));
+        }
+    }
+
+    /**
+     * 获取熔断器许可
+     * @return  放行请求时的 epoch
+     * @throws ProviderCallNotPermittedException 熔断中或半开状态的试探请求已用完
+     */
+    private synchronized long acquirePermission() throws ProviderCallNotPermittedException {
+        if (this.state == State.OPEN && System.nanoTime() - this.openedAt >= this.waitInOpenNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        if (this.state == State.CLOSED) {
+            return this.epoch;
+        }
+        if (this.state == State.HALF_OPEN && this.halfOpenPermits > 0) {
+            this.halfOpenPermits--;
+            return this.epoch;
+        }
+        this.notPermittedCalls.incrementAndGet();
+        throw new ProviderCallNotPermittedException(String.format("第三方 %s 已熔断, 请求被拒绝", this.providerId));
+    }
+
+    private void onComplete(long permittedEpoch, long durationNanos, boolean failure) {
+        final boolean slow = durationNanos > this.slowCallNanos;
+        if (failure) {
+            this.failedCalls.incrementAndGet();
+        }
+        else {
+            this.successfulCalls.incrementAndGet();
+        }
+        if (slow) {
+            this.slowCalls.incrementAndGet();
+        }
+        record(permittedEpoch, failure || slow);
+    }
+
+    private synchronized void record(long permittedEpoch, boolean failure) {
+        if (permittedEpoch != this.epoch) {
+            return;
+        }
+        if (this.state == State.HALF_OPEN) {
+            if (failure) {
+                transitionTo(State.OPEN);
+            }
+            else if (++this.halfOpenSuccesses >= this.permittedCallsInHalfOpenState) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+
+        if (this.bufferedCalls == this.window.length) {
+            if (this.window[this.windowIndex]) {
+                this.failedBufferedCalls--;
+            }
+        }
+        else {
+            this.bufferedCalls++;
+        }
+        this.window[this.windowIndex] = failure;
+        if (failure) {
+            this.failedBufferedCalls++;
+        }
+        this.windowIndex = (this.windowIndex + 1) % this.window.length;
+
+        if (this.bufferedCalls >= this.minimumNumberOfCalls
+                && this.failedBufferedCalls * 100L >= (long) this.failureRateThreshold * this.bufferedCalls) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(@NonNull State newState) {
+        final State oldState = this.state;
+        if (newState == State.OPEN) {
+            log.warn("第三方 {} 熔断: {} -> OPEN, failedCalls={}/{}", this.providerId, oldState,
+                     this.failedBufferedCalls, this.bufferedCalls);
+            this.openedAt = System.nanoTime();
+        }
+        else {
+            log.info("第三方 {} 熔断器状态: {} -> {}", this.providerId, oldState, newState);
+        }
+        this.state = newState;
+        this.epoch++;
+        this.halfOpenPermits = this.permittedCallsInHalfOpenState;
+        this.halfOpenSuccesses = 0;
+        this.windowIndex = 0;
+        this.bufferedCalls = 0;
+        this.failedBufferedCalls = 0;
+    }
+
+    /**
+     * 第三方返回的业务错误({@link AuthException})不计为失败, 网络异常/超时/响应解析异常等计为失败
+     * @param e     第三方请求抛出的异常
+     * @return  是否计为失败
+     */
+    private static boolean isFailure(@NonNull Throwable e) {
+        boolean authException = false;
+        Throwable cause = e;
+        while (cause != null) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+            if (cause instanceof AuthException) {
+                authException = true;
+            }
+            cause = cause.getCause() == cause ? null : cause.getCause();
+        }
+        return !authException;
+    }
+
+    public String getProviderId() {
+        return providerId;
+    }
+
+    /**
+     * @return 熔断器状态, 熔断时间已过但还未有新请求时仍为 OPEN
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return 滑动窗口中的失败率(百分比), 请求次数少于 minimumNumberOfCalls 时返回 -1
+     */
+    public synchronized float getFailureRate() {
+        if (this.bufferedCalls < this.minimumNumberOfCalls) {
+            return -1F;
+        }
+        return this.failedBufferedCalls * 100F / this.bufferedCalls;
+    }
+
+    /**
+     * @return 同时执行的最大请求数量
+     */
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * @return 当前可用的并发请求数量
+     */
+    public int getAvailableConcurrentCalls() {
+        return bulkhead.availablePermits();
+    }
+
+    /**
+     * @return 成功的请求总数
+     */
+    public long getSuccessfulCalls() {
+        return successfulCalls.get();
+    }
+
+    /**
+     * @return 失败的请求总数
+     */
+    public long getFailedCalls() {
+        return failedCalls.get();
+    }
+
+    /**
+     * @return 耗时超过 slowCallDurationThreshold 的请求总数
+     */
+    public long getSlowCalls() {
+        return slowCalls.get();
+    }
+
+    /**
+     * @return 因熔断被拒绝的请求总数
+     */
+    public long getNotPermittedCalls() {
+        return notPermittedCalls.get();
+    }
+
+    /**
+     * @return 因同时执行的请求数量已达上限被拒绝的请求总数
+     */
+    public long getBulkheadRejectedCalls() {
+        return bulkheadRejectedCalls.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("providerId=%s, state=%s, failureRate=%.1f%%, concurrentCalls=%d/%d, successful=%d, " +
+                                     "failed=%d, slow=%d, notPermitted=%d, bulkheadRejected=%d",
+                             getProviderId(), getState(), getFailureRate(),
+                             getMaxConcurrentCalls() - getAvailableConcurrentCalls(), getMaxConcurrentCalls(),
+                             getSuccessfulCalls(), getFailedCalls(), getSlowCalls(), getNotPermittedCalls(),
+                             getBulkheadRejectedCalls());
+    }
+
+}
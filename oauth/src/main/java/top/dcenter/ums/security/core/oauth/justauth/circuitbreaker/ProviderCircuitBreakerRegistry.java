@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.oauth.justauth.circuitbreaker;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import top.dcenter.ums.security.core.oauth.justauth.http.PooledHttpImpl;
+import top.dcenter.ums.security.core.oauth.properties.CircuitBreakerProperties;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 第三方请求的隔离与熔断器注册中心, 每个 providerId 一个 {@link ProviderCircuitBreaker}.
+ * 开启 ums.oauth.circuit-breaker.enable 时创建, 各第三方的熔断状态与请求统计通过 {@link #getCircuitBreakers()} 获取.<br>
+ * 每个第三方的并发限制由外到内为: {@link PooledHttpImpl} 的最大请求数量(传输层, 开启 ums.oauth.http-pool.enable 时) &gt;=
+ * 隔离(bulkhead)的最大请求数量 &gt;= refreshToken 定时任务的并发数量, 隔离的最大请求数量取配置值与传输层限制的较小值,
+ * 请求不会通过隔离后再在 http 连接池中排队等待许可.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.21 11:30
+ */
+public class ProviderCircuitBreakerRegistry {
+
+    private final CircuitBreakerProperties properties;
+    private final PooledHttpImpl pooledHttp;
+    private final Map<String, ProviderCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    public ProviderCircuitBreakerRegistry(@NonNull CircuitBreakerProperties properties) {
+        this(properties, null);
+    }
+
+    /**
+     * @param properties    隔离与熔断配置
+     * @param pooledHttp    http 连接池, 不为 null 时每个第三方的隔离最大请求数量不超过连接池中此第三方的最大请求数量
+     */
+    public ProviderCircuitBreakerRegistry(@NonNull CircuitBreakerProperties properties,
+                                          @Nullable PooledHttpImpl pooledHttp) {
+        this.properties = properties;
+        this.pooledHttp = pooledHttp;
+    }
+
+    /**
+     * 获取 providerId 对应的 {@link ProviderCircuitBreaker}, 不存在时创建
+     * @param providerId    第三方服务商 id
+     * @return  {@link ProviderCircuitBreaker}
+     */
+    @NonNull
+    public ProviderCircuitBreaker getCircuitBreaker(@NonNull String providerId) {
+        return this.circuitBreakers.computeIfAbsent(providerId, this::createCircuitBreaker);
+    }
+
+    @NonNull
+    private ProviderCircuitBreaker createCircuitBreaker(@NonNull String providerId) {
+        if (this.pooledHttp == null)
+        {
+            return new ProviderCircuitBreaker(providerId, this.properties);
+        }
+        return new ProviderCircuitBreaker(providerId, this.properties, this.pooledHttp.getMaxConnections(providerId));
+    }
+
+    /**
+     * @return  所有第三方的熔断器, key 为 providerId
+     */
+    @NonNull
+    public Map<String, ProviderCircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableMap(this.circuitBreakers);
+    }
+
+}
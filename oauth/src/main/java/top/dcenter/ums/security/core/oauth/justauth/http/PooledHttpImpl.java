@@ -0,0 +1,384 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.core.oauth.justauth.http;
+
+import com.xkcoding.http.config.HttpConfig;
+import com.xkcoding.http.constants.Constants;
+import com.xkcoding.http.exception.SimpleHttpException;
+import com.xkcoding.http.support.AbstractHttp;
+import com.xkcoding.http.support.HttpHeader;
+import com.xkcoding.http.util.MapUtil;
+import com.xkcoding.http.util.StringUtil;
+import lombok.extern.slf4j.Slf4j;
+import me.zhyd.oauth.config.AuthSource;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import top.dcenter.ums.security.core.oauth.properties.HttpPoolProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 基于 {@link HttpURLConnection} keep-alive 连接复用的 simple-http 实现, 替换 JustAuth 默认每次请求新建连接的实现. <br>
+ * 1. 每次请求完整读取并关闭响应流(不调用 disconnect), 连接归还 jdk 的 keep-alive 连接缓存复用,
+ *    每个 host 的最大空闲连接数由 jvm 全局属性 http.maxConnections 控制(jdk 默认: 5), 此属性影响 jvm 中所有的
+ *    {@link HttpURLConnection}, 因此不在此修改, 请通过启动参数设置, 如: {@code -Dhttp.maxConnections=50};
+ *    小于第三方同时执行的最大请求数量时, 超出部分的连接用完即关闭, 创建时输出 warn 日志.<br>
+ * 2. 所有第三方共享 {@link HttpPoolProperties#getMaxConnections()} 个请求许可, 每个第三方另有独立的请求许可与超时,
+ *    获取许可超过 {@link HttpPoolProperties#getAcquireTimeout()} 时抛出 {@link SimpleHttpException}, 防止慢的第三方耗尽请求线程.<br>
+ * 3. 第三方的 host 通过 {@link #registerProvider(String, AuthSource, HttpConfig)} 注册, 未注册的 host 使用构造时的 {@link HttpConfig}.<br>
+ * 4. JustAuth 每次创建请求时都会调用 {@link #setHttpConfig(HttpConfig)} 修改全局配置, 并发时会相互覆盖,
+ *    因此忽略此调用, 超时与代理以注册的第三方配置为准.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.18 16:20
+ */
+@Slf4j
+public class PooledHttpImpl extends AbstractHttp {
+
+    /**
+     * 未注册 host 的请求许可名称
+     */
+    private static final String DEFAULT_PROVIDER_ID = "default";
+    private static final String HTTP_MAX_CONNECTIONS = "http.maxConnections";
+    /**
+     * 未设置 http.maxConnections 或设置的值小于等于 0 时, jdk keep-alive 连接缓存每个 host 的最大空闲连接数
+     */
+    private static final int DEFAULT_HTTP_MAX_CONNECTIONS = 5;
+    private static final String CONTENT_TYPE_FORM = "application/x-www-form-urlencoded; charset=utf-8";
+    private static final int BUFFER_SIZE = 4096;
+
+    private final Semaphore connections;
+    private final HttpPoolProperties poolProperties;
+    private final long acquireTimeoutMillis;
+    private final HostLimit defaultLimit;
+    /**
+     * key 为 host, value 为 host 对应第三方的请求许可与配置
+     */
+    private final Map<String, HostLimit> hostLimits = new ConcurrentHashMap<>();
+    /**
+     * key 为 providerId, value 为第三方的请求许可与配置
+     */
+    private final Map<String, HostLimit> providerLimits = new ConcurrentHashMap<>();
+
+    /**
+     * @param httpConfig        未注册 host 的超时与代理配置
+     * @param poolProperties    连接池配置
+     */
+    public PooledHttpImpl(@NonNull HttpConfig httpConfig, @NonNull HttpPoolProperties poolProperties) {
+        super(httpConfig);
+        Assert.notNull(httpConfig, "httpConfig cannot be null");
+        Assert.notNull(poolProperties, "poolProperties cannot be null");
+        this.poolProperties = poolProperties;
+        this.connections = new Semaphore(Math.max(1, poolProperties.getMaxConnections()));
+        this.acquireTimeoutMillis = poolProperties.getAcquireTimeout().toMillis();
+        this.defaultLimit = new HostLimit(DEFAULT_PROVIDER_ID, poolProperties.getMaxConnectionsPerProvider(),
+                                          httpConfig.getTimeout(), httpConfig.getProxy());
+        checkMaxIdleConnections(poolProperties);
+    }
+
+    /**
+     * jdk keep-alive 连接缓存每个 host 的最大空闲连接数(jvm 属性 http.maxConnections)小于第三方同时执行的最大请求数量时输出 warn 日志
+     * @param poolProperties    连接池配置
+     */
+    private static void checkMaxIdleConnections(@NonNull HttpPoolProperties poolProperties) {
+        int maxIdleConnections = Integer.getInteger(HTTP_MAX_CONNECTIONS, DEFAULT_HTTP_MAX_CONNECTIONS);
+        if (maxIdleConnections <= 0)
+        {
+            maxIdleConnections = DEFAULT_HTTP_MAX_CONNECTIONS;
+        }
+        int maxConnectionsPerProvider = poolProperties.getMaxConnectionsPerProvider();
+        for (Integer maxConnections : poolProperties.getProviderMaxConnections().values())
+        {
+            maxConnectionsPerProvider = Math.max(maxConnectionsPerProvider, maxConnections);
+        }
+        maxConnectionsPerProvider = Math.min(maxConnectionsPerProvider, Math.max(1, poolProperties.getMaxConnections()));
+        if (maxIdleConnections < maxConnectionsPerProvider)
+        {
+            log.warn("jvm 属性 {}={} 小于第三方同时执行的最大请求数量 {}, 超出部分的 keep-alive 连接用完即关闭, " +
+                             "如需复用请添加启动参数: -D{}={}",
+                     HTTP_MAX_CONNECTIONS, maxIdleConnections, maxConnectionsPerProvider,
+                     HTTP_MAX_CONNECTIONS, maxConnectionsPerProvider);
+        }
+    }
+
+    /**
+     * 注册第三方, 根据 {@link AuthSource} 的 api 地址把 host 映射到此第三方的请求许可与配置.
+     * @param providerId    第三方服务商 providerId
+     * @param source        第三方的 {@link AuthSource}
+     * @param httpConfig    第三方的 {@link HttpConfig}, 提供默认超时与代理
+     */
+    public void registerProvider(@NonNull String providerId, @NonNull AuthSource source, @NonNull HttpConfig httpConfig) {
+        HostLimit limit = providerLimits.computeIfAbsent(providerId, id -> {
+            Integer maxConnections = poolProperties.getProviderMaxConnections()
+                                                   .getOrDefault(id, poolProperties.getMaxConnectionsPerProvider());
+            int timeout = poolProperties.getProviderTimeout().containsKey(id)
+                    ? (int) poolProperties.getProviderTimeout().get(id).toMillis() : httpConfig.getTimeout();
+            return new HostLimit(id, maxConnections, timeout, httpConfig.getProxy());
+        });
+        registerHost(limit, source::authorize);
+        registerHost(limit, source::accessToken);
+        registerHost(limit, source::userInfo);
+        registerHost(limit, source::refresh);
+        registerHost(limit, source::revoke);
+    }
+
+    /**
+     * 获取第三方同时执行的最大请求数量
+     * @param providerId    第三方服务商 providerId
+     * @return  返回第三方同时执行的最大请求数量, 不超过所有第三方同时执行的最大请求数量
+     */
+    public int getMaxConnections(@NonNull String providerId) {
+        HostLimit limit = providerLimits.get(providerId);
+        // 未注册时按配置计算, 与注册后的 HostLimit 一致
+        int maxConnections = limit != null ? limit.maxConnections
+                : Math.max(1, poolProperties.getProviderMaxConnections()
+                                            .getOrDefault(providerId, poolProperties.getMaxConnectionsPerProvider()));
+        return Math.min(maxConnections, Math.max(1, poolProperties.getMaxConnections()));
+    }
+
+    /**
+     * JustAuth 每次创建请求时都会调用此方法修改全局配置, 并发时会相互覆盖, 忽略.
+     * @param httpConfig    httpConfig
+     */
+    @Override
+    public void setHttpConfig(HttpConfig httpConfig) {
+        // 超时与代理以注册的第三方配置为准
+    }
+
+    @Override
+    public String get(String url) {
+        return this.get(url, null, false);
+    }
+
+    @Override
+    public String get(String url, Map<String, String> params, boolean encode) {
+        return this.get(url, params, null, encode);
+    }
+
+    @Override
+    public String get(String url, Map<String, String> params, HttpHeader header, boolean encode) {
+        String baseUrl = url;
+        if (MapUtil.isNotEmpty(params))
+        {
+            baseUrl = StringUtil.appendIfNotContain(url, "?", "&") + MapUtil.parseMapToString(params, encode);
+        }
+        return exec("GET", baseUrl, header, null, null);
+    }
+
+    @Override
+    public String post(String url) {
+        return this.post(url, (String) null);
+    }
+
+    @Override
+    public String post(String url, String data) {
+        return this.post(url, data, null);
+    }
+
+    @Override
+    public String post(String url, String data, HttpHeader header) {
+        if (StringUtil.isEmpty(data))
+        {
+            return exec("POST", url, header, null, null);
+        }
+        return exec("POST", url, header, Constants.CONTENT_TYPE_JSON, data);
+    }
+
+    @Override
+    public String post(String url, Map<String, String> params, boolean encode) {
+        return this.post(url, params, null, encode);
+    }
+
+    @Override
+    public String post(String url, Map<String, String> params, HttpHeader header, boolean encode) {
+        if (MapUtil.isEmpty(params))
+        {
+            return exec("POST", url, header, null, null);
+        }
+        return exec("POST", url, header, CONTENT_TYPE_FORM, MapUtil.parseMapToString(params, encode));
+    }
+
+    @NonNull
+    private String exec(@NonNull String method, @NonNull String url, @Nullable HttpHeader header,
+                        @Nullable String contentType, @Nullable String body) {
+        final URL target;
+        try
+        {
+            target = new URL(url);
+        }
+        catch (IOException e)
+        {
+            throw new SimpleHttpException(e);
+        }
+        HostLimit limit = hostLimits.getOrDefault(target.getHost().toLowerCase(Locale.ROOT), defaultLimit);
+        acquire(limit);
+        try
+        {
+            return execute(method, target, limit, header, contentType, body);
+        }
+        finally
+        {
+            limit.permits.release();
+            connections.release();
+        }
+    }
+
+    @NonNull
+    private String execute(@NonNull String method, @NonNull URL target, @NonNull HostLimit limit,
+                           @Nullable HttpHeader header, @Nullable String contentType, @Nullable String body) {
+        try
+        {
+            HttpURLConnection connection = (HttpURLConnection) (limit.proxy == null ? target.openConnection()
+                                                                                    : target.openConnection(limit.proxy));
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(limit.timeout);
+            connection.setReadTimeout(limit.timeout);
+            connection.setUseCaches(false);
+            connection.setRequestProperty(Constants.USER_AGENT, Constants.USER_AGENT_DATA);
+            if (header != null)
+            {
+                MapUtil.forEach(header.getHeaders(), connection::setRequestProperty);
+            }
+            if (contentType != null && body != null)
+            {
+                byte[] bytes = body.getBytes(Constants.DEFAULT_ENCODING);
+                connection.setDoOutput(true);
+                connection.setRequestProperty(Constants.CONTENT_TYPE, contentType);
+                connection.setFixedLengthStreamingMode(bytes.length);
+                try (OutputStream out = connection.getOutputStream())
+                {
+                    out.write(bytes);
+                }
+            }
+            int status = connection.getResponseCode();
+            // 错误响应也完整读取, JustAuth 需要解析第三方返回的错误信息, 同时保证连接可复用
+            InputStream in = status >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream()
+                                                                          : connection.getInputStream();
+            return read(in);
+        }
+        catch (IOException e)
+        {
+            throw new SimpleHttpException(e);
+        }
+    }
+
+    private void acquire(@NonNull HostLimit limit) {
+        try
+        {
+            if (!limit.permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS))
+            {
+                throw new SimpleHttpException(String.format("第三方 %s 同时执行的请求数量已达上限: %d",
+                                                            limit.providerId, limit.maxConnections));
+            }
+            if (!connections.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS))
+            {
+                limit.permits.release();
+                throw new SimpleHttpException(String.format("第三方同时执行的请求数量已达上限: %d",
+                                                            poolProperties.getMaxConnections()));
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new SimpleHttpException("获取第三方请求许可时被中断", e);
+        }
+    }
+
+    private void registerHost(@NonNull HostLimit limit, @NonNull Supplier<String> urlSupplier) {
+        try
+        {
+            String url = urlSupplier.get();
+            if (StringUtil.isEmpty(url))
+            {
+                return;
+            }
+            String host = new URL(url).getHost().toLowerCase(Locale.ROOT);
+            HostLimit old = hostLimits.putIfAbsent(host, limit);
+            if (old != null && old != limit)
+            {
+                log.warn("第三方 {} 与 {} 使用相同的 host: {}, 使用 {} 的请求许可与配置",
+                         limit.providerId, old.providerId, host, old.providerId);
+            }
+        }
+        catch (Exception e)
+        {
+            // 第三方不支持此 api(如 refresh/revoke)或地址无效
+            if (log.isDebugEnabled())
+            {
+                log.debug("第三方 {} 的 api 地址不可用: {}", limit.providerId, e.getMessage());
+            }
+        }
+    }
+
+    @NonNull
+    private static String read(@Nullable InputStream in) throws IOException {
+        if (in == null)
+        {
+            return Constants.EMPTY;
+        }
+        try (InputStream input = in)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = input.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, len);
+            }
+            return new String(out.toByteArray(), Constants.DEFAULT_ENCODING);
+        }
+    }
+
+    /**
+     * 第三方的请求许可与配置
+     */
+    private static final class HostLimit {
+        private final String providerId;
+        private final int maxConnections;
+        private final Semaphore permits;
+        private final int timeout;
+        private final Proxy proxy;
+
+        private HostLimit(@NonNull String providerId, int maxConnections, int timeout, @Nullable Proxy proxy) {
+            this.providerId = providerId;
+            this.maxConnections = Math.max(1, maxConnections);
+            this.permits = new Semaphore(this.maxConnections);
+            this.timeout = timeout;
+            this.proxy = proxy;
+        }
+    }
+
+}
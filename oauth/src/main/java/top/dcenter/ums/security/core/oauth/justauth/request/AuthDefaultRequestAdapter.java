@@ -43,9 +43,11 @@ import top.dcenter.ums.security.core.api.oauth.entity.AuthTokenPo;
 import top.dcenter.ums.security.core.api.oauth.justauth.request.Auth2DefaultRequest;
 import top.dcenter.ums.security.core.exception.RefreshTokenFailureException;
 import top.dcenter.ums.security.core.oauth.justauth.Auth2RequestHolder;
+import top.dcenter.ums.security.core.oauth.justauth.circuitbreaker.ProviderCircuitBreaker;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.function.Supplier;
 
 /**
  * {@link AuthDefaultRequest} 的适配器
@@ -59,6 +61,11 @@ public class AuthDefaultRequestAdapter extends AuthDefaultRequest implements Aut
 
     private AuthDefaultRequest authDefaultRequest;
 
+    /**
+     * 开启 ums.oauth.circuit-breaker.enable 时不为 null, 获取 accessToken / 用户信息 / 刷新 token 时进行隔离与熔断
+     */
+    private ProviderCircuitBreaker circuitBreaker;
+
     /**
      * 构造 {@link AuthDefaultRequest} 的适配器
      * @param config                {@link AuthDefaultRequest} 的 {@link AuthConfig}
@@ -80,6 +87,10 @@ public class AuthDefaultRequestAdapter extends AuthDefaultRequest implements Aut
         this.authDefaultRequest = authDefaultRequest;
     }
 
+    public void setCircuitBreaker(@Nullable ProviderCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
     @Override
     public String getRealState(String state) {
         if (StringUtils.isEmpty(state)) {
@@ -93,7 +104,8 @@ public class AuthDefaultRequestAdapter extends AuthDefaultRequest implements Aut
 
     /**
      * 统一的登录入口。当通过{@link AuthDefaultRequest#authorize(String)}授权成功后，会跳转到调用方的相关回调方法中
-     * 方法的入参可以使用{@code AuthCallback}，{@code AuthCallback}类中封装好了OAuth2授权回调所需要的参数
+     * 方法的入参可以使用{@code AuthCallback}，{@code AuthCallback}类中封装好了OAuth2授权回调所需要的参数.<br>
+     * state 已在 {@code Auth2LoginAuthenticationFilter} 中通过 {@code Auth2StateCache#verifyAndConsume(String)} 校验并删除, 这里不再校验.
      * @see AuthDefaultRequest#login(AuthCallback)
      * @param authCallback 用于接收回调参数的实体
      * @return AuthResponse
@@ -103,10 +115,6 @@ public class AuthDefaultRequestAdapter extends AuthDefaultRequest implements Aut
     public AuthResponse login(AuthCallback authCallback) {
         try {
             AuthChecker.checkCode(this.source, authCallback);
-            if (!this.config.isIgnoreCheckState()) {
-                AuthChecker.checkState(authCallback.getState(),
-                                       this.source, this.authStateCache);
-            }
 
             AuthToken authToken = this.getAccessToken(authCallback);
             AuthUser user = this.getUserInfo(authToken);
@@ -123,11 +131,16 @@ public class AuthDefaultRequestAdapter extends AuthDefaultRequest implements Aut
             throw new RuntimeException("AuthDefaultRequest 不能为 null 值, 必须通过方法 setAuthDefaultRequest(AuthDefaultRequest) 设置");
         }
         //noinspection rawtypes
-        AuthResponse authResponse = this.authDefaultRequest.refresh(authToken);
+        AuthResponse authResponse = execute(() -> this.authDefaultRequest.refresh(authToken));
         return Auth2DefaultRequest.getAuthTokenPo(this.config.getHttpConfig().getTimeout(), authToken.getId(),
                                                   authResponse);
     }
 
+    @Override
+    public boolean isIgnoreCheckState() {
+        return this.config.isIgnoreCheckState();
+    }
+
     @Override
     public AuthSource getAuthSource() {
         return  this.source;
@@ -147,6 +160,10 @@ public class AuthDefaultRequestAdapter extends AuthDefaultRequest implements Aut
      */
     @Override
     public AuthToken getAccessToken(AuthCallback authCallback) throws SimpleHttpException {
+        return execute(() -> invokeGetAccessToken(authCallback));
+    }
+
+    private AuthToken invokeGetAccessToken(AuthCallback authCallback) throws SimpleHttpException {
         try {
 
             Method method = getMethod("getAccessToken", AuthCallback.class);
@@ -175,6 +192,11 @@ public class AuthDefaultRequestAdapter extends AuthDefaultRequest implements Aut
     @Override
     @Nullable
     public AuthUser getUserInfo(AuthToken authToken) throws SimpleHttpException {
+        return execute(() -> invokeGetUserInfo(authToken));
+    }
+
+    @Nullable
+    private AuthUser invokeGetUserInfo(AuthToken authToken) throws SimpleHttpException {
         try {
             Method method = getMethod("getUserInfo", AuthToken.class);
             Object result = method.invoke(this.authDefaultRequest, authToken);
@@ -206,6 +228,13 @@ public class AuthDefaultRequestAdapter extends AuthDefaultRequest implements Aut
         return this.authDefaultRequest.authorize(state);
     }
 
+    private <T> T execute(@NonNull Supplier<T> call) {
+        if (this.circuitBreaker == null) {
+            return call.get();
+        }
+        return this.circuitBreaker.execute(call);
+    }
+
     private Method getMethod(@NonNull String methodName, @NonNull Class<?>... parameterTypes) throws NoSuchMethodException {
         final Method method = this.authDefaultRequest.getClass().getDeclaredMethod(methodName, parameterTypes);
         method.setAccessible(true);
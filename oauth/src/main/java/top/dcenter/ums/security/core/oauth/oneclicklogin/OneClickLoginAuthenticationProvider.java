@@ -27,8 +27,10 @@ import org.springframework.lang.Nullable;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.core.userdetails.cache.NullUserCache;
 import top.dcenter.ums.security.core.api.oauth.oneclicklogin.service.OneClickLoginService;
 import top.dcenter.ums.security.core.api.service.UmsUserDetailsService;
 import top.dcenter.ums.security.jwt.claims.service.GenerateClaimsSetService;
@@ -48,6 +50,7 @@ public class OneClickLoginAuthenticationProvider implements AuthenticationProvid
     private final UmsUserDetailsService userDetailsService;
     private final OneClickLoginService oneClickLoginService;
     private final GenerateClaimsSetService generateClaimsSetService;
+    private UserCache userCache = new NullUserCache();
 
     public OneClickLoginAuthenticationProvider(@NonNull UmsUserDetailsService userDetailsService,
                                                @NonNull OneClickLoginService oneClickLoginService,
@@ -69,19 +72,26 @@ public class OneClickLoginAuthenticationProvider implements AuthenticationProvid
             return authentication;
         }
 
-        UserDetails user;
-        try {
-            user = this.userDetailsService.loadUserByUsername((String) authenticationToken.getPrincipal());
-        }
-        catch (UsernameNotFoundException e) {
-            user = null;
-        }
-
-        Map<String, String> otherParamMap = null;
+        final String username = (String) authenticationToken.getPrincipal();
+        UserDetails user = this.userCache.getUserFromCache(username);
         if (user == null)
         {
-            user = this.userDetailsService.registerUser((String) authenticationToken.getPrincipal());
+            try {
+                user = this.userDetailsService.loadUserByUsername(username);
+            }
+            catch (UsernameNotFoundException e) {
+                user = null;
+            }
+
+            if (user == null)
+            {
+                user = this.userDetailsService.registerUser(username);
+            }
+            // 放入缓存
+            this.userCache.putUserInCache(user);
         }
+
+        Map<String, String> otherParamMap;
         // 一键登录的其他参数处理
         otherParamMap = authenticationToken.getOtherParamMap();
         if (nonNull(otherParamMap) && !otherParamMap.isEmpty()) {
@@ -99,4 +109,8 @@ public class OneClickLoginAuthenticationProvider implements AuthenticationProvid
     public boolean supports(Class<?> authentication) {
         return OneClickLoginAuthenticationToken.class.isAssignableFrom(authentication);
     }
+
+    public void setUserCache(@NonNull UserCache userCache) {
+        this.userCache = userCache;
+    }
 }
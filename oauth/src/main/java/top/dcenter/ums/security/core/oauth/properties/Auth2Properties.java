@@ -37,6 +37,9 @@ import top.dcenter.ums.security.core.oauth.filter.login.Auth2LoginAuthentication
 import top.dcenter.ums.security.core.oauth.userdetails.TemporaryUser;
 
 import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * 第三方登录属性
@@ -303,6 +306,25 @@ public class Auth2Properties {
      */
     private Boolean enableAuthTokenTable = Boolean.TRUE;
 
+    // =================== UserCache 属性 ===================
+
+    /**
+     * 第三方授权登录与一键登录是否缓存用户信息(UserDetails), 默认: true.<br>
+     * IOC 容器中有 beanName=auth2RedisHashCacheManager 时(ums.cache.redis.open=true)缓存到 redis,
+     * 有效期为 ums.cache.redis.cache.entry-ttl, 否则缓存到本地. IOC 容器中有 UserCache 时使用 IOC 容器中的 UserCache.
+     */
+    private Boolean userCacheEnable = Boolean.TRUE;
+
+    /**
+     * 本地用户信息缓存的最大数量, 默认: 10000
+     */
+    private Integer userCacheMaxSize = 10000;
+
+    /**
+     * 本地用户信息缓存的有效期, 默认: 5 分钟
+     */
+    private Duration userCacheTtl = Duration.ofMinutes(5);
+
 
     // =================== refreshToken 定时任务 属性 ===================
     /**
@@ -326,16 +348,51 @@ public class Auth2Properties {
 
     /**
      * 定时刷新 accessToken 任务时, 批处理数据库的记录数.<br>
+     * 分布式应用时为每个批次(租约)的 tokenId 范围大小, 单机执行时不切分批次.<br>
      * 注意: 分布式应用时, 此配置不同服务器配置必须是一样的. batchCount 大小需要根据实际生产环境进行优化
      */
     private Integer batchCount = 1000;
 
+    /**
+     * 定时刷新 accessToken 任务时, 通过 keyset 分页(id &gt; 上一页最后的 id ORDER BY id LIMIT pageSize)
+     * 从数据库获取 token 的每页记录数, 内存中最多只有一页待分发的 token. 默认: 200
+     */
+    private Integer refreshTokenJobPageSize = 200;
+
     /**
      * accessToken 的剩余有效期内进行刷新 accessToken, 默认: 24, 单位: 小时.<br>
      * 注意: 需要根据实际生产环境进行优化
      */
     private Integer remainingExpireIn = 24;
 
+    /**
+     * refreshToken 定时任务分布式执行时, 每个批次(tokenId 范围)租约的有效期, 执行批次期间会定时续期,
+     * 节点宕机后租约过期, 其他节点会接管此批次. 默认: 5 分钟
+     */
+    private Duration refreshTokenJobLeaseTtl = Duration.ofMinutes(5);
+
+    /**
+     * refreshToken 定时任务每个节点同时处理(包括执行中与等待执行)的最大 token 数量, 达到最大数量时暂停分发 token. 默认: 64
+     */
+    private Integer refreshTokenJobMaxInFlight = 64;
+
+    /**
+     * refreshToken 定时任务每个节点对每个第三方同时刷新 token 的最大数量, 避免一个慢的第三方占用所有线程. 默认: 4.<br>
+     * 不超过 http 连接池(ums.oauth.http-pool)与隔离(ums.oauth.circuit-breaker)中此第三方的最大请求数量, 以最小值为准.
+     */
+    private Integer refreshTokenJobProviderConcurrency = 4;
+
+    /**
+     * 针对特定第三方的 refreshTokenJobProviderConcurrency, key 为 providerId, 未配置的第三方使用 refreshTokenJobProviderConcurrency.
+     */
+    private Map<String, Integer> refreshTokenJobProviderConcurrencyMap = new HashMap<>();
+
+    /**
+     * refreshToken 定时任务刷新成功的 token 累积到此数量时批量更新 auth_token 与 user_connection 表, 并一次性清除相关缓存;
+     * 每个批次(tokenId 范围)完成前会更新剩余的 token. 默认: 100
+     */
+    private Integer refreshTokenJobFlushSize = 100;
+
 
     // =================== justAuth 属性 ===================
 
@@ -352,4 +409,16 @@ public class Auth2Properties {
     @NestedConfigurationProperty
     private HttpConfigProperties proxy = new HttpConfigProperties();
 
+    /**
+     * JustAuth 第三方 http 请求连接池配置
+     */
+    @NestedConfigurationProperty
+    private HttpPoolProperties httpPool = new HttpPoolProperties();
+
+    /**
+     * 第三方请求的隔离与熔断配置
+     */
+    @NestedConfigurationProperty
+    private CircuitBreakerProperties circuitBreaker = new CircuitBreakerProperties();
+
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.oauth.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 第三方请求(获取 accessToken / 用户信息 / 刷新 token)的隔离(bulkhead)与熔断(circuit breaker)配置, 每个 providerId 独立计算.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.21 10:20
+ */
+@Getter
+@Setter
+public class CircuitBreakerProperties {
+
+    /**
+     * 是否开启第三方请求的隔离与熔断, 默认: false
+     */
+    private Boolean enable = false;
+
+    /**
+     * 每个第三方同时执行的最大请求数量(bulkhead), 默认: 50.<br>
+     * 开启 ums.oauth.http-pool.enable 时不超过 http 连接池中此第三方的最大请求数量(ums.oauth.http-pool.max-connections-per-provider
+     * 或 provider-max-connections), 两者不同时以较小值为准.
+     */
+    private Integer maxConcurrentCalls = 50;
+
+    /**
+     * 每个第三方同时执行的最大请求数量, key 为 providerId, 未设置的第三方使用 {@link #maxConcurrentCalls}
+     */
+    private Map<String, Integer> providerMaxConcurrentCalls = new HashMap<>();
+
+    /**
+     * 达到最大请求数量时等待许可的最长时间, 超时直接失败, 默认: 0 毫秒(不等待)
+     */
+    private Duration maxWaitDuration = Duration.ofMillis(0);
+
+    /**
+     * 统计失败率的滑动窗口大小(最近的请求次数), 默认: 20
+     */
+    private Integer slidingWindowSize = 20;
+
+    /**
+     * 滑动窗口中至少有多少次请求才计算失败率, 默认: 10
+     */
+    private Integer minimumNumberOfCalls = 10;
+
+    /**
+     * 失败率(百分比)达到此值时熔断, 默认: 50
+     */
+    private Integer failureRateThreshold = 50;
+
+    /**
+     * 请求耗时超过此值时视为失败(慢请求), 默认: 5 秒
+     */
+    private Duration slowCallDurationThreshold = Duration.ofSeconds(5);
+
+    /**
+     * 熔断后直接失败的持续时间, 之后进入半开状态放行少量试探请求, 默认: 30 秒
+     */
+    private Duration waitDurationInOpenState = Duration.ofSeconds(30);
+
+    /**
+     * 半开状态放行的试探请求数量, 全部成功则关闭熔断, 有任意失败则重新熔断, 默认: 3
+     */
+    private Integer permittedCallsInHalfOpenState = 3;
+
+}
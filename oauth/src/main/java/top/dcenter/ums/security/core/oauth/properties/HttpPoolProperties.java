@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.core.oauth.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JustAuth 第三方 http 请求连接池配置, 开启后使用 {@code PooledHttpImpl} 替换 simple-http 的默认实现.<br>
+ * 每个 host 保持的最大空闲 keep-alive 连接数量由 jvm 全局属性 http.maxConnections 控制(jdk 默认: 5), 需通过启动参数设置,
+ * 如: {@code -Dhttp.maxConnections=50}.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.18 16:05
+ */
+@Getter
+@Setter
+public class HttpPoolProperties {
+
+    /**
+     * 是否使用连接池(keep-alive)发送第三方 http 请求, 默认: false.<br>
+     * 开启后 simple-http 的 HttpUtil 使用 {@code PooledHttpImpl}, 不再需要引入 okhttp3/httpclient/hutool-http 依赖.
+     */
+    private Boolean enable = false;
+
+    /**
+     * 所有第三方同时执行的最大请求数量, 默认: 200
+     */
+    private Integer maxConnections = 200;
+
+    /**
+     * 每个第三方同时执行的最大请求数量, 默认: 50
+     */
+    private Integer maxConnectionsPerProvider = 50;
+
+    /**
+     * 每个第三方同时执行的最大请求数量, key 为 providerId, 未设置的第三方使用 {@link #maxConnectionsPerProvider}
+     */
+    private Map<String, Integer> providerMaxConnections = new HashMap<>();
+
+    /**
+     * 第三方请求的连接与读取超时, key 为 providerId, 未设置的第三方使用 ums.oauth.proxy.timeout 或 ums.oauth.proxy.foreign-timeout
+     */
+    private Map<String, Duration> providerTimeout = new HashMap<>();
+
+    /**
+     * 获取连接许可的最大等待时间, 超时抛出 SimpleHttpException, 默认: 1 秒
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(1);
+
+}
@@ -52,6 +52,11 @@ public class RepositoryProperties {
      */
     private String textEncryptorSalt = "cd538b1b077542aca5f86942b6507fe2";
 
+    /**
+     * 批量更新 auth_token 与 user_connection 表时, 每次 {@code JdbcTemplate.batchUpdate(..)} 的记录数, 默认: 500
+     */
+    private Integer batchUpdateSize = 500;
+
 
 
     /* ========================== 数据库初始化相关语句 ============================= */
@@ -111,7 +116,8 @@ public class RepositoryProperties {
             "  `screenName` varchar(64) COMMENT 'Twitter附带属性',\n" +
             "  `oauthCallbackConfirmed` varchar(64) COMMENT 'Twitter附带属性',\n" +
             "  `expireTime` bigint(20) DEFAULT '-1' COMMENT '过期时间, 基于 1970-01-01T00:00:00Z, 无过期时间默认为 -1',\n" +
-            "  PRIMARY KEY (`id`)\n" +
+            "  PRIMARY KEY (`id`),\n" +
+            "  KEY `idx_enableRefresh_id_expireTime` (`enableRefresh`, `id`, `expireTime`)\n" +
             ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;";
 
 
@@ -119,6 +125,31 @@ public class RepositoryProperties {
         return String.format(createAuthTokenTableSql, authTokenTableName);
     }
 
+    /**
+     * 查询 authTokenTableName 的 refreshToken 定时任务 keyset 分页索引是否存在的语句。 <br><br>
+     * 注意： sql 语句中的 %s 必须写上，且 %s 的顺序必须与后面的字段名称所对应的含义对应 :<br><br>
+     * authTokenTableName、<br><br>
+     * database
+     */
+    private String queryAuthTokenIndexExistSql = "SELECT COUNT(1) FROM information_schema.statistics WHERE " +
+            "table_name = '%s' AND table_schema = '%s' AND index_name = 'idx_enableRefresh_id_expireTime'";
+
+    public String getQueryAuthTokenIndexExistSql(String database) {
+        return String.format(queryAuthTokenIndexExistSql, authTokenTableName, database);
+    }
+
+    /**
+     * authTokenTableName 已存在但没有 refreshToken 定时任务 keyset 分页索引时(旧版本创建的表), 添加索引的语句。 <br><br>
+     * 注意： sql 语句中的 %s 必须写上，且 %s 的顺序必须与后面的字段名称所对应的含义对应 :<br><br>
+     * authTokenTableName、<br><br>
+     */
+    private String createAuthTokenIndexSql = "ALTER TABLE `%s` ADD INDEX `idx_enableRefresh_id_expireTime` " +
+            "(`enableRefresh`, `id`, `expireTime`);";
+
+    public String getCreateAuthTokenIndexSql() {
+        return String.format(createAuthTokenIndexSql, authTokenTableName);
+    }
+
     /* ==========================自定义第三方登录用户表及相关 CURD 语句============================= */
 
     /**
@@ -458,6 +489,36 @@ public class RepositoryProperties {
                              providerUserIdColumnName);
     }
 
+    /**
+     * 第三方登录用户数据库用户表根据 tokenId 更新 token 的语句。 <br><br>
+     * 注意： sql 语句中的 %s 必须写上，问号必须与指定的 %s 相对应, %s按顺序会用对应的 :<br><br>
+     * userConnectionTableName、<br><br>
+     * accessTokenColumnName、<br><br>
+     * refreshTokenColumnName、<br><br>
+     * expireTimeColumnName、<br><br>
+     * tokenIdColumnName
+     */
+    private String updateConnectionByTokenIdSql = "update %s set %s = ?, %s = ?, %s = ? where %s = ?";
+
+    /**
+     * 第三方登录用户数据库用户表根据 tokenId 更新 token 的语句。 <br><br>
+     * 注意： sql 语句中的 %s 必须写上，问号必须与指定的 %s 相对应, %s按顺序会用对应的 :<br><br>
+     * userConnectionTableName、<br><br>
+     * accessTokenColumnName、<br><br>
+     * refreshTokenColumnName、<br><br>
+     * expireTimeColumnName、<br><br>
+     * tokenIdColumnName
+     */
+    public String getUpdateConnectionByTokenIdSql() {
+
+        return String.format(updateConnectionByTokenIdSql,
+                             userConnectionTableName,
+                             accessTokenColumnName,
+                             refreshTokenColumnName,
+                             expireTimeColumnName,
+                             tokenIdColumnName);
+    }
+
     /**
      * 第三方登录用户数据库用户表添加用户语句。 <br><br>
      * 注意： sql 语句中的 %s 必须写上，问号必须与指定的 %s 相对应, %s按顺序会用对应的 :<br><br>
@@ -323,8 +323,8 @@ public class Auth2LoginAuthenticationProvider implements AuthenticationProvider
 
 		postAuthenticationChecks.check(userDetails);
 
-		// 放入缓存
-		if (!cacheWasUsed) {
+		// 放入缓存, 临时用户不缓存
+		if (!cacheWasUsed && !(userDetails instanceof TemporaryUser)) {
 			this.userCache.putUserInCache(userDetails);
 		}
 
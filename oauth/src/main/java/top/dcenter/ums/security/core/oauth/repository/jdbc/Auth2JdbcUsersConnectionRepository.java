@@ -24,13 +24,19 @@
 package top.dcenter.ums.security.core.oauth.repository.jdbc;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
@@ -53,6 +59,7 @@ import top.dcenter.ums.security.core.oauth.properties.RepositoryProperties;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -84,6 +91,9 @@ import static top.dcenter.ums.security.common.consts.RedisCacheConstants.USER_CO
  * USER_CONNECTION_HASH_ALL_CLEAR_CACHE_NAME:   'hm:' + userId + '__' + providerUsers
  * USER_CONNECTION_HASH_ALL_CLEAR_CACHE_NAME:   'hm:' + userId + '__' + parameters
  * </pre>
+ * 所有 sql 语句在创建实例时根据 {@link RepositoryProperties} 渲染一次, 常用语句通过预先创建的
+ * {@link PreparedStatementCreatorFactory}(声明参数类型)执行. 如需数据库端缓存预编译语句, 请在 jdbc url 中开启,
+ * 如 MySQL: {@code useServerPrepStmts=true&cachePrepStmts=true}.
  *
  * @author YongWu zheng
  * @version V2.0  Created by 2020/5/13 13:41
@@ -97,14 +107,126 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
 
     private final TextEncryptor textEncryptor;
 
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
     private final RepositoryProperties repositoryProperties;
 
+    // ================= 创建实例时渲染的字段名称与 sql 语句 =================
+    private final String userIdColumnName;
+    private final String providerIdColumnName;
+    private final String providerUserIdColumnName;
+    private final String displayNameColumnName;
+    private final String profileUrlColumnName;
+    private final String imageUrlColumnName;
+    private final String accessTokenColumnName;
+    private final String tokenIdColumnName;
+    private final String refreshTokenColumnName;
+    private final String expireTimeColumnName;
+
+    private final PreparedStatementCreatorFactory findConnectionByProviderIdAndProviderUserIdFactory;
+    private final String findUserIdsConnectedToSql;
+    private final PreparedStatementCreatorFactory getConnectionFactory;
+    private final PreparedStatementCreatorFactory findConnectionsByUserIdAndProviderIdFactory;
+    private final String addConnectionQueryForRankSql;
+    private final PreparedStatementCreatorFactory addConnectionFactory;
+    private final PreparedStatementCreatorFactory updateConnectionFactory;
+    private final String updateConnectionByTokenIdSql;
+    private final int[] updateConnectionByTokenIdTypes = {Types.VARCHAR, Types.VARCHAR, Types.BIGINT, Types.BIGINT};
+    private final PreparedStatementCreatorFactory findConnectionByTokenIdFactory;
+    private final String findConnectionsByTokenIdsSql;
+    private final String removeConnectionsSql;
+    private final String removeConnectionSql;
+    private final PreparedStatementCreatorFactory findAllListConnectionsFactory;
+    /**
+     * findConnectionsToUsers 的 sql 语句: findConnectionsToUsersSqlPrefix + providerUsersCriteriaSql + findConnectionsToUsersSqlSuffix
+     */
+    private final String findConnectionsToUsersSqlPrefix;
+    private final String findConnectionsToUsersSqlSuffix;
+
+    /**
+     * 用于 {@link #batchUpdateConnections(List)} 批量更新后一次性清除缓存, 没有此 bean 时不做清除
+     */
+    @SuppressWarnings("SpringJavaAutowiredFieldsWarningInspection")
+    @Autowired(required = false)
+    @Qualifier("auth2RedisHashCacheManager")
+    private CacheManager cacheManager;
+
     public Auth2JdbcUsersConnectionRepository(JdbcTemplate auth2UserConnectionJdbcTemplate,
                                               TextEncryptor textEncryptor,
                                               RepositoryProperties repositoryProperties) {
         this.jdbcTemplate = auth2UserConnectionJdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(auth2UserConnectionJdbcTemplate);
         this.textEncryptor = textEncryptor;
         this.repositoryProperties = repositoryProperties;
+
+        this.userIdColumnName = repositoryProperties.getUserIdColumnName();
+        this.providerIdColumnName = repositoryProperties.getProviderIdColumnName();
+        this.providerUserIdColumnName = repositoryProperties.getProviderUserIdColumnName();
+        this.displayNameColumnName = repositoryProperties.getDisplayNameColumnName();
+        this.profileUrlColumnName = repositoryProperties.getProfileUrlColumnName();
+        this.imageUrlColumnName = repositoryProperties.getImageUrlColumnName();
+        this.accessTokenColumnName = repositoryProperties.getAccessTokenColumnName();
+        this.tokenIdColumnName = repositoryProperties.getTokenIdColumnName();
+        this.refreshTokenColumnName = repositoryProperties.getRefreshTokenColumnName();
+        this.expireTimeColumnName = repositoryProperties.getExpireTimeColumnName();
+        final String rankColumnName = repositoryProperties.getRankColumnName();
+        final String selectFromUserConnectionSql = repositoryProperties.getSelectFromUserConnectionSql();
+
+        this.findConnectionByProviderIdAndProviderUserIdFactory =
+                new PreparedStatementCreatorFactory(String.format("%s WHERE %s = ? AND %s = ? ORDER BY %s",
+                                                                  selectFromUserConnectionSql,
+                                                                  providerIdColumnName,
+                                                                  providerUserIdColumnName,
+                                                                  rankColumnName),
+                                                    Types.VARCHAR, Types.VARCHAR);
+        this.findUserIdsConnectedToSql = repositoryProperties.getFindUserIdsConnectedToSql();
+        this.getConnectionFactory =
+                new PreparedStatementCreatorFactory(String.format("%s where %s = ? and %s = ? and %s = ?",
+                                                                  selectFromUserConnectionSql,
+                                                                  userIdColumnName,
+                                                                  providerIdColumnName,
+                                                                  providerUserIdColumnName),
+                                                    Types.VARCHAR, Types.VARCHAR, Types.VARCHAR);
+        this.findConnectionsByUserIdAndProviderIdFactory =
+                new PreparedStatementCreatorFactory(String.format("%s where %s = ? and %s = ? order by %s",
+                                                                  selectFromUserConnectionSql,
+                                                                  userIdColumnName,
+                                                                  providerIdColumnName,
+                                                                  rankColumnName),
+                                                    Types.VARCHAR, Types.VARCHAR);
+        this.addConnectionQueryForRankSql = repositoryProperties.getAddConnectionQueryForRankSql();
+        this.addConnectionFactory =
+                new PreparedStatementCreatorFactory(repositoryProperties.getAddConnectionSql(),
+                                                    Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.INTEGER,
+                                                    Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+                                                    Types.BIGINT, Types.VARCHAR, Types.BIGINT);
+        this.updateConnectionFactory =
+                new PreparedStatementCreatorFactory(repositoryProperties.getUpdateConnectionSql(),
+                                                    Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+                                                    Types.BIGINT, Types.VARCHAR, Types.BIGINT,
+                                                    Types.VARCHAR, Types.VARCHAR, Types.VARCHAR);
+        this.updateConnectionByTokenIdSql = repositoryProperties.getUpdateConnectionByTokenIdSql();
+        this.findConnectionByTokenIdFactory =
+                new PreparedStatementCreatorFactory(String.format("%s where %s = ?",
+                                                                  selectFromUserConnectionSql,
+                                                                  tokenIdColumnName),
+                                                    Types.BIGINT);
+        this.findConnectionsByTokenIdsSql = String.format("%s where %s in (:tokenIds)",
+                                                          selectFromUserConnectionSql,
+                                                          tokenIdColumnName);
+        this.removeConnectionsSql = repositoryProperties.getRemoveConnectionsSql();
+        this.removeConnectionSql = repositoryProperties.getRemoveConnectionSql();
+        this.findAllListConnectionsFactory =
+                new PreparedStatementCreatorFactory(String.format("%s where %s = ? order by %s, %s",
+                                                                  selectFromUserConnectionSql,
+                                                                  userIdColumnName,
+                                                                  providerIdColumnName,
+                                                                  rankColumnName),
+                                                    Types.VARCHAR);
+        this.findConnectionsToUsersSqlPrefix = String.format("%s where %s = :userId and ",
+                                                             selectFromUserConnectionSql,
+                                                             userIdColumnName);
+        this.findConnectionsToUsersSqlSuffix = String.format(" order by %s, %s", providerIdColumnName, rankColumnName);
     }
 
     @Cacheable(cacheNames = USER_CONNECTION_HASH_CACHE_NAME,
@@ -113,12 +235,7 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
     public List<ConnectionData> findConnectionByProviderIdAndProviderUserId(String providerId, String providerUserId) {
         try
         {
-            return jdbcTemplate.query(String.format("%s WHERE %s = ? AND %s = ? ORDER BY %s",
-                                                    repositoryProperties.getSelectFromUserConnectionSql(),
-                                                    repositoryProperties.getProviderIdColumnName(),
-                                                    repositoryProperties.getProviderUserIdColumnName(),
-                                                    repositoryProperties.getRankColumnName()),
-                                      connectionDataMapper, providerId, providerUserId);
+            return query(findConnectionByProviderIdAndProviderUserIdFactory, providerId, providerUserId);
         }
         catch (Exception e)
         {
@@ -135,21 +252,21 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
     @Override
     public Set<String> findUserIdsConnectedTo(String providerId, Set<String> providerUserIds) {
         MapSqlParameterSource parameters = new MapSqlParameterSource();
-        parameters.addValue(repositoryProperties.getProviderIdColumnName(), providerId);
-        parameters.addValue(repositoryProperties.getProviderUserIdColumnName(), providerUserIds);
+        parameters.addValue(providerIdColumnName, providerId);
+        parameters.addValue(providerUserIdColumnName, providerUserIds);
         final Set<String> localUserIds = new HashSet<>();
         try
         {
-            new NamedParameterJdbcTemplate(jdbcTemplate).query(repositoryProperties.getFindUserIdsConnectedToSql(),
-                                                               parameters,
-                                                               rs ->
-                                                               {
-                                                                   while (rs.next())
-                                                                   {
-                                                                       localUserIds.add(rs.getString(repositoryProperties.getUserIdColumnName()));
-                                                                   }
-                                                                   return localUserIds;
-                                                               });
+            namedParameterJdbcTemplate.query(findUserIdsConnectedToSql,
+                                             parameters,
+                                             rs ->
+                                             {
+                                                 while (rs.next())
+                                                 {
+                                                     localUserIds.add(rs.getString(userIdColumnName));
+                                                 }
+                                                 return localUserIds;
+                                             });
         }
         catch (Exception e)
         {
@@ -183,7 +300,7 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
         }
         StringBuilder providerUsersCriteriaSql = new StringBuilder();
         MapSqlParameterSource parameters = new MapSqlParameterSource();
-        parameters.addValue(repositoryProperties.getUserIdColumnName(), userId);
+        parameters.addValue(userIdColumnName, userId);
         for (Iterator<Map.Entry<String, List<String>>> it = providerUsers.entrySet().iterator(); it.hasNext(); )
         {
             Map.Entry<String, List<String>> entry = it.next();
@@ -201,13 +318,9 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
 
         try
         {
-            return jdbcTemplate.queryForObject(String.format("%s where %s = ? and %s = ? and %s = ?",
-                                                             repositoryProperties.getSelectFromUserConnectionSql(),
-                                                             repositoryProperties.getUserIdColumnName(),
-                                                             repositoryProperties.getProviderIdColumnName(),
-                                                             repositoryProperties.getProviderUserIdColumnName()),
-                                               connectionDataMapper, userId, connectionKey.getProviderId(),
-                                               connectionKey.getProviderUserId());
+            return DataAccessUtils.requiredSingleResult(query(getConnectionFactory,
+                                                               userId, connectionKey.getProviderId(),
+                                                               connectionKey.getProviderUserId()));
         }
         catch (Exception e)
         {
@@ -246,13 +359,7 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
     private List<ConnectionData> getConnectionDataList(String userId, String providerId) {
         try
         {
-            return jdbcTemplate.query(String.format("%s where %s = ? and %s = ? order by %s",
-                                                    repositoryProperties.getSelectFromUserConnectionSql(),
-                                                    repositoryProperties.getUserIdColumnName(),
-                                                    repositoryProperties.getProviderIdColumnName(),
-                                                    repositoryProperties.getRankColumnName()),
-                                      connectionDataMapper,
-                                      userId, providerId);
+            return query(findConnectionsByUserIdAndProviderIdFactory, userId, providerId);
         }
         catch (Exception e)
         {
@@ -300,14 +407,14 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
         try
         {
             //noinspection ConstantConditions
-            int rank = jdbcTemplate.queryForObject(repositoryProperties.getAddConnectionQueryForRankSql(),
+            int rank = jdbcTemplate.queryForObject(addConnectionQueryForRankSql,
                                                    Integer.class, connection.getUserId(), connection.getProviderId());
-            jdbcTemplate.update(repositoryProperties.getAddConnectionSql(),
-                                connection.getUserId(), connection.getProviderId(), connection.getProviderUserId(),
-                                rank, connection.getDisplayName(), connection.getProfileUrl(),
-                                connection.getImageUrl(), encrypt(connection.getAccessToken()),
-                                connection.getTokenId(), encrypt(connection.getRefreshToken()),
-                                connection.getExpireTime());
+            jdbcTemplate.update(addConnectionFactory.newPreparedStatementCreator(new Object[] {
+                    connection.getUserId(), connection.getProviderId(), connection.getProviderUserId(),
+                    rank, connection.getDisplayName(), connection.getProfileUrl(),
+                    connection.getImageUrl(), encrypt(connection.getAccessToken()),
+                    connection.getTokenId(), encrypt(connection.getRefreshToken()),
+                    connection.getExpireTime()}));
         }
         catch (DuplicateKeyException e)
         {
@@ -345,12 +452,12 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
     @Override
     @Transactional(rollbackFor = {Exception.class}, propagation = Propagation.REQUIRED)
     public ConnectionData updateConnection(ConnectionData connection) {
-        jdbcTemplate.update(repositoryProperties.getUpdateConnectionSql(),
-                            connection.getDisplayName(), connection.getProfileUrl(),
-                            connection.getImageUrl(), encrypt(connection.getAccessToken()),
-                            connection.getTokenId(), encrypt(connection.getRefreshToken()),
-                            connection.getExpireTime(), connection.getUserId(), connection.getProviderId(),
-                            connection.getProviderUserId());
+        jdbcTemplate.update(updateConnectionFactory.newPreparedStatementCreator(new Object[] {
+                connection.getDisplayName(), connection.getProfileUrl(),
+                connection.getImageUrl(), encrypt(connection.getAccessToken()),
+                connection.getTokenId(), encrypt(connection.getRefreshToken()),
+                connection.getExpireTime(), connection.getUserId(), connection.getProviderId(),
+                connection.getProviderUserId()}));
         return connection;
     }
 
@@ -383,13 +490,82 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
         return connection;
     }
 
+    @Override
+    @Transactional(rollbackFor = {Exception.class}, propagation = Propagation.REQUIRED)
+    public void batchUpdateConnections(List<AuthTokenPo> tokens) {
+        if (CollectionUtils.isEmpty(tokens)) {
+            return;
+        }
+        final int batchUpdateSize = Math.max(1, repositoryProperties.getBatchUpdateSize());
+        final List<Object[]> batchArgs = new ArrayList<>(Math.min(batchUpdateSize, tokens.size()));
+        final List<Long> tokenIds = new ArrayList<>(tokens.size());
+        for (AuthTokenPo token : tokens) {
+            tokenIds.add(token.getId());
+            batchArgs.add(new Object[] {encrypt(token.getAccessToken()),
+                                        encrypt(token.getRefreshToken()),
+                                        token.getExpireTime(),
+                                        token.getId()});
+            if (batchArgs.size() >= batchUpdateSize) {
+                jdbcTemplate.batchUpdate(updateConnectionByTokenIdSql, batchArgs, updateConnectionByTokenIdTypes);
+                batchArgs.clear();
+            }
+        }
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(updateConnectionByTokenIdSql, batchArgs, updateConnectionByTokenIdTypes);
+        }
+
+        evictConnectionCaches(tokenIds, batchUpdateSize);
+    }
+
+    /**
+     * 一次性清除 tokenIds 对应的 {@link ConnectionData} 的相关缓存, 与 {@link #updateConnectionByTokenId(AuthTokenPo)}
+     * 清除的缓存一致, 相同的 key 只清除一次.
+     * @param tokenIds          tokenId 列表
+     * @param batchUpdateSize   每次 in 查询的 tokenId 数量
+     */
+    private void evictConnectionCaches(List<Long> tokenIds, int batchUpdateSize) {
+        if (cacheManager == null) {
+            return;
+        }
+        final Cache allClearCache = cacheManager.getCache(USER_CONNECTION_HASH_ALL_CLEAR_CACHE_NAME);
+        final Cache hashCache = cacheManager.getCache(USER_CONNECTION_HASH_CACHE_NAME);
+        if (allClearCache == null && hashCache == null) {
+            return;
+        }
+
+        final Set<String> allClearKeys = new HashSet<>();
+        final Set<String> hashKeys = new HashSet<>();
+        final int size = tokenIds.size();
+        for (int from = 0; from < size; from += batchUpdateSize) {
+            final List<Long> subTokenIds = tokenIds.subList(from, Math.min(size, from + batchUpdateSize));
+            final List<ConnectionData> connections =
+                    namedParameterJdbcTemplate.query(findConnectionsByTokenIdsSql,
+                                                     new MapSqlParameterSource("tokenIds", subTokenIds),
+                                                     connectionDataMapper);
+            for (ConnectionData connection : connections) {
+                final String userId = connection.getUserId();
+                final String providerId = connection.getProviderId();
+                final String providerUserId = connection.getProviderUserId();
+                allClearKeys.add("hm:" + userId);
+                allClearKeys.add("hm:" + providerId);
+                hashKeys.add("h:" + userId + ":" + providerId + "__" + providerUserId);
+                hashKeys.add("h:" + userId + "__" + providerId);
+                hashKeys.add("hs:" + userId + "__" + providerId);
+                hashKeys.add("hs:" + providerId + "__" + providerUserId);
+            }
+        }
+
+        if (allClearCache != null) {
+            allClearKeys.forEach(allClearCache::evict);
+        }
+        if (hashCache != null) {
+            hashKeys.forEach(hashCache::evict);
+        }
+    }
 
     @Override
     public ConnectionData findConnectionByTokenId(Long tokenId) {
-        return jdbcTemplate.queryForObject(String.format("%s where %s = ?",
-                                                         repositoryProperties.getSelectFromUserConnectionSql(),
-                                                         repositoryProperties.getTokenIdColumnName()),
-                                           connectionDataMapper, tokenId);
+        return DataAccessUtils.requiredSingleResult(query(findConnectionByTokenIdFactory, tokenId));
     }
 
     @Caching(
@@ -410,7 +586,7 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
     @Override
     @Transactional(rollbackFor = {Exception.class}, propagation = Propagation.REQUIRED)
     public void removeConnections(String userId, String providerId) {
-        jdbcTemplate.update(repositoryProperties.getRemoveConnectionsSql(),
+        jdbcTemplate.update(removeConnectionsSql,
                             userId, providerId);
     }
 
@@ -437,7 +613,7 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
     @Override
     @Transactional(rollbackFor = {Exception.class}, propagation = Propagation.REQUIRED)
     public void removeConnection(String userId, ConnectionKey connectionKey) {
-        jdbcTemplate.update(repositoryProperties.getRemoveConnectionSql(),
+        jdbcTemplate.update(removeConnectionSql,
                             userId, connectionKey.getProviderId(), connectionKey.getProviderUserId());
     }
 
@@ -446,12 +622,7 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
     public List<ConnectionData> findAllListConnections(String userId) {
         try
         {
-            return jdbcTemplate.query(String.format("%s where %s = ? order by %s, %s",
-                                                    repositoryProperties.getSelectFromUserConnectionSql(),
-                                                    repositoryProperties.getUserIdColumnName(),
-                                                    repositoryProperties.getProviderIdColumnName(),
-                                                    repositoryProperties.getRankColumnName()),
-                                      connectionDataMapper, userId);
+            return query(findAllListConnectionsFactory, userId);
         }
         catch (Exception e)
         {
@@ -467,14 +638,9 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
     public List<ConnectionData> findConnectionsToUsers(MapSqlParameterSource parameters, String providerUsersCriteriaSql, String userId) {
         try
         {
-            return new NamedParameterJdbcTemplate(jdbcTemplate)
-                    .query(String.format("%s where %s = :userId and %s order by %s, %s",
-                                         repositoryProperties.getSelectFromUserConnectionSql(),
-                                         repositoryProperties.getUserIdColumnName(),
-                                         providerUsersCriteriaSql,
-                                         repositoryProperties.getProviderIdColumnName(),
-                                         repositoryProperties.getRankColumnName()),
-                           parameters, connectionDataMapper);
+            return namedParameterJdbcTemplate.query(findConnectionsToUsersSqlPrefix + providerUsersCriteriaSql
+                                                            + findConnectionsToUsersSqlSuffix,
+                                                    parameters, connectionDataMapper);
         }
         catch (Exception e)
         {
@@ -533,6 +699,16 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
 
     }
 
+    /**
+     * 通过预先创建的 {@link PreparedStatementCreatorFactory} 查询 {@link ConnectionData}
+     * @param factory   {@link PreparedStatementCreatorFactory}
+     * @param args      sql 参数, 顺序与类型必须与 factory 声明的参数一致
+     * @return  {@link ConnectionData} 列表
+     */
+    private List<ConnectionData> query(PreparedStatementCreatorFactory factory, Object... args) {
+        return jdbcTemplate.query(factory.newPreparedStatementCreator(args), connectionDataMapper);
+    }
+
     private String encrypt(String text) {
         return text != null ? textEncryptor.encrypt(text) : null;
     }
@@ -541,13 +717,13 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
     private void fillingCriteriaSql(StringBuilder providerUsersCriteriaSql, MapSqlParameterSource parameters, Iterator<Map.Entry<String, List<String>>> it, Map.Entry<String, List<String>> entry) {
         String providerId = entry.getKey();
         providerUsersCriteriaSql
-                .append(String.format("%s = :providerId_", repositoryProperties.getProviderIdColumnName()))
+                .append(providerIdColumnName).append(" = :providerId_")
                 .append(providerId)
-                .append(String.format(" and %s in (:providerUserIds_", repositoryProperties.getProviderUserIdColumnName()))
+                .append(" and ").append(providerUserIdColumnName).append(" in (:providerUserIds_")
                 .append(providerId)
                 .append(")");
-        parameters.addValue(String.format("%s_%s", repositoryProperties.getProviderIdColumnName(), providerId), providerId);
-        parameters.addValue(String.format("%s_%s", repositoryProperties.getProviderUserIdColumnName(), providerId), entry.getValue());
+        parameters.addValue(providerIdColumnName + "_" + providerId, providerId);
+        parameters.addValue(providerUserIdColumnName + "_" + providerId, entry.getValue());
         if (it.hasNext())
         {
             providerUsersCriteriaSql.append(" or ");
@@ -566,16 +742,16 @@ public class Auth2JdbcUsersConnectionRepository implements UsersConnectionReposi
 
         private ConnectionData mapConnectionData(ResultSet rs) throws SQLException {
             ConnectionData connectionData = new ConnectionData();
-            connectionData.setUserId(rs.getString(repositoryProperties.getUserIdColumnName()));
-            connectionData.setProviderId(rs.getString(repositoryProperties.getProviderIdColumnName()));
-            connectionData.setProviderUserId(rs.getString(repositoryProperties.getProviderUserIdColumnName()));
-            connectionData.setDisplayName(rs.getString(repositoryProperties.getDisplayNameColumnName()));
-            connectionData.setProfileUrl(rs.getString(repositoryProperties.getProfileUrlColumnName()));
-            connectionData.setImageUrl(rs.getString(repositoryProperties.getImageUrlColumnName()));
-            connectionData.setAccessToken(decrypt(rs.getString(repositoryProperties.getAccessTokenColumnName())));
-            connectionData.setTokenId(rs.getLong(repositoryProperties.getTokenIdColumnName()));
-            connectionData.setRefreshToken(decrypt(rs.getString(repositoryProperties.getRefreshTokenColumnName())));
-            connectionData.setExpireTime(expireTime(rs.getLong(repositoryProperties.getExpireTimeColumnName())));
+            connectionData.setUserId(rs.getString(userIdColumnName));
+            connectionData.setProviderId(rs.getString(providerIdColumnName));
+            connectionData.setProviderUserId(rs.getString(providerUserIdColumnName));
+            connectionData.setDisplayName(rs.getString(displayNameColumnName));
+            connectionData.setProfileUrl(rs.getString(profileUrlColumnName));
+            connectionData.setImageUrl(rs.getString(imageUrlColumnName));
+            connectionData.setAccessToken(decrypt(rs.getString(accessTokenColumnName)));
+            connectionData.setTokenId(rs.getLong(tokenIdColumnName));
+            connectionData.setRefreshToken(decrypt(rs.getString(refreshTokenColumnName)));
+            connectionData.setExpireTime(expireTime(rs.getLong(expireTimeColumnName)));
             return connectionData;
         }
 
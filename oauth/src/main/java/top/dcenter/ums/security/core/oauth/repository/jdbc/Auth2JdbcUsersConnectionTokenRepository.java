@@ -23,13 +23,19 @@
 
 package top.dcenter.ums.security.core.oauth.repository.jdbc;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.lang.NonNull;
 import org.springframework.security.crypto.encrypt.TextEncryptor;
@@ -41,6 +47,9 @@ import top.dcenter.ums.security.core.oauth.enums.EnableRefresh;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static java.util.Objects.isNull;
@@ -49,39 +58,133 @@ import static top.dcenter.ums.security.core.oauth.enums.EnableRefresh.NO;
 import static top.dcenter.ums.security.core.oauth.enums.EnableRefresh.YES;
 
 /**
- * AuthToken 持久化服务
+ * AuthToken 持久化服务.<br>
+ * 所有 sql 语句在创建实例时渲染一次, 常用语句通过预先创建的 {@link PreparedStatementCreatorFactory}(声明参数类型)执行.
  * @author YongWu zheng
  * @version V2.0  Created by 2020/10/10 15:32
  */
 @CacheConfig(cacheManager = "auth2RedisHashCacheManager")
 public class Auth2JdbcUsersConnectionTokenRepository implements UsersConnectionTokenRepository {
 
+    /**
+     * saveAuthToken 的参数类型, 顺序与 {@link #getInsertArgs(AuthTokenPo)} 一致
+     */
+    private static final int[] INSERT_ARG_TYPES = {
+            // enableRefresh, providerId, accessToken, expireIn, refreshTokenExpireIn, refreshToken
+            Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.VARCHAR,
+            // uid, openId, accessCode, unionId, scope, tokenType, idToken
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            // macAlgorithm, macKey, code, oauthToken, oauthTokenSecret, userId, screenName
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            // oauthCallbackConfirmed, expireTime
+            Types.BOOLEAN, Types.BIGINT};
+    /**
+     * updateAuthToken 的参数类型, 顺序与 {@link #getUpdateArgs(AuthTokenPo)} 一致
+     */
+    private static final int[] UPDATE_ARG_TYPES = appendType(INSERT_ARG_TYPES, Types.BIGINT);
+
     private final JdbcTemplate jdbcTemplate;
 
     private final TextEncryptor textEncryptor;
 
-    private final String authTokenTableName;
+    /**
+     * 批量更新时, 每次 {@link JdbcTemplate#batchUpdate(String, List)} 的记录数
+     */
+    private final int batchUpdateSize;
+
+    // ================= 创建实例时渲染的 sql 语句 =================
+    private final PreparedStatementCreatorFactory findAuthTokenByIdFactory;
+    private final PreparedStatementCreatorFactory saveAuthTokenFactory;
+    private final String updateAuthTokenSql;
+    private final PreparedStatementCreatorFactory updateAuthTokenFactory;
+    private final String delAuthTokenByIdSql;
+    private final String maxTokenIdSql;
+    private final String findAuthTokenByExpireTimeAndBetweenIdSql;
+    private final String findAuthTokenByExpireTimeAndIdAfterSql;
+    private final String updateEnableRefreshByTokenIdSql;
+
+    /**
+     * 用于 {@link #batchUpdateTokens(List)} 批量更新后一次性清除缓存, 没有此 bean 时不做清除
+     */
+    @SuppressWarnings("SpringJavaAutowiredFieldsWarningInspection")
+    @Autowired(required = false)
+    @Qualifier("auth2RedisHashCacheManager")
+    private CacheManager cacheManager;
 
     public Auth2JdbcUsersConnectionTokenRepository(JdbcTemplate auth2UserConnectionJdbcTemplate,
                                                    TextEncryptor textEncryptor, String authTokenTableName) {
+        this(auth2UserConnectionJdbcTemplate, textEncryptor, authTokenTableName, 500);
+    }
+
+    public Auth2JdbcUsersConnectionTokenRepository(JdbcTemplate auth2UserConnectionJdbcTemplate,
+                                                   TextEncryptor textEncryptor, String authTokenTableName,
+                                                   int batchUpdateSize) {
         this.jdbcTemplate = auth2UserConnectionJdbcTemplate;
         this.textEncryptor = textEncryptor;
-        this.authTokenTableName = authTokenTableName;
+        this.batchUpdateSize = Math.max(1, batchUpdateSize);
+
+        final String selectFromAuthTokenSql = "SELECT `id`, `enableRefresh`, `providerId`, `accessToken`, `expireIn`, " +
+                "`refreshTokenExpireIn`, " +
+                "`refreshToken`, `uid`, `openId`, `accessCode`, `unionId`, `scope`, " +
+                "`tokenType`, `idToken`, `macAlgorithm`, `macKey`, `code`, " +
+                "`oauthToken`, `oauthTokenSecret`, `userId`, `screenName`, " +
+                "`oauthCallbackConfirmed`, `expireTime` " +
+                "FROM `" + authTokenTableName + "` ";
+        this.findAuthTokenByIdFactory = new PreparedStatementCreatorFactory(selectFromAuthTokenSql + "WHERE id = ?;",
+                                                                            Types.VARCHAR);
+        this.saveAuthTokenFactory = new PreparedStatementCreatorFactory(
+                "INSERT INTO `" + authTokenTableName + "`(`enableRefresh` ,`providerId`, `accessToken`, " +
+                        "`expireIn`, `refreshTokenExpireIn`, " +
+                        "`refreshToken`, `uid`, `openId`, `accessCode`, `unionId`, `scope`, `tokenType`, " +
+                        "`idToken`, `macAlgorithm`, `macKey`, `code`, `oauthToken`, `oauthTokenSecret`, " +
+                        "`userId`, `screenName`, `oauthCallbackConfirmed`, `expireTime`) " +
+                        "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);",
+                INSERT_ARG_TYPES);
+        this.updateAuthTokenSql = "UPDATE `" + authTokenTableName + "` SET " +
+                "`enableRefresh` = ?, " +
+                "`providerId` = ?, " +
+                "`accessToken` = ?, " +
+                "`expireIn` = ?, " +
+                "`refreshTokenExpireIn` = ?, " +
+                "`refreshToken` = ?, " +
+                "`uid` = ?, " +
+                "`openId` = ?, " +
+                "`accessCode` = ?, " +
+                "`unionId` = ?, " +
+                "`scope` = ?, " +
+                "`tokenType` = ?, " +
+                "`idToken` = ?, " +
+                "`macAlgorithm` = ?, " +
+                "`macKey` = ?, " +
+                "`code` = ?, " +
+                "`oauthToken` = ?, " +
+                "`oauthTokenSecret` = ?, " +
+                "`userId` = ?, " +
+                "`screenName` = ?, " +
+                "`oauthCallbackConfirmed` = ?, " +
+                "`expireTime` = ? " +
+                "WHERE `id` = ?;";
+        this.updateAuthTokenFactory = new PreparedStatementCreatorFactory(updateAuthTokenSql, UPDATE_ARG_TYPES);
+        this.delAuthTokenByIdSql = "DELETE FROM `" + authTokenTableName + "` WHERE id = ?;";
+        this.maxTokenIdSql = "SELECT MAX(`id`) FROM `" + authTokenTableName + "`";
+        this.findAuthTokenByExpireTimeAndBetweenIdSql = selectFromAuthTokenSql +
+                "WHERE id BETWEEN ? AND ? AND `expireTime` <= ? " +
+                "AND enableRefresh = " + YES.getCode() + ";";
+        // 建议索引: (`enableRefresh`, `id`, `expireTime`), 按 id 顺序扫描索引, 在索引中过滤 expireTime, 获取 limit 条后即停止
+        this.findAuthTokenByExpireTimeAndIdAfterSql = selectFromAuthTokenSql +
+                "WHERE enableRefresh = " + YES.getCode() + " AND id > ? AND id <= ? " +
+                "AND `expireTime` <= ? " +
+                "ORDER BY id LIMIT ?;";
+        this.updateEnableRefreshByTokenIdSql = "update `" + authTokenTableName + "` set `enableRefresh` = ? where id = ?";
     }
 
     @Cacheable(cacheNames = USER_CONNECTION_CACHE_NAME, key = "'s:token:' + #tokenId")
     @Override
     @NonNull
     public AuthTokenPo findAuthTokenById(@NonNull String tokenId) throws DataAccessException {
-        return jdbcTemplate.queryForObject("SELECT `id`, `enableRefresh`, `providerId`, `accessToken`, `expireIn`, " +
-                                                   "`refreshTokenExpireIn`, " +
-                                                   "`refreshToken`, `uid`, `openId`, `accessCode`, `unionId`, `scope`, " +
-                                                   "`tokenType`, `idToken`, `macAlgorithm`, `macKey`, `code`, " +
-                                                   "`oauthToken`, `oauthTokenSecret`, `userId`, `screenName`, " +
-                                                   "`oauthCallbackConfirmed`, `expireTime` " +
-                                                   "FROM `" + authTokenTableName + "` " +
-                                                   "WHERE id = ?;",
-                                           authTokenPoMapper, tokenId);
+        return DataAccessUtils.requiredSingleResult(
+                jdbcTemplate.query(findAuthTokenByIdFactory.newPreparedStatementCreator(new Object[] {tokenId}),
+                                   authTokenPoMapper));
     }
 
     @Transactional(rollbackFor = {Exception.class}, propagation = Propagation.REQUIRED)
@@ -89,39 +192,7 @@ public class Auth2JdbcUsersConnectionTokenRepository implements UsersConnectionT
     @Override
     @NonNull
     public AuthTokenPo saveAuthToken(@NonNull AuthTokenPo authToken) throws DataAccessException {
-        jdbcTemplate.update("INSERT INTO `" + authTokenTableName + "`(`enableRefresh` ,`providerId`, `accessToken`, " +
-                                    "`expireIn`, `refreshTokenExpireIn`, " +
-                                    "`refreshToken`, `uid`, `openId`, `accessCode`, `unionId`, `scope`, `tokenType`, " +
-                                    "`idToken`, `macAlgorithm`, `macKey`, `code`, `oauthToken`, `oauthTokenSecret`, " +
-                                    "`userId`, `screenName`, `oauthCallbackConfirmed`, `expireTime`) " +
-                                    "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);",
-                            authToken.getEnableRefresh().getCode(),
-                            authToken.getProviderId(),
-                            encrypt(authToken.getAccessToken()),
-                            authToken.getExpireIn(),
-                            authToken.getRefreshTokenExpireIn(),
-                            encrypt(authToken.getRefreshToken()),
-                            authToken.getUid(),
-                            authToken.getOpenId(),
-                            encrypt(authToken.getAccessCode()),
-                            authToken.getUnionId(),
-                            // Google附带属性
-                            authToken.getScope(),
-                            authToken.getTokenType(),
-                            encrypt(authToken.getIdToken()),
-                            // 小米附带属性
-                            authToken.getMacAlgorithm(),
-                            encrypt(authToken.getMacKey()),
-                            // 企业微信附带属性
-                            encrypt(authToken.getCode()),
-                            // Twitter附带属性
-                            encrypt(authToken.getOauthToken()),
-                            encrypt(authToken.getOauthTokenSecret()),
-                            authToken.getUserId(),
-                            authToken.getScreenName(),
-                            authToken.getOauthCallbackConfirmed(),
-                            // 过期时间, 基于 1970-01-01T00:00:00Z, 无过期时间默认为 -1
-                            authToken.getExpireTime());
+        jdbcTemplate.update(saveAuthTokenFactory.newPreparedStatementCreator(getInsertArgs(authToken)));
         // 获取 id
         Long id = jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID();", null, Long.class);
         authToken.setId(id);
@@ -137,73 +208,57 @@ public class Auth2JdbcUsersConnectionTokenRepository implements UsersConnectionT
         {
             throw new RuntimeException("authToken id cannot be null");
         }
-        jdbcTemplate.update("UPDATE `" + authTokenTableName + "` SET " +
-                                    "`enableRefresh` = ?, " +
-                                    "`providerId` = ?, " +
-                                    "`accessToken` = ?, " +
-                                    "`expireIn` = ?, " +
-                                    "`refreshTokenExpireIn` = ?, " +
-                                    "`refreshToken` = ?, " +
-                                    "`uid` = ?, " +
-                                    "`openId` = ?, " +
-                                    "`accessCode` = ?, " +
-                                    "`unionId` = ?, " +
-                                    "`scope` = ?, " +
-                                    "`tokenType` = ?, " +
-                                    "`idToken` = ?, " +
-                                    "`macAlgorithm` = ?, " +
-                                    "`macKey` = ?, " +
-                                    "`code` = ?, " +
-                                    "`oauthToken` = ?, " +
-                                    "`oauthTokenSecret` = ?, " +
-                                    "`userId` = ?, " +
-                                    "`screenName` = ?, " +
-                                    "`oauthCallbackConfirmed` = ?, " +
-                                    "`expireTime` = ? " +
-                                    "WHERE `id` = ?;",
-                            authToken.getEnableRefresh().getCode(),
-                            authToken.getProviderId(),
-                            encrypt(authToken.getAccessToken()),
-                            authToken.getExpireIn(),
-                            authToken.getRefreshTokenExpireIn(),
-                            encrypt(authToken.getRefreshToken()),
-                            authToken.getUid(),
-                            authToken.getOpenId(),
-                            encrypt(authToken.getAccessCode()),
-                            authToken.getUnionId(),
-                            // Google附带属性
-                            authToken.getScope(),
-                            authToken.getTokenType(),
-                            encrypt(authToken.getIdToken()),
-                            // 小米附带属性
-                            authToken.getMacAlgorithm(),
-                            encrypt(authToken.getMacKey()),
-                            // 企业微信附带属性
-                            encrypt(authToken.getCode()),
-                            // Twitter附带属性
-                            encrypt(authToken.getOauthToken()),
-                            encrypt(authToken.getOauthTokenSecret()),
-                            authToken.getUserId(),
-                            authToken.getScreenName(),
-                            authToken.getOauthCallbackConfirmed(),
-                            // 过期时间, 基于 1970-01-01T00:00:00Z, 无过期时间默认为 -1
-                            authToken.getExpireTime(),
-                            authToken.getId());
+        jdbcTemplate.update(updateAuthTokenFactory.newPreparedStatementCreator(getUpdateArgs(authToken)));
         return authToken;
     }
 
+    @Transactional(rollbackFor = {Exception.class}, propagation = Propagation.REQUIRED)
+    @Override
+    public void batchUpdateTokens(@NonNull List<AuthTokenPo> authTokens) throws DataAccessException {
+        if (authTokens.isEmpty()) {
+            return;
+        }
+        List<Object[]> batchArgs = new ArrayList<>(Math.min(batchUpdateSize, authTokens.size()));
+        for (AuthTokenPo authToken : authTokens) {
+            if (authToken.getId() == null)
+            {
+                throw new RuntimeException("authToken id cannot be null");
+            }
+            batchArgs.add(getUpdateArgs(authToken));
+            if (batchArgs.size() >= batchUpdateSize) {
+                jdbcTemplate.batchUpdate(updateAuthTokenSql, batchArgs, UPDATE_ARG_TYPES);
+                batchArgs.clear();
+            }
+        }
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(updateAuthTokenSql, batchArgs, UPDATE_ARG_TYPES);
+        }
+
+        // 一次性清除缓存
+        if (isNull(cacheManager)) {
+            return;
+        }
+        Cache cache = cacheManager.getCache(USER_CONNECTION_CACHE_NAME);
+        if (isNull(cache)) {
+            return;
+        }
+        for (AuthTokenPo authToken : authTokens) {
+            cache.evict("s:token:" + authToken.getId());
+        }
+    }
+
     @CacheEvict(cacheNames = USER_CONNECTION_CACHE_NAME,
             key = "'s:token:' + #tokenId", beforeInvocation = true)
     @Transactional(rollbackFor = {Exception.class}, propagation = Propagation.REQUIRED)
     @Override
     public void delAuthTokenById(@NonNull String tokenId) throws DataAccessException {
-        jdbcTemplate.update("DELETE FROM `" + authTokenTableName + "` WHERE id = ?;", tokenId);
+        jdbcTemplate.update(delAuthTokenByIdSql, tokenId);
     }
 
     @Override
     @NonNull
     public Long getMaxTokenId() throws IncorrectResultSizeDataAccessException {
-        Long max = jdbcTemplate.queryForObject("SELECT MAX(`id`) FROM `" + authTokenTableName + "`", Long.class);
+        Long max = jdbcTemplate.queryForObject(maxTokenIdSql, Long.class);
         if (isNull(max)) {
         	return 1L;
         }
@@ -214,16 +269,16 @@ public class Auth2JdbcUsersConnectionTokenRepository implements UsersConnectionT
     @NonNull
     public List<AuthTokenPo> findAuthTokenByExpireTimeAndBetweenId(@NonNull Long expiredTime, @NonNull Long startId,
                                                                    @NonNull Long endId) throws DataAccessException {
-        return jdbcTemplate.query("SELECT `id`, `enableRefresh`, `providerId`, `accessToken`, `expireIn`, " +
-                                           "`refreshTokenExpireIn`, " +
-                                           "`refreshToken`, `uid`, `openId`, `accessCode`, `unionId`, `scope`, " +
-                                           "`tokenType`, `idToken`, `macAlgorithm`, `macKey`, `code`, " +
-                                           "`oauthToken`, `oauthTokenSecret`, `userId`, `screenName`, " +
-                                           "`oauthCallbackConfirmed`, `expireTime` " +
-                                           "FROM `" + authTokenTableName + "` " +
-                                           "WHERE id BETWEEN ? AND ? AND `expireTime` <= ? " +
-                                                  "AND enableRefresh = " + YES.getCode() + ";",
-                           authTokenPoMapper, startId, endId, expiredTime);
+        return jdbcTemplate.query(findAuthTokenByExpireTimeAndBetweenIdSql,
+                                  authTokenPoMapper, startId, endId, expiredTime);
+    }
+
+    @Override
+    @NonNull
+    public List<AuthTokenPo> findAuthTokenByExpireTimeAndIdAfter(@NonNull Long expiredTime, @NonNull Long afterId,
+                                                                 @NonNull Long endId, int limit) throws DataAccessException {
+        return jdbcTemplate.query(findAuthTokenByExpireTimeAndIdAfterSql,
+                                  authTokenPoMapper, afterId, endId, expiredTime, limit);
     }
 
     @CacheEvict(cacheNames = USER_CONNECTION_CACHE_NAME,
@@ -231,8 +286,50 @@ public class Auth2JdbcUsersConnectionTokenRepository implements UsersConnectionT
     @Transactional(rollbackFor = {Exception.class}, propagation = Propagation.REQUIRED)
     @Override
     public void updateEnableRefreshByTokenId(@NonNull EnableRefresh enableRefresh, @NonNull Long tokenId) throws DataAccessException {
-        jdbcTemplate.update("update `" + authTokenTableName + "` set `enableRefresh` = ? where id = ?",
-                            enableRefresh.getCode(), tokenId);
+        jdbcTemplate.update(updateEnableRefreshByTokenIdSql, enableRefresh.getCode(), tokenId);
+    }
+
+    private Object[] getInsertArgs(AuthTokenPo authToken) {
+        return new Object[] {authToken.getEnableRefresh().getCode(),
+                             authToken.getProviderId(),
+                             encrypt(authToken.getAccessToken()),
+                             authToken.getExpireIn(),
+                             authToken.getRefreshTokenExpireIn(),
+                             encrypt(authToken.getRefreshToken()),
+                             authToken.getUid(),
+                             authToken.getOpenId(),
+                             encrypt(authToken.getAccessCode()),
+                             authToken.getUnionId(),
+                             // Google附带属性
+                             authToken.getScope(),
+                             authToken.getTokenType(),
+                             encrypt(authToken.getIdToken()),
+                             // 小米附带属性
+                             authToken.getMacAlgorithm(),
+                             encrypt(authToken.getMacKey()),
+                             // 企业微信附带属性
+                             encrypt(authToken.getCode()),
+                             // Twitter附带属性
+                             encrypt(authToken.getOauthToken()),
+                             encrypt(authToken.getOauthTokenSecret()),
+                             authToken.getUserId(),
+                             authToken.getScreenName(),
+                             authToken.getOauthCallbackConfirmed(),
+                             // 过期时间, 基于 1970-01-01T00:00:00Z, 无过期时间默认为 -1
+                             authToken.getExpireTime()};
+    }
+
+    private Object[] getUpdateArgs(AuthTokenPo authToken) {
+        final Object[] insertArgs = getInsertArgs(authToken);
+        final Object[] args = Arrays.copyOf(insertArgs, insertArgs.length + 1);
+        args[insertArgs.length] = authToken.getId();
+        return args;
+    }
+
+    private static int[] appendType(int[] types, int type) {
+        final int[] result = Arrays.copyOf(types, types.length + 1);
+        result[types.length] = type;
+        return result;
     }
 
     private String encrypt(String text) {
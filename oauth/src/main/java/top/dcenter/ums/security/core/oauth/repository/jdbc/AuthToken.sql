@@ -24,5 +24,6 @@ CREATE TABLE `auth_token` (
   `screenName` varchar(64) DEFAULT NULL COMMENT 'Twitter附带属性',
   `oauthCallbackConfirmed` varchar(64) DEFAULT NULL COMMENT 'Twitter附带属性',
   `expireTime` bigint(20) DEFAULT '-1' COMMENT '过期时间, 基于 1970-01-01T00:00:00Z, 无过期时间默认为 -1',
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  KEY `idx_enableRefresh_id_expireTime` (`enableRefresh`,`id`,`expireTime`) COMMENT 'refreshToken 定时任务 keyset 分页'
 ) ENGINE=InnoDB AUTO_INCREMENT=4 DEFAULT CHARSET=utf8mb4
\ No newline at end of file
@@ -33,7 +33,9 @@ import org.springframework.lang.Nullable;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.cache.NullUserCache;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.LinkedMultiValueMap;
@@ -69,7 +71,9 @@ import static java.util.Objects.nonNull;
  * {@link #signUp(AuthUser, String, String)} 功能：第三方登录自动注册时, 根据 第三方的 authUser 注册为本地账户的用户,
  * 用户名的生成规则由 {@link UmsUserDetailsService#generateUsernames(AuthUser)} 定义, 默认规则为:
  * username 或 username + "_" + providerId 或 username + "_" + providerId + "_" + providerUserId.
- * 如需自定义用户名生成逻辑, 重新实现 {@link UmsUserDetailsService#generateUsernames(AuthUser)} 方法即可
+ * 如需自定义用户名生成逻辑, 重新实现 {@link UmsUserDetailsService#generateUsernames(AuthUser)} 方法即可.<br>
+ * {@link #binding(UserDetails, AuthUser, String)}/{@link #unbinding(String, String, String)}/
+ * {@link #updateUserConnectionAndAuthToken(AuthUser, ConnectionData)} 成功后删除 {@link UserCache} 中对应的用户缓存.
  * @author YongWu zheng
  * @version V2.0  Created by 2020/5/14 22:32
  * @see ConnectionService
@@ -87,18 +91,30 @@ public class DefaultConnectionServiceImpl implements ConnectionService {
     private final UsersConnectionRepository usersConnectionRepository;
     private final UsersConnectionTokenRepository usersConnectionTokenRepository;
     private final Auth2StateCoder auth2StateCoder;
+    private final UserCache userCache;
 
     public DefaultConnectionServiceImpl(UmsUserDetailsService userDetailsService,
                                         Auth2Properties auth2Properties,
                                         UsersConnectionRepository usersConnectionRepository,
                                         @Autowired(required = false) UsersConnectionTokenRepository usersConnectionTokenRepository,
                                         Auth2StateCoder auth2StateCoder) {
+        this(userDetailsService, auth2Properties, usersConnectionRepository, usersConnectionTokenRepository,
+             auth2StateCoder, null);
+    }
+
+    public DefaultConnectionServiceImpl(UmsUserDetailsService userDetailsService,
+                                        Auth2Properties auth2Properties,
+                                        UsersConnectionRepository usersConnectionRepository,
+                                        @Autowired(required = false) UsersConnectionTokenRepository usersConnectionTokenRepository,
+                                        Auth2StateCoder auth2StateCoder,
+                                        @Nullable UserCache userCache) {
         this.userDetailsService = userDetailsService;
         this.defaultAuthorities = auth2Properties.getDefaultAuthorities();
         this.usersConnectionRepository = usersConnectionRepository;
         this.usersConnectionTokenRepository = usersConnectionTokenRepository;
         this.timeout = auth2Properties.getProxy().getHttpConfig().getTimeout();
         this.auth2StateCoder = auth2StateCoder;
+        this.userCache = nonNull(userCache) ? userCache : new NullUserCache();
     }
 
     @Override
@@ -172,6 +188,8 @@ public class DefaultConnectionServiceImpl implements ConnectionService {
             if (nonNull(usersConnectionTokenRepository)) {
                 usersConnectionTokenRepository.updateAuthToken(authToken);
             }
+            // 删除用户缓存
+            userCache.removeUserFromCache(data.getUserId());
         }
         catch (Exception e)
         {
@@ -185,6 +203,8 @@ public class DefaultConnectionServiceImpl implements ConnectionService {
     public void binding(@NonNull UserDetails principal, @NonNull AuthUser authUser, @NonNull String providerId) {
         // 第三方授权登录信息绑定到本地账号, 且添加第三方授权登录信息到 user_connection 与 auth_token
         registerConnection(providerId, authUser, principal);
+        // 删除用户缓存
+        userCache.removeUserFromCache(principal.getUsername());
     }
 
     @Override
@@ -202,6 +222,8 @@ public class DefaultConnectionServiceImpl implements ConnectionService {
         }
         // 解除绑定(第三方)
         usersConnectionRepository.removeConnection(userId, new ConnectionKey(providerId, providerUserId));
+        // 删除用户缓存
+        userCache.removeUserFromCache(userId);
     }
 
     @Override
@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.core.oauth.userdetails.cache;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.Assert;
+import top.dcenter.ums.security.common.cache.LocalTtlCache;
+
+import java.time.Duration;
+
+/**
+ * 有容量上限且带 ttl 的本地 {@link UserCache}, 以 {@link UserDetails#getUsername()} 为 key. <br>
+ * 1. 类型为 {@link User} 的用户, 缓存与返回的都是副本, 认证成功后
+ *    {@link org.springframework.security.authentication.ProviderManager} 擦除凭证(eraseCredentials)时不会影响缓存的用户;
+ *    已擦除密码的 {@link User} 不缓存.<br>
+ * 2. 其他类型的用户直接缓存对象实例, 调用方不应修改返回的对象.<br>
+ * 3. 只在当前节点有效, 多节点部署且要求用户信息及时失效时使用 {@link RedisUserCache}.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.18 10:20
+ */
+public class LocalTtlUserCache implements UserCache {
+
+    private final LocalTtlCache<String, UserDetails> cache;
+    private final long ttlMillis;
+
+    /**
+     * @param maxSize   最大缓存用户数量, 必须大于 0
+     * @param ttl       缓存用户的有效期, 必须大于 0
+     */
+    public LocalTtlUserCache(int maxSize, @NonNull Duration ttl) {
+        Assert.isTrue(ttl != null && !ttl.isZero() && !ttl.isNegative(), "ttl must be greater than 0");
+        this.cache = new LocalTtlCache<>(maxSize);
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    @Override
+    @Nullable
+    public UserDetails getUserFromCache(@NonNull String username) {
+        UserDetails user = cache.get(username);
+        if (user == null)
+        {
+            return null;
+        }
+        return copyOf(user);
+    }
+
+    @Override
+    public void putUserInCache(@NonNull UserDetails user) {
+        UserDetails copy = copyOf(user);
+        if (copy == null)
+        {
+            cache.evict(user.getUsername());
+            return;
+        }
+        cache.put(user.getUsername(), copy, ttlMillis);
+    }
+
+    @Override
+    public void removeUserFromCache(@NonNull String username) {
+        cache.evict(username);
+    }
+
+    /**
+     * 复制 {@link User} 类型的用户, 其他类型直接返回原对象.
+     * @param user  用户
+     * @return  返回用户副本, 已擦除密码的 {@link User} 返回 null
+     */
+    @Nullable
+    static UserDetails copyOf(@NonNull UserDetails user) {
+        if (user.getClass() != User.class)
+        {
+            return user;
+        }
+        if (user.getPassword() == null)
+        {
+            return null;
+        }
+        return new User(user.getUsername(), user.getPassword(), user.isEnabled(), user.isAccountNonExpired(),
+                        user.isCredentialsNonExpired(), user.isAccountNonLocked(), user.getAuthorities());
+    }
+
+}
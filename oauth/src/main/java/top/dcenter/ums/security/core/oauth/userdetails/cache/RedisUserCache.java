@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.core.oauth.userdetails.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.jackson2.SecurityJackson2Modules;
+import org.springframework.util.Assert;
+import top.dcenter.ums.security.common.api.jackson2.SimpleModuleHolder;
+
+import java.util.Collection;
+
+import static top.dcenter.ums.security.common.consts.RedisCacheConstants.USER_DETAILS_CACHE_NAME;
+
+/**
+ * 基于 {@code auth2RedisHashCacheManager}({@link top.dcenter.ums.security.core.redis.cache.RedisHashCacheManager})
+ * 的 {@link UserCache}, 缓存名称为 {@link top.dcenter.ums.security.common.consts.RedisCacheConstants#USER_DETAILS_CACHE_NAME},
+ * 有效期为 {@code ums.cache.redis.cache.entry-ttl}. <br>
+ * 1. 多节点共享缓存, 用户信息更新后删除缓存各节点即时生效(开启本地一级缓存时由其失效消息同步).<br>
+ * 2. 用户以 JSON 字符串缓存, 由 Spring Security 的 jackson2 modules({@link SecurityJackson2Modules}, 类型信息为 @class 属性)
+ * 及 IOC 容器中的 {@link SimpleModuleHolder} 序列化; 不直接使用 {@code auth2RedisHashCacheManager} 的序列化器,
+ * 因为其类型信息为数组格式, 与 {@code User} 等类的 jackson2 Mixin(@class 属性)不兼容, 缓存的用户无法反序列化.
+ * 自定义的 {@link UserDetails} 需要提供 Mixin(通过 {@link SimpleModuleHolder} 注册)或 Jackson 注解, 否则按未命中处理.<br>
+ * 3. redis 异常时按未命中处理, 不影响登录.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.18 10:46
+ */
+@Slf4j
+public class RedisUserCache implements UserCache {
+
+    private static final String KEY_PREFIX = "ud:";
+
+    private final CacheManager cacheManager;
+    private final ObjectMapper objectMapper;
+
+    public RedisUserCache(@NonNull CacheManager cacheManager) {
+        this(cacheManager, null);
+    }
+
+    /**
+     * @param cacheManager      auth2RedisHashCacheManager
+     * @param moduleHolders     用于序列化自定义 {@link UserDetails} 的 jackson2 module, 可以为 null
+     */
+    public RedisUserCache(@NonNull CacheManager cacheManager, @Nullable Collection<SimpleModuleHolder> moduleHolders) {
+        Assert.notNull(cacheManager, "cacheManager cannot be null");
+        this.cacheManager = cacheManager;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModules(SecurityJackson2Modules.getModules(RedisUserCache.class.getClassLoader()));
+        if (moduleHolders != null)
+        {
+            for (SimpleModuleHolder moduleHolder : moduleHolders)
+            {
+                this.objectMapper.registerModule(moduleHolder.getSimpleModule());
+            }
+        }
+    }
+
+    @Override
+    @Nullable
+    public UserDetails getUserFromCache(@NonNull String username) {
+        try
+        {
+            Cache cache = cacheManager.getCache(USER_DETAILS_CACHE_NAME);
+            if (cache == null)
+            {
+                return null;
+            }
+            String json = cache.get(KEY_PREFIX + username, String.class);
+            if (json == null)
+            {
+                return null;
+            }
+            return objectMapper.readValue(json, UserDetails.class);
+        }
+        catch (Exception e)
+        {
+            log.warn(String.format("从 redis 获取用户缓存失败: username=%s, error=%s", username, e.getMessage()), e);
+            return null;
+        }
+    }
+
+    @Override
+    public void putUserInCache(@NonNull UserDetails user) {
+        try
+        {
+            Cache cache = cacheManager.getCache(USER_DETAILS_CACHE_NAME);
+            if (cache == null)
+            {
+                return;
+            }
+            UserDetails copy = LocalTtlUserCache.copyOf(user);
+            if (copy == null)
+            {
+                cache.evict(KEY_PREFIX + user.getUsername());
+                return;
+            }
+            cache.put(KEY_PREFIX + user.getUsername(), objectMapper.writeValueAsString(copy));
+        }
+        catch (Exception e)
+        {
+            log.warn(String.format("用户缓存到 redis 失败: username=%s, error=%s", user.getUsername(), e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public void removeUserFromCache(@NonNull String username) {
+        try
+        {
+            Cache cache = cacheManager.getCache(USER_DETAILS_CACHE_NAME);
+            if (cache != null)
+            {
+                cache.evict(KEY_PREFIX + username);
+            }
+        }
+        catch (Exception e)
+        {
+            log.error(String.format("删除 redis 用户缓存失败: username=%s, error=%s", username, e.getMessage()), e);
+        }
+    }
+
+}
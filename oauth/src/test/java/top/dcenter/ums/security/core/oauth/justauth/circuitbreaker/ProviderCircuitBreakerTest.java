@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.oauth.justauth.circuitbreaker;
+
+import me.zhyd.oauth.exception.AuthException;
+import org.junit.Before;
+import org.junit.Test;
+import top.dcenter.ums.security.core.oauth.properties.CircuitBreakerProperties;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link ProviderCircuitBreaker} 的状态转换测试
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.23 20:15
+ */
+public class ProviderCircuitBreakerTest {
+
+    private static final long WAIT_IN_OPEN_MILLIS = 100L;
+
+    private ProviderCircuitBreaker circuitBreaker;
+
+    @Before
+    public void setUp() {
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.setSlidingWindowSize(4);
+        properties.setMinimumNumberOfCalls(4);
+        properties.setFailureRateThreshold(50);
+        properties.setWaitDurationInOpenState(Duration.ofMillis(WAIT_IN_OPEN_MILLIS));
+        properties.setPermittedCallsInHalfOpenState(2);
+        circuitBreaker = new ProviderCircuitBreaker("gitee", properties);
+    }
+
+    @Test
+    public void closedToOpenOnFailureRate() {
+        succeed();
+        succeed();
+        callFailing(new IllegalStateException("connect timed out"));
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        callFailing(new IllegalStateException("connect timed out"));
+
+        assertEquals(ProviderCircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(2L, circuitBreaker.getFailedCalls());
+        assertEquals(2L, circuitBreaker.getSuccessfulCalls());
+    }
+
+    @Test
+    public void failFastWhileOpen() {
+        open();
+        AtomicInteger invoked = new AtomicInteger();
+
+        try {
+            circuitBreaker.execute(invoked::incrementAndGet);
+            fail("expected ProviderCallNotPermittedException");
+        }
+        catch (ProviderCallNotPermittedException e) {
+            // 熔断期间直接拒绝
+        }
+
+        assertEquals(0, invoked.get());
+        assertEquals(1L, circuitBreaker.getNotPermittedCalls());
+        assertEquals(circuitBreaker.getMaxConcurrentCalls(), circuitBreaker.getAvailableConcurrentCalls());
+    }
+
+    @Test
+    public void halfOpenToClosedWhenTrialCallsSucceed() throws InterruptedException {
+        open();
+        Thread.sleep(WAIT_IN_OPEN_MILLIS + 50L);
+
+        succeed();
+        assertEquals(ProviderCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        succeed();
+
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void halfOpenToOpenWhenTrialCallFails() throws InterruptedException {
+        open();
+        Thread.sleep(WAIT_IN_OPEN_MILLIS + 50L);
+
+        succeed();
+        assertEquals(ProviderCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        callFailing(new IllegalStateException("read timed out"));
+
+        assertEquals(ProviderCircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void authExceptionIsNotCountedAsFailure() {
+        for (int i = 0; i < 4; i++) {
+            callFailing(new AuthException("code 已失效"));
+        }
+
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0F, circuitBreaker.getFailureRate(), 0F);
+        assertEquals(4L, circuitBreaker.getSuccessfulCalls());
+        assertEquals(0L, circuitBreaker.getFailedCalls());
+    }
+
+    @Test
+    public void staleEpochResultIsIgnored() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // CLOSED 状态时放行的请求, 在熔断器经过 OPEN -> HALF_OPEN -> CLOSED 之后才失败
+            Future<Object> inFlight = executor.submit(() -> circuitBreaker.execute(() -> {
+                started.countDown();
+                awaitQuietly(release);
+                throw new IllegalStateException("read timed out");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            open();
+            Thread.sleep(WAIT_IN_OPEN_MILLIS + 50L);
+            succeed();
+            succeed();
+            assertEquals(ProviderCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+            release.countDown();
+            try {
+                inFlight.get(5, TimeUnit.SECONDS);
+                fail("expected IllegalStateException");
+            }
+            catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+
+            // 旧 epoch 的失败不计入新的滑动窗口
+            assertEquals(ProviderCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+            assertEquals(-1F, circuitBreaker.getFailureRate(), 0F);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            callFailing(new IllegalStateException("connect timed out"));
+        }
+        assertEquals(ProviderCircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    private void succeed() {
+        assertEquals("ok", circuitBreaker.execute(() -> "ok"));
+    }
+
+    private void callFailing(RuntimeException failure) {
+        try {
+            circuitBreaker.execute(() -> {
+                throw failure;
+            });
+            fail("expected " + failure.getClass().getSimpleName());
+        }
+        catch (RuntimeException e) {
+            assertEquals(failure, e);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package top.dcenter.ums.security.core.oauth.repository.jdbc;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.lang.NonNull;
+import org.springframework.security.crypto.encrypt.Encryptors;
+import org.springframework.security.crypto.encrypt.TextEncryptor;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import top.dcenter.ums.security.core.api.oauth.entity.AuthTokenPo;
+import top.dcenter.ums.security.core.api.oauth.entity.ConnectionData;
+import top.dcenter.ums.security.core.api.oauth.repository.jdbc.UsersConnectionRepository;
+import top.dcenter.ums.security.core.api.oauth.repository.jdbc.UsersConnectionTokenRepository;
+import top.dcenter.ums.security.core.oauth.properties.RepositoryProperties;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static top.dcenter.ums.security.common.consts.RedisCacheConstants.USER_CONNECTION_CACHE_NAME;
+import static top.dcenter.ums.security.common.consts.RedisCacheConstants.USER_CONNECTION_HASH_ALL_CLEAR_CACHE_NAME;
+import static top.dcenter.ums.security.common.consts.RedisCacheConstants.USER_CONNECTION_HASH_CACHE_NAME;
+
+/**
+ * {@link Auth2JdbcUsersConnectionTokenRepository#batchUpdateTokens(List)} 与
+ * {@link Auth2JdbcUsersConnectionRepository#batchUpdateConnections(List)} 的 H2(MySQL 模式)测试:
+ * 按 batchUpdateSize 分批执行, 按 tokenId in (..) 分批查询需要清除缓存的 {@link ConnectionData},
+ * 清除的缓存 key 与 {@code @Cacheable}/{@code @CacheEvict}/{@code @CachePut} 的 SpEL key 一致.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.22 14:20
+ */
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = Auth2JdbcBatchUpdateTest.Config.class)
+public class Auth2JdbcBatchUpdateTest {
+
+    private static final int BATCH_UPDATE_SIZE = 2;
+    private static final int TOKEN_COUNT = 5;
+
+    @Autowired
+    private UsersConnectionTokenRepository tokenRepository;
+    @Autowired
+    private UsersConnectionRepository connectionRepository;
+    @Autowired
+    private RecordingJdbcTemplate jdbcTemplate;
+    @Autowired
+    private RecordingCacheManager cacheManager;
+    @Autowired
+    private RepositoryProperties repositoryProperties;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS `auth_token`");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + repositoryProperties.getUserConnectionTableName());
+        jdbcTemplate.execute(repositoryProperties.getCreateAuthTokenTableSql());
+        jdbcTemplate.execute(repositoryProperties.getCreatUserConnectionTableSql());
+        for (long id = 1; id <= TOKEN_COUNT + 1; id++) {
+            jdbcTemplate.update("INSERT INTO `auth_token`(`id`, `providerId`, `accessToken`, `refreshToken`, `expireTime`) " +
+                                        "VALUES(?, ?, ?, ?, ?)", id, provider(id), "at" + id, "rt" + id, 1000L);
+            jdbcTemplate.update(repositoryProperties.getAddConnectionSql(),
+                                "user" + id, provider(id), "pu" + id, 1, "name" + id, "profile" + id, "image" + id,
+                                "at" + id, id, "rt" + id, 1000L);
+        }
+        cacheManager.getCacheNames().forEach(name -> {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+        jdbcTemplate.reset();
+        cacheManager.reset();
+    }
+
+    @Test
+    public void batchUpdateTokens() throws Exception {
+        List<AuthTokenPo> tokens = new ArrayList<>();
+        for (long id = 1; id <= TOKEN_COUNT; id++) {
+            // 通过 @Cacheable 缓存
+            assertNotNull(tokenRepository.findAuthTokenById(Long.toString(id)));
+            tokens.add(newToken(id));
+        }
+        jdbcTemplate.reset();
+        cacheManager.reset();
+
+        tokenRepository.batchUpdateTokens(tokens);
+
+        // 分批执行: 2 + 2 + 1
+        assertEquals(Arrays.asList(2, 2, 1), jdbcTemplate.batchSizes);
+        for (long id = 1; id <= TOKEN_COUNT; id++) {
+            Map<String, Object> row = jdbcTemplate.queryForMap("SELECT * FROM `auth_token` WHERE `id` = ?", id);
+            assertEquals("newAt" + id, row.get("accessToken"));
+            assertEquals("newRt" + id, row.get("refreshToken"));
+            assertEquals(2000L + id, ((Number) row.get("expireTime")).longValue());
+        }
+        assertEquals("at" + (TOKEN_COUNT + 1),
+                     jdbcTemplate.queryForObject("SELECT `accessToken` FROM `auth_token` WHERE `id` = ?",
+                                                 String.class, TOKEN_COUNT + 1));
+
+        // 清除的 key 与 findAuthTokenById 的 @Cacheable key 一致
+        Cache cache = cacheManager.getCache(USER_CONNECTION_CACHE_NAME);
+        assertNotNull(cache);
+        Set<String> expected = new HashSet<>();
+        for (long id = 1; id <= TOKEN_COUNT; id++) {
+            expected.add(USER_CONNECTION_CACHE_NAME + "|s:token:" + id);
+            assertNull(cache.get("s:token:" + id));
+        }
+        assertEquals(expected, new HashSet<>(cacheManager.evicted));
+    }
+
+    @Test
+    public void findAuthTokenByIdMissThrowsAndIsNotCached() throws Exception {
+        String missingId = Long.toString(TOKEN_COUNT + 100);
+        try {
+            tokenRepository.findAuthTokenById(missingId);
+            fail("expected EmptyResultDataAccessException");
+        }
+        catch (EmptyResultDataAccessException e) {
+            // 与 queryForObject 一致: 未查询到记录时抛出异常
+        }
+        Cache cache = cacheManager.getCache(USER_CONNECTION_CACHE_NAME);
+        assertNotNull(cache);
+        // 抛出异常时 @Cacheable 不缓存结果, 不会缓存 null
+        assertNull(cache.get("s:token:" + missingId));
+        assertTrue(cacheManager.put.isEmpty());
+    }
+
+    @Test
+    public void batchUpdateConnections() {
+        List<AuthTokenPo> tokens = new ArrayList<>();
+        for (long id = 1; id <= TOKEN_COUNT; id++) {
+            tokens.add(newToken(id));
+        }
+
+        connectionRepository.batchUpdateConnections(tokens);
+
+        // 分批执行: 2 + 2 + 1
+        assertEquals(Arrays.asList(2, 2, 1), jdbcTemplate.batchSizes);
+        // 按 tokenId in (..) 分批查询: 2 + 2 + 1
+        assertEquals(Arrays.asList(2, 2, 1), jdbcTemplate.inQueryParameterCounts);
+        for (long id = 1; id <= TOKEN_COUNT; id++) {
+            ConnectionData connection = connectionRepository.findConnectionByTokenId(id);
+            assertEquals("newAt" + id, connection.getAccessToken());
+            assertEquals("newRt" + id, connection.getRefreshToken());
+            assertEquals(Long.valueOf(2000L + id), connection.getExpireTime());
+        }
+        assertEquals("at" + (TOKEN_COUNT + 1),
+                     connectionRepository.findConnectionByTokenId((long) TOKEN_COUNT + 1).getAccessToken());
+
+        // 只清除 tokenIds 对应的 ConnectionData 的缓存
+        for (String key : cacheManager.evicted) {
+            assertFalse(key, key.contains("user" + (TOKEN_COUNT + 1)));
+        }
+        for (long id = 1; id <= TOKEN_COUNT; id++) {
+            assertTrue(cacheManager.evicted.contains(USER_CONNECTION_HASH_ALL_CLEAR_CACHE_NAME + "|hm:user" + id));
+        }
+    }
+
+    @Test
+    public void batchUpdateConnectionsEvictsSameKeysAsUpdateConnectionByTokenId() {
+        final long tokenId = 3L;
+
+        // updateConnectionByTokenId 通过 @CacheEvict/@CachePut 处理的 key
+        connectionRepository.updateConnectionByTokenId(newToken(tokenId));
+        Set<String> expected = new HashSet<>(cacheManager.evicted);
+        expected.addAll(cacheManager.put);
+        assertFalse(expected.isEmpty());
+        cacheManager.reset();
+
+        connectionRepository.batchUpdateConnections(Collections.singletonList(newToken(tokenId)));
+
+        // 批量更新时清除 @CacheEvict 的 key 与 @CachePut 的 key(缓存值已过时)
+        assertEquals(expected, new HashSet<>(cacheManager.evicted));
+        assertTrue(cacheManager.put.isEmpty());
+    }
+
+    private static String provider(long id) {
+        return (id & 1) == 0 ? "gitee" : "github";
+    }
+
+    private static AuthTokenPo newToken(long id) {
+        AuthTokenPo token = new AuthTokenPo();
+        token.setId(id);
+        token.setProviderId(provider(id));
+        token.setAccessToken("newAt" + id);
+        token.setRefreshToken("newRt" + id);
+        token.setExpireIn(7200);
+        token.setExpireTime(2000L + id);
+        return token;
+    }
+
+    /**
+     * 记录 batchUpdate 每批的记录数与 tokenId in (..) 查询的参数数量
+     */
+    static class RecordingJdbcTemplate extends JdbcTemplate {
+
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final List<Integer> inQueryParameterCounts = new CopyOnWriteArrayList<>();
+
+        RecordingJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @NonNull
+        @Override
+        public int[] batchUpdate(@NonNull String sql, @NonNull List<Object[]> batchArgs, @NonNull int[] argTypes) {
+            batchSizes.add(batchArgs.size());
+            return super.batchUpdate(sql, batchArgs, argTypes);
+        }
+
+        @NonNull
+        @Override
+        public <T> List<T> query(@NonNull PreparedStatementCreator psc, @NonNull RowMapper<T> rowMapper) {
+            if (psc instanceof SqlProvider) {
+                String sql = ((SqlProvider) psc).getSql();
+                if (sql != null && sql.contains(" in (")) {
+                    inQueryParameterCounts.add(sql.length() - sql.replace("?", "").length());
+                }
+            }
+            return super.query(psc, rowMapper);
+        }
+
+        void reset() {
+            batchSizes.clear();
+            inQueryParameterCounts.clear();
+        }
+    }
+
+    /**
+     * 记录 evict 与 put 的缓存 key, 格式: cacheName|key
+     */
+    static class RecordingCacheManager extends ConcurrentMapCacheManager {
+
+        final List<String> evicted = new CopyOnWriteArrayList<>();
+        final List<String> put = new CopyOnWriteArrayList<>();
+
+        RecordingCacheManager() {
+            super(USER_CONNECTION_CACHE_NAME, USER_CONNECTION_HASH_CACHE_NAME, USER_CONNECTION_HASH_ALL_CLEAR_CACHE_NAME);
+        }
+
+        @NonNull
+        @Override
+        protected Cache createConcurrentMapCache(@NonNull String name) {
+            return new ConcurrentMapCache(name, isAllowNullValues()) {
+                @Override
+                public void put(@NonNull Object key, Object value) {
+                    put.add(name + "|" + key);
+                    super.put(key, value);
+                }
+
+                @Override
+                public void evict(@NonNull Object key) {
+                    evicted.add(name + "|" + key);
+                    super.evict(key);
+                }
+            };
+        }
+
+        void reset() {
+            evicted.clear();
+            put.clear();
+        }
+    }
+
+    @Configuration
+    @EnableCaching
+    static class Config {
+
+        @Bean
+        public DataSource dataSource() {
+            return new SimpleDriverDataSource(new org.h2.Driver(),
+                                              "jdbc:h2:mem:ums;MODE=MySQL;DATABASE_TO_LOWER=TRUE;" +
+                                                      "CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1");
+        }
+
+        @Bean
+        public RecordingJdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new RecordingJdbcTemplate(dataSource);
+        }
+
+        @Bean("auth2RedisHashCacheManager")
+        public CacheManager auth2RedisHashCacheManager() {
+            return new RecordingCacheManager();
+        }
+
+        @Bean
+        public TextEncryptor textEncryptor() {
+            return Encryptors.noOpText();
+        }
+
+        @Bean
+        public RepositoryProperties repositoryProperties() {
+            RepositoryProperties repositoryProperties = new RepositoryProperties();
+            repositoryProperties.setBatchUpdateSize(BATCH_UPDATE_SIZE);
+            return repositoryProperties;
+        }
+
+        @Bean
+        public Auth2JdbcUsersConnectionTokenRepository tokenRepository(JdbcTemplate jdbcTemplate,
+                                                                       TextEncryptor textEncryptor,
+                                                                       RepositoryProperties repositoryProperties) {
+            return new Auth2JdbcUsersConnectionTokenRepository(jdbcTemplate, textEncryptor,
+                                                               repositoryProperties.getAuthTokenTableName(),
+                                                               BATCH_UPDATE_SIZE);
+        }
+
+        @Bean
+        public Auth2JdbcUsersConnectionRepository connectionRepository(JdbcTemplate jdbcTemplate,
+                                                                       TextEncryptor textEncryptor,
+                                                                       RepositoryProperties repositoryProperties) {
+            return new Auth2JdbcUsersConnectionRepository(jdbcTemplate, textEncryptor, repositoryProperties);
+        }
+    }
+}
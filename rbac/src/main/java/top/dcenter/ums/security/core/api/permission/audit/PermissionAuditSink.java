@@ -0,0 +1,54 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.api.permission.audit;
+
+import org.springframework.lang.NonNull;
+import top.dcenter.ums.security.core.permission.audit.AsyncBatchPermissionAuditSink;
+import top.dcenter.ums.security.core.permission.audit.NoOpPermissionAuditSink;
+import top.dcenter.ums.security.core.permission.dto.PermissionAuditRecord;
+import top.dcenter.ums.security.core.permission.evaluator.UriAuthoritiesPermissionEvaluator;
+
+/**
+ * uri 权限控制的审计接口, 由 {@link UriAuthoritiesPermissionEvaluator} 调用.<br>
+ * 默认实现 {@link NoOpPermissionAuditSink}, 当 {@code ums.rbac.audit.enable=true} 时为 {@link AsyncBatchPermissionAuditSink},
+ * 实现此接口并注入 IOC 容器即可替换.<br>
+ * 注意: 此接口在授权线程中调用, 实现不能有阻塞操作.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 10:26
+ */
+public interface PermissionAuditSink {
+
+    /**
+     * 是否需要审计此次授权结果, 返回 false 时不会创建 {@link PermissionAuditRecord}.
+     * @param granted   是否有访问权限
+     * @return  返回 true 表示需要审计
+     */
+    boolean isSampled(boolean granted);
+
+    /**
+     * 审计授权结果, 仅在 {@link #isSampled(boolean)} 返回 true 时调用.
+     * @param record    授权结果审计记录
+     */
+    void audit(@NonNull PermissionAuditRecord record);
+
+}
@@ -31,22 +31,27 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.util.CollectionUtils;
+import top.dcenter.ums.security.common.cache.LocalTtlCache;
 import top.dcenter.ums.security.common.utils.UrlUtil;
 import top.dcenter.ums.security.core.permission.enums.PermissionType;
 import top.dcenter.ums.security.core.permission.evaluator.UriAuthoritiesPermissionEvaluator;
+import top.dcenter.ums.security.core.permission.index.UriPermissionIndex;
 import top.dcenter.ums.security.core.permission.service.DefaultUriAuthorizeService;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static top.dcenter.ums.security.common.consts.RbacConstants.DEFAULT_GROUP_PREFIX;
 import static top.dcenter.ums.security.common.consts.RbacConstants.DEFAULT_ROLE_PREFIX;
 import static top.dcenter.ums.security.common.consts.RbacConstants.DEFAULT_SCOPE_PREFIX;
@@ -74,6 +79,13 @@ import static top.dcenter.ums.security.common.consts.TenantConstants.DEFAULT_TEN
  * {@link UriAuthoritiesPermissionEvaluator} 实现, 使用此接口的前提条件是: 应用使用的是 restful 风格的 API; <br>
  * 如果不是 restful 风格的 API, 请使用 {@link #hasPermission(Authentication, String, String)} 接口的访问权限控制, 此接口使用注解的方式 {@code @PerAuthorize("hasPermission('/users', 'list')")} 来实现,
  * 使用注解需开启 {@code @EnableGlobalMethodSecurity(prePostEnabled = true)} 注解.<br>
+ * 4. 覆写 {@link #isPermissionIndexEnabled()} 并返回 true 时, 基于角色的权限校验使用预编译的 {@link UriPermissionIndex},
+ * 同时实现 {@link UpdateCacheOfRolesResourcesService} 且为 IOC 容器中的 bean 时, 其更新方法返回后(直接调用或通过
+ * UpdateRolesResourcesEvent 事件调用)会自动调用 {@link #refreshPermissionIndex()} 更新索引, 其他方式更新 {@link #getRolesAuthorities()}
+ * 时需自己调用 {@link #refreshPermissionIndex()}.<br>
+ * 5. 同时实现 {@link UpdateCacheOfRolesResourcesService} 时, {@link #getUriAuthoritiesOfUser(Authentication)} 的结果按
+ * authorities 集合缓存(相同 authorities 的用户共享同一个不可变的 uri 权限 Map), 与 4 相同, 其更新方法返回后会自动调用
+ * {@link #clearUriAuthoritiesCache()} 清除缓存, 其他方式更新权限数据时需自己调用.<br>
  *
  *
  * @author YongWu zheng
@@ -84,6 +96,34 @@ public abstract class AbstractUriAuthorizeService implements UriAuthorizeService
     @Getter
     protected AntPathMatcher antPathMatcher = new AntPathMatcher();
 
+    /**
+     * 基于角色的预编译 uri 权限索引, 更新时整体替换
+     */
+    private volatile UriPermissionIndex permissionIndex;
+
+    private final Object permissionIndexLock = new Object();
+
+    /**
+     * uri 权限 Map 缓存的最大数量
+     */
+    private static final int URI_AUTHORITIES_CACHE_MAX_SIZE = 4096;
+
+    /**
+     * uri 权限 Map 缓存的存活时间(兜底), 单位: 毫秒
+     */
+    private static final long URI_AUTHORITIES_CACHE_TTL = 30L * 60 * 1000;
+
+    /**
+     * 用户 uri 权限 Map 缓存: Map(排序后的 authorities, 不可变的 Map(uri, Set(permission)))
+     */
+    private final LocalTtlCache<List<String>, Map<String, Set<String>>> uriAuthoritiesCache =
+            new LocalTtlCache<>(URI_AUTHORITIES_CACHE_MAX_SIZE);
+
+    /**
+     * uri 权限 Map 缓存的版本号, 清除缓存时递增, 防止清除前计算的旧结果在清除后写入缓存
+     */
+    private final AtomicLong uriAuthoritiesCacheVersion = new AtomicLong(0L);
+
     /**
      * 根据 authentication 来判断是否有 request 所代表的 资源 的访问权限, <br>
      * 用于 {@code httpSecurity.authorizeRequests().anyRequest().access("hasPermission(request, authentication)")} 判断,
@@ -101,7 +141,10 @@ public abstract class AbstractUriAuthorizeService implements UriAuthorizeService
         // Map.Entry<uri, Set<permission>>, 根据 method 获取对应权限是否包含在 entry 中的 Set<permission> 中
         final Predicate<Map.Entry<String, Set<String>>> predicate = entry -> isMatchByMethod(method, entry.getValue());
 
-        return hasPermission(authentication, requestUri, predicate);
+        final HttpMethod httpMethod = HttpMethod.resolve(method);
+        final String permission = isNull(httpMethod) ? null : PermissionType.getPermission(httpMethod);
+
+        return hasPermission(authentication, requestUri, permission, predicate);
 
     }
 
@@ -118,19 +161,127 @@ public abstract class AbstractUriAuthorizeService implements UriAuthorizeService
         // Map.Entry<uri, Set<permission>>,  Set<permission> 中是否包含此 permission
         final Predicate<Map.Entry<String, Set<String>>> predicate = entry -> entry.getValue().contains(permission);
 
-        return hasPermission(authentication, requestUri, predicate);
+        return hasPermission(authentication, requestUri, permission, predicate);
 
     }
 
-    private boolean hasPermission(Authentication authentication, String requestUri, Predicate<Map.Entry<String, Set<String>>> predicate) {
+    /**
+     * 重新构建基于角色的预编译 uri 权限索引并整体替换旧索引, 角色的 uri(资源)权限更新后调用.
+     */
+    public void refreshPermissionIndex() {
+        if (!isPermissionIndexEnabled()) {
+            return;
+        }
+        synchronized (permissionIndexLock) {
+            this.permissionIndex = UriPermissionIndex.build(getRolesAuthorities());
+        }
+    }
+
+    /**
+     * 是否使用预编译的 uri 权限索引, 默认: false.
+     * 前提: {@link #getRolesAuthorities()} 有缓存, 没有自定义 {@link #antPathMatcher} 的匹配规则, 且角色权限只通过
+     * {@link UpdateCacheOfRolesResourcesService} 的更新方法更新或更新后调用 {@link #refreshPermissionIndex()}, 满足前提时覆写此方法并返回 true.
+     * @return  返回 true 表示使用预编译的 uri 权限索引
+     */
+    protected boolean isPermissionIndexEnabled() {
+        return false;
+    }
+
+    /**
+     * 清除按 authorities 集合缓存的用户 uri 权限 Map, (角色/多租户/SCOPE/组)的 uri(资源)权限更新后调用.
+     */
+    public void clearUriAuthoritiesCache() {
+        uriAuthoritiesCacheVersion.incrementAndGet();
+        uriAuthoritiesCache.clear();
+    }
+
+    /**
+     * 是否按 authorities 集合缓存 {@link #getUriAuthoritiesOfUser(Authentication)} 的结果,
+     * 默认: 实现了 {@link UpdateCacheOfRolesResourcesService} 时返回 true.
+     * 如果 uri 权限数据不通过 {@link UpdateCacheOfRolesResourcesService} 的更新方法更新, 且更新后不调用 {@link #clearUriAuthoritiesCache()},
+     * 请覆写此方法并返回 false.
+     * @return  返回 true 表示缓存用户 uri 权限 Map
+     */
+    protected boolean isUriAuthoritiesCacheEnabled() {
+        return this instanceof UpdateCacheOfRolesResourcesService;
+    }
+
+    private boolean hasPermission(Authentication authentication, String requestUri, @Nullable String permission,
+                                  Predicate<Map.Entry<String, Set<String>>> predicate) {
+        if (nonNull(permission) && isPermissionIndexEnabled()) {
+            return hasPermissionByIndex(authentication, requestUri, permission, predicate);
+        }
         // Map<uri, Set<permission>>
         final Map<String, Set<String>> uriPermissionsOfUser = getUriAuthoritiesOfUser(authentication);
-        return uriPermissionsOfUser.entrySet()
-                                   .stream()
-                                   // 通过 antPathMatcher 检查用户权限Map中 uri 是否匹配 requestUri
-                                   .filter(entry -> antPathMatcher.match(entry.getKey(), requestUri))
-                                   // 是否匹配 predicate
-                                   .anyMatch(predicate);
+        return anyMatch(uriPermissionsOfUser, requestUri, predicate);
+    }
+
+    /**
+     * 通过预编译的 uri 权限索引校验基于角色的权限, 多租户的权限与 SCOPE 的权限仍通过 uri 权限 Map 校验.
+     * @param authentication    authentication
+     * @param requestUri        不包含 ServletContextPath 的 requestUri
+     * @param permission        uri 权限
+     * @param predicate         uri 权限 Map 的断言
+     * @return  有访问权限则返回 true, 否则返回 false.
+     */
+    private boolean hasPermissionByIndex(Authentication authentication, String requestUri, String permission,
+                                         Predicate<Map.Entry<String, Set<String>>> predicate) {
+        // 获取角色权限集合
+        Set<String> authoritySet = AuthorityUtils.authorityListToSet(authentication.getAuthorities());
+
+        int size = authoritySet.size();
+        final Set<String> roleSet = new HashSet<>(size, 1.F);
+        final String[] tenantAuthority = new String[]{null};
+        final Set<String> scopeAuthoritySet = new HashSet<>(size, 1.F);
+
+        groupByRoleOrTenantOrScope(authoritySet, roleSet, tenantAuthority, scopeAuthoritySet);
+
+        // 多租户不使用索引
+        if (nonNull(tenantAuthority[0])) {
+            return anyMatch(getUriAuthoritiesOfUser(authentication), requestUri, predicate);
+        }
+
+        if (roleSet.size() > 0) {
+            final UriPermissionIndex index = getPermissionIndex();
+            if (index.hasPermission(index.toRoleBits(roleSet), requestUri, permission, antPathMatcher)) {
+                return true;
+            }
+        }
+
+        if (scopeAuthoritySet.size() > 0) {
+            // 获取此 scopeAuthoritySet 的所有角色的资源权限的 Map<roleAuthority, Map<uri, Set<permission>>>
+            final Map<String, Map<String, Set<String>>> uriPermissionsOfScope = getScopeAuthoritiesOfScope(scopeAuthoritySet);
+            for (Map<String, Set<String>> uriPermissions : uriPermissionsOfScope.values()) {
+                if (anyMatch(uriPermissions, requestUri, predicate)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @NonNull
+    private UriPermissionIndex getPermissionIndex() {
+        UriPermissionIndex index = this.permissionIndex;
+        if (nonNull(index)) {
+            return index;
+        }
+        synchronized (permissionIndexLock) {
+            if (isNull(this.permissionIndex)) {
+                this.permissionIndex = UriPermissionIndex.build(getRolesAuthorities());
+            }
+            return this.permissionIndex;
+        }
+    }
+
+    private boolean anyMatch(@NonNull Map<String, Set<String>> uriPermissions, @NonNull String requestUri,
+                             @NonNull Predicate<Map.Entry<String, Set<String>>> predicate) {
+        return uriPermissions.entrySet()
+                             .stream()
+                             // 通过 antPathMatcher 检查用户权限Map中 uri 是否匹配 requestUri
+                             .filter(entry -> antPathMatcher.match(entry.getKey(), requestUri))
+                             // 是否匹配 predicate
+                             .anyMatch(predicate);
     }
 
     /**
@@ -144,6 +295,7 @@ public abstract class AbstractUriAuthorizeService implements UriAuthorizeService
      * //    3. 多租户数量  1 或 0
      * //    4. 角色数量 + SCOPE 数量  >= 1
      * </pre>
+     * 注意: {@link #isUriAuthoritiesCacheEnabled()} 为 true 时返回的是共享的不可变 Map.
      * @param authentication    {@link Authentication}
      * @return  用户所拥有的角色与 scope 的 uri(资源) 权限 Map(uri, Set(permission))
      */
@@ -154,6 +306,40 @@ public abstract class AbstractUriAuthorizeService implements UriAuthorizeService
         // 获取角色权限集合
         Set<String> authoritySet = AuthorityUtils.authorityListToSet(authentication.getAuthorities());
 
+        if (!isUriAuthoritiesCacheEnabled()) {
+            return getUriAuthoritiesOfAuthorities(authoritySet);
+        }
+
+        // 排序后的 authorities 作为缓存 key, 已包含多租户 ID
+        final List<String> cacheKey = new ArrayList<>(authoritySet);
+        Collections.sort(cacheKey);
+
+        Map<String, Set<String>> uriAuthorities = uriAuthoritiesCache.get(cacheKey);
+        if (nonNull(uriAuthorities)) {
+            return uriAuthorities;
+        }
+
+        final long version = uriAuthoritiesCacheVersion.get();
+        uriAuthorities = toUnmodifiableMap(getUriAuthoritiesOfAuthorities(authoritySet));
+        if (version == uriAuthoritiesCacheVersion.get()) {
+            uriAuthoritiesCache.put(cacheKey, uriAuthorities, URI_AUTHORITIES_CACHE_TTL);
+            // put 前后可能被 clearUriAuthoritiesCache() 清除, 版本号变化时删除可能写入的旧结果
+            if (version != uriAuthoritiesCacheVersion.get()) {
+                uriAuthoritiesCache.evict(cacheKey);
+            }
+        }
+        return uriAuthorities;
+
+    }
+
+    /**
+     * 获取 authoritySet 所拥有的角色与 scope 的 uri(资源) 权限 Map
+     * @param authoritySet  用户的 authorities
+     * @return  uri(资源) 权限 Map(uri, Set(permission))
+     */
+    @NonNull
+    private Map<String, Set<String>> getUriAuthoritiesOfAuthorities(@NonNull Set<String> authoritySet) {
+
         int size = authoritySet.size();
         // 存储用户角色的集合
         final Set<String> roleSet = new HashSet<>(size, 1.F);
@@ -194,6 +380,13 @@ public abstract class AbstractUriAuthorizeService implements UriAuthorizeService
 
     }
 
+    @NonNull
+    private Map<String, Set<String>> toUnmodifiableMap(@NonNull Map<String, Set<String>> uriAuthoritiesMap) {
+        Map<String, Set<String>> map = new HashMap<>(uriAuthoritiesMap.size(), 1.F);
+        uriAuthoritiesMap.forEach((uri, permissions) -> map.put(uri, Collections.unmodifiableSet(permissions)));
+        return Collections.unmodifiableMap(map);
+    }
+
     @Override
     @NonNull
     public Set<String> getRolesOfUser(@NonNull Authentication authentication) {
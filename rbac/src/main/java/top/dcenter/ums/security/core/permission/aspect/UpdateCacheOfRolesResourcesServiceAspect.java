@@ -0,0 +1,57 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.permission.aspect;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import top.dcenter.ums.security.core.api.permission.service.AbstractUriAuthorizeService;
+import top.dcenter.ums.security.core.api.permission.service.UpdateCacheOfRolesResourcesService;
+
+/**
+ * 权限缓存更新切面: 当 {@link UpdateCacheOfRolesResourcesService} 的更新方法(直接调用或通过 UpdateRolesResourcesEvent 事件调用)
+ * 返回后, 如果其同时是 {@link AbstractUriAuthorizeService}, 更新其预编译的 uri 权限索引并清除按 authorities 集合缓存的用户 uri 权限 Map.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.23 10:15
+ */
+@Aspect
+public class UpdateCacheOfRolesResourcesServiceAspect {
+
+    @Pointcut("execution(* top.dcenter.ums.security.core.api.permission.service.UpdateCacheOfRolesResourcesService+.update*(..))"
+            + " || execution(* top.dcenter.ums.security.core.api.permission.service.UpdateCacheOfRolesResourcesService+.initAllAuthorities())")
+    public void updateCacheOfRolesResources() {
+        // pointcut
+    }
+
+    @AfterReturning("updateCacheOfRolesResources()")
+    public void handlerUpdateCacheOfRolesResources(JoinPoint jp) {
+        final Object target = jp.getTarget();
+        if (target instanceof AbstractUriAuthorizeService) {
+            final AbstractUriAuthorizeService uriAuthorizeService = (AbstractUriAuthorizeService) target;
+            uriAuthorizeService.refreshPermissionIndex();
+            uriAuthorizeService.clearUriAuthoritiesCache();
+        }
+    }
+
+}
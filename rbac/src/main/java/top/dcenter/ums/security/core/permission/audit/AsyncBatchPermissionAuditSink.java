@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.permission.audit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.NonNull;
+import top.dcenter.ums.security.common.executor.DefaultThreadFactory;
+import top.dcenter.ums.security.core.api.permission.audit.PermissionAuditSink;
+import top.dcenter.ums.security.core.permission.dto.PermissionAuditRecord;
+import top.dcenter.ums.security.core.permission.properties.PermissionAuditProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步批量的 {@link PermissionAuditSink}: 授权线程只做采样判断与入队(队列满时丢弃), 由后台线程批量处理.<br>
+ * 默认以日志方式输出, 覆写 {@link #handle(List)} 可把审计记录输出到其他地方.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 11:02
+ */
+@Slf4j
+public class AsyncBatchPermissionAuditSink implements PermissionAuditSink, DisposableBean {
+
+    private final BlockingQueue<PermissionAuditRecord> queue;
+    private final ScheduledExecutorService scheduler;
+    private final int batchSize;
+    private final double grantedSampleRate;
+    private final double deniedSampleRate;
+    /**
+     * 队列满时丢弃的审计记录数量
+     */
+    private final AtomicLong droppedCount = new AtomicLong(0L);
+
+    public AsyncBatchPermissionAuditSink(@NonNull PermissionAuditProperties auditProperties) {
+        this.queue = new ArrayBlockingQueue<>(auditProperties.getQueueCapacity());
+        this.batchSize = auditProperties.getBatchSize();
+        this.grantedSampleRate = auditProperties.getGrantedSampleRate();
+        this.deniedSampleRate = auditProperties.getDeniedSampleRate();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("permissionAudit"));
+        final long interval = auditProperties.getFlushInterval().toMillis();
+        this.scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean isSampled(boolean granted) {
+        final double rate = granted ? grantedSampleRate : deniedSampleRate;
+        if (rate >= 1.0D) {
+            return true;
+        }
+        if (rate <= 0.0D) {
+            return false;
+        }
+        return ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    @Override
+    public void audit(@NonNull PermissionAuditRecord record) {
+        if (!queue.offer(record)) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 获取队列满时丢弃的审计记录数量
+     * @return  丢弃的审计记录数量
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 批量处理审计记录, 在后台线程中执行, 默认以日志方式输出.
+     * @param records   审计记录, 数量不大于 batchSize
+     */
+    protected void handle(@NonNull List<PermissionAuditRecord> records) {
+        for (PermissionAuditRecord record : records) {
+            if (record.isGranted()) {
+                log.info("URI权限控制-放行: sid={}, user={}, ip={}, uri={}, method={}, permission={}, time={}, referer={}, agent={}",
+                         record.getSid(), record.getPrincipal(), record.getIp(), record.getUri(), record.getMethod(),
+                         record.getPermission(), record.getTime(), record.getReferer(), record.getUserAgent());
+            }
+            else {
+                log.warn("URI权限控制-禁止: sid={}, user={}, ip={}, uri={}, method={}, permission={}, time={}, referer={}, agent={}",
+                         record.getSid(), record.getPrincipal(), record.getIp(), record.getUri(), record.getMethod(),
+                         record.getPermission(), record.getTime(), record.getReferer(), record.getUserAgent());
+            }
+        }
+    }
+
+    private void flush() {
+        final List<PermissionAuditRecord> records = new ArrayList<>(batchSize);
+        try {
+            while (queue.drainTo(records, batchSize) > 0) {
+                handle(records);
+                records.clear();
+            }
+        }
+        catch (Exception e) {
+            log.error("URI权限控制-审计记录处理失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        }
+        catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // 处理剩余的审计记录
+        flush();
+        final long dropped = droppedCount.get();
+        if (dropped > 0) {
+            log.warn("URI权限控制-审计队列已满, 共丢弃审计记录: {}", dropped);
+        }
+    }
+
+}
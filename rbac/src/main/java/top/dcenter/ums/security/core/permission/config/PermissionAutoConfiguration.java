@@ -32,13 +32,19 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.core.annotation.Order;
 import org.springframework.scheduling.annotation.EnableAsync;
+import top.dcenter.ums.security.core.api.permission.audit.PermissionAuditSink;
 import top.dcenter.ums.security.core.api.permission.service.RolePermissionsServiceAspect;
 import top.dcenter.ums.security.core.api.permission.service.UpdateCacheOfRolesResourcesService;
 import top.dcenter.ums.security.core.api.permission.service.UriAuthorizeService;
 import top.dcenter.ums.security.core.permission.advice.PermissionAdviceHandler;
 import top.dcenter.ums.security.core.permission.aspect.LocalRolePermissionsServiceAspect;
+import top.dcenter.ums.security.core.permission.aspect.UpdateCacheOfRolesResourcesServiceAspect;
+import top.dcenter.ums.security.core.permission.audit.AsyncBatchPermissionAuditSink;
+import top.dcenter.ums.security.core.permission.audit.NoOpPermissionAuditSink;
 import top.dcenter.ums.security.core.permission.evaluator.UriAuthoritiesPermissionEvaluator;
 import top.dcenter.ums.security.core.permission.listener.UpdateRolesResourcesListener;
+import top.dcenter.ums.security.core.permission.properties.PermissionAuditProperties;
+import top.dcenter.ums.security.core.permission.properties.PermissionProperties;
 import top.dcenter.ums.security.core.permission.service.DefaultUriAuthorizeService;
 
 /**
@@ -75,16 +81,33 @@ public class PermissionAutoConfiguration {
         return new LocalRolePermissionsServiceAspect();
     }
 
+    @Bean
+    @ConditionalOnBean(type = "top.dcenter.ums.security.core.api.permission.service.UpdateCacheOfRolesResourcesService")
+    public UpdateCacheOfRolesResourcesServiceAspect updateCacheOfRolesResourcesServiceAspect() {
+        return new UpdateCacheOfRolesResourcesServiceAspect();
+    }
+
     @Bean
     @ConditionalOnMissingBean(type = "top.dcenter.ums.security.core.api.permission.service.UriAuthorizeService")
     public UriAuthorizeService uriAuthorizeService() {
         return new DefaultUriAuthorizeService();
     }
 
+    @Bean
+    @ConditionalOnMissingBean(type = "top.dcenter.ums.security.core.api.permission.audit.PermissionAuditSink")
+    public PermissionAuditSink permissionAuditSink(PermissionProperties permissionProperties) {
+        final PermissionAuditProperties auditProperties = permissionProperties.getAudit();
+        if (auditProperties.getEnable()) {
+            return new AsyncBatchPermissionAuditSink(auditProperties);
+        }
+        return new NoOpPermissionAuditSink();
+    }
+
     @Bean
     @ConditionalOnMissingBean(type = "org.springframework.security.access.PermissionEvaluator")
-    public UriAuthoritiesPermissionEvaluator uriAuthoritiesPermissionEvaluator(UriAuthorizeService uriAuthorizeService) {
-        return new UriAuthoritiesPermissionEvaluator(uriAuthorizeService);
+    public UriAuthoritiesPermissionEvaluator uriAuthoritiesPermissionEvaluator(UriAuthorizeService uriAuthorizeService,
+                                                                               PermissionAuditSink permissionAuditSink) {
+        return new UriAuthoritiesPermissionEvaluator(uriAuthorizeService, permissionAuditSink);
     }
 
 }
\ No newline at end of file
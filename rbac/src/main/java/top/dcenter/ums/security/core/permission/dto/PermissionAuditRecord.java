@@ -0,0 +1,129 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.permission.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.security.core.Authentication;
+import top.dcenter.ums.security.common.utils.IpUtil;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import static java.util.Objects.isNull;
+
+/**
+ * uri 权限控制的审计记录, 只在需要审计时创建, 创建时不会创建 {@link HttpSession}.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 10:35
+ */
+@Getter
+@ToString
+public class PermissionAuditRecord {
+
+    /**
+     * 是否有访问权限
+     */
+    private final boolean granted;
+    /**
+     * 用户
+     */
+    private final Object principal;
+    /**
+     * session id, 没有 session 时为 null
+     */
+    private final String sid;
+    private final String ip;
+    private final String uri;
+    private final String method;
+    /**
+     * 权限字符串, 通过 request 校验时为 null
+     */
+    private final String permission;
+    private final String referer;
+    private final String userAgent;
+    /**
+     * 授权时间, 单位: 毫秒
+     */
+    private final long time;
+
+    @SuppressWarnings("java:S107")
+    private PermissionAuditRecord(boolean granted, Object principal, String sid, String ip, String uri,
+                                  String method, String permission, String referer, String userAgent) {
+        this.granted = granted;
+        this.principal = principal;
+        this.sid = sid;
+        this.ip = ip;
+        this.uri = uri;
+        this.method = method;
+        this.permission = permission;
+        this.referer = referer;
+        this.userAgent = userAgent;
+        this.time = System.currentTimeMillis();
+    }
+
+    /**
+     * 根据 request 创建审计记录
+     * @param authentication    authentication
+     * @param request           request
+     * @param granted           是否有访问权限
+     * @return  审计记录
+     */
+    @NonNull
+    public static PermissionAuditRecord of(@NonNull Authentication authentication,
+                                           @NonNull HttpServletRequest request,
+                                           boolean granted) {
+        return new PermissionAuditRecord(granted, authentication.getPrincipal(), getSessionId(request),
+                                         IpUtil.getRealIp(request), request.getRequestURI(), request.getMethod(),
+                                         null, request.getHeader("referer"), request.getHeader("User-Agent"));
+    }
+
+    /**
+     * 根据 uri 与 permission 创建审计记录
+     * @param authentication    authentication
+     * @param uri               uri(支持通配符)
+     * @param permission        权限字符串
+     * @param granted           是否有访问权限
+     * @return  审计记录
+     */
+    @NonNull
+    public static PermissionAuditRecord of(@NonNull Authentication authentication,
+                                           @NonNull String uri,
+                                           @NonNull String permission,
+                                           boolean granted) {
+        return new PermissionAuditRecord(granted, authentication.getPrincipal(), null, null, uri,
+                                         null, permission, null, null);
+    }
+
+    @Nullable
+    private static String getSessionId(@NonNull HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (isNull(session)) {
+            return null;
+        }
+        return session.getId();
+    }
+
+}
@@ -24,18 +24,20 @@
 package top.dcenter.ums.security.core.permission.evaluator;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
 import org.springframework.security.access.PermissionEvaluator;
 import org.springframework.security.core.Authentication;
+import top.dcenter.ums.security.core.api.permission.audit.PermissionAuditSink;
 import top.dcenter.ums.security.core.api.permission.service.UriAuthorizeService;
-import top.dcenter.ums.security.common.utils.IpUtil;
+import top.dcenter.ums.security.core.permission.audit.NoOpPermissionAuditSink;
+import top.dcenter.ums.security.core.permission.dto.PermissionAuditRecord;
 import top.dcenter.ums.security.core.permission.enums.PermissionType;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.Serializable;
-import java.time.Instant;
 
 /**
- * 权限控制 hasPermission 表达式处理器, <br>
+ * 权限控制 hasPermission 表达式处理器, 授权结果通过 {@link PermissionAuditSink} 审计.<br>
  * @author YongWu zheng
  * @version V1.0  Created by 2020/10/3 14:41
  */
@@ -43,9 +45,16 @@ import java.time.Instant;
 public class UriAuthoritiesPermissionEvaluator  implements PermissionEvaluator {
 
     private final UriAuthorizeService uriAuthorizeService;
+    private final PermissionAuditSink permissionAuditSink;
 
     public UriAuthoritiesPermissionEvaluator(UriAuthorizeService uriAuthorizeService) {
+        this(uriAuthorizeService, new NoOpPermissionAuditSink());
+    }
+
+    public UriAuthoritiesPermissionEvaluator(@NonNull UriAuthorizeService uriAuthorizeService,
+                                             @NonNull PermissionAuditSink permissionAuditSink) {
         this.uriAuthorizeService = uriAuthorizeService;
+        this.permissionAuditSink = permissionAuditSink;
     }
 
     /**
@@ -76,29 +85,12 @@ public class UriAuthoritiesPermissionEvaluator  implements PermissionEvaluator {
 
             boolean hasPermission = uriAuthorizeService.hasPermission(authentication, request);
 
-            // 日志参数
-            Object principal = authentication.getPrincipal();
-            String sid = request.getSession(true).getId();
-            String ip = IpUtil.getRealIp(request);
-            String uri = request.getRequestURI();
-            long now = Instant.now().toEpochMilli();
-            String referer = request.getHeader("referer");
-            String userAgent = request.getHeader("User-Agent");
-            final String method = request.getMethod();
-
-            if (hasPermission)
+            // 审计, 未采样时不创建审计记录
+            if (permissionAuditSink.isSampled(hasPermission))
             {
-                // 有访问权限
-                log.info("URI权限控制-放行: sid={}, user={}, ip={}, uri={}, method={}, time={}, referer={}, agent={}",
-                         sid, principal, ip, uri, method, now, referer, userAgent);
-
-                return true;
+                permissionAuditSink.audit(PermissionAuditRecord.of(authentication, request, hasPermission));
             }
-
-            // 没有访问权限
-            log.warn("URI权限控制-禁止: sid={}, user={}, ip={}, uri={}, method={}, time={}, referer={}, agent={}",
-                     sid, principal, ip, uri, method, now, referer, userAgent);
-            return  false;
+            return hasPermission;
         }
 
         log.warn("URI权限控制-传参类型错误: targetDomainObject={}, permission={}", targetDomainObject, permission);
@@ -122,20 +114,12 @@ public class UriAuthoritiesPermissionEvaluator  implements PermissionEvaluator {
             // 忽略 targetId, 可以增加对多租户权限控制, 待扩展
             boolean hasPermission = uriAuthorizeService.hasPermission(authentication, targetType, uriAuthority);
 
-            Object principal = authentication.getPrincipal();
-            long now = Instant.now().toEpochMilli();
-
-            // 有访问权限
-            if (hasPermission)
+            // 审计, 未采样时不创建审计记录
+            if (permissionAuditSink.isSampled(hasPermission))
             {
-                log.info("URI权限控制-放行: user={}, uri={},time={}, permission={}",
-                         principal, targetType, now, permission);
-                return true;
+                permissionAuditSink.audit(PermissionAuditRecord.of(authentication, targetType, uriAuthority, hasPermission));
             }
-
-            // 没有访问权限
-            log.warn("URI权限控制-禁止: user={}, uri={}, time={}, permission={}",
-                     principal, targetType, now, permission);
+            return hasPermission;
         }
 
         return false;
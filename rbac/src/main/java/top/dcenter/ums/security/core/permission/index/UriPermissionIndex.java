@@ -0,0 +1,282 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.permission.index;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.AntPathMatcher;
+import top.dcenter.ums.security.core.api.permission.service.AbstractUriAuthorizeService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 预编译的 uri 权限索引, 由所有角色 uri(资源) 权限 Map(roleAuthority, Map(uri, Set(permission))) 构建, 构建后不可变,
+ * 更新时整体替换. 用于 {@link AbstractUriAuthorizeService} 的权限校验.<br>
+ * 1. uri pattern 按前导的字面量路径段(不含 '*', '?', '{' 的段)组织成路径树, 校验时只沿 requestUri 的路径段遍历一次,
+ *    只有遍历到的节点上的 pattern 才需要 {@link AntPathMatcher} 匹配.<br>
+ * 2. 每个 pattern 的每个 permission 对应一个角色位图, 用户角色也转换为位图, 校验时只需做一次位与运算.<br>
+ * 注意: 此索引假定 {@link AntPathMatcher} 为默认的区分大小写与以 "/" 为路径分隔符的配置.
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 14:20
+ */
+public final class UriPermissionIndex {
+
+    private static final char PATH_SEPARATOR = '/';
+
+    /**
+     * Map(roleAuthority, 角色在位图中的位置)
+     */
+    private final Map<String, Integer> roleIndexes;
+    /**
+     * Map(permission, permission 在 {@link PatternEntry#rolesOfPermission} 中的位置)
+     */
+    private final Map<String, Integer> permissionIndexes;
+    /**
+     * 位图的 long 数组长度
+     */
+    private final int words;
+    private final Node root;
+
+    private UriPermissionIndex(Map<String, Integer> roleIndexes, Map<String, Integer> permissionIndexes, Node root) {
+        this.roleIndexes = roleIndexes;
+        this.permissionIndexes = permissionIndexes;
+        this.words = Math.max(1, (roleIndexes.size() + Long.SIZE - 1) / Long.SIZE);
+        this.root = root;
+    }
+
+    /**
+     * 构建 uri 权限索引
+     * @param rolesAuthorities  所有角色 uri(资源) 权限 Map(roleAuthority, Map(uri, Set(permission)))
+     * @return  返回 {@link UriPermissionIndex}
+     */
+    @NonNull
+    public static UriPermissionIndex build(@NonNull Map<String, Map<String, Set<String>>> rolesAuthorities) {
+
+        final Map<String, Integer> roleIndexes = new HashMap<>(rolesAuthorities.size());
+        final Map<String, Integer> permissionIndexes = new HashMap<>(16);
+        // Map(uri, Map(permissionIndex, Set(roleIndex)))
+        final Map<String, Map<Integer, List<Integer>>> uriRoles = new HashMap<>(64);
+
+        rolesAuthorities.forEach((role, uriPermissions) -> {
+            final Integer roleIndex = roleIndexes.computeIfAbsent(role, k -> roleIndexes.size());
+            if (uriPermissions == null) {
+                return;
+            }
+            uriPermissions.forEach((uri, permissions) -> {
+                if (uri == null || permissions == null) {
+                    return;
+                }
+                Map<Integer, List<Integer>> permissionRoles = uriRoles.computeIfAbsent(uri, k -> new HashMap<>(8));
+                for (String permission : permissions) {
+                    Integer permissionIndex = permissionIndexes.computeIfAbsent(permission,
+                                                                                k -> permissionIndexes.size());
+                    permissionRoles.computeIfAbsent(permissionIndex, k -> new ArrayList<>()).add(roleIndex);
+                }
+            });
+        });
+
+        final int words = Math.max(1, (roleIndexes.size() + Long.SIZE - 1) / Long.SIZE);
+        final int permissionCount = permissionIndexes.size();
+        final Node root = new Node();
+        uriRoles.forEach((uri, permissionRoles) -> {
+            long[][] rolesOfPermission = new long[permissionCount][];
+            permissionRoles.forEach((permissionIndex, roles) -> {
+                long[] bits = new long[words];
+                for (Integer roleIndex : roles) {
+                    bits[roleIndex / Long.SIZE] |= 1L << (roleIndex % Long.SIZE);
+                }
+                rolesOfPermission[permissionIndex] = bits;
+            });
+            root.add(uri, new PatternEntry(uri, rolesOfPermission));
+        });
+
+        return new UriPermissionIndex(roleIndexes, permissionIndexes, root);
+    }
+
+    /**
+     * 把角色集合转换为角色位图
+     * @param roles 角色集合
+     * @return  返回角色位图, 不在索引中的角色忽略.
+     */
+    @NonNull
+    public long[] toRoleBits(@NonNull Collection<String> roles) {
+        final long[] bits = new long[words];
+        for (String role : roles) {
+            Integer roleIndex = roleIndexes.get(role);
+            if (roleIndex != null) {
+                bits[roleIndex / Long.SIZE] |= 1L << (roleIndex % Long.SIZE);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 角色位图所代表的角色是否有 requestUri 的 permission 权限
+     * @param roleBits          角色位图, 通过 {@link #toRoleBits(Collection)} 获取
+     * @param requestUri        不包含 ServletContextPath 的 requestUri
+     * @param permission        权限字符串
+     * @param antPathMatcher    {@link AntPathMatcher}
+     * @return  有访问权限则返回 true, 否则返回 false.
+     */
+    public boolean hasPermission(@NonNull long[] roleBits, @NonNull String requestUri,
+                                 @NonNull String permission, @NonNull AntPathMatcher antPathMatcher) {
+        final Integer permissionIndex = permissionIndexes.get(permission);
+        if (permissionIndex == null || isEmpty(roleBits)) {
+            return false;
+        }
+
+        Node node = root;
+        if (node.matches(roleBits, permissionIndex, requestUri, antPathMatcher)) {
+            return true;
+        }
+        // 沿 requestUri 的路径段遍历路径树
+        final int length = requestUri.length();
+        int start = 0;
+        while (start < length) {
+            int end = requestUri.indexOf(PATH_SEPARATOR, start);
+            if (end == -1) {
+                end = length;
+            }
+            if (end > start) {
+                node = node.child(requestUri.substring(start, end));
+                if (node == null) {
+                    return false;
+                }
+                if (node.matches(roleBits, permissionIndex, requestUri, antPathMatcher)) {
+                    return true;
+                }
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * @return 返回索引中的角色数量
+     */
+    public int getRoleCount() {
+        return roleIndexes.size();
+    }
+
+    private static boolean isEmpty(@NonNull long[] bits) {
+        for (long bit : bits) {
+            if (bit != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 路径树节点, children 的 key 为字面量路径段, entries 为前导字面量路径段到此节点为止的 pattern.
+     */
+    private static final class Node {
+
+        private Map<String, Node> children;
+        private PatternEntry[] entries = new PatternEntry[0];
+
+        @Nullable
+        private Node child(@NonNull String segment) {
+            return children == null ? null : children.get(segment);
+        }
+
+        private void add(@NonNull String pattern, @NonNull PatternEntry entry) {
+            Node node = this;
+            final int length = pattern.length();
+            int start = 0;
+            while (start < length) {
+                int end = pattern.indexOf(PATH_SEPARATOR, start);
+                if (end == -1) {
+                    end = length;
+                }
+                if (end > start) {
+                    String segment = pattern.substring(start, end);
+                    if (!isLiteral(segment)) {
+                        break;
+                    }
+                    if (node.children == null) {
+                        node.children = new HashMap<>(8);
+                    }
+                    node = node.children.computeIfAbsent(segment, k -> new Node());
+                }
+                start = end + 1;
+            }
+            PatternEntry[] newEntries = new PatternEntry[node.entries.length + 1];
+            System.arraycopy(node.entries, 0, newEntries, 0, node.entries.length);
+            newEntries[node.entries.length] = entry;
+            node.entries = newEntries;
+        }
+
+        private boolean matches(@NonNull long[] roleBits, int permissionIndex,
+                                @NonNull String requestUri, @NonNull AntPathMatcher antPathMatcher) {
+            for (PatternEntry entry : entries) {
+                // 先做位与运算, 再做 pattern 匹配
+                if (entry.hasAnyRole(roleBits, permissionIndex) && entry.match(requestUri, antPathMatcher)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isLiteral(@NonNull String segment) {
+            return segment.indexOf('*') == -1 && segment.indexOf('?') == -1 && segment.indexOf('{') == -1;
+        }
+    }
+
+    private static final class PatternEntry {
+
+        private final String pattern;
+        /**
+         * 数组索引为 permissionIndex, 值为拥有此 permission 的角色位图, 可能为 null
+         */
+        private final long[][] rolesOfPermission;
+
+        private PatternEntry(String pattern, long[][] rolesOfPermission) {
+            this.pattern = pattern;
+            this.rolesOfPermission = rolesOfPermission;
+        }
+
+        private boolean hasAnyRole(@NonNull long[] roleBits, int permissionIndex) {
+            final long[] roles = rolesOfPermission[permissionIndex];
+            if (roles == null) {
+                return false;
+            }
+            for (int i = 0; i < roles.length; i++) {
+                if ((roles[i] & roleBits[i]) != 0L) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean match(@NonNull String requestUri, @NonNull AntPathMatcher antPathMatcher) {
+            return pattern.equals(requestUri) || antPathMatcher.match(pattern, requestUri);
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ * Copyright (c) 2020-2029 YongWu zheng (dcenter.top and gitee.com/pcore and github.com/ZeroOrInfinity)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package top.dcenter.ums.security.core.permission.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * uri 权限控制的审计属性
+ * @author YongWu zheng
+ * @version V2.0  Created by 2021.6.9 11:30
+ */
+@Getter
+@Setter
+public class PermissionAuditProperties {
+
+    /**
+     * 是否开启 uri 权限控制的审计日志(异步批量输出), 默认: false.
+     * 为 false 时不做任何审计
+     */
+    private Boolean enable = Boolean.FALSE;
+
+    /**
+     * 放行结果的采样率, 取值范围 [0, 1], 默认: 0.0
+     */
+    private Double grantedSampleRate = 0.0D;
+
+    /**
+     * 禁止结果的采样率, 取值范围 [0, 1], 默认: 1.0
+     */
+    private Double deniedSampleRate = 1.0D;
+
+    /**
+     * 审计队列容量, 队列满时丢弃审计记录, 默认: 10000
+     */
+    private Integer queueCapacity = 10000;
+
+    /**
+     * 每批处理的最大审计记录数量, 默认: 200
+     */
+    private Integer batchSize = 200;
+
+    /**
+     * 批量处理的时间间隔, 默认: 1 秒
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+}
@@ -25,6 +25,7 @@ package top.dcenter.ums.security.core.permission.properties;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.security.access.PermissionEvaluator;
 import top.dcenter.ums.security.core.permission.evaluator.UriAuthoritiesPermissionEvaluator;
 
@@ -87,4 +88,10 @@ public class PermissionProperties {
      * 当 {@code enableRestfulApi=true} 时 {@code restfulAccessExp} 权限表达式生效.
      */
     private Boolean enableRestfulApi = true;
+
+    /**
+     * uri 权限控制的审计属性
+     */
+    @NestedConfigurationProperty
+    public final PermissionAuditProperties audit = new PermissionAuditProperties();
 }